@@ -32,6 +32,7 @@ import androidx.work.WorkInfo
 import androidx.work.WorkManager
 import com.nextcloud.client.account.User
 import com.nextcloud.client.core.Clock
+import com.nextcloud.client.preferences.AppPreferences
 import com.nhaarman.mockitokotlin2.KArgumentCaptor
 import com.nhaarman.mockitokotlin2.any
 import com.nhaarman.mockitokotlin2.argThat
@@ -65,6 +66,7 @@ import java.util.concurrent.TimeoutException
 @Suite.SuiteClasses(
     BackgroundJobManagerTest.Manager::class,
     BackgroundJobManagerTest.ContentObserver::class,
+    BackgroundJobManagerTest.FilesSyncForChanges::class,
     BackgroundJobManagerTest.PeriodicContactsBackup::class,
     BackgroundJobManagerTest.ImmediateContactsBackup::class,
     BackgroundJobManagerTest.ImmediateContactsImport::class,
@@ -94,6 +96,7 @@ class BackgroundJobManagerTest {
         internal lateinit var user: User
         internal lateinit var workManager: WorkManager
         internal lateinit var clock: Clock
+        internal lateinit var preferences: AppPreferences
         internal lateinit var backgroundJobManager: BackgroundJobManagerImpl
 
         @Before
@@ -104,7 +107,8 @@ class BackgroundJobManagerTest {
             clock = mock()
             whenever(clock.currentTime).thenReturn(TIMESTAMP)
             whenever(clock.currentDate).thenReturn(Date(TIMESTAMP))
-            backgroundJobManager = BackgroundJobManagerImpl(workManager, clock)
+            preferences = mock()
+            backgroundJobManager = BackgroundJobManagerImpl(workManager, clock, preferences)
         }
 
         fun assertHasRequiredTags(tags: Set<String>, jobName: String, user: User? = null) {
@@ -224,6 +228,44 @@ class BackgroundJobManagerTest {
         }
     }
 
+    class FilesSyncForChanges : Fixture() {
+
+        private val changedUris = listOf("content://media/external/images/media/17")
+        private lateinit var request: OneTimeWorkRequest
+
+        @Before
+        fun setUp() {
+            val requestCaptor: KArgumentCaptor<OneTimeWorkRequest> = argumentCaptor()
+            backgroundJobManager.startFilesSyncForChangesJob(changedUris)
+            verify(workManager).enqueueUniqueWork(
+                any(),
+                any(),
+                requestCaptor.capture()
+            )
+            assertEquals(1, requestCaptor.allValues.size)
+            request = requestCaptor.firstValue
+        }
+
+        @Test
+        fun changes_are_kept_until_indexed() {
+            verify(preferences).addPendingContentChanges(changedUris)
+        }
+
+        @Test
+        fun job_is_unique_and_replaces_previous_job() {
+            verify(workManager).enqueueUniqueWork(
+                eq(BackgroundJobManagerImpl.JOB_IMMEDIATE_FILES_SYNC_CHANGES),
+                eq(ExistingWorkPolicy.REPLACE),
+                argThat(IsOneTimeWorkRequest())
+            )
+        }
+
+        @Test
+        fun job_request_has_mandatory_tags() {
+            assertHasRequiredTags(request.tags, BackgroundJobManagerImpl.JOB_IMMEDIATE_FILES_SYNC_CHANGES)
+        }
+    }
+
     class PeriodicContactsBackup : Fixture() {
         private lateinit var request: PeriodicWorkRequest
 
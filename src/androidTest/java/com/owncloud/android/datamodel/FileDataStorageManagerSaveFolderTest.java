@@ -0,0 +1,110 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.datamodel;
+
+import android.accounts.Account;
+
+import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.utils.MimeType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures {@link FileDataStorageManager#saveFolder(OCFile, java.util.Collection, java.util.Collection)} for growing
+ * numbers of children, both for the initial insert and for a refresh of an already stored folder.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class FileDataStorageManagerSaveFolderTest {
+    private static final String TAG = FileDataStorageManagerSaveFolderTest.class.getSimpleName();
+    private static final int[] CHILD_COUNTS = {100, 1000, 5000};
+
+    private FileDataStorageManager storageManager;
+
+    @Before
+    public void setUp() {
+        Account account = new Account("saveFolder@localhost", "test");
+        storageManager = new FileDataStorageManager(account,
+                                                    InstrumentationRegistry.getTargetContext().getContentResolver());
+        storageManager.deleteAllFiles();
+    }
+
+    @After
+    public void tearDown() {
+        storageManager.deleteAllFiles();
+    }
+
+    @Test
+    public void testSaveFolderTimeVersusChildCount() {
+        OCFile root = storageManager.getFileByPath(OCFile.ROOT_PATH);
+
+        for (int count : CHILD_COUNTS) {
+            OCFile folder = new OCFile("/folder" + count + "/");
+            folder.setMimeType(MimeType.DIRECTORY);
+            folder.setParentId(root.getFileId());
+            storageManager.saveFile(folder);
+
+            List<OCFile> children = createChildren(folder, count);
+
+            long start = System.currentTimeMillis();
+            storageManager.saveFolder(folder, children, Collections.emptyList());
+            long insertTime = System.currentTimeMillis() - start;
+
+            assertEquals(count, storageManager.getFolderContent(folder, false).size());
+
+            // refresh without known ids, as done for files only found by remote path
+            List<OCFile> refreshedChildren = createChildren(folder, count);
+
+            start = System.currentTimeMillis();
+            storageManager.saveFolder(folder, refreshedChildren, Collections.emptyList());
+            long updateTime = System.currentTimeMillis() - start;
+
+            assertEquals(count, storageManager.getFolderContent(folder, false).size());
+
+            Log_OC.d(TAG, "saveFolder with " + count + " children: insert " + insertTime + " ms, update "
+                + updateTime + " ms");
+        }
+    }
+
+    private List<OCFile> createChildren(OCFile folder, int count) {
+        List<OCFile> children = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            OCFile file = new OCFile(folder.getRemotePath() + "file" + i + ".txt");
+            file.setMimeType("text/plain");
+            file.setRemoteId(String.valueOf(i));
+            children.add(file);
+        }
+
+        return children;
+    }
+}
@@ -5,6 +5,7 @@ import android.content.ContentResolver;
 import android.content.Context;
 
 import com.nextcloud.client.account.CurrentAccountProvider;
+import com.nextcloud.client.account.User;
 import com.owncloud.android.db.OCUpload;
 
 import org.junit.After;
@@ -12,9 +13,19 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Mockito;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Observer;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import androidx.annotation.NonNull;
 import androidx.test.InstrumentationRegistry;
 import androidx.test.filters.SmallTest;
 import androidx.test.runner.AndroidJUnit4;
@@ -29,7 +40,19 @@ public class UploadStorageManagerTest {
 
     private Account[] Accounts;
     private UploadsStorageManager uploadsStorageManager;
-    private CurrentAccountProvider currentAccountProvider = () -> null;
+    private User user = Mockito.mock(User.class);
+    private CurrentAccountProvider currentAccountProvider = new CurrentAccountProvider() {
+        @Override
+        public Account getCurrentAccount() {
+            return null;
+        }
+
+        @NonNull
+        @Override
+        public User getUser() {
+            return user;
+        }
+    };
 
     @Before
     public void setUp() {
@@ -37,6 +60,7 @@ public class UploadStorageManagerTest {
         ContentResolver contentResolver = instrumentationCtx.getContentResolver();
         uploadsStorageManager = new UploadsStorageManager(currentAccountProvider, contentResolver);
         Accounts = new Account[]{new Account("A", "A"), new Account("B", "B")};
+        Mockito.when(user.getAccountName()).thenReturn(Accounts[0].name);
     }
 
     @Test
@@ -53,6 +77,88 @@ public class UploadStorageManagerTest {
         Assert.assertTrue("Expected 4 removed uploads files", uploadsStorageManager.removeAccountUploads(Accounts[1]) == 4);
     }
 
+    @Test
+    public void testStoreUploads() {
+        List<OCUpload> uploads = Arrays.asList(createUpload(Accounts[0]),
+                                               createUpload(Accounts[0]),
+                                               createUpload(Accounts[0]));
+        AtomicInteger notifications = new AtomicInteger();
+        Observer observer = (observable, arg) -> notifications.incrementAndGet();
+        uploadsStorageManager.addObserver(observer);
+
+        try {
+            Assert.assertTrue(uploadsStorageManager.storeUploads(uploads));
+        } finally {
+            uploadsStorageManager.deleteObserver(observer);
+        }
+
+        Assert.assertEquals("Expected a single notification for all uploads", 1, notifications.get());
+        Set<Long> ids = new HashSet<>();
+        for (OCUpload upload : uploads) {
+            Assert.assertTrue("Expected id of stored upload", upload.getUploadId() > 0);
+            ids.add(upload.getUploadId());
+        }
+        Assert.assertEquals("Expected distinct ids", uploads.size(), ids.size());
+
+        Set<Long> storedIds = new HashSet<>();
+        for (OCUpload upload : uploadsStorageManager.getAllStoredUploads()) {
+            storedIds.add(upload.getUploadId());
+        }
+        Assert.assertTrue(storedIds.containsAll(ids));
+    }
+
+    @Test
+    public void testFinishedUploadsArePaged() {
+        for (Account account : Accounts) {
+            uploadsStorageManager.removeAccountUploads(account);
+        }
+        long[] endTimestamps = {100, 300, 200, 200, 400, 200};
+        List<OCUpload> finished = new ArrayList<>();
+        for (long endTimestamp : endTimestamps) {
+            finished.add(storeFinishedUpload(Accounts[0], endTimestamp));
+        }
+        storeFinishedUpload(Accounts[1], 250);
+        uploadsStorageManager.storeUpload(createUpload(Accounts[0]));
+
+        // latest finished first, same end time by id
+        Collections.sort(finished, (upload1, upload2) -> {
+            int compare = Long.compare(upload2.getUploadEndTimestamp(), upload1.getUploadEndTimestamp());
+            return compare != 0 ? compare : Long.compare(upload1.getUploadId(), upload2.getUploadId());
+        });
+        List<Long> expectedIds = new ArrayList<>();
+        for (OCUpload upload : finished) {
+            expectedIds.add(upload.getUploadId());
+        }
+
+        List<Long> pagedIds = new ArrayList<>();
+        OCUpload last = null;
+        int pages = 0;
+        OCUpload[] page;
+        do {
+            page = uploadsStorageManager.getFinishedUploadsForCurrentAccount(last, 2);
+            Assert.assertTrue("Expected at most 2 uploads per page", page.length <= 2);
+            for (OCUpload upload : page) {
+                pagedIds.add(upload.getUploadId());
+                last = upload;
+            }
+            pages++;
+        } while (page.length > 0);
+
+        Assert.assertEquals(expectedIds, pagedIds);
+        // three full pages and the empty one ending paging
+        Assert.assertEquals(4, pages);
+        Assert.assertEquals(endTimestamps.length, uploadsStorageManager.getFinishedUploadsCountForCurrentAccount());
+    }
+
+    private OCUpload storeFinishedUpload(Account account, long endTimestamp) {
+        OCUpload upload = createUpload(account);
+        uploadsStorageManager.storeUpload(upload);
+        upload.setUploadStatus(UploadsStorageManager.UploadStatus.UPLOAD_SUCCEEDED);
+        upload.setUploadEndTimestamp(endTimestamp);
+        uploadsStorageManager.updateUpload(upload);
+        return upload;
+    }
+
     private void insertUploads(Account account, int rowsToInsert) {
 
         for (int i = 0; i < rowsToInsert; i++) {
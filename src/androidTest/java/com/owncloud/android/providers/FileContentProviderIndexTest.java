@@ -0,0 +1,118 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.providers;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.owncloud.android.db.ProviderMeta;
+import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies with EXPLAIN QUERY PLAN that the hot lookups on the filelist database are served by an index.
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class FileContentProviderIndexTest {
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+
+        // make sure the provider created / upgraded the database
+        Cursor cursor = context.getContentResolver().query(ProviderTableMeta.CONTENT_URI, null, null, null, null);
+        if (cursor != null) {
+            cursor.close();
+        }
+
+        db = SQLiteDatabase.openDatabase(context.getDatabasePath(ProviderMeta.DB_NAME).getPath(),
+                                         null,
+                                         SQLiteDatabase.OPEN_READONLY);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testFileByPathUsesIndex() {
+        assertUsesIndex("SELECT * FROM " + ProviderTableMeta.FILE_TABLE_NAME + " WHERE " +
+                            ProviderTableMeta.FILE_PATH + "=? AND " + ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?",
+                        "/test/", "user@server");
+    }
+
+    @Test
+    public void testFileByRemoteIdUsesIndex() {
+        assertUsesIndex("SELECT * FROM " + ProviderTableMeta.FILE_TABLE_NAME + " WHERE " +
+                            ProviderTableMeta.FILE_REMOTE_ID + "=? AND " + ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?",
+                        "00000001oc", "user@server");
+    }
+
+    @Test
+    public void testFolderContentUsesIndex() {
+        assertUsesIndex("SELECT * FROM " + ProviderTableMeta.FILE_TABLE_NAME + " WHERE " +
+                            ProviderTableMeta.FILE_PARENT + "=1 AND (" + ProviderTableMeta.FILE_PARENT + "=?)",
+                        "1");
+    }
+
+    @Test
+    public void testFilesystemDataSetUsesIndex() {
+        assertUsesIndex("SELECT * FROM " + ProviderTableMeta.FILESYSTEM_TABLE_NAME + " WHERE " +
+                            ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH + " = ? and " +
+                            ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID + " = ?",
+                        "/sdcard/DCIM/image.jpg", "1");
+    }
+
+    @Test
+    public void testUploadsByStatusUsesIndex() {
+        assertUsesIndex("SELECT * FROM " + ProviderTableMeta.UPLOADS_TABLE_NAME + " WHERE " +
+                            ProviderTableMeta.UPLOADS_STATUS + "==1 AND " +
+                            ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?",
+                        "user@server");
+    }
+
+    private void assertUsesIndex(String query, String... args) {
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query, args)) {
+            assertTrue(cursor.moveToFirst());
+
+            do {
+                String detail = cursor.getString(cursor.getColumnIndex("detail"));
+
+                assertFalse("Table scan: " + detail, detail.startsWith("SCAN"));
+                assertTrue("No index used: " + detail, detail.contains("INDEX"));
+            } while (cursor.moveToNext());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.providers;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import com.owncloud.android.db.ProviderMeta;
+import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Verifies that the triggers on the file list keep the file name index in sync and that
+ * {@link ProviderTableMeta#CONTENT_URI_FILE_SEARCH} finds the indexed files.
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class FileContentProviderSearchTest {
+    private static final String ACCOUNT = "file-search-test@server";
+
+    private Context context;
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        contentResolver = context.getContentResolver();
+        deleteTestFiles();
+    }
+
+    @After
+    public void tearDown() {
+        deleteTestFiles();
+    }
+
+    @Test
+    public void testInsertedFilesAreFound() {
+        long reportId = insertFile("Summer report.pdf");
+        long photoId = insertFile("IMG_2020.jpg");
+
+        assertEquals(Collections.singletonList("Summer report.pdf"), search("\"sum*\" \"rep*\""));
+        assertEquals(Collections.singletonList("IMG_2020.jpg"), search("\"img*\""));
+        assertEquals(Arrays.asList(reportId), indexedIds("\"summer*\""));
+        assertEquals(Arrays.asList(photoId), indexedIds("\"2020*\""));
+    }
+
+    @Test
+    public void testRenamedFileIsFoundByNewNameOnly() {
+        long id = insertFile("draft.txt");
+
+        ContentValues values = new ContentValues();
+        values.put(ProviderTableMeta.FILE_NAME, "final.txt");
+        values.put(ProviderTableMeta.FILE_PATH, "/final.txt");
+        assertEquals(1, contentResolver.update(ProviderTableMeta.CONTENT_URI,
+                                               values,
+                                               ProviderTableMeta._ID + "=?",
+                                               new String[]{String.valueOf(id)}));
+
+        assertEquals(new ArrayList<String>(), search("\"draft*\""));
+        assertEquals(Collections.singletonList("final.txt"), search("\"final*\""));
+        assertEquals(new ArrayList<Long>(), indexedIds("\"draft*\""));
+        assertEquals(Arrays.asList(id), indexedIds("\"final*\""));
+    }
+
+    @Test
+    public void testDeletedFileIsNotFound() {
+        long id = insertFile("obsolete.txt");
+
+        assertEquals(1, contentResolver.delete(ProviderTableMeta.CONTENT_URI,
+                                               ProviderTableMeta._ID + "=?",
+                                               new String[]{String.valueOf(id)}));
+
+        assertEquals(new ArrayList<String>(), search("\"obsolete*\""));
+        assertEquals(new ArrayList<Long>(), indexedIds("\"obsolete*\""));
+    }
+
+    private long insertFile(String name) {
+        ContentValues values = new ContentValues();
+        values.put(ProviderTableMeta.FILE_NAME, name);
+        values.put(ProviderTableMeta.FILE_PATH, "/" + name);
+        values.put(ProviderTableMeta.FILE_ACCOUNT_OWNER, ACCOUNT);
+        values.put(ProviderTableMeta.FILE_PARENT, 1);
+        values.put(ProviderTableMeta.FILE_CONTENT_TYPE, "text/plain");
+
+        Uri uri = contentResolver.insert(ProviderTableMeta.CONTENT_URI_FILE, values);
+        assertNotNull(uri);
+        return ContentUris.parseId(uri);
+    }
+
+    private List<String> search(String match) {
+        Uri uri = ProviderTableMeta.CONTENT_URI_FILE_SEARCH.buildUpon()
+            .appendQueryParameter(ProviderTableMeta.FILE_SEARCH_MATCH, match)
+            .build();
+
+        List<String> names = new ArrayList<>();
+        try (Cursor cursor = contentResolver.query(uri,
+                                                   new String[]{ProviderTableMeta.FILE_NAME},
+                                                   ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?",
+                                                   new String[]{ACCOUNT},
+                                                   null)) {
+            assertNotNull(cursor);
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Reads the file name index itself, without the file list.
+     */
+    private List<Long> indexedIds(String match) {
+        List<Long> ids = new ArrayList<>();
+        try (SQLiteDatabase db = SQLiteDatabase.openDatabase(context.getDatabasePath(ProviderMeta.DB_NAME).getPath(),
+                                                             null,
+                                                             SQLiteDatabase.OPEN_READONLY);
+             Cursor cursor = db.rawQuery("SELECT i.docid FROM " + ProviderTableMeta.FILE_NAME_INDEX_TABLE_NAME +
+                                             " i JOIN " + ProviderTableMeta.FILE_TABLE_NAME + " f ON f." +
+                                             ProviderTableMeta._ID + " = i.docid WHERE " +
+                                             ProviderTableMeta.FILE_NAME_INDEX_TABLE_NAME + " MATCH ? AND f." +
+                                             ProviderTableMeta.FILE_ACCOUNT_OWNER + " = ?",
+                                         new String[]{match, ACCOUNT})) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        }
+        return ids;
+    }
+
+    private void deleteTestFiles() {
+        contentResolver.delete(ProviderTableMeta.CONTENT_URI,
+                               ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?",
+                               new String[]{ACCOUNT});
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.ui.adapter;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import com.owncloud.android.utils.FileStorageUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class DiskLruImageCacheIT {
+    private static final int CACHE_SIZE = 50 * 1024 * 1024;
+    private static final int QUALITY = 70;
+    private static final int BITMAP_SIZE = 128;
+    private static final int THREADS = 8;
+    private static final int KEYS_PER_THREAD = 50;
+    private static final int READS_PER_KEY = 4;
+
+    private File cacheDir;
+    private DiskLruImageCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDir = new File(InstrumentationRegistry.getTargetContext().getCacheDir(), "diskLruImageCacheIT");
+        cache = new DiskLruImageCache(cacheDir, CACHE_SIZE, Bitmap.CompressFormat.JPEG, QUALITY);
+    }
+
+    @After
+    public void tearDown() {
+        cache.clearCache();
+        FileStorageUtils.deleteRecursive(cacheDir);
+    }
+
+    @Test
+    public void keysAreDigests() {
+        // "Aa" and "BB" have the same String.hashCode()
+        String first = DiskLruImageCache.convertToValidKey("Aa");
+        String second = DiskLruImageCache.convertToValidKey("BB");
+
+        assertNotEquals(first, second);
+        assertTrue(first.matches("[a-z0-9_-]{1,64}"));
+    }
+
+    @Test
+    public void putAndGet() {
+        cache.put("t123", createBitmap(Color.RED));
+
+        assertTrue(cache.containsKey("t123"));
+        assertNotNull(cache.getBitmap("t123"));
+    }
+
+    @Test
+    public void concurrentPutAndGet() throws Exception {
+        Bitmap bitmap = createBitmap(Color.BLUE);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            final int threadIndex = thread;
+            tasks.add(() -> {
+                int found = 0;
+                for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                    String key = "t" + threadIndex + "_" + i;
+                    cache.put(key, bitmap);
+                    for (int read = 0; read < READS_PER_KEY; read++) {
+                        if (cache.getBitmap(key) != null) {
+                            found++;
+                        }
+                    }
+                }
+                return found;
+            });
+        }
+
+        int found = 0;
+        try {
+            for (Future<Integer> result : executor.invokeAll(tasks)) {
+                found += result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(THREADS * KEYS_PER_THREAD * READS_PER_KEY, found);
+    }
+
+    private Bitmap createBitmap(int color) {
+        Bitmap bitmap = Bitmap.createBitmap(BITMAP_SIZE, BITMAP_SIZE, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(color);
+        return bitmap;
+    }
+}
@@ -59,6 +59,8 @@ import static org.junit.Assert.assertEquals;
 @RequiresApi(api = Build.VERSION_CODES.KITKAT)
 @RunWith(AndroidJUnit4.class)
 public class EncryptionTestIT {
+    private static final int LARGE_FILE_SIZE_MB = 300;
+
     private String privateKey = "MIIEvwIBADANBgkqhkiG9w0BAQEFAASCBKkwggSlAgEAAo" +
             "IBAQDsn0JKS/THu328z1IgN0VzYU53HjSX03WJIgWkmyTaxbiKpoJaKbksXmfSpgzV" +
             "GzKFvGfZ03fwFrN7Q8P8R2e8SNiell7mh1TDw9/0P7Bt/ER8PJrXORo+GviKHxaLr7" +
@@ -221,6 +223,43 @@ public class EncryptionTestIT {
                         .getAuthenticationTag())));
     }
 
+    /**
+     * encrypts and decrypts a file too large to be held in memory by the crypt operations
+     */
+    @Test
+    public void cryptLargeFile() throws Exception {
+        byte[] key = EncryptionUtils.generateKey();
+        byte[] iv = EncryptionUtils.randomBytes(EncryptionUtils.ivLength);
+
+        File file = File.createTempFile("large", "file");
+        byte[] block = EncryptionUtils.randomBytes(1024 * 1024);
+        try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
+            for (int i = 0; i < LARGE_FILE_SIZE_MB; i++) {
+                fileOutputStream.write(block);
+            }
+        }
+        String md5 = EncryptionUtils.getMD5Sum(file);
+
+        File encryptedFile = File.createTempFile("large", "enc");
+        File decryptedFile = File.createTempFile("large", "dec");
+
+        try {
+            EncryptionUtils.EncryptedFile result = EncryptionUtils.encryptFile(file, encryptedFile, key, iv);
+            EncryptionUtils.decryptFile(encryptedFile,
+                                        decryptedFile,
+                                        key,
+                                        iv,
+                                        EncryptionUtils.decodeStringToBase64Bytes(result.authenticationTag));
+
+            assertEquals(file.length() + 16, encryptedFile.length());
+            assertEquals(md5, EncryptionUtils.getMD5Sum(decryptedFile));
+        } finally {
+            file.delete();
+            encryptedFile.delete();
+            decryptedFile.delete();
+        }
+    }
+
     /**
      * generates new keys and tests if they are unique
      */
@@ -347,24 +386,16 @@ public class EncryptionTestIT {
         File file = getFile(fileName);
         assertEquals(md5, EncryptionUtils.getMD5Sum(file));
 
-        EncryptionUtils.EncryptedFile encryptedFile = EncryptionUtils.encryptFile(file, key, iv);
-
         File encryptedTempFile = File.createTempFile("file", "tmp");
-        FileOutputStream fileOutputStream = new FileOutputStream(encryptedTempFile);
-        fileOutputStream.write(encryptedFile.encryptedBytes);
-        fileOutputStream.close();
+        EncryptionUtils.EncryptedFile encryptedFile = EncryptionUtils.encryptFile(file, encryptedTempFile, key, iv);
 
         byte[] authenticationTag = EncryptionUtils.decodeStringToBase64Bytes(encryptedFile.authenticationTag);
 
         // verify authentication tag
         assertTrue(Arrays.equals(expectedAuthTag, authenticationTag));
 
-        byte[] decryptedBytes = EncryptionUtils.decryptFile(encryptedTempFile, key, iv, authenticationTag);
-
         File decryptedFile = File.createTempFile("file", "dec");
-        FileOutputStream fileOutputStream1 = new FileOutputStream(decryptedFile);
-        fileOutputStream1.write(decryptedBytes);
-        fileOutputStream1.close();
+        EncryptionUtils.decryptFile(encryptedTempFile, decryptedFile, key, iv, authenticationTag);
 
         return md5.compareTo(EncryptionUtils.getMD5Sum(decryptedFile)) == 0;
     }
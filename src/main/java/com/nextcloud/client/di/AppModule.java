@@ -120,6 +120,7 @@ class AppModule {
     }
 
     @Provides
+    @Singleton
     UploadsStorageManager uploadsStorageManager(Context context,
                                                 CurrentAccountProvider currentAccountProvider) {
         return new UploadsStorageManager(currentAccountProvider, context.getContentResolver());
@@ -145,7 +146,7 @@ class AppModule {
     Logger logger(Context context, Clock clock) {
         File logDir = new File(context.getFilesDir(), "logs");
         FileLogHandler handler = new FileLogHandler(logDir, "log.txt", 1024*1024);
-        LoggerImpl logger = new LoggerImpl(clock, handler, new Handler(), 1000);
+        LoggerImpl logger = new LoggerImpl(clock, handler, new Handler(), 1000, 1000);
         logger.start();
         return logger;
     }
@@ -50,6 +50,8 @@ class EtmBackgroundJobsFragment : EtmBaseFragment() {
             val started = view.findViewById<TextView>(R.id.etm_background_job_started)
             val progress = view.findViewById<TextView>(R.id.etm_background_job_progress)
             private val progressRow = view.findViewById<View>(R.id.etm_background_job_progress_row)
+            val details = view.findViewById<TextView>(R.id.etm_background_job_details)
+            private val detailsRow = view.findViewById<View>(R.id.etm_background_job_details_row)
 
             var progressEnabled: Boolean = progressRow.visibility == View.VISIBLE
                 get() {
@@ -63,6 +65,18 @@ class EtmBackgroundJobsFragment : EtmBaseFragment() {
                         View.GONE
                     }
                 }
+
+            var detailsEnabled: Boolean
+                get() {
+                    return detailsRow.visibility == View.VISIBLE
+                }
+                set(value) {
+                    detailsRow.visibility = if (value) {
+                        View.VISIBLE
+                    } else {
+                        View.GONE
+                    }
+                }
         }
 
         private val dateFormat = SimpleDateFormat("YYYY-MM-dd HH:MM:ssZ", Locale.getDefault())
@@ -94,6 +108,8 @@ class EtmBackgroundJobsFragment : EtmBaseFragment() {
             } else {
                 vh.progressEnabled = false
             }
+            vh.detailsEnabled = info.details.isNotEmpty()
+            vh.details.text = info.details
         }
     }
 
@@ -34,7 +34,7 @@ import com.google.gson.Gson
 import com.nextcloud.client.account.User
 import com.nextcloud.client.account.UserAccountManager
 import com.nextcloud.client.core.Clock
-import com.nextcloud.client.preferences.AppPreferencesImpl
+import com.nextcloud.client.preferences.AppPreferences
 import com.nextcloud.java.util.Optional
 import com.owncloud.android.MainApp
 import com.owncloud.android.R
@@ -68,7 +68,8 @@ class AccountRemovalWork(
     private val userAccountManager: UserAccountManager,
     private val backgroundJobManager: BackgroundJobManager,
     private val clock: Clock,
-    private val eventBus: EventBus
+    private val eventBus: EventBus,
+    private val preferences: AppPreferences
 ) : Worker(context, params) {
 
     companion object {
@@ -100,6 +101,8 @@ class AccountRemovalWork(
         removeFiles(user, storageManager)
         // delete all database entries
         storageManager.deleteAllFiles()
+        // drop folder preferences resolved from the deleted entries
+        preferences.removeFolderPreferenceCache(user.accountName)
         // disable daily backup
         arbitraryDataProvider.storeOrUpdateKeyValue(
             user.accountName,
@@ -155,7 +158,7 @@ class AccountRemovalWork(
 
     private fun remoceSyncedFolders(context: Context, account: Account, clock: Clock) {
         val syncedFolderProvider = SyncedFolderProvider(context.contentResolver,
-            AppPreferencesImpl.fromContext(context),
+            preferences,
             clock)
         val syncedFolders = syncedFolderProvider.syncedFolders
         val syncedFolderIds: MutableList<Long> = ArrayList()
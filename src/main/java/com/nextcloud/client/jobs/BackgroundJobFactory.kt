@@ -184,7 +184,8 @@ class BackgroundJobFactory @Inject constructor(
             accountManager,
             backgroundJobManager.get(),
             clock,
-            eventBus
+            eventBus,
+            preferences
         )
     }
 }
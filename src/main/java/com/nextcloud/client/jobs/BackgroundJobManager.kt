@@ -92,6 +92,16 @@ interface BackgroundJobManager {
 
     fun schedulePeriodicFilesSyncJob()
     fun startImmediateFilesSyncJob(skipCustomFolders: Boolean = false, overridePowerSaving: Boolean = false)
+
+    /**
+     * Start auto upload of changed media files only, without scanning all synced folders.
+     *
+     * Changes are kept until a job indexed them. A new job replaces a pending one and indexes
+     * the changes of both, so no change is lost if a job fails or is stopped.
+     *
+     * @param changedContentUris MediaStore item URIs reported by the content observer
+     */
+    fun startFilesSyncForChangesJob(changedContentUris: List<String>)
     fun scheduleOfflineSync()
 
     fun scheduleMediaFoldersDetectionJob()
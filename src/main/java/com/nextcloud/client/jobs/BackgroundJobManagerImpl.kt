@@ -37,6 +37,7 @@ import androidx.work.WorkInfo
 import androidx.work.WorkManager
 import com.nextcloud.client.account.User
 import com.nextcloud.client.core.Clock
+import com.nextcloud.client.preferences.AppPreferences
 import java.util.Date
 import java.util.UUID
 import java.util.concurrent.TimeUnit
@@ -59,7 +60,8 @@ import kotlin.reflect.KClass
 @Suppress("TooManyFunctions") // we expect this implementation to have rich API
 internal class BackgroundJobManagerImpl(
     private val workManager: WorkManager,
-    private val clock: Clock
+    private val clock: Clock,
+    private val preferences: AppPreferences
 ) : BackgroundJobManager {
 
     companion object {
@@ -70,6 +72,7 @@ internal class BackgroundJobManagerImpl(
         const val JOB_IMMEDIATE_CONTACTS_IMPORT = "immediate_contacts_import"
         const val JOB_PERIODIC_FILES_SYNC = "periodic_files_sync"
         const val JOB_IMMEDIATE_FILES_SYNC = "immediate_files_sync"
+        const val JOB_IMMEDIATE_FILES_SYNC_CHANGES = "immediate_files_sync_changes"
         const val JOB_PERIODIC_OFFLINE_SYNC = "periodic_offline_sync"
         const val JOB_PERIODIC_MEDIA_FOLDER_DETECTION = "periodic_media_folder_detection"
         const val JOB_IMMEDIATE_MEDIA_FOLDER_DETECTION = "immediate_media_folder_detection"
@@ -136,7 +139,8 @@ internal class BackgroundJobManagerImpl(
                     name = metadata.get(TAG_PREFIX_NAME) ?: NOT_SET_VALUE,
                     user = metadata.get(TAG_PREFIX_USER) ?: NOT_SET_VALUE,
                     started = timestamp,
-                    progress = info.progress.getInt("progress", -1)
+                    progress = info.progress.getInt("progress", -1),
+                    details = info.progress.getString("details") ?: info.outputData.getString("details") ?: ""
                 )
             } else {
                 null
@@ -307,6 +311,22 @@ internal class BackgroundJobManagerImpl(
         workManager.enqueueUniqueWork(JOB_IMMEDIATE_FILES_SYNC, ExistingWorkPolicy.KEEP, request)
     }
 
+    override fun startFilesSyncForChangesJob(changedContentUris: List<String>) {
+        // changes are kept until a job indexed them, so a failed or replaced job does not lose any
+        preferences.addPendingContentChanges(changedContentUris)
+        val arguments = Data.Builder()
+            .putBoolean(FilesSyncWork.CHANGED_CONTENT, true)
+            .build()
+
+        val request = oneTimeRequestBuilder(
+            jobClass = FilesSyncWork::class,
+            jobName = JOB_IMMEDIATE_FILES_SYNC_CHANGES)
+            .setInputData(arguments)
+            .build()
+
+        workManager.enqueueUniqueWork(JOB_IMMEDIATE_FILES_SYNC_CHANGES, ExistingWorkPolicy.REPLACE, request)
+    }
+
     override fun scheduleOfflineSync() {
         val constrains = Constraints.Builder()
             .setRequiredNetworkType(NetworkType.UNMETERED)
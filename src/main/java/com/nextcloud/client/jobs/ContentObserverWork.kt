@@ -20,6 +20,7 @@
 package com.nextcloud.client.jobs
 
 import android.content.Context
+import android.net.Uri
 import android.os.Build
 import androidx.annotation.RequiresApi
 import androidx.work.Worker
@@ -30,7 +31,8 @@ import com.owncloud.android.datamodel.SyncedFolderProvider
 /**
  * This work is triggered when OS detects change in media folders.
  *
- * It fires media detection job and sync job and finishes immediately.
+ * It fires media detection job and sync job and finishes immediately. The sync job only indexes the changed media
+ * files if the OS reports them, otherwise it scans the synced media folders.
  *
  * This job must not be started on API < 24.
  */
@@ -44,8 +46,9 @@ class ContentObserverWork(
 ) : Worker(appContext, params) {
 
     override fun doWork(): Result {
-        if (params.triggeredContentUris.size > 0) {
-            checkAndStartFileSyncJob()
+        // on too many changes the OS only reports the authority
+        if (params.triggeredContentUris.isNotEmpty() || params.triggeredContentAuthorities.isNotEmpty()) {
+            checkAndStartFileSyncJob(params.triggeredContentUris)
             backgroundJobManager.startMediaFoldersDetectionJob()
         }
         recheduleSelf()
@@ -56,10 +59,14 @@ class ContentObserverWork(
         backgroundJobManager.scheduleContentObserverJob()
     }
 
-    private fun checkAndStartFileSyncJob() {
+    private fun checkAndStartFileSyncJob(changedUris: List<Uri>) {
         val syncFolders = syncerFolderProvider.countEnabledSyncedFolders() > 0
         if (!powerManagementService.isPowerSavingEnabled && syncFolders) {
-            backgroundJobManager.startImmediateFilesSyncJob(true, false)
+            if (changedUris.isNotEmpty()) {
+                backgroundJobManager.startFilesSyncForChangesJob(changedUris.map { it.toString() })
+            } else {
+                backgroundJobManager.startImmediateFilesSyncJob(true, false)
+            }
         }
     }
 }
@@ -30,6 +30,7 @@ import android.os.PowerManager
 import android.os.PowerManager.WakeLock
 import android.text.TextUtils
 import androidx.exifinterface.media.ExifInterface
+import androidx.work.Data
 import androidx.work.Worker
 import androidx.work.WorkerParameters
 import com.nextcloud.client.account.UserAccountManager
@@ -53,6 +54,7 @@ import com.owncloud.android.utils.FileStorageUtils
 import com.owncloud.android.utils.FilesSyncHelper
 import com.owncloud.android.utils.MimeType
 import com.owncloud.android.utils.MimeTypeUtil
+import com.owncloud.android.utils.SyncedFolderScanner
 import java.io.File
 import java.text.ParsePosition
 import java.text.SimpleDateFormat
@@ -78,8 +80,12 @@ class FilesSyncWork(
         const val TAG = "FilesSyncJob"
         const val SKIP_CUSTOM = "skipCustom"
         const val OVERRIDE_POWER_SAVING = "overridePowerSaving"
+        const val CHANGED_CONTENT = "changedContent"
+        const val DETAILS_KEY = "details"
         private const val WAKELOCK_TAG_SEPARATION = ":"
         private const val WAKELOCK_ACQUIRE_TIMEOUT_MS = 10L * 60L * 1000L
+        // keeps the paths of an upload request well below the binder transaction limit
+        private const val MAX_UPLOADS_PER_REQUEST = 250
     }
 
     override fun doWork(): Result {
@@ -103,21 +109,50 @@ class FilesSyncWork(
             userAccountManager,
             connectivityService,
             powerManagementService)
-        FilesSyncHelper.insertAllDBEntries(preferences, clock, skipCustom)
         // Create all the providers we'll needq
         val filesystemDataProvider = FilesystemDataProvider(contentResolver)
         val syncedFolderProvider = SyncedFolderProvider(contentResolver, preferences, clock)
+        val enabledFolders = syncedFolderProvider.syncedFolders.filter { it.isEnabled }
+        val scanner = SyncedFolderScanner(contentResolver, SyncedFolderScanner.StopSignal { isStopped })
+        // index only reported changes if possible, otherwise scan all synced folders
+        val changedUris = if (inputData.getBoolean(CHANGED_CONTENT, false)) {
+            preferences.pendingContentChanges
+        } else {
+            null
+        }
+        val changeMetrics = changedUris?.let { scanner.scanChanges(enabledFolders, it.toList()) }
+        val syncedFolders: List<SyncedFolder>
+        val scanMetrics: List<SyncedFolderScanner.FolderMetrics>
+        if (changeMetrics != null) {
+            syncedFolders = enabledFolders.filter { folder -> changeMetrics.any { it.localPath == folder.localPath } }
+            scanMetrics = changeMetrics
+        } else {
+            syncedFolders = enabledFolders.filter { !skipCustom || MediaFolderType.CUSTOM != it.type }
+            scanMetrics = scanner.scan(syncedFolders)
+        }
+        val scanDetails = formatScanMetrics(scanMetrics)
+        Log_OC.d(TAG, "Scanned synced folders${if (changeMetrics != null) " for changes" else ""}: $scanDetails")
+        setProgressAsync(Data.Builder().putString(DETAILS_KEY, scanDetails).build())
         val currentLocale = resources.configuration.locale
         val dateFormat = SimpleDateFormat("yyyy:MM:dd HH:mm:ss", currentLocale)
         dateFormat.timeZone = TimeZone.getTimeZone(TimeZone.getDefault().id)
-        for (syncedFolder in syncedFolderProvider.syncedFolders) {
-            if (syncedFolder.isEnabled && (!skipCustom || MediaFolderType.CUSTOM != syncedFolder.type)) {
-                syncFolder(context, resources, lightVersion, filesystemDataProvider, currentLocale, dateFormat,
-                    syncedFolder)
+        for (syncedFolder in syncedFolders) {
+            if (isStopped) {
+                break
             }
+            syncFolder(context, resources, lightVersion, filesystemDataProvider, currentLocale, dateFormat,
+                syncedFolder)
+        }
+        // changes reported meanwhile stay pending for the job replacing this one
+        if (changedUris != null && !isStopped) {
+            preferences.removePendingContentChanges(changedUris)
         }
         wakeLock?.release()
-        return Result.success()
+        return Result.success(Data.Builder().putString(DETAILS_KEY, scanDetails).build())
+    }
+
+    private fun formatScanMetrics(metrics: List<SyncedFolderScanner.FolderMetrics>): String {
+        return metrics.joinToString(separator = "\n") { it.toString() }
     }
 
     @Suppress("LongMethod") // legacy code
@@ -130,67 +165,71 @@ class FilesSyncWork(
         sFormatter: SimpleDateFormat,
         syncedFolder: SyncedFolder
     ) {
-        var remotePath: String?
-        var subfolderByDate: Boolean
-        var uploadAction: Int?
-        var needsCharging: Boolean
-        var needsWifi: Boolean
-        var file: File
+        val remotePath: String?
+        val subfolderByDate: Boolean
+        val uploadAction: Int?
+        val needsCharging: Boolean
+        val needsWifi: Boolean
         val accountName = syncedFolder.account
         val optionalUser = userAccountManager.getUser(accountName)
         if (!optionalUser.isPresent) {
             return
         }
         val user = optionalUser.get()
-        val arbitraryDataProvider = if (lightVersion) {
-            ArbitraryDataProvider(contentResolver)
+        if (lightVersion) {
+            val arbitraryDataProvider = ArbitraryDataProvider(contentResolver)
+            needsCharging = resources.getBoolean(R.bool.syncedFolder_light_on_charging)
+            needsWifi = arbitraryDataProvider.getBooleanValue(accountName,
+                SettingsActivity.SYNCED_FOLDER_LIGHT_UPLOAD_ON_WIFI)
+            val uploadActionString = resources.getString(R.string.syncedFolder_light_upload_behaviour)
+            uploadAction = getUploadAction(uploadActionString)
+            subfolderByDate = resources.getBoolean(R.bool.syncedFolder_light_use_subfolders)
+            remotePath = resources.getString(R.string.syncedFolder_remote_folder)
         } else {
-            null
+            needsCharging = syncedFolder.isChargingOnly
+            needsWifi = syncedFolder.isWifiOnly
+            uploadAction = syncedFolder.uploadAction
+            subfolderByDate = syncedFolder.isSubfolderByDate
+            remotePath = syncedFolder.remotePath
         }
         val paths = filesystemDataProvider.getFilesForUpload(
             syncedFolder.localPath,
             java.lang.Long.toString(syncedFolder.id)
-        )
+        ).toList()
+        val localPaths = ArrayList<String>(paths.size)
+        val remotePaths = ArrayList<String>(paths.size)
+        val mimeTypes = ArrayList<String>(paths.size)
         for (path in paths) {
-            file = File(path)
+            val file = File(path)
             val lastModificationTime = calculateLastModificationTime(file, syncedFolder, sFormatter)
-            val mimeType = MimeTypeUtil.getBestMimeTypeByFilename(file.absolutePath)
-            if (lightVersion) {
-                needsCharging = resources.getBoolean(R.bool.syncedFolder_light_on_charging)
-                needsWifi = arbitraryDataProvider!!.getBooleanValue(accountName,
-                    SettingsActivity.SYNCED_FOLDER_LIGHT_UPLOAD_ON_WIFI)
-                val uploadActionString = resources.getString(R.string.syncedFolder_light_upload_behaviour)
-                uploadAction = getUploadAction(uploadActionString)
-                subfolderByDate = resources.getBoolean(R.bool.syncedFolder_light_use_subfolders)
-                remotePath = resources.getString(R.string.syncedFolder_remote_folder)
-            } else {
-                needsCharging = syncedFolder.isChargingOnly
-                needsWifi = syncedFolder.isWifiOnly
-                uploadAction = syncedFolder.uploadAction
-                subfolderByDate = syncedFolder.isSubfolderByDate
-                remotePath = syncedFolder.remotePath
-            }
+            localPaths.add(file.absolutePath)
+            remotePaths.add(FileStorageUtils.getInstantUploadFilePath(
+                file,
+                currentLocale,
+                remotePath,
+                syncedFolder.localPath,
+                lastModificationTime,
+                subfolderByDate
+            ))
+            mimeTypes.add(MimeTypeUtil.getBestMimeTypeByFilename(file.absolutePath))
+        }
+        // one service start and one database update per batch instead of per file
+        for (start in paths.indices step MAX_UPLOADS_PER_REQUEST) {
+            val end = minOf(paths.size, start + MAX_UPLOADS_PER_REQUEST)
             FileUploader.uploadNewFile(
                 context,
                 user.toPlatformAccount(),
-                file.absolutePath,
-                FileStorageUtils.getInstantUploadFilePath(
-                    file,
-                    currentLocale,
-                    remotePath,
-                    syncedFolder.localPath,
-                    lastModificationTime,
-                    subfolderByDate
-                ),
+                localPaths.subList(start, end).toTypedArray(),
+                remotePaths.subList(start, end).toTypedArray(),
+                mimeTypes.subList(start, end).toTypedArray(),
                 uploadAction!!,
-                mimeType,
                 true, // create parent folder if not existent
                 UploadFileOperation.CREATED_AS_INSTANT_PICTURE,
                 needsWifi,
                 needsCharging,
                 FileUploader.NameCollisionPolicy.ASK_USER
             )
-            filesystemDataProvider.updateFilesystemFileAsSentForUpload(path,
+            filesystemDataProvider.updateFilesystemFilesAsSentForUpload(paths.subList(start, end),
                 java.lang.Long.toString(syncedFolder.id))
         }
     }
@@ -28,5 +28,6 @@ data class JobInfo(
     val name: String = "",
     val user: String = "",
     val started: Date = Date(0),
-    val progress: Int = 0
+    val progress: Int = 0,
+    val details: String = ""
 )
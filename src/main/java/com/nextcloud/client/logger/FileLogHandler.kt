@@ -19,11 +19,14 @@
  */
 package com.nextcloud.client.logger
 
+import java.io.BufferedOutputStream
 import java.io.File
 import java.io.FileNotFoundException
 import java.io.FileOutputStream
 import java.io.IOException
+import java.io.OutputStream
 import java.nio.charset.Charset
+import java.util.ArrayDeque
 
 /**
  * Very simple log writer with file rotations.
@@ -31,6 +34,8 @@ import java.nio.charset.Charset
  * Files are rotated when writing entry causes log file to exceed it's maximum size.
  * Last entry is not truncated and final log file can exceed max file size, but
  * no further entries will be written to it.
+ *
+ * Writes are buffered and reach the file on [flush] or [close].
  */
 internal class FileLogHandler(private val logDir: File, private val logFilename: String, private val maxSize: Long) {
 
@@ -38,9 +43,10 @@ internal class FileLogHandler(private val logDir: File, private val logFilename:
 
     companion object {
         const val ROTATED_LOGS_COUNT = 3
+        const val BUFFER_SIZE = 64 * 1024
     }
 
-    private var writer: FileOutputStream? = null
+    private var writer: OutputStream? = null
     private var size: Long = 0
     private val rotationList = listOf(
         "$logFilename.2",
@@ -63,11 +69,11 @@ internal class FileLogHandler(private val logDir: File, private val logFilename:
 
     fun open() {
         try {
-            writer = FileOutputStream(logFile, true)
+            writer = BufferedOutputStream(FileOutputStream(logFile, true), BUFFER_SIZE)
             size = logFile.length()
         } catch (ex: FileNotFoundException) {
             logFile.parentFile.mkdirs()
-            writer = FileOutputStream(logFile, true)
+            writer = BufferedOutputStream(FileOutputStream(logFile, true), BUFFER_SIZE)
             size = logFile.length()
         }
     }
@@ -81,6 +87,10 @@ internal class FileLogHandler(private val logDir: File, private val logFilename:
         }
     }
 
+    fun flush() {
+        writer?.flush()
+    }
+
     fun close() {
         writer?.close()
         writer = null
@@ -132,4 +142,51 @@ internal class FileLogHandler(private val logDir: File, private val logFilename:
         }
         return RawLogs(lines = allLines, logSize = size)
     }
+
+    /**
+     * Total size of all log files, including rotated ones.
+     */
+    val logSize: Long
+        get() {
+            return rotationList.map { File(logDir, it).length() }.sum()
+        }
+
+    /**
+     * Load a page of log lines, counting from the most recent line.
+     *
+     * Files are streamed line by line and only the requested page is kept in memory,
+     * so loading recent logs does not require reading all log files into memory.
+     *
+     * @param offset Number of most recent lines to skip
+     * @param count Maximum number of lines to load
+     * @param rotated Number of rotated files to include
+     * @return Lines in chronological order and total size of all loaded files
+     */
+    fun loadLogPage(offset: Int, count: Int, rotated: Int = ROTATED_LOGS_COUNT): RawLogs {
+        if (offset < 0 || count < 0 || rotated < 0) {
+            throw IllegalArgumentException("Negative index")
+        }
+        val window = ArrayDeque<String>()
+        val windowSize = offset.toLong() + count
+        var size = 0L
+        for (i in 0..Math.min(rotated, rotationList.size - 1)) {
+            val file = File(logDir, rotationList[i])
+            if (!file.exists()) continue
+            try {
+                file.bufferedReader(Charsets.UTF_8).useLines { lines ->
+                    lines.forEach {
+                        window.addLast(it)
+                        if (window.size > windowSize) {
+                            window.removeFirst()
+                        }
+                    }
+                }
+                size += file.length()
+            } catch (ex: IOException) {
+                // ignore failing file
+            }
+        }
+        val pageSize = Math.max(0, window.size - offset)
+        return RawLogs(lines = window.take(pageSize), logSize = size)
+    }
 }
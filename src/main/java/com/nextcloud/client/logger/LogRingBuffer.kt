@@ -0,0 +1,66 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.nextcloud.client.logger
+
+/**
+ * Fixed size buffer keeping the most recent log entries in memory.
+ * Once full, every added entry overwrites the oldest one.
+ *
+ * This class is not thread safe.
+ */
+internal class LogRingBuffer(val capacity: Int) {
+
+    private val entries = arrayOfNulls<LogEntry>(capacity)
+    private var next = 0
+
+    var size: Int = 0
+        private set
+
+    init {
+        if (capacity <= 0) {
+            throw IllegalArgumentException("Capacity must be positive")
+        }
+    }
+
+    fun add(entry: LogEntry) {
+        entries[next] = entry
+        next = (next + 1) % capacity
+        if (size < capacity) {
+            size++
+        }
+    }
+
+    fun clear() {
+        entries.fill(null)
+        next = 0
+        size = 0
+    }
+
+    /**
+     * Get most recent entries.
+     *
+     * @param count Maximum number of entries to return
+     * @return Entries in chronological order
+     */
+    fun last(count: Int): List<LogEntry> {
+        val n = Math.min(count, size)
+        val first = (next - n + capacity) % capacity
+        return List(n) { entries[(first + it) % capacity]!! }
+    }
+}
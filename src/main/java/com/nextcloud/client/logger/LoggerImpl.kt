@@ -29,15 +29,31 @@ import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicLong
 
+/**
+ * Logger writing entries to a file on a background thread.
+ *
+ * The log file is kept open and written through a buffer while entries keep coming.
+ * Buffer is flushed at least every [FLUSH_INTERVAL_MS] and the file is closed once
+ * no entries arrive for that time.
+ *
+ * @param ringBufferCapacity If positive, this many most recent entries are also kept
+ * in memory and served without reading log files
+ */
 @Suppress("TooManyFunctions")
 internal class LoggerImpl(
     private val clock: Clock,
     private val handler: FileLogHandler,
     private val mainThreadHandler: Handler,
-    queueCapacity: Int
+    queueCapacity: Int,
+    ringBufferCapacity: Int = 0
 ) : Logger, LogsRepository {
 
+    companion object {
+        const val FLUSH_INTERVAL_MS = 1000L
+    }
+
     data class Load(val onResult: (List<LogEntry>, Long) -> Unit)
+    data class LoadPage(val page: Long, val count: Int, val onResult: OnLogsPageLoaded)
     class Delete
 
     private val looper = ThreadLoop()
@@ -47,6 +63,14 @@ internal class LoggerImpl(
     private val otherEvents = mutableListOf<Any>()
     private val missedLogs = AtomicBoolean()
     private val missedLogsCount = AtomicLong()
+    private val ringBuffer = if (ringBufferCapacity > 0) LogRingBuffer(ringBufferCapacity) else null
+    private var lastFlushTime = 0L
+
+    /**
+     * Number of entries written since start; page cursors count entries the same way,
+     * so they do not shift when new entries are written.
+     */
+    private var writtenEntries = 0L
 
     override val lostEntries: Boolean
         get() {
@@ -96,6 +120,10 @@ internal class LoggerImpl(
         eventQueue.put(Load(onLoaded))
     }
 
+    override fun load(page: Long, count: Int, onLoaded: OnLogsPageLoaded) {
+        eventQueue.put(LoadPage(page, count, onLoaded))
+    }
+
     override fun deleteAll() {
         eventQueue.put(Delete())
     }
@@ -120,33 +148,52 @@ internal class LoggerImpl(
             processedEvents.clear()
             otherEvents.clear()
 
-            processedEvents.add(eventQueue.take())
+            // keep log file opened while entries are coming; once idle, close it to flush buffered entries
+            val event = eventQueue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS)
+            if (event != null) {
+                processedEvents.add(event)
+            } else {
+                if (handler.isOpened) {
+                    handler.close()
+                }
+                processedEvents.add(eventQueue.take())
+            }
             eventQueue.drainTo(processedEvents)
 
             // process all writes in bulk - this is most frequest use case and we can
             // assume handler must be opened 99.999% of time; anything that is not a log
             // write should be deferred
-            handler.open()
-            for (event in processedEvents) {
-                if (event is LogEntry) {
-                    handler.write(event.toString() + "\n")
+            for (processedEvent in processedEvents) {
+                if (processedEvent is LogEntry) {
+                    write(processedEvent)
                 } else {
-                    otherEvents.add(event)
+                    otherEvents.add(processedEvent)
                 }
             }
-            handler.close()
+
+            val now = clock.currentTime
+            if (handler.isOpened && now - lastFlushTime >= FLUSH_INTERVAL_MS) {
+                handler.flush()
+                lastFlushTime = now
+            }
 
             // Those events are very sporadic and we don't have to be clever here
-            for (event in otherEvents) {
-                when (event) {
+            for (otherEvent in otherEvents) {
+                when (otherEvent) {
                     is Load -> {
+                        handler.flush()
                         val loaded = handler.loadLogFiles()
                         val entries = loaded.lines.mapNotNull { LogEntry.parse(it) }
                         mainThreadHandler.post {
-                            event.onResult(entries, loaded.logSize)
+                            otherEvent.onResult(entries, loaded.logSize)
                         }
                     }
-                    is Delete -> handler.deleteAll()
+                    is LoadPage -> loadPage(otherEvent)
+                    is Delete -> {
+                        handler.close()
+                        handler.deleteAll()
+                        ringBuffer?.clear()
+                    }
                 }
             }
 
@@ -157,18 +204,53 @@ internal class LoggerImpl(
         }
     }
 
+    private fun write(entry: LogEntry) {
+        if (!handler.isOpened) {
+            handler.open()
+            lastFlushTime = clock.currentTime
+        }
+        handler.write(entry.toString() + "\n")
+        writtenEntries++
+        ringBuffer?.add(entry)
+    }
+
+    private fun loadPage(event: LoadPage) {
+        handler.flush()
+        // skip the entries written since the cursor of the page was returned
+        val offset = if (event.page == LogsRepository.LATEST_PAGE) {
+            0
+        } else {
+            (writtenEntries - event.page).coerceIn(0L, Int.MAX_VALUE.toLong()).toInt()
+        }
+        val entries: List<LogEntry>
+        val loadedCount: Int
+        val logSize: Long
+        if (ringBuffer != null && offset.toLong() + event.count <= ringBuffer.size) {
+            entries = ringBuffer.last(offset + event.count).take(event.count)
+            loadedCount = entries.size
+            logSize = handler.logSize
+        } else {
+            val loaded = handler.loadLogPage(offset, event.count)
+            entries = loaded.lines.mapNotNull { LogEntry.parse(it) }
+            loadedCount = loaded.lines.size
+            logSize = loaded.logSize
+        }
+        val olderPage = writtenEntries - offset - loadedCount
+        mainThreadHandler.post {
+            event.onResult(entries, logSize, olderPage)
+        }
+    }
+
     private fun checkAndLogLostMessages() {
         val lastMissedLogsCount = missedLogsCount.getAndSet(0)
         if (lastMissedLogsCount > 0) {
-            handler.open()
             val warning = LogEntry(
                 timestamp = Date(),
                 level = Level.WARNING,
                 tag = "Logger",
                 message = "Logger queue overflow. Approx $lastMissedLogsCount entries lost. You write too much."
-            ).toString()
-            handler.write(warning)
-            handler.close()
+            )
+            write(warning)
         }
     }
 }
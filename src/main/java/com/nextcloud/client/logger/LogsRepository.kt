@@ -20,6 +20,7 @@
 package com.nextcloud.client.logger
 
 typealias OnLogsLoaded = (entries: List<LogEntry>, totalLogSize: Long) -> Unit
+typealias OnLogsPageLoaded = (entries: List<LogEntry>, totalLogSize: Long, olderPage: Long) -> Unit
 
 /**
  * This interface provides safe, read only access to application
@@ -27,6 +28,13 @@ typealias OnLogsLoaded = (entries: List<LogEntry>, totalLogSize: Long) -> Unit
  */
 interface LogsRepository {
 
+    companion object {
+        /**
+         * Page of the most recent entries.
+         */
+        const val LATEST_PAGE = Long.MAX_VALUE
+    }
+
     /**
      * If true, logger was unable to handle some messages, which means
      * it cannot cope with amount of logged data.
@@ -43,6 +51,20 @@ interface LogsRepository {
      */
     fun load(onLoaded: OnLogsLoaded)
 
+    /**
+     * Asynchronously load a page of logs, without reading all logs into memory.
+     * Load can be scheduled on any thread, but the listener will be called on main thread.
+     *
+     * Pages are identified by a cursor returned with the newer page, so entries logged
+     * in the meantime do not shift them.
+     *
+     * @param page [LATEST_PAGE] or the cursor of older entries returned with a loaded page
+     * @param count Maximum number of entries to load
+     * @param onLoaded: Callback with loaded entries in chronological order and the cursor
+     * of the entries before them; called on main thread
+     */
+    fun load(page: Long, count: Int, onLoaded: OnLogsPageLoaded)
+
     /**
      * Asynchronously delete logs.
      */
@@ -71,6 +71,14 @@ class LogsActivity : ToolbarActivity() {
         findViewById<RecyclerView>(R.id.logsList).apply {
             layoutManager = LinearLayoutManager(this@LogsActivity)
             adapter = logsAdapter
+            addOnScrollListener(object : RecyclerView.OnScrollListener() {
+                override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+                    // older entries are displayed at the bottom
+                    if (!recyclerView.canScrollVertically(1)) {
+                        vm.loadMore()
+                    }
+                }
+            })
         }
 
         vm.entries.observe(this, Observer { logsAdapter.entries = it })
@@ -39,6 +39,7 @@ class LogsViewModel @Inject constructor(
 
     private companion object {
         const val KILOBYTE = 1024L
+        const val PAGE_SIZE = 1000
     }
 
     private val asyncFilter = AsyncFilter(asyncRunner)
@@ -47,6 +48,8 @@ class LogsViewModel @Inject constructor(
     private var logsSize = -1L
     private var filterDurationMs = 0L
     private var isFiltered = false
+    private var hasMore = false
+    private var olderPage = LogsRepository.LATEST_PAGE
 
     val isLoading: LiveData<Boolean> = MutableLiveData<Boolean>().apply { value = false }
     val size: LiveData<Long> = MutableLiveData<Long>().apply { value = 0 }
@@ -54,19 +57,37 @@ class LogsViewModel @Inject constructor(
     val status: LiveData<String> = MutableLiveData<String>().apply { value = "" }
 
     fun send() {
-        entries.value?.let {
-            sender.send(it)
+        if (isFiltered || !hasMore) {
+            entries.value?.let {
+                sender.send(it)
+            }
+        } else {
+            // only recent pages are loaded, but complete logs are sent
+            logsRepository.load { allLogs, _ -> sender.send(allLogs) }
         }
     }
 
+    /**
+     * Load most recent page of logs, replacing all loaded entries.
+     */
     fun load() {
         if (isLoading.value != true) {
-            logsRepository.load(this::onLoaded)
+            logsRepository.load(LogsRepository.LATEST_PAGE, PAGE_SIZE, this::onLoaded)
             (isLoading as MutableLiveData).value = true
         }
     }
 
-    private fun onLoaded(entries: List<LogEntry>, logsSize: Long) {
+    /**
+     * Load next page of older logs, if there are any.
+     */
+    fun loadMore() {
+        if (isLoading.value != true && hasMore && !isFiltered) {
+            logsRepository.load(olderPage, PAGE_SIZE, this::onMoreLoaded)
+            (isLoading as MutableLiveData).value = true
+        }
+    }
+
+    private fun onLoaded(entries: List<LogEntry>, logsSize: Long, olderPage: Long) {
         this.entries as MutableLiveData
         this.isLoading as MutableLiveData
         this.status as MutableLiveData
@@ -74,10 +95,17 @@ class LogsViewModel @Inject constructor(
         this.entries.value = entries
         this.allEntries = entries
         this.logsSize = logsSize
+        this.olderPage = olderPage
+        this.hasMore = entries.size >= PAGE_SIZE
         isLoading.value = false
         this.status.value = formatStatus()
     }
 
+    private fun onMoreLoaded(olderEntries: List<LogEntry>, logsSize: Long, olderPage: Long) {
+        onLoaded(olderEntries + allEntries, logsSize, olderPage)
+        this.hasMore = olderEntries.size >= PAGE_SIZE
+    }
+
     fun deleteAll() {
         logsRepository.deleteAll()
         (entries as MutableLiveData).value = emptyList()
@@ -21,11 +21,16 @@
 package com.nextcloud.client.network;
 
 import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
 import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
 
 import com.evernote.android.job.JobRequest;
 import com.nextcloud.client.account.Server;
 import com.nextcloud.client.account.UserAccountManager;
+import com.nextcloud.client.core.Clock;
 import com.nextcloud.client.logger.Logger;
 import com.owncloud.android.lib.resources.status.OwnCloudVersion;
 
@@ -35,19 +40,66 @@ import org.apache.commons.httpclient.methods.GetMethod;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
 import androidx.core.net.ConnectivityManagerCompat;
 import kotlin.jvm.functions.Function1;
 
+/**
+ * Checks the connectivity to the server.
+ *
+ * The result of the walled internet check is cached for the active network and server, so a burst of uploads does
+ * not probe the server once per upload. The cache is dropped whenever a network changes and expires after
+ * {@link #WALLED_CHECK_TTL_MS}. Concurrent callers wait for a single probe.
+ *
+ * Network callbacks never wait for a probe: they only increment a generation counter, and a cached result is used
+ * only for the generation it was probed in. A result probed while a network changed is therefore not used.
+ */
 class ConnectivityServiceImpl implements ConnectivityService {
 
     private final static String TAG = ConnectivityServiceImpl.class.getName();
 
+    static final long WALLED_CHECK_TTL_MS = TimeUnit.SECONDS.toMillis(30);
+
     private final ConnectivityManager connectivityManager;
     private final UserAccountManager accountManager;
     private final ClientFactory clientFactory;
     private final GetRequestBuilder requestBuilder;
     private final Logger logger;
+    private final Clock clock;
+
+    private final Map<Network, Boolean> validatedNetworks = new ConcurrentHashMap<>();
+    private final Object walledProbeLock = new Object();
+    private final AtomicInteger walledCheckGeneration = new AtomicInteger();
+    private final AtomicInteger walledProbes = new AtomicInteger();
+    private final AtomicInteger walledProbesSaved = new AtomicInteger();
+    private WalledCheck walledCheck;
+
+    /**
+     * Result of a walled internet check, valid for the network, server and generation it was probed for.
+     */
+    private static class WalledCheck {
+        final String key;
+        final int generation;
+        final long checkedAt;
+        final boolean walled;
+
+        WalledCheck(String key, int generation, long checkedAt, boolean walled) {
+            this.key = key;
+            this.generation = generation;
+            this.checkedAt = checkedAt;
+            this.walled = walled;
+        }
+
+        boolean isValid(String key, int generation, long now) {
+            return this.key.equals(key) && this.generation == generation && now - checkedAt < WALLED_CHECK_TTL_MS;
+        }
+    }
 
     static class GetRequestBuilder implements Function1<String, GetMethod> {
         @Override
@@ -60,63 +112,150 @@ class ConnectivityServiceImpl implements ConnectivityService {
                             UserAccountManager accountManager,
                             ClientFactory clientFactory,
                             GetRequestBuilder requestBuilder,
-                            Logger logger) {
+                            Logger logger,
+                            Clock clock) {
         this.connectivityManager = connectivityManager;
         this.accountManager = accountManager;
         this.clientFactory = clientFactory;
         this.requestBuilder = requestBuilder;
         this.logger = logger;
+        this.clock = clock;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            registerNetworkCallback();
+        }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    private void registerNetworkCallback() {
+        try {
+            connectivityManager.registerNetworkCallback(new NetworkRequest.Builder().build(),
+                                                        new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(@NonNull Network network) {
+                    invalidateWalledCheck();
+                }
+
+                @Override
+                public void onLost(@NonNull Network network) {
+                    validatedNetworks.remove(network);
+                    invalidateWalledCheck();
+                }
+
+                @Override
+                public void onCapabilitiesChanged(@NonNull Network network,
+                                                  @NonNull NetworkCapabilities networkCapabilities) {
+                    // also called for signal strength updates, only a change of the validation matters, e.g.
+                    // after logging in to a captive portal
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                        boolean validated = networkCapabilities.hasCapability(
+                            NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+                        Boolean previous = validatedNetworks.put(network, validated);
+                        if (previous == null || previous != validated) {
+                            invalidateWalledCheck();
+                        }
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // e.g. too many callbacks registered; the cache then only expires
+            logger.e(TAG, "Unable to register network callback", e);
+        }
+    }
+
+    void invalidateWalledCheck() {
+        walledCheckGeneration.incrementAndGet();
+    }
+
+    int getWalledProbes() {
+        return walledProbes.get();
+    }
+
+    int getWalledProbesSaved() {
+        return walledProbesSaved.get();
     }
 
     @Override
     public boolean isInternetWalled() {
         if (isOnlineWithWifi()) {
+            Server server = accountManager.getUser().getServer();
+            String baseServerAddress = server.getUri().toString();
+            if (baseServerAddress.isEmpty()) {
+                return true;
+            }
 
-            GetMethod get = null;
-            try {
-                Server server = accountManager.getUser().getServer();
-                String baseServerAddress = server.getUri().toString();
-                if (baseServerAddress.isEmpty()) {
-                    return true;
-                }
-                String url;
-                if (server.getVersion().compareTo(OwnCloudVersion.nextcloud_13) > 0) {
-                    url = baseServerAddress + "/index.php/204";
-                } else {
-                    url = baseServerAddress + "/status.php";
+            String key = getActiveNetworkKey() + " " + baseServerAddress;
+            synchronized (walledProbeLock) {
+                // read before probing, an invalidation during the probe makes the stored result outdated
+                int generation = walledCheckGeneration.get();
+                long now = clock.getCurrentTime();
+                WalledCheck check = walledCheck;
+                if (check != null && check.isValid(key, generation, now)) {
+                    walledProbesSaved.incrementAndGet();
+                    return check.walled;
                 }
 
-                get = requestBuilder.invoke(url);
-                HttpClient client = clientFactory.createPlainClient();
+                boolean walled = probeWalled(server, baseServerAddress);
+                walledCheck = new WalledCheck(key, generation, now, walled);
+                logger.d(TAG, "Internet walled: " + walled + ", probes: " + walledProbes.incrementAndGet() +
+                    ", probes saved: " + walledProbesSaved.get());
+                return walled;
+            }
+        } else {
+            return getActiveNetworkType() == JobRequest.NetworkType.ANY;
+        }
+    }
 
-                int status = client.executeMethod(get);
+    /**
+     * Identifies the active network, so a cached check is not used for another network.
+     */
+    private String getActiveNetworkKey() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return String.valueOf(connectivityManager.getActiveNetwork());
+        }
 
-                if (server.getVersion().compareTo(OwnCloudVersion.nextcloud_13) > 0) {
-                    return !(status == HttpStatus.SC_NO_CONTENT &&
-                        (get.getResponseContentLength() == -1 || get.getResponseContentLength() == 0));
-                } else {
-                    if (status == HttpStatus.SC_OK) {
-                        try {
-                            // try parsing json to verify response
-                            // check if json contains maintenance and it should be false
-                            String json = get.getResponseBodyAsString();
-                            return new JSONObject(json).getBoolean("maintenance");
-                        } catch (Exception e) {
-                            return true;
-                        }
-                    } else {
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return networkInfo == null ? "" : networkInfo.getType() + ":" + networkInfo.getExtraInfo();
+    }
+
+    private boolean probeWalled(Server server, String baseServerAddress) {
+        GetMethod get = null;
+        try {
+            String url;
+            if (server.getVersion().compareTo(OwnCloudVersion.nextcloud_13) > 0) {
+                url = baseServerAddress + "/index.php/204";
+            } else {
+                url = baseServerAddress + "/status.php";
+            }
+
+            get = requestBuilder.invoke(url);
+            HttpClient client = clientFactory.createPlainClient();
+
+            int status = client.executeMethod(get);
+
+            if (server.getVersion().compareTo(OwnCloudVersion.nextcloud_13) > 0) {
+                return !(status == HttpStatus.SC_NO_CONTENT &&
+                    (get.getResponseContentLength() == -1 || get.getResponseContentLength() == 0));
+            } else {
+                if (status == HttpStatus.SC_OK) {
+                    try {
+                        // try parsing json to verify response
+                        // check if json contains maintenance and it should be false
+                        String json = get.getResponseBodyAsString();
+                        return new JSONObject(json).getBoolean("maintenance");
+                    } catch (Exception e) {
                         return true;
                     }
-                }
-            } catch (IOException e) {
-                logger.e(TAG, "Error checking internet connection", e);
-            } finally {
-                if (get != null) {
-                    get.releaseConnection();
+                } else {
+                    return true;
                 }
             }
-        } else {
-            return getActiveNetworkType() == JobRequest.NetworkType.ANY;
+        } catch (IOException e) {
+            logger.e(TAG, "Error checking internet connection", e);
+        } finally {
+            if (get != null) {
+                get.releaseConnection();
+            }
         }
 
         return true;
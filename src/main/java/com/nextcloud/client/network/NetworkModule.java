@@ -24,6 +24,7 @@ import android.content.Context;
 import android.net.ConnectivityManager;
 
 import com.nextcloud.client.account.UserAccountManager;
+import com.nextcloud.client.core.Clock;
 import com.nextcloud.client.logger.Logger;
 
 import javax.inject.Singleton;
@@ -35,15 +36,18 @@ import dagger.Provides;
 public class NetworkModule {
 
     @Provides
+    @Singleton
     ConnectivityService connectivityService(ConnectivityManager connectivityManager,
                                             UserAccountManager accountManager,
                                             ClientFactory clientFactory,
-                                            Logger logger) {
+                                            Logger logger,
+                                            Clock clock) {
         return new ConnectivityServiceImpl(connectivityManager,
                                            accountManager,
                                            clientFactory,
                                            new ConnectivityServiceImpl.GetRequestBuilder(),
-                                           logger);
+                                           logger,
+                                           clock);
     }
 
     @Provides
@@ -23,6 +23,9 @@ package com.nextcloud.client.preferences;
 import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.utils.FileSortOrder;
 
+import java.util.Collection;
+import java.util.Set;
+
 import androidx.annotation.Nullable;
 
 /**
@@ -239,6 +242,13 @@ public interface AppPreferences {
     FileSortOrder getSortOrderByType(FileSortOrder.Type type, FileSortOrder defaultOrder);
     FileSortOrder getSortOrderByType(FileSortOrder.Type type);
 
+    /**
+     * Drops the folder preference values cached for an account, e.g. once its data was deleted.
+     *
+     * @param accountName Name of the account.
+     */
+    void removeFolderPreferenceCache(String accountName);
+
 
     /**
      * Gets the legacy cleaning flag last set.
@@ -348,4 +358,15 @@ public interface AppPreferences {
     boolean isPowerCheckDisabled();
 
     void setPowerCheckDisabled(boolean value);
+
+    /**
+     * Gets the media content URIs reported as changed and not yet indexed for auto upload.
+     *
+     * @return copy of the pending content URIs, empty if none
+     */
+    Set<String> getPendingContentChanges();
+
+    void addPendingContentChanges(Collection<String> contentUris);
+
+    void removePendingContentChanges(Collection<String> contentUris);
 }
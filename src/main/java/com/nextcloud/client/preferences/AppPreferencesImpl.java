@@ -35,6 +35,12 @@ import com.owncloud.android.ui.activity.PassCodeActivity;
 import com.owncloud.android.ui.activity.SettingsActivity;
 import com.owncloud.android.utils.FileSortOrder;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
@@ -87,6 +93,12 @@ public final class AppPreferencesImpl implements AppPreferences {
     private static final String PREF__MIGRATED_USER_ID = "migrated_user_id";
     private static final String PREF__PHOTO_SEARCH_TIMESTAMP = "photo_search_timestamp";
     private static final String PREF__POWER_CHECK_DISABLED = "power_check_disabled";
+    private static final String PREF__PENDING_CONTENT_CHANGES = "pending_content_changes";
+
+    /**
+     * Shared by all instances, as {@link #fromContext(Context)} creates a new one for every caller.
+     */
+    private static final FolderPreferenceCache FOLDER_PREFERENCE_CACHE = new FolderPreferenceCache();
 
     private final Context context;
     private final SharedPreferences preferences;
@@ -129,6 +141,71 @@ public final class AppPreferencesImpl implements AppPreferences {
         }
     }
 
+    /**
+     * Folder preference values resolved from the folder or the nearest ancestor having one, so a lookup does not
+     * query every level of the folder tree again.
+     *
+     * Entries are keyed by the remote path in addition to the file id: a moved folder, or a folder below a moved
+     * one, might inherit another value and must be resolved again. Setting a value drops all resolved values of
+     * that preference of the account, as any folder below the changed one might have inherited it. All values of an
+     * account are dropped once the account is removed.
+     */
+    static class FolderPreferenceCache {
+        static final int MAX_ENTRIES = 1000;
+        private static final char SEPARATOR = '\n';
+
+        private final Map<String, String> values = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+        /**
+         * @return resolved value, empty if neither the folder nor an ancestor is set, null if not resolved yet
+         */
+        @Nullable
+        synchronized String get(String accountName, String preferenceName, @Nullable OCFile folder) {
+            return values.get(getKey(accountName, preferenceName, folder));
+        }
+
+        synchronized void put(String accountName, String preferenceName, @Nullable OCFile folder, String value) {
+            values.put(getKey(accountName, preferenceName, folder), value);
+        }
+
+        synchronized void invalidate(String accountName, String preferenceName) {
+            removeKeys(getPrefix(accountName, preferenceName));
+        }
+
+        synchronized void invalidate(String accountName) {
+            removeKeys(accountName + SEPARATOR);
+        }
+
+        private void removeKeys(String prefix) {
+            Iterator<String> keys = values.keySet().iterator();
+            while (keys.hasNext()) {
+                if (keys.next().startsWith(prefix)) {
+                    keys.remove();
+                }
+            }
+        }
+
+        synchronized int size() {
+            return values.size();
+        }
+
+        private static String getPrefix(String accountName, String preferenceName) {
+            return accountName + SEPARATOR + preferenceName + SEPARATOR;
+        }
+
+        private static String getKey(String accountName, String preferenceName, @Nullable OCFile folder) {
+            if (folder == null) {
+                return getPrefix(accountName, preferenceName) + FileDataStorageManager.ROOT_PARENT_ID;
+            }
+            return getPrefix(accountName, preferenceName) + folder.getFileId() + SEPARATOR + folder.getRemotePath();
+        }
+    }
+
     /**
      * This is a temporary workaround to access app preferences in places that cannot use
      * dependency injection yet. Use injected component via {@link AppPreferences} interface.
@@ -567,7 +644,7 @@ public final class AppPreferencesImpl implements AppPreferences {
 
     /**
      * Get preference value for a folder.
-     * If folder is not set itself, it finds an ancestor that is set.
+     * If folder is not set itself, it finds an ancestor that is set. Resolved values are kept in memory.
      *
      * @param context Context object.
      * @param preferenceName Name of the preference to lookup.
@@ -584,14 +661,19 @@ public final class AppPreferencesImpl implements AppPreferences {
             return defaultValue;
         }
 
-        ArbitraryDataProvider dataProvider = new ArbitraryDataProvider(context.getContentResolver());
-        FileDataStorageManager storageManager = new FileDataStorageManager(user.toPlatformAccount(), context.getContentResolver());
-
-        String value = dataProvider.getValue(user.getAccountName(), getKeyFromFolder(preferenceName, folder));
-        OCFile prefFolder = folder;
-        while (prefFolder != null && value.isEmpty()) {
-            prefFolder = storageManager.getFileById(prefFolder.getParentId());
-            value = dataProvider.getValue(user.getAccountName(), getKeyFromFolder(preferenceName, prefFolder));
+        String value = FOLDER_PREFERENCE_CACHE.get(user.getAccountName(), preferenceName, folder);
+        if (value == null) {
+            ArbitraryDataProvider dataProvider = new ArbitraryDataProvider(context.getContentResolver());
+            FileDataStorageManager storageManager = new FileDataStorageManager(user.toPlatformAccount(),
+                                                                               context.getContentResolver());
+
+            value = dataProvider.getValue(user.getAccountName(), getKeyFromFolder(preferenceName, folder));
+            OCFile prefFolder = folder;
+            while (prefFolder != null && value.isEmpty()) {
+                prefFolder = storageManager.getFileById(prefFolder.getParentId());
+                value = dataProvider.getValue(user.getAccountName(), getKeyFromFolder(preferenceName, prefFolder));
+            }
+            FOLDER_PREFERENCE_CACHE.put(user.getAccountName(), preferenceName, folder, value);
         }
         return value.isEmpty() ? defaultValue : value;
     }
@@ -611,6 +693,12 @@ public final class AppPreferencesImpl implements AppPreferences {
                                             final String value) {
         ArbitraryDataProvider dataProvider = new ArbitraryDataProvider(context.getContentResolver());
         dataProvider.storeOrUpdateKeyValue(user.getAccountName(), getKeyFromFolder(preferenceName, folder), value);
+        FOLDER_PREFERENCE_CACHE.invalidate(user.getAccountName(), preferenceName);
+    }
+
+    @Override
+    public void removeFolderPreferenceCache(String accountName) {
+        FOLDER_PREFERENCE_CACHE.invalidate(accountName);
     }
 
     private static String getKeyFromFolder(String preferenceName, OCFile folder) {
@@ -629,4 +717,25 @@ public final class AppPreferencesImpl implements AppPreferences {
     public void setPowerCheckDisabled(boolean value) {
         preferences.edit().putBoolean(PREF__POWER_CHECK_DISABLED, value).apply();
     }
+
+    @Override
+    public synchronized Set<String> getPendingContentChanges() {
+        return new HashSet<>(preferences.getStringSet(PREF__PENDING_CONTENT_CHANGES, Collections.emptySet()));
+    }
+
+    @Override
+    public synchronized void addPendingContentChanges(Collection<String> contentUris) {
+        Set<String> pending = getPendingContentChanges();
+        if (pending.addAll(contentUris)) {
+            preferences.edit().putStringSet(PREF__PENDING_CONTENT_CHANGES, pending).apply();
+        }
+    }
+
+    @Override
+    public synchronized void removePendingContentChanges(Collection<String> contentUris) {
+        Set<String> pending = getPendingContentChanges();
+        if (pending.removeAll(contentUris)) {
+            preferences.edit().putStringSet(PREF__PENDING_CONTENT_CHANGES, pending).apply();
+        }
+    }
 }
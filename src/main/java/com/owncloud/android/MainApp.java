@@ -240,6 +240,12 @@ public class MainApp extends MultiDexApplication implements HasAndroidInjector {
         }
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        ThumbnailsCacheManager.trimMemoryCache(level);
+    }
+
     @SuppressFBWarnings("ST")
     @Override
     public void onCreate() {
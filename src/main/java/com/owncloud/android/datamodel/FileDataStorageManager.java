@@ -35,8 +35,6 @@ import android.os.RemoteException;
 import android.provider.MediaStore;
 import android.text.TextUtils;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
 import com.owncloud.android.MainApp;
 import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
 import com.owncloud.android.lib.common.network.WebdavEntry;
@@ -46,7 +44,6 @@ import com.owncloud.android.lib.resources.files.ReadFileRemoteOperation;
 import com.owncloud.android.lib.resources.files.model.RemoteFile;
 import com.owncloud.android.lib.resources.shares.OCShare;
 import com.owncloud.android.lib.resources.shares.ShareType;
-import com.owncloud.android.lib.resources.shares.ShareeUser;
 import com.owncloud.android.lib.resources.status.CapabilityBooleanType;
 import com.owncloud.android.lib.resources.status.OCCapability;
 import com.owncloud.android.operations.RemoteOperationFailedException;
@@ -59,10 +56,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import androidx.annotation.NonNull;
@@ -176,6 +175,11 @@ public class FileDataStorageManager {
     }
 
     public boolean saveFile(OCFile file) {
+        if (!file.isFolder() && file.getStoragePath() != null) {
+            // local copy might have been downloaded or changed
+            FolderSizeIndex.getInstance().invalidateFile(file.getStoragePath());
+        }
+
         boolean overridden = false;
         ContentValues cv = new ContentValues();
         cv.put(ProviderTableMeta.FILE_MODIFIED, file.getModificationTimestamp());
@@ -211,7 +215,7 @@ public class FileDataStorageManager {
         cv.put(ProviderTableMeta.FILE_OWNER_ID, file.getOwnerId());
         cv.put(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME, file.getOwnerDisplayName());
         cv.put(ProviderTableMeta.FILE_NOTE, file.getNote());
-        cv.put(ProviderTableMeta.FILE_SHAREES, new Gson().toJson(file.getSharees()));
+        cv.put(ProviderTableMeta.FILE_SHAREES, ShareesConverter.toJson(file.getSharees()));
         cv.put(ProviderTableMeta.FILE_RICH_WORKSPACE, file.getRichWorkspace());
 
         boolean sameRemotePath = fileExists(file.getRemotePath());
@@ -334,16 +338,24 @@ public class FileDataStorageManager {
 
         ArrayList<ContentProviderOperation> operations = new ArrayList<>(updatedFiles.size());
 
+        // resolve ids of all files already stored in the given folder with a single query
+        Map<String, Long> existingChildren = getFolderChildrenIds(folder.getFileId());
+        Set<Long> existingIds = new HashSet<>(existingChildren.values());
+
         // prepare operations to insert or update files to save in the given folder
         for (OCFile file : updatedFiles) {
             ContentValues cv = createContentValueForFile(file, folder);
 
-            if (fileExists(file.getFileId()) || fileExists(file.getRemotePath())) {
+            Long existingId = existingChildren.get(file.getRemotePath());
+            boolean existsById = file.getFileId() != -1 &&
+                (existingIds.contains(file.getFileId()) || fileExists(file.getFileId())); // moved from elsewhere
+
+            if (existsById || existingId != null) {
                 long fileId;
                 if (file.getFileId() != -1) {
                     fileId = file.getFileId();
                 } else {
-                    fileId = getFileByPath(file.getRemotePath()).getFileId();
+                    fileId = existingId;
                 }
                 // updating an existing file
                 operations.add(ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI)
@@ -382,6 +394,7 @@ public class FileDataStorageManager {
                         if (new File(path).delete() && MimeTypeUtil.isMedia(file.getMimeType())) {
                             triggerMediaScan(path); // notify MediaScanner about removed file
                         }
+                        FolderSizeIndex.getInstance().invalidateFile(path);
                     }
                 }
             }
@@ -433,6 +446,134 @@ public class FileDataStorageManager {
         }
     }
 
+    /**
+     * Searches files and folders of the account by name, with a single query of the file name index.
+     *
+     * Every word of the query has to be the start of a word of the name, e.g. "sum rep" finds "Summer report.pdf".
+     * Words are split at ASCII characters other than letters and digits, ASCII letters are compared case insensitive.
+     *
+     * @param onlyFiles true to leave out folders
+     * @param limit     maximum number of results
+     */
+    public List<OCFile> searchFilesByName(String query, boolean onlyFiles, int limit) {
+        List<OCFile> ret = new ArrayList<>();
+
+        String match = buildFileNameMatch(query);
+        if (match.isEmpty()) {
+            return ret;
+        }
+
+        Uri searchUri = ProviderTableMeta.CONTENT_URI_FILE_SEARCH.buildUpon()
+            .appendQueryParameter(ProviderTableMeta.FILE_SEARCH_MATCH, match)
+            .appendQueryParameter(ProviderTableMeta.QUERY_LIMIT, String.valueOf(limit))
+            .build();
+
+        String selection = ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?";
+        String[] selectionArgs;
+        if (onlyFiles) {
+            selection += " AND " + ProviderTableMeta.FILE_CONTENT_TYPE + "!=?";
+            selectionArgs = new String[]{account.name, MimeType.DIRECTORY};
+        } else {
+            selectionArgs = new String[]{account.name};
+        }
+
+        Cursor c;
+        if (getContentProviderClient() != null) {
+            try {
+                c = getContentProviderClient().query(searchUri,
+                                                     ProviderTableMeta.FILE_ALL_COLUMNS,
+                                                     selection,
+                                                     selectionArgs,
+                                                     null);
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, "Could not search files: " + e.getMessage(), e);
+                return ret;
+            }
+        } else {
+            c = getContentResolver().query(searchUri,
+                                           ProviderTableMeta.FILE_ALL_COLUMNS,
+                                           selection,
+                                           selectionArgs,
+                                           null);
+        }
+
+        if (c != null) {
+            if (c.moveToFirst()) {
+                FileColumnIndexes columns = new FileColumnIndexes(c);
+                do {
+                    ret.add(createFileInstance(c, columns));
+                } while (c.moveToNext());
+            }
+            c.close();
+        }
+
+        return ret;
+    }
+
+    /**
+     * Turns a search query into a prefix match expression of the file name index, one quoted prefix per word.
+     *
+     * @return the expression, empty if the query has no word
+     */
+    static String buildFileNameMatch(String query) {
+        StringBuilder match = new StringBuilder();
+        for (String word : query.split("[\\x00-\\x2F\\x3A-\\x40\\x5B-\\x60\\x7B-\\x7F]+")) {
+            if (!word.isEmpty()) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append('"').append(word).append("*\"");
+            }
+        }
+        return match.toString();
+    }
+
+    /**
+     * Retrieves remote path and id of every file stored in the database as direct child of the given folder.
+     *
+     * @param parentId id of the folder
+     * @return map of remote paths to file ids, empty if the folder is not stored yet
+     */
+    private Map<String, Long> getFolderChildrenIds(long parentId) {
+        Map<String, Long> children = new HashMap<>();
+
+        if (parentId == -1) {
+            return children;
+        }
+
+        String[] projection = new String[]{ProviderTableMeta._ID, ProviderTableMeta.FILE_PATH};
+        String selection = ProviderTableMeta.FILE_PARENT + AND + ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?";
+        String[] selectionArgs = new String[]{String.valueOf(parentId), account.name};
+        Cursor c;
+
+        if (getContentResolver() != null) {
+            c = getContentResolver().query(ProviderTableMeta.CONTENT_URI, projection, selection, selectionArgs, null);
+        } else {
+            try {
+                c = getContentProviderClient().query(ProviderTableMeta.CONTENT_URI,
+                                                     projection,
+                                                     selection,
+                                                     selectionArgs,
+                                                     null);
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, "Could not get folder content: " + e.getMessage(), e);
+                return children;
+            }
+        }
+
+        if (c != null) {
+            int idIndex = c.getColumnIndex(ProviderTableMeta._ID);
+            int pathIndex = c.getColumnIndex(ProviderTableMeta.FILE_PATH);
+
+            while (c.moveToNext()) {
+                children.put(c.getString(pathIndex), c.getLong(idIndex));
+            }
+            c.close();
+        }
+
+        return children;
+    }
+
     private ContentValues createContentValueForFile(OCFile folder) {
         ContentValues cv = new ContentValues();
         cv.put(ProviderTableMeta.FILE_MODIFIED, folder.getModificationTimestamp());
@@ -462,7 +603,7 @@ public class FileDataStorageManager {
         cv.put(ProviderTableMeta.FILE_OWNER_ID, folder.getOwnerId());
         cv.put(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME, folder.getOwnerDisplayName());
         cv.put(ProviderTableMeta.FILE_NOTE, folder.getNote());
-        cv.put(ProviderTableMeta.FILE_SHAREES, new Gson().toJson(folder.getSharees()));
+        cv.put(ProviderTableMeta.FILE_SHAREES, ShareesConverter.toJson(folder.getSharees()));
         cv.put(ProviderTableMeta.FILE_RICH_WORKSPACE, folder.getRichWorkspace());
 
         return cv;
@@ -503,7 +644,7 @@ public class FileDataStorageManager {
         cv.put(ProviderTableMeta.FILE_OWNER_ID, file.getOwnerId());
         cv.put(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME, file.getOwnerDisplayName());
         cv.put(ProviderTableMeta.FILE_NOTE, file.getNote());
-        cv.put(ProviderTableMeta.FILE_SHAREES, new Gson().toJson(file.getSharees()));
+        cv.put(ProviderTableMeta.FILE_SHAREES, ShareesConverter.toJson(file.getSharees()));
         cv.put(ProviderTableMeta.FILE_RICH_WORKSPACE, file.getRichWorkspace());
 
         return cv;
@@ -540,6 +681,7 @@ public class FileDataStorageManager {
                     if (success) {
                         deleteFileInMediaScan(localPath);
                     }
+                    FolderSizeIndex.getInstance().invalidateFile(localPath);
                     if (!removeDBData && success) {
                         // maybe unnecessary, but should be checked TODO remove if unnecessary
                         file.setStoragePath(null);
@@ -636,6 +778,7 @@ public class FileDataStorageManager {
             }
         }
         success &= localFolder.delete();
+        FolderSizeIndex.getInstance().invalidateFolder(localFolder.getAbsolutePath());
         return success;
     }
 
@@ -749,6 +892,9 @@ public class FileDataStorageManager {
             }
 
             if (renamed) {
+                FolderSizeIndex.getInstance().invalidateFolder(originalLocalPath);
+                FolderSizeIndex.getInstance().invalidateFolder(targetLocalPath);
+
                 Iterator<String> it = originalPathsToTriggerMediaScan.iterator();
                 while (it.hasNext()) {
                     // Notify MediaScanner about removed file
@@ -777,6 +923,7 @@ public class FileDataStorageManager {
                     Log_OC.e(TAG, "Unable to create parent folder " + targetFolder.getAbsolutePath());
                 }
                 copied = FileStorageUtils.copyFile(localFile, targetFile);
+                FolderSizeIndex.getInstance().invalidateFolder(targetFile.getAbsolutePath());
             }
             Log_OC.d(TAG, "Local file COPIED : " + copied);
         }
@@ -835,6 +982,8 @@ public class FileDataStorageManager {
         } else {
             getContentProviderClient().applyBatch(operations);
         }
+
+        FolderSizeIndex.getInstance().clear();
     }
 
     private List<OCFile> getFolderContent(long parentId, boolean onlyOnDevice) {
@@ -848,7 +997,7 @@ public class FileDataStorageManager {
             try {
                 c = getContentProviderClient().query(
                         req_uri,
-                        null,
+                        ProviderTableMeta.FILE_ALL_COLUMNS,
                         ProviderTableMeta.FILE_PARENT + "=?",
                         new String[]{String.valueOf(parentId)},
                         null
@@ -860,7 +1009,7 @@ public class FileDataStorageManager {
         } else {
             c = getContentResolver().query(
                     req_uri,
-                    null,
+                    ProviderTableMeta.FILE_ALL_COLUMNS,
                     ProviderTableMeta.FILE_PARENT + "=?",
                     new String[]{String.valueOf(parentId)},
                     null
@@ -869,8 +1018,9 @@ public class FileDataStorageManager {
 
         if (c != null) {
             if (c.moveToFirst()) {
+                FileColumnIndexes columns = new FileColumnIndexes(c);
                 do {
-                    OCFile child = createFileInstance(c);
+                    OCFile child = createFileInstance(c, columns);
                     if (!onlyOnDevice || child.existsOnDevice()) {
                         ret.add(child);
                     }
@@ -925,7 +1075,7 @@ public class FileDataStorageManager {
         if (getContentResolver() != null) {
             c = getContentResolver()
                     .query(ProviderTableMeta.CONTENT_URI,
-                            null,
+                            ProviderTableMeta.FILE_ALL_COLUMNS,
                             key + AND
                                     + ProviderTableMeta.FILE_ACCOUNT_OWNER
                                     + "=?",
@@ -934,7 +1084,7 @@ public class FileDataStorageManager {
             try {
                 c = getContentProviderClient().query(
                         ProviderTableMeta.CONTENT_URI,
-                        null,
+                        ProviderTableMeta.FILE_ALL_COLUMNS,
                         key + AND + ProviderTableMeta.FILE_ACCOUNT_OWNER
                                 + "=?", new String[]{value, account.name},
                         null);
@@ -958,14 +1108,21 @@ public class FileDataStorageManager {
     }
 
     private OCFile createFileInstance(Cursor c) {
+        if (c == null) {
+            return null;
+        }
+        return createFileInstance(c, new FileColumnIndexes(c));
+    }
+
+    private OCFile createFileInstance(Cursor c, FileColumnIndexes columns) {
         OCFile file = null;
         if (c != null) {
-            file = new OCFile(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_PATH)));
-            file.setFileId(c.getLong(c.getColumnIndex(ProviderTableMeta._ID)));
-            file.setParentId(c.getLong(c.getColumnIndex(ProviderTableMeta.FILE_PARENT)));
-            file.setEncryptedFileName(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_ENCRYPTED_NAME)));
-            file.setMimeType(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE)));
-            file.setStoragePath(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_STORAGE_PATH)));
+            file = new OCFile(c.getString(columns.path));
+            file.setFileId(c.getLong(columns.id));
+            file.setParentId(c.getLong(columns.parent));
+            file.setEncryptedFileName(c.getString(columns.encryptedName));
+            file.setMimeType(c.getString(columns.contentType));
+            file.setStoragePath(c.getString(columns.storagePath));
             if (file.getStoragePath() == null) {
                 // try to find existing file and bind it with current account;
                 // with the current update of SynchronizeFolderOperation, this won't be
@@ -976,56 +1133,117 @@ public class FileDataStorageManager {
                     file.setLastSyncDateForData(f.lastModified());
                 }
             }
-            file.setFileLength(c.getLong(c.getColumnIndex(ProviderTableMeta.FILE_CONTENT_LENGTH)));
-            file.setCreationTimestamp(c.getLong(c.getColumnIndex(ProviderTableMeta.FILE_CREATION)));
-            file.setModificationTimestamp(c.getLong(c.getColumnIndex(ProviderTableMeta.FILE_MODIFIED)));
-            file.setModificationTimestampAtLastSyncForData(c.getLong(
-                    c.getColumnIndex(ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA)));
-            file.setLastSyncDateForProperties(c.getLong(c.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE)));
-            file.setLastSyncDateForData(c.getLong(c.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA)));
-            file.setEtag(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_ETAG)));
-            file.setEtagOnServer(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_ETAG_ON_SERVER)));
-            file.setSharedViaLink(c.getInt(c.getColumnIndex(ProviderTableMeta.FILE_SHARED_VIA_LINK)) == 1);
-            file.setSharedWithSharee(c.getInt(c.getColumnIndex(ProviderTableMeta.FILE_SHARED_WITH_SHAREE)) == 1);
-            file.setPublicLink(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_PUBLIC_LINK)));
-            file.setPermissions(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_PERMISSIONS)));
-            file.setRemoteId(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_REMOTE_ID)));
-            file.setUpdateThumbnailNeeded(c.getInt(c.getColumnIndex(ProviderTableMeta.FILE_UPDATE_THUMBNAIL)) == 1);
-            file.setDownloading(c.getInt(c.getColumnIndex(ProviderTableMeta.FILE_IS_DOWNLOADING)) == 1);
-            file.setEtagInConflict(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_ETAG_IN_CONFLICT)));
-            file.setFavorite(c.getInt(c.getColumnIndex(ProviderTableMeta.FILE_FAVORITE)) == 1);
-            file.setEncrypted(c.getInt(c.getColumnIndex(ProviderTableMeta.FILE_IS_ENCRYPTED)) == 1);
+            file.setFileLength(c.getLong(columns.contentLength));
+            file.setCreationTimestamp(c.getLong(columns.creation));
+            file.setModificationTimestamp(c.getLong(columns.modified));
+            file.setModificationTimestampAtLastSyncForData(c.getLong(columns.modifiedAtLastSyncForData));
+            file.setLastSyncDateForProperties(c.getLong(columns.lastSyncDate));
+            file.setLastSyncDateForData(c.getLong(columns.lastSyncDateForData));
+            file.setEtag(c.getString(columns.etag));
+            file.setEtagOnServer(c.getString(columns.etagOnServer));
+            file.setSharedViaLink(c.getInt(columns.sharedViaLink) == 1);
+            file.setSharedWithSharee(c.getInt(columns.sharedWithSharee) == 1);
+            file.setPublicLink(c.getString(columns.publicLink));
+            file.setPermissions(c.getString(columns.permissions));
+            file.setRemoteId(c.getString(columns.remoteId));
+            file.setUpdateThumbnailNeeded(c.getInt(columns.updateThumbnail) == 1);
+            file.setDownloading(c.getInt(columns.isDownloading) == 1);
+            file.setEtagInConflict(c.getString(columns.etagInConflict));
+            file.setFavorite(c.getInt(columns.favorite) == 1);
+            file.setEncrypted(c.getInt(columns.isEncrypted) == 1);
             if (file.isEncrypted()) {
-                file.setFileName(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_NAME)));
+                file.setFileName(c.getString(columns.name));
             }
-            file.setMountType(WebdavEntry.MountType.values()[c.getInt(
-                    c.getColumnIndex(ProviderTableMeta.FILE_MOUNT_TYPE))]);
-            file.setPreviewAvailable(c.getInt(c.getColumnIndex(ProviderTableMeta.FILE_HAS_PREVIEW)) == 1);
-            file.setUnreadCommentsCount(c.getInt(c.getColumnIndex(ProviderTableMeta.FILE_UNREAD_COMMENTS_COUNT)));
-            file.setOwnerId(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_OWNER_ID)));
-            file.setOwnerDisplayName(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME)));
-            file.setNote(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_NOTE)));
-            file.setRichWorkspace(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_RICH_WORKSPACE)));
+            file.setMountType(WebdavEntry.MountType.values()[c.getInt(columns.mountType)]);
+            file.setPreviewAvailable(c.getInt(columns.hasPreview) == 1);
+            file.setUnreadCommentsCount(c.getInt(columns.unreadCommentsCount));
+            file.setOwnerId(c.getString(columns.ownerId));
+            file.setOwnerDisplayName(c.getString(columns.ownerDisplayName));
+            file.setNote(c.getString(columns.note));
+            file.setRichWorkspace(c.getString(columns.richWorkspace));
 
-            String sharees = c.getString(c.getColumnIndex(ProviderTableMeta.FILE_SHAREES));
-
-            if (sharees == null || NULL_STRING.equals(sharees) || sharees.isEmpty()) {
-                file.setSharees(new ArrayList<>());
-            } else {
-                try {
-                    ShareeUser[] shareesArray = new Gson().fromJson(sharees, ShareeUser[].class);
-
-                    file.setSharees(new ArrayList<>(Arrays.asList(shareesArray)));
-                } catch (JsonSyntaxException e) {
-                    // ignore saved value due to api change
-                    file.setSharees(new ArrayList<>());
-                }
-            }
+            // parsed on first access to the sharees, most listings never need them
+            file.setSerializedSharees(c.getString(columns.sharees));
         }
 
         return file;
     }
 
+    /**
+     * Column indexes of a cursor on the files table, resolved once per cursor instead of once per row and column.
+     */
+    private static final class FileColumnIndexes {
+        final int id;
+        final int parent;
+        final int name;
+        final int encryptedName;
+        final int path;
+        final int contentType;
+        final int storagePath;
+        final int contentLength;
+        final int creation;
+        final int modified;
+        final int modifiedAtLastSyncForData;
+        final int lastSyncDate;
+        final int lastSyncDateForData;
+        final int etag;
+        final int etagOnServer;
+        final int sharedViaLink;
+        final int sharedWithSharee;
+        final int publicLink;
+        final int permissions;
+        final int remoteId;
+        final int updateThumbnail;
+        final int isDownloading;
+        final int etagInConflict;
+        final int favorite;
+        final int isEncrypted;
+        final int mountType;
+        final int hasPreview;
+        final int unreadCommentsCount;
+        final int ownerId;
+        final int ownerDisplayName;
+        final int note;
+        final int sharees;
+        final int richWorkspace;
+
+        FileColumnIndexes(Cursor c) {
+            id = c.getColumnIndex(ProviderTableMeta._ID);
+            parent = c.getColumnIndex(ProviderTableMeta.FILE_PARENT);
+            name = c.getColumnIndex(ProviderTableMeta.FILE_NAME);
+            encryptedName = c.getColumnIndex(ProviderTableMeta.FILE_ENCRYPTED_NAME);
+            path = c.getColumnIndex(ProviderTableMeta.FILE_PATH);
+            contentType = c.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE);
+            storagePath = c.getColumnIndex(ProviderTableMeta.FILE_STORAGE_PATH);
+            contentLength = c.getColumnIndex(ProviderTableMeta.FILE_CONTENT_LENGTH);
+            creation = c.getColumnIndex(ProviderTableMeta.FILE_CREATION);
+            modified = c.getColumnIndex(ProviderTableMeta.FILE_MODIFIED);
+            modifiedAtLastSyncForData = c.getColumnIndex(ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA);
+            lastSyncDate = c.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE);
+            lastSyncDateForData = c.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA);
+            etag = c.getColumnIndex(ProviderTableMeta.FILE_ETAG);
+            etagOnServer = c.getColumnIndex(ProviderTableMeta.FILE_ETAG_ON_SERVER);
+            sharedViaLink = c.getColumnIndex(ProviderTableMeta.FILE_SHARED_VIA_LINK);
+            sharedWithSharee = c.getColumnIndex(ProviderTableMeta.FILE_SHARED_WITH_SHAREE);
+            publicLink = c.getColumnIndex(ProviderTableMeta.FILE_PUBLIC_LINK);
+            permissions = c.getColumnIndex(ProviderTableMeta.FILE_PERMISSIONS);
+            remoteId = c.getColumnIndex(ProviderTableMeta.FILE_REMOTE_ID);
+            updateThumbnail = c.getColumnIndex(ProviderTableMeta.FILE_UPDATE_THUMBNAIL);
+            isDownloading = c.getColumnIndex(ProviderTableMeta.FILE_IS_DOWNLOADING);
+            etagInConflict = c.getColumnIndex(ProviderTableMeta.FILE_ETAG_IN_CONFLICT);
+            favorite = c.getColumnIndex(ProviderTableMeta.FILE_FAVORITE);
+            isEncrypted = c.getColumnIndex(ProviderTableMeta.FILE_IS_ENCRYPTED);
+            mountType = c.getColumnIndex(ProviderTableMeta.FILE_MOUNT_TYPE);
+            hasPreview = c.getColumnIndex(ProviderTableMeta.FILE_HAS_PREVIEW);
+            unreadCommentsCount = c.getColumnIndex(ProviderTableMeta.FILE_UNREAD_COMMENTS_COUNT);
+            ownerId = c.getColumnIndex(ProviderTableMeta.FILE_OWNER_ID);
+            ownerDisplayName = c.getColumnIndex(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME);
+            note = c.getColumnIndex(ProviderTableMeta.FILE_NOTE);
+            sharees = c.getColumnIndex(ProviderTableMeta.FILE_SHAREES);
+            richWorkspace = c.getColumnIndex(ProviderTableMeta.FILE_RICH_WORKSPACE);
+        }
+    }
+
     // Methods for Shares
     public boolean saveShare(OCShare share) {
         boolean overridden = false;
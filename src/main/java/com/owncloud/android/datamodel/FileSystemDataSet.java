@@ -36,8 +36,11 @@ public class FileSystemDataSet {
     private long foundAt;
     private long syncedFolderId;
     @Nullable private String crc32;
+    private long size;
+    private long inode;
 
-    public FileSystemDataSet(int id, String localPath, long modifiedAt, boolean folder, boolean sentForUpload, long foundAt, long syncedFolderId, String crc32) {
+    public FileSystemDataSet(int id, String localPath, long modifiedAt, boolean folder, boolean sentForUpload,
+                             long foundAt, long syncedFolderId, String crc32, long size, long inode) {
         this.id = id;
         this.localPath = localPath;
         this.modifiedAt = modifiedAt;
@@ -46,6 +49,8 @@ public class FileSystemDataSet {
         this.foundAt = foundAt;
         this.syncedFolderId = syncedFolderId;
         this.crc32 = crc32;
+        this.size = size;
+        this.inode = inode;
     }
 
     public FileSystemDataSet() {
@@ -84,6 +89,14 @@ public class FileSystemDataSet {
         return this.crc32;
     }
 
+    public long getSize() {
+        return this.size;
+    }
+
+    public long getInode() {
+        return this.inode;
+    }
+
     public void setId(int id) {
         this.id = id;
     }
@@ -115,4 +128,12 @@ public class FileSystemDataSet {
     public void setCrc32(@Nullable String crc32) {
         this.crc32 = crc32;
     }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public void setInode(long inode) {
+        this.inode = inode;
+    }
 }
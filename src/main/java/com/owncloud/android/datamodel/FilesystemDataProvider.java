@@ -19,22 +19,31 @@
  */
 package com.owncloud.android.datamodel;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.RemoteException;
+import android.text.TextUtils;
 
+import com.owncloud.android.MainApp;
 import com.owncloud.android.db.ProviderMeta;
 import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.utils.ChecksumUtils;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.zip.CRC32;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import androidx.annotation.Nullable;
 
 /**
  * Provider for stored filesystem data.
@@ -73,6 +82,30 @@ public class FilesystemDataProvider {
         );
     }
 
+    /**
+     * Marks files of a synced folder as sent for upload, with one update per {@link Batch#BATCH_SIZE} files.
+     */
+    public void updateFilesystemFilesAsSentForUpload(List<String> paths, String syncedFolderId) {
+        ContentValues cv = new ContentValues();
+        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD, 1);
+
+        for (int start = 0; start < paths.size(); start += Batch.BATCH_SIZE) {
+            List<String> batchPaths = paths.subList(start, Math.min(paths.size(), start + Batch.BATCH_SIZE));
+            String[] selectionArgs = new String[batchPaths.size() + 1];
+            batchPaths.toArray(selectionArgs);
+            selectionArgs[batchPaths.size()] = syncedFolderId;
+
+            contentResolver.update(
+                ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM,
+                cv,
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH + " IN (" +
+                    TextUtils.join(",", Collections.nCopies(batchPaths.size(), "?")) + ") and " +
+                    ProviderMeta.ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID + " = ?",
+                selectionArgs
+            );
+        }
+    }
+
     public Set<String> getFilesForUpload(String localPath, String syncedFolderId) {
         Set<String> localPathsToUpload = new HashSet<>();
 
@@ -115,14 +148,63 @@ public class FilesystemDataProvider {
 
         FileSystemDataSet data = getFilesystemDataSet(localPath, syncedFolder);
 
+        ContentValues cv = getValuesToStore(data, localPath, modifiedAt, isFolder, syncedFolder);
+
+        if (data == null) {
+            Uri result = contentResolver.insert(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM, cv);
+
+            if (result == null) {
+                Log_OC.v(TAG, "Failed to insert filesystem data with local path: " + localPath);
+            }
+        } else {
+            int result = contentResolver.update(
+                    ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM,
+                    cv,
+                    ProviderMeta.ProviderTableMeta._ID + "=?",
+                    new String[]{String.valueOf(data.getId())}
+            );
+
+            if (result == 0) {
+                Log_OC.v(TAG, "Failed to update filesystem data with local path: " + localPath);
+            }
+        }
+    }
+
+    /**
+     * Starts a batch to store or update many entries of a synced folder, e.g. while indexing the whole folder.
+     *
+     * @param syncedFolder synced folder the entries belong to
+     * @return batch to collect entries, has to be finished with {@link Batch#flush()}
+     */
+    public Batch startBatch(SyncedFolder syncedFolder) {
+        return new Batch(syncedFolder, getFilesystemDataSets(syncedFolder));
+    }
+
+    /**
+     * Returns the values to insert a new entry if data is null, or to update the existing entry otherwise.
+     */
+    private ContentValues getValuesToStore(@Nullable FileSystemDataSet data,
+                                           String localPath,
+                                           long modifiedAt,
+                                           boolean isFolder,
+                                           SyncedFolder syncedFolder) {
         int isFolderValue = 0;
         if (isFolder) {
             isFolderValue = 1;
         }
 
+        long size = ChecksumUtils.UNKNOWN;
+        long inode = ChecksumUtils.UNKNOWN;
+        if (!isFolder) {
+            size = new File(localPath).length();
+            inode = ChecksumUtils.getInode(localPath);
+        }
+
         ContentValues cv = new ContentValues();
         cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_FOUND_RECENTLY, System.currentTimeMillis());
         cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_MODIFIED, modifiedAt);
+        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SIZE, size);
+        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_INODE, inode);
 
         if (data == null) {
 
@@ -131,38 +213,35 @@ public class FilesystemDataProvider {
             cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD, Boolean.FALSE);
             cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID, syncedFolder.getId());
 
-            long newCrc32 = getFileChecksum(localPath);
-            if (newCrc32 != -1) {
-                cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32, Long.toString(newCrc32));
-            }
-
-            Uri result = contentResolver.insert(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM, cv);
-
-            if (result == null) {
-                Log_OC.v(TAG, "Failed to insert filesystem data with local path: " + localPath);
+            if (!isFolder) {
+                long newCrc32 = getFileChecksum(localPath);
+                if (newCrc32 != -1) {
+                    cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32, Long.toString(newCrc32));
+                }
             }
         } else {
 
-            if (data.getModifiedAt() != modifiedAt) {
+            if (!isFolder && hasChanged(data, modifiedAt, size, inode)) {
                 long newCrc32 = getFileChecksum(localPath);
                 if (data.getCrc32() == null || (newCrc32 != -1 && !data.getCrc32().equals(Long.toString(newCrc32)))) {
                     cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32, Long.toString(newCrc32));
                     cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD, 0);
                 }
             }
+        }
 
+        return cv;
+    }
 
-            int result = contentResolver.update(
-                    ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM,
-                    cv,
-                    ProviderMeta.ProviderTableMeta._ID + "=?",
-                    new String[]{String.valueOf(data.getId())}
-            );
-
-            if (result == 0) {
-                Log_OC.v(TAG, "Failed to update filesystem data with local path: " + localPath);
-            }
-        }
+    /**
+     * Fast path to avoid hashing unchanged files: content is only checked again if modification time, size or
+     * inode differ from the stored values. Size and inode are ignored if they are not known for the stored entry,
+     * e.g. for entries created before they were tracked.
+     */
+    static boolean hasChanged(FileSystemDataSet data, long modifiedAt, long size, long inode) {
+        return data.getModifiedAt() != modifiedAt ||
+            (data.getSize() != ChecksumUtils.UNKNOWN && data.getSize() != size) ||
+            (data.getInode() != ChecksumUtils.UNKNOWN && inode != ChecksumUtils.UNKNOWN && data.getInode() != inode);
     }
 
     private FileSystemDataSet getFilesystemDataSet(String localPathParam, SyncedFolder syncedFolder) {
@@ -179,32 +258,37 @@ public class FilesystemDataProvider {
         FileSystemDataSet dataSet = null;
         if (cursor != null) {
             if (cursor.moveToFirst()) {
-                int id = cursor.getInt(cursor.getColumnIndex(ProviderMeta.ProviderTableMeta._ID));
-                String localPath = cursor.getString(cursor.getColumnIndex(
-                        ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH));
-                long modifiedAt = cursor.getLong(cursor.getColumnIndex(
-                        ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_MODIFIED));
-                boolean isFolder = false;
-                if (cursor.getInt(cursor.getColumnIndex(
-                        ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_IS_FOLDER)) != 0) {
-                    isFolder = true;
-                }
-                long foundAt = cursor.getLong(cursor.getColumnIndex(ProviderMeta.
-                        ProviderTableMeta.FILESYSTEM_FILE_FOUND_RECENTLY));
+                dataSet = createFilesystemDataSet(cursor, syncedFolder);
+            }
+            cursor.close();
+        } else {
+            Log_OC.e(TAG, "DB error restoring arbitrary values.");
+        }
 
-                boolean isSentForUpload = false;
-                if (cursor.getInt(cursor.getColumnIndex(
-                        ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD)) != 0) {
-                    isSentForUpload = true;
-                }
+        return dataSet;
+    }
 
-                String crc32 = cursor.getString(cursor.getColumnIndex(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32));
+    /**
+     * Loads all stored entries of a synced folder with a single query.
+     *
+     * @return stored entries, by local path
+     */
+    private ConcurrentMap<String, FileSystemDataSet> getFilesystemDataSets(SyncedFolder syncedFolder) {
+        ConcurrentMap<String, FileSystemDataSet> dataSets = new ConcurrentHashMap<>();
 
-                if (id == -1) {
-                    Log_OC.e(TAG, "Arbitrary value could not be created from cursor");
-                } else {
-                    dataSet = new FileSystemDataSet(id, localPath, modifiedAt, isFolder, isSentForUpload, foundAt,
-                            syncedFolder.getId(), crc32);
+        Cursor cursor = contentResolver.query(
+                ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM,
+                null,
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID + " = ?",
+                new String[]{Long.toString(syncedFolder.getId())},
+                null
+        );
+
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                FileSystemDataSet dataSet = createFilesystemDataSet(cursor, syncedFolder);
+                if (dataSet != null) {
+                    dataSets.put(dataSet.getLocalPath(), dataSet);
                 }
             }
             cursor.close();
@@ -212,22 +296,137 @@ public class FilesystemDataProvider {
             Log_OC.e(TAG, "DB error restoring arbitrary values.");
         }
 
-        return dataSet;
+        return dataSets;
     }
 
-    private long getFileChecksum(String filepath) {
+    @Nullable
+    private FileSystemDataSet createFilesystemDataSet(Cursor cursor, SyncedFolder syncedFolder) {
+        int id = cursor.getInt(cursor.getColumnIndex(ProviderMeta.ProviderTableMeta._ID));
+        String localPath = cursor.getString(cursor.getColumnIndex(
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH));
+        long modifiedAt = cursor.getLong(cursor.getColumnIndex(
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_MODIFIED));
+        boolean isFolder = false;
+        if (cursor.getInt(cursor.getColumnIndex(
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_IS_FOLDER)) != 0) {
+            isFolder = true;
+        }
+        long foundAt = cursor.getLong(cursor.getColumnIndex(ProviderMeta.
+                ProviderTableMeta.FILESYSTEM_FILE_FOUND_RECENTLY));
 
-        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(filepath))){
-            CRC32 crc = new CRC32();
-            int cnt;
-            while ((cnt = inputStream.read()) != -1) {
-                crc.update(cnt);
-            }
+        boolean isSentForUpload = false;
+        if (cursor.getInt(cursor.getColumnIndex(
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD)) != 0) {
+            isSentForUpload = true;
+        }
 
-            return crc.getValue();
+        String crc32 = cursor.getString(cursor.getColumnIndex(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32));
+        long size = getLongOrUnknown(cursor, ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SIZE);
+        long inode = getLongOrUnknown(cursor, ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_INODE);
 
+        if (id == -1) {
+            Log_OC.e(TAG, "Arbitrary value could not be created from cursor");
+            return null;
+        }
+
+        return new FileSystemDataSet(id, localPath, modifiedAt, isFolder, isSentForUpload, foundAt,
+                                     syncedFolder.getId(), crc32, size, inode);
+    }
+
+    private long getLongOrUnknown(Cursor cursor, String column) {
+        int index = cursor.getColumnIndex(column);
+        if (index == -1 || cursor.isNull(index)) {
+            return ChecksumUtils.UNKNOWN;
+        }
+        return cursor.getLong(index);
+    }
+
+    private long getFileChecksum(String filepath) {
+        try {
+            return ChecksumUtils.getCRC32(new File(filepath));
         } catch (IOException e) {
             return -1;
         }
     }
+
+    /**
+     * Collects entries of a synced folder and applies them in batches of {@link #BATCH_SIZE} operations, each batch
+     * in a single transaction. Stored entries are looked up in a map loaded once when the batch is started, instead
+     * of querying the database for every file.
+     *
+     * A batch must only be used by a single thread, use {@link #fork()} to scan a synced folder from several threads.
+     */
+    public class Batch {
+        static final int BATCH_SIZE = 500;
+
+        private final SyncedFolder syncedFolder;
+        private final ConcurrentMap<String, FileSystemDataSet> existingEntries;
+        private final ArrayList<ContentProviderOperation> operations = new ArrayList<>(BATCH_SIZE);
+
+        private Batch(SyncedFolder syncedFolder, ConcurrentMap<String, FileSystemDataSet> existingEntries) {
+            this.syncedFolder = syncedFolder;
+            this.existingEntries = existingEntries;
+        }
+
+        /**
+         * Same as {@link FilesystemDataProvider#storeOrUpdateFileValue(String, long, boolean, SyncedFolder)}, but
+         * the change is only written to the database once the batch is full or flushed.
+         */
+        public void storeOrUpdateFileValue(String localPath, long modifiedAt, boolean isFolder) {
+            FileSystemDataSet data = existingEntries.get(localPath);
+
+            if (data == null) {
+                FileSystemDataSet pending = new FileSystemDataSet();
+                pending.setId(-1);
+                pending.setLocalPath(localPath);
+                if (existingEntries.putIfAbsent(localPath, pending) != null) {
+                    // already added by this or a forked batch
+                    return;
+                }
+
+                ContentValues cv = getValuesToStore(null, localPath, modifiedAt, isFolder, syncedFolder);
+                operations.add(ContentProviderOperation.newInsert(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM)
+                                   .withValues(cv)
+                                   .build());
+            } else if (data.getId() == -1) {
+                // already added within this run
+                return;
+            } else {
+                ContentValues cv = getValuesToStore(data, localPath, modifiedAt, isFolder, syncedFolder);
+                operations.add(ContentProviderOperation.newUpdate(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM)
+                                   .withValues(cv)
+                                   .withSelection(ProviderMeta.ProviderTableMeta._ID + "=?",
+                                                  new String[]{String.valueOf(data.getId())})
+                                   .build());
+            }
+
+            if (operations.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Creates a new batch for the same synced folder, sharing the stored entries loaded by this one.
+         */
+        public Batch fork() {
+            return new Batch(syncedFolder, existingEntries);
+        }
+
+        /**
+         * Writes all collected changes to the database.
+         */
+        public void flush() {
+            if (operations.isEmpty()) {
+                return;
+            }
+
+            try {
+                contentResolver.applyBatch(MainApp.getAuthority(), operations);
+            } catch (OperationApplicationException | RemoteException e) {
+                Log_OC.e(TAG, "Failed to store filesystem data of synced folder " + syncedFolder.getLocalPath(), e);
+            }
+
+            operations.clear();
+        }
+    }
 }
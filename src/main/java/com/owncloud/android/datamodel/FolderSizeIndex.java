@@ -0,0 +1,205 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.datamodel;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sizes of local folders, by absolute path.
+ *
+ * Computing the size of a folder stores the sizes of all its subfolders too. A change of a local file only
+ * invalidates the folders containing it, so recomputing them lists those folders again but reuses the sizes of all
+ * unchanged subfolders. {@link FileDataStorageManager} invalidates the index whenever it changes local files.
+ */
+public final class FolderSizeIndex {
+    public static final long UNKNOWN = -1;
+
+    private static FolderSizeIndex instance;
+
+    private final Map<String, Long> sizes = new ConcurrentHashMap<>();
+    private final Map<String, List<Listener>> pending = new HashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final Executor worker;
+    private final Executor callbackExecutor;
+
+    public interface Listener {
+        /**
+         * @param folder folder the size was requested for
+         * @param size   total size of all files in the folder and its subfolders
+         */
+        void onFolderSizeComputed(File folder, long size);
+    }
+
+    /**
+     * @param worker           computes sizes
+     * @param callbackExecutor notifies listeners
+     */
+    FolderSizeIndex(Executor worker, Executor callbackExecutor) {
+        this.worker = worker;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * @return shared index, computing sizes on a background thread and notifying listeners on the main thread
+     */
+    public static synchronized FolderSizeIndex getInstance() {
+        if (instance == null) {
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            instance = new FolderSizeIndex(Executors.newSingleThreadExecutor(), mainHandler::post);
+        }
+        return instance;
+    }
+
+    /**
+     * @return size of folder, or {@link #UNKNOWN} if it is not computed yet
+     */
+    public long getCachedSize(File folder) {
+        Long size = sizes.get(folder.getAbsolutePath());
+        return size == null ? UNKNOWN : size;
+    }
+
+    /**
+     * Returns the size of folder, computing it if needed. This accesses the file system, do not call it from the main
+     * thread.
+     */
+    public long getSize(File folder) {
+        long startGeneration = generation.get();
+        Map<String, Long> computed = new HashMap<>();
+        long size = computeSize(folder, computed);
+
+        // do not store sizes computed while files changed, they might be outdated
+        synchronized (this) {
+            if (startGeneration == generation.get()) {
+                sizes.putAll(computed);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Computes the size of folder on the background thread, unless it is known already.
+     *
+     * @param listener notified when the size is known; right away if it is cached
+     */
+    public void requestSize(File folder, Listener listener) {
+        long size = getCachedSize(folder);
+        if (size != UNKNOWN) {
+            listener.onFolderSizeComputed(folder, size);
+            return;
+        }
+
+        String path = folder.getAbsolutePath();
+        synchronized (pending) {
+            List<Listener> listeners = pending.get(path);
+            if (listeners != null) {
+                listeners.add(listener);
+                return;
+            }
+            listeners = new ArrayList<>();
+            listeners.add(listener);
+            pending.put(path, listeners);
+        }
+
+        worker.execute(() -> {
+            long computedSize = getSize(folder);
+
+            List<Listener> listeners;
+            synchronized (pending) {
+                listeners = pending.remove(path);
+            }
+            callbackExecutor.execute(() -> {
+                for (Listener pendingListener : listeners) {
+                    pendingListener.onFolderSizeComputed(folder, computedSize);
+                }
+            });
+        });
+    }
+
+    /**
+     * Invalidates the folders containing a local file that was added, changed or deleted.
+     */
+    public synchronized void invalidateFile(String path) {
+        generation.incrementAndGet();
+
+        File parent = new File(path).getAbsoluteFile().getParentFile();
+        while (parent != null) {
+            sizes.remove(parent.getPath());
+            parent = parent.getParentFile();
+        }
+    }
+
+    /**
+     * Invalidates a local folder that was changed as a whole, its subfolders and the folders containing it.
+     */
+    public synchronized void invalidateFolder(String path) {
+        String folderPath = new File(path).getAbsolutePath();
+        String prefix = folderPath + File.separator;
+
+        Iterator<String> iterator = sizes.keySet().iterator();
+        while (iterator.hasNext()) {
+            String key = iterator.next();
+            if (key.startsWith(prefix)) {
+                iterator.remove();
+            }
+        }
+        sizes.remove(folderPath);
+
+        invalidateFile(folderPath);
+    }
+
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        sizes.clear();
+    }
+
+    private long computeSize(File folder, Map<String, Long> computed) {
+        String path = folder.getAbsolutePath();
+        Long cached = sizes.get(path);
+        if (cached != null) {
+            return cached;
+        }
+
+        long size = 0;
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    size += computeSize(file, computed);
+                } else {
+                    size += file.length();
+                }
+            }
+        }
+
+        computed.put(path, size);
+        return size;
+    }
+}
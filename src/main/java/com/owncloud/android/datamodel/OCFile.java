@@ -36,13 +36,14 @@ import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.lib.resources.files.model.ServerFileInterface;
 import com.owncloud.android.lib.resources.shares.ShareeUser;
 import com.owncloud.android.utils.MimeType;
+import com.owncloud.android.utils.NaturalSortKey;
 
 import java.io.File;
 import java.util.List;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.FileProvider;
-import third_parties.daveKoeller.AlphanumComparator;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 public class OCFile implements Parcelable, Comparable<OCFile>, ServerFileInterface {
     private final static String PERMISSION_SHARED_WITH_ME = "S";
@@ -88,6 +89,10 @@ public class OCFile implements Parcelable, Comparable<OCFile>, ServerFileInterfa
     private String ownerDisplayName;
     String note;
     private List<ShareeUser> sharees;
+    /**
+     * Sharees as stored in the database; decoded into {@link #sharees} on first call to {@link #getSharees()}
+     */
+    private String serializedSharees;
     private String richWorkspace;
 
     /**
@@ -105,6 +110,12 @@ public class OCFile implements Parcelable, Comparable<OCFile>, ServerFileInterfa
     private Uri exposedFileUri;
     private String encryptedFileName;
 
+    /**
+     * Sort key of the file name; cached after first call to {@link #getSortKey()}, until the remote path changes
+     */
+    private NaturalSortKey sortKey;
+    private String sortKeyRemotePath;
+
 
     /**
      * Create new {@link OCFile} with given path.
@@ -428,16 +439,29 @@ public class OCFile implements Parcelable, Comparable<OCFile>, ServerFileInterfa
         return super.hashCode();
     }
 
+    /**
+     * @return key to sort files naturally by name
+     */
+    @SuppressFBWarnings("ES")
+    public NaturalSortKey getSortKey() {
+        // identity check is enough, any change of the path assigns a new string
+        if (sortKey == null || sortKeyRemotePath != remotePath) {
+            sortKey = NaturalSortKey.of(getFileName());
+            sortKeyRemotePath = remotePath;
+        }
+        return sortKey;
+    }
+
     @Override
     public int compareTo(@NonNull OCFile another) {
         if (isFolder() && another.isFolder()) {
-            return new AlphanumComparator().compare(this, another);
+            return getSortKey().compareTo(another.getSortKey());
         } else if (isFolder()) {
             return -1;
         } else if (another.isFolder()) {
             return 1;
         }
-        return new AlphanumComparator().compare(this, another);
+        return getSortKey().compareTo(another.getSortKey());
     }
 
     @Override
@@ -645,6 +669,10 @@ public class OCFile implements Parcelable, Comparable<OCFile>, ServerFileInterfa
     }
 
     public List<ShareeUser> getSharees() {
+        if (serializedSharees != null) {
+            sharees = ShareesConverter.fromJson(serializedSharees);
+            serializedSharees = null;
+        }
         return this.sharees;
     }
 
@@ -762,6 +790,17 @@ public class OCFile implements Parcelable, Comparable<OCFile>, ServerFileInterfa
 
     public void setSharees(List<ShareeUser> sharees) {
         this.sharees = sharees;
+        this.serializedSharees = null;
+    }
+
+    /**
+     * Sets the sharees from their JSON representation, deferring the parsing until they are requested.
+     *
+     * @param serializedSharees sharees as stored in the database
+     */
+    void setSerializedSharees(String serializedSharees) {
+        this.sharees = null;
+        this.serializedSharees = serializedSharees == null ? "" : serializedSharees;
     }
 
     public void setRichWorkspace(String richWorkspace) {
@@ -0,0 +1,63 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.datamodel;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.owncloud.android.lib.resources.shares.ShareeUser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Converts the sharees of a file from and to the JSON stored in the files table, sharing one {@link Gson} instance
+ * and its type adapter instead of setting up reflection for every row.
+ */
+final class ShareesConverter {
+    private static final Gson GSON = new Gson();
+    private static final TypeAdapter<ShareeUser[]> ADAPTER = GSON.getAdapter(ShareeUser[].class);
+
+    private ShareesConverter() {
+        // utility class -> private constructor
+    }
+
+    static String toJson(List<ShareeUser> sharees) {
+        if (sharees == null) {
+            return FileDataStorageManager.NULL_STRING;
+        }
+        return ADAPTER.toJson(sharees.toArray(new ShareeUser[0]));
+    }
+
+    static List<ShareeUser> fromJson(String json) {
+        if (json == null || FileDataStorageManager.NULL_STRING.equals(json) || json.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        try {
+            ShareeUser[] sharees = ADAPTER.fromJson(json);
+            return sharees == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(sharees));
+        } catch (IOException | JsonParseException e) {
+            // ignore saved value due to api change
+            return new ArrayList<>();
+        }
+    }
+}
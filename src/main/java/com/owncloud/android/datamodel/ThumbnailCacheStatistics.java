@@ -0,0 +1,97 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.datamodel;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts where thumbnails were found: in memory, on disk or not cached at all and fetched from the server.
+ */
+public final class ThumbnailCacheStatistics {
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong networkFetches = new AtomicLong();
+
+    void onMemoryHit() {
+        memoryHits.incrementAndGet();
+    }
+
+    void onDiskHit() {
+        diskHits.incrementAndGet();
+    }
+
+    void onMiss() {
+        misses.incrementAndGet();
+    }
+
+    void onNetworkFetch() {
+        networkFetches.incrementAndGet();
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getNetworkFetches() {
+        return networkFetches.get();
+    }
+
+    public long getRequests() {
+        return getMemoryHits() + getDiskHits() + getMisses();
+    }
+
+    /**
+     * @return share of requests served from memory or disk, 0 if there was no request yet
+     */
+    public float getHitRatio() {
+        long requests = getRequests();
+        if (requests == 0) {
+            return 0;
+        }
+        return (getMemoryHits() + getDiskHits()) / (float) requests;
+    }
+
+    public void reset() {
+        memoryHits.set(0);
+        diskHits.set(0);
+        misses.set(0);
+        networkFetches.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                             "memory hits: %d, disk hits: %d, misses: %d, network fetches: %d, hit ratio: %.2f",
+                             getMemoryHits(),
+                             getDiskHits(),
+                             getMisses(),
+                             getNetworkFetches(),
+                             getHitRatio());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.datamodel;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool running the most recently submitted work first.
+ *
+ * While scrolling, the rows bound last are the visible ones, so their thumbnails are loaded before those of rows
+ * that already left the screen. Work of recycled rows is cancelled by the adapters and skipped when dequeued.
+ */
+final class ThumbnailExecutor implements Executor {
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+
+    ThumbnailExecutor(int threads, String name) {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                return new Thread(runnable, name + "-" + count.incrementAndGet());
+            }
+        };
+
+        executor = new ThreadPoolExecutor(threads,
+                                          threads,
+                                          KEEP_ALIVE_SECONDS,
+                                          TimeUnit.SECONDS,
+                                          new PriorityBlockingQueue<>(),
+                                          threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        executor.execute(new Job(command, sequence.incrementAndGet()));
+    }
+
+    int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    private static final class Job implements Runnable, Comparable<Job> {
+        private final Runnable command;
+        private final long sequence;
+
+        Job(Runnable command, long sequence) {
+            this.command = command;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            command.run();
+        }
+
+        @Override
+        public int compareTo(@NonNull Job other) {
+            // newest first
+            return Long.compare(other.sequence, sequence);
+        }
+    }
+}
@@ -24,6 +24,7 @@
 package com.owncloud.android.datamodel;
 
 import android.accounts.Account;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
@@ -39,6 +40,7 @@ import android.media.ThumbnailUtils;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.provider.MediaStore;
+import android.util.LruCache;
 import android.text.TextUtils;
 import android.view.Display;
 import android.view.MenuItem;
@@ -74,6 +76,9 @@ import java.lang.ref.WeakReference;
 import java.net.URLEncoder;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 
 import androidx.annotation.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -94,13 +99,37 @@ public final class ThumbnailsCacheManager {
     private static final String ETAG = "ETag";
 
     private static final Object mThumbnailsDiskCacheLock = new Object();
-    private static DiskLruImageCache mThumbnailCache;
+    private static volatile DiskLruImageCache mThumbnailCache;
     private static boolean mThumbnailCacheStarting = true;
 
     private static final int DISK_CACHE_SIZE = 1024 * 1024 * 200; // 200MB
+    private static final int MEMORY_CACHE_HEAP_FRACTION = 8;
+    private static final int STATISTICS_LOG_INTERVAL = 1000;
     private static final CompressFormat mCompressFormat = CompressFormat.JPEG;
     private static final int mCompressQuality = 70;
-    private static OwnCloudClient mClient;
+
+    /**
+     * Decoded bitmaps in front of the disk cache, sized in kilobytes. Resized images are not kept, they are too
+     * large and get recycled by the preview.
+     */
+    private static final LruCache<String, Bitmap> mMemoryCache = new LruCache<String, Bitmap>(getMemoryCacheSize()) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getByteCount() / 1024;
+        }
+    };
+    private static final ThumbnailCacheStatistics mStatistics = new ThumbnailCacheStatistics();
+
+    /**
+     * Runs thumbnail, preview and avatar generation, most recent request first. Four threads stay within the
+     * connections per host of the shared OwnCloudClient.
+     */
+    public static final Executor THUMBNAIL_EXECUTOR = new ThumbnailExecutor(4, "thumbnails");
+
+    /**
+     * Thumbnails being generated, by image key; tasks for the same file wait for the running one.
+     */
+    private static final ConcurrentHashMap<String, CountDownLatch> mThumbnailsInProgress = new ConcurrentHashMap<>();
 
     public static final Bitmap mDefaultImg = BitmapFactory.decodeResource(MainApp.getAppContext().getResources(),
             R.drawable.file_image);
@@ -200,10 +229,11 @@ public final class ThumbnailsCacheManager {
     }
 
     public static void addBitmapToCache(String key, Bitmap bitmap) {
-        synchronized (mThumbnailsDiskCacheLock) {
-            if (mThumbnailCache != null) {
-                mThumbnailCache.put(key, bitmap);
-            }
+        addBitmapToMemoryCache(key, bitmap);
+
+        DiskLruImageCache diskCache = mThumbnailCache;
+        if (diskCache != null) {
+            diskCache.put(key, bitmap);
         }
     }
 
@@ -212,23 +242,20 @@ public final class ThumbnailsCacheManager {
     }
 
     public static Bitmap getScaledBitmapFromDiskCache(String key, int width, int height) {
-        synchronized (mThumbnailsDiskCacheLock) {
-            // Wait while disk cache is started from background thread
-            while (mThumbnailCacheStarting) {
-                try {
-                    mThumbnailsDiskCacheLock.wait();
-                } catch (InterruptedException e) {
-                    Log_OC.e(TAG, "Wait in mThumbnailsDiskCacheLock was interrupted", e);
-                }
-            }
-            if (mThumbnailCache != null) {
-                return mThumbnailCache.getScaledBitmap(key, width, height);
-            }
+        DiskLruImageCache diskCache = waitForDiskCache();
+        if (diskCache != null) {
+            return diskCache.getScaledBitmap(key, width, height);
         }
         return null;
     }
 
-    public static Bitmap getBitmapFromDiskCache(String key) {
+    /**
+     * Waits until the disk cache is initialized. The disk cache itself is thread safe, so it is used without holding
+     * the lock and reads of different thumbnails do not wait for each other.
+     *
+     * @return disk cache, or null if it could not be opened
+     */
+    private static DiskLruImageCache waitForDiskCache() {
         synchronized (mThumbnailsDiskCacheLock) {
             // Wait while disk cache is started from background thread
             while (mThumbnailCacheStarting) {
@@ -238,11 +265,94 @@ public final class ThumbnailsCacheManager {
                     Log_OC.e(TAG, "Wait in mThumbnailsDiskCacheLock was interrupted", e);
                 }
             }
-            if (mThumbnailCache != null) {
-                return mThumbnailCache.getBitmap(key);
-            }
+            return mThumbnailCache;
         }
-        return null;
+    }
+
+    /**
+     * Looks up a bitmap in memory first and then on disk. Disk access blocks, so do not call this from the main
+     * thread; use {@link #getBitmapFromMemoryCache(String)} there.
+     */
+    public static Bitmap getBitmapFromDiskCache(String key) {
+        Bitmap bitmap = getBitmapFromMemoryCache(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        DiskLruImageCache diskCache = waitForDiskCache();
+        if (diskCache != null) {
+            bitmap = diskCache.getBitmap(key);
+        }
+
+        if (bitmap != null) {
+            mStatistics.onDiskHit();
+            addBitmapToMemoryCache(key, bitmap);
+        } else {
+            mStatistics.onMiss();
+        }
+        logStatistics();
+
+        return bitmap;
+    }
+
+    /**
+     * Non blocking lookup of a bitmap kept in memory, safe to call from the main thread.
+     *
+     * @return bitmap, or null if it is not in memory; it may still be in the disk cache
+     */
+    public static Bitmap getBitmapFromMemoryCache(String key) {
+        if (key == null) {
+            return null;
+        }
+
+        Bitmap bitmap = mMemoryCache.get(key);
+        if (bitmap != null && bitmap.isRecycled()) {
+            mMemoryCache.remove(key);
+            bitmap = null;
+        }
+
+        if (bitmap != null) {
+            mStatistics.onMemoryHit();
+            logStatistics();
+        }
+        return bitmap;
+    }
+
+    private static void addBitmapToMemoryCache(String key, Bitmap bitmap) {
+        if (key != null && bitmap != null && !key.startsWith(PREFIX_RESIZED_IMAGE)) {
+            mMemoryCache.put(key, bitmap);
+        }
+    }
+
+    /**
+     * Releases memory cached bitmaps and trims the disk cache,
+     * see {@link android.content.ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public static void trimMemoryCache(int level) {
+        DiskLruImageCache diskCache = mThumbnailCache;
+        if (diskCache != null) {
+            diskCache.flush();
+        }
+
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            mMemoryCache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            mMemoryCache.trimToSize(mMemoryCache.maxSize() / 2);
+        }
+    }
+
+    public static ThumbnailCacheStatistics getStatistics() {
+        return mStatistics;
+    }
+
+    private static void logStatistics() {
+        if (mStatistics.getRequests() % STATISTICS_LOG_INTERVAL == 0) {
+            Log_OC.d(TAG, "Thumbnail cache " + mStatistics);
+        }
+    }
+
+    private static int getMemoryCacheSize() {
+        return (int) (Runtime.getRuntime().maxMemory() / 1024 / MEMORY_CACHE_HEAP_FRACTION);
     }
 
     public static class ResizedImageGenerationTask extends AsyncTask<Object, Void, Bitmap> {
@@ -252,6 +362,7 @@ public final class ThumbnailsCacheManager {
         private WeakReference<ImageView> imageViewReference;
         private OCFile file;
         private ConnectivityService connectivityService;
+        private OwnCloudClient client;
 
 
         public ResizedImageGenerationTask(FileFragment fileFragment,
@@ -276,7 +387,7 @@ public final class ThumbnailsCacheManager {
             try {
                 if (account != null) {
                     OwnCloudAccount ocAccount = new OwnCloudAccount(account, MainApp.getAppContext());
-                    mClient = OwnCloudClientManagerFactory.getDefaultSingleton().getClientFor(ocAccount,
+                    client = OwnCloudClientManagerFactory.getDefaultSingleton().getClientFor(ocAccount,
                             MainApp.getAppContext());
                 }
 
@@ -327,20 +438,20 @@ public final class ThumbnailsCacheManager {
 
                 } else {
                     // Download thumbnail from server
-                    if (mClient != null) {
+                    if (client != null) {
                         GetMethod getMethod = null;
                         try {
-                            String uri = mClient.getBaseUri() + "/index.php/core/preview.png?file="
+                            String uri = client.getBaseUri() + "/index.php/core/preview.png?file="
                                     + URLEncoder.encode(file.getRemotePath())
                                     + "&x=" + pxW + "&y=" + pxH + "&a=1&mode=cover&forceIcon=0";
                             getMethod = new GetMethod(uri);
 
-                            int status = mClient.executeMethod(getMethod);
+                            int status = client.executeMethod(getMethod);
                             if (status == HttpStatus.SC_OK) {
                                 InputStream inputStream = getMethod.getResponseBodyAsStream();
                                 thumbnail = BitmapFactory.decodeStream(inputStream);
                             } else {
-                                mClient.exhaustResponse(getMethod.getResponseBodyAsStream());
+                                client.exhaustResponse(getMethod.getResponseBodyAsStream());
                             }
 
                                 // Handle PNG
@@ -421,13 +532,14 @@ public final class ThumbnailsCacheManager {
 
     public static class ThumbnailGenerationTask extends AsyncTask<ThumbnailGenerationTaskObject, Void, Bitmap> {
         private final WeakReference<ImageView> mImageViewReference;
-        private static Account mAccount;
+        private Account mAccount;
         private List<ThumbnailGenerationTask> mAsyncTasks;
         private Object mFile;
         private String mImageKey;
         private FileDataStorageManager mStorageManager;
         private GetMethod getMethod;
         private boolean roundedCorners = false;
+        private OwnCloudClient client;
 
         public ThumbnailGenerationTask(ImageView imageView, FileDataStorageManager storageManager, Account account)
                 throws IllegalArgumentException {
@@ -486,7 +598,7 @@ public final class ThumbnailsCacheManager {
                             mAccount,
                             MainApp.getAppContext()
                     );
-                    mClient = OwnCloudClientManagerFactory.getDefaultSingleton().
+                    client = OwnCloudClientManagerFactory.getDefaultSingleton().
                             getClientFor(ocAccount, MainApp.getAppContext());
                 }
 
@@ -550,11 +662,41 @@ public final class ThumbnailsCacheManager {
             }
         }
 
+        @Override
+        protected void onCancelled(Bitmap bitmap) {
+            if (mAsyncTasks != null) {
+                mAsyncTasks.remove(this);
+            }
+        }
+
         private Bitmap doThumbnailFromOCFileInBackground() {
-            Bitmap thumbnail;
             ServerFileInterface file = (ServerFileInterface) mFile;
             String imageKey = PREFIX_THUMBNAIL + file.getRemoteId();
 
+            CountDownLatch done = new CountDownLatch(1);
+            CountDownLatch running = mThumbnailsInProgress.putIfAbsent(imageKey, done);
+            if (running != null) {
+                // same thumbnail is generated by another task, use its result
+                try {
+                    running.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+                return getBitmapFromDiskCache(imageKey);
+            }
+
+            try {
+                return doThumbnailFromOCFileInBackground(file, imageKey);
+            } finally {
+                mThumbnailsInProgress.remove(imageKey);
+                done.countDown();
+            }
+        }
+
+        private Bitmap doThumbnailFromOCFileInBackground(ServerFileInterface file, String imageKey) {
+            Bitmap thumbnail;
+
             // Check disk cache in background thread
             thumbnail = getBitmapFromDiskCache(imageKey);
 
@@ -598,16 +740,16 @@ public final class ThumbnailsCacheManager {
                         thumbnail = ThumbnailUtils.extractThumbnail(resizedImage, pxW, pxH);
                     } else {
                         // Download thumbnail from server
-                        if (mClient != null) {
+                        if (client != null) {
                             getMethod = null;
                             try {
                                 // thumbnail
                                 String uri;
                                 if (file instanceof OCFile) {
-                                    uri = mClient.getBaseUri() + "/index.php/apps/files/api/v1/thumbnail/" +
+                                    uri = client.getBaseUri() + "/index.php/apps/files/api/v1/thumbnail/" +
                                             pxW + "/" + pxH + Uri.encode(file.getRemotePath(), "/");
                                 } else {
-                                    uri = mClient.getBaseUri() + "/index.php/apps/files_trashbin/preview?fileId=" +
+                                    uri = client.getBaseUri() + "/index.php/apps/files_trashbin/preview?fileId=" +
                                             file.getLocalId() + "&x=" + pxW + "&y=" + pxH;
                                 }
 
@@ -619,13 +761,14 @@ public final class ThumbnailsCacheManager {
                                 getMethod.setRequestHeader(RemoteOperation.OCS_API_HEADER,
                                         RemoteOperation.OCS_API_HEADER_VALUE);
 
-                                int status = mClient.executeMethod(getMethod);
+                                int status = client.executeMethod(getMethod);
                                 if (status == HttpStatus.SC_OK) {
+                                    mStatistics.onNetworkFetch();
                                     InputStream inputStream = getMethod.getResponseBodyAsStream();
                                     Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
                                     thumbnail = ThumbnailUtils.extractThumbnail(bitmap, pxW, pxH);
                                 } else {
-                                    mClient.exhaustResponse(getMethod.getResponseBodyAsStream());
+                                    client.exhaustResponse(getMethod.getResponseBodyAsStream());
                                 }
 
                                 // Handle PNG
@@ -839,6 +982,7 @@ public final class ThumbnailsCacheManager {
         private String mUserId;
         private String mServerName;
         private Context mContext;
+        private OwnCloudClient client;
 
 
         public AvatarGenerationTask(AvatarGenerationListener avatarGenerationListener,
@@ -867,7 +1011,7 @@ public final class ThumbnailsCacheManager {
             try {
                 if (mAccount != null) {
                     OwnCloudAccount ocAccount = new OwnCloudAccount(mAccount, mContext);
-                    mClient = OwnCloudClientManagerFactory.getDefaultSingleton().getClientFor(ocAccount, mContext);
+                    client = OwnCloudClientManagerFactory.getDefaultSingleton().getClientFor(ocAccount, mContext);
                 }
 
                 thumbnail = doAvatarInBackground();
@@ -920,11 +1064,11 @@ public final class ThumbnailsCacheManager {
             avatar = getBitmapFromDiskCache(avatarKey);
 
             // Download avatar from server, only if older than 60 min or avatar does not exist
-            if ((System.currentTimeMillis() - timestamp >= 60 * 60 * 1000 || avatar == null) && mClient != null) {
+            if ((System.currentTimeMillis() - timestamp >= 60 * 60 * 1000 || avatar == null) && client != null) {
                 GetMethod get = null;
                 try {
                     int px = getAvatarDimension();
-                    String uri = mClient.getBaseUri() + "/index.php/avatar/" + Uri.encode(mUserId) + "/" + px;
+                    String uri = client.getBaseUri() + "/index.php/avatar/" + Uri.encode(mUserId) + "/" + px;
                     Log_OC.d("Avatar", "URI: " + uri);
                     get = new GetMethod(uri);
 
@@ -934,7 +1078,7 @@ public final class ThumbnailsCacheManager {
                         get.setRequestHeader("If-None-Match", eTag);
                     }
 
-                    int status = mClient.executeMethod(get);
+                    int status = client.executeMethod(get);
 
                     // we are using eTag to download a new avatar only if it changed
                     switch (status) {
@@ -967,14 +1111,14 @@ public final class ThumbnailsCacheManager {
 
                         case HttpStatus.SC_NOT_MODIFIED:
                             // old avatar
-                            mClient.exhaustResponse(get.getResponseBodyAsStream());
+                            client.exhaustResponse(get.getResponseBodyAsStream());
                             arbitraryDataProvider.storeOrUpdateKeyValue(accountName,
                                                                         ThumbnailsCacheManager.AVATAR_TIMESTAMP,
                                                                         System.currentTimeMillis());
                             break;
                         default:
                             // everything else
-                            mClient.exhaustResponse(get.getResponseBodyAsStream());
+                            client.exhaustResponse(get.getResponseBodyAsStream());
                             break;
                     }
                 } catch (Exception e) {
@@ -1002,10 +1146,23 @@ public final class ThumbnailsCacheManager {
         }
     }
 
-    public static boolean cancelPotentialThumbnailWork(Object file, ImageView imageView) {
+    /**
+     * Cancels the thumbnail generation bound to a recycled view. Work that did not start yet is dropped, work that is
+     * running is completed so its result ends up in the cache.
+     */
+    public static void cancelThumbnailWork(ImageView imageView) {
         final ThumbnailGenerationTask bitmapWorkerTask = getBitmapWorkerTask(imageView);
 
         if (bitmapWorkerTask != null) {
+            bitmapWorkerTask.cancel(false);
+        }
+    }
+
+    public static boolean cancelPotentialThumbnailWork(Object file, ImageView imageView) {
+        final ThumbnailGenerationTask bitmapWorkerTask = getBitmapWorkerTask(imageView);
+
+        // a task cancelled on recycle will not deliver its result anymore
+        if (bitmapWorkerTask != null && !bitmapWorkerTask.isCancelled()) {
             final Object bitmapData = bitmapWorkerTask.mFile;
             // If bitmapData is not yet set or it differs from the new data
             if (bitmapData == null || !bitmapData.equals(file)) {
@@ -1236,7 +1393,7 @@ public final class ThumbnailsCacheManager {
         }
     }
 
-    public static void generateThumbnailFromOCFile(OCFile file) {
+    public static void generateThumbnailFromOCFile(OCFile file, OwnCloudClient client) {
         int pxW;
         int pxH;
         pxW = pxH = getThumbnailDimension();
@@ -1247,7 +1404,7 @@ public final class ThumbnailsCacheManager {
         try {
             Bitmap thumbnail = null;
 
-            String uri = mClient.getBaseUri() + "/index.php/apps/files/api/v1/thumbnail/" +
+            String uri = client.getBaseUri() + "/index.php/apps/files/api/v1/thumbnail/" +
                 pxW + "/" + pxH + Uri.encode(file.getRemotePath(), "/");
 
             Log_OC.d(TAG, "generate thumbnail: " + file.getFileName() + " URI: " + uri);
@@ -1257,13 +1414,14 @@ public final class ThumbnailsCacheManager {
             getMethod.setRequestHeader(RemoteOperation.OCS_API_HEADER,
                                        RemoteOperation.OCS_API_HEADER_VALUE);
 
-            int status = mClient.executeMethod(getMethod);
+            int status = client.executeMethod(getMethod);
             if (status == HttpStatus.SC_OK) {
+                mStatistics.onNetworkFetch();
                 InputStream inputStream = getMethod.getResponseBodyAsStream();
                 Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
                 thumbnail = ThumbnailUtils.extractThumbnail(bitmap, pxW, pxH);
             } else {
-                mClient.exhaustResponse(getMethod.getResponseBodyAsStream());
+                client.exhaustResponse(getMethod.getResponseBodyAsStream());
             }
 
             // Add thumbnail to cache
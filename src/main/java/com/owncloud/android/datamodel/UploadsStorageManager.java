@@ -24,13 +24,19 @@
 package com.owncloud.android.datamodel;
 
 import android.accounts.Account;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.RemoteException;
 
 import com.nextcloud.client.account.CurrentAccountProvider;
 import com.nextcloud.client.account.User;
+import com.owncloud.android.MainApp;
 import com.owncloud.android.db.OCUpload;
 import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
 import com.owncloud.android.db.UploadResult;
@@ -39,7 +45,11 @@ import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.operations.UploadFileOperation;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
 import java.util.Observable;
 
 import androidx.annotation.Nullable;
@@ -47,12 +57,44 @@ import androidx.annotation.Nullable;
 /**
  * Database helper for storing list of files to be uploaded, including status
  * information for each file.
+ *
+ * Observers are passed the ids of the stored, updated or removed uploads as long[], or null if the change is not
+ * limited to known uploads, e.g. when all uploads of an account were removed.
  */
 public class UploadsStorageManager extends Observable {
     private static final String TAG = UploadsStorageManager.class.getSimpleName();
 
     private static final String AND = " AND ";
     private static final int SINGLE_RESULT = 1;
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    private static final String CURRENT_AND_PENDING_FOR_ACCOUNT_SELECTION =
+        ProviderTableMeta.UPLOADS_STATUS + "==" + UploadStatus.UPLOAD_IN_PROGRESS.value +
+            " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
+            "==" + UploadResult.DELAYED_FOR_WIFI.getValue() +
+            " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
+            "==" + UploadResult.LOCK_FAILED.getValue() +
+            " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
+            "==" + UploadResult.DELAYED_FOR_CHARGING.getValue() +
+            " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
+            "==" + UploadResult.DELAYED_IN_POWER_SAVE_MODE.getValue() +
+            " AND " + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?";
+
+    private static final String FAILED_BUT_NOT_DELAYED_FOR_ACCOUNT_SELECTION =
+        ProviderTableMeta.UPLOADS_STATUS + "==" + UploadStatus.UPLOAD_FAILED.value +
+            AND + ProviderTableMeta.UPLOADS_LAST_RESULT +
+            "<>" + UploadResult.DELAYED_FOR_WIFI.getValue() +
+            AND + ProviderTableMeta.UPLOADS_LAST_RESULT +
+            "<>" + UploadResult.LOCK_FAILED.getValue() +
+            AND + ProviderTableMeta.UPLOADS_LAST_RESULT +
+            "<>" + UploadResult.DELAYED_FOR_CHARGING.getValue() +
+            AND + ProviderTableMeta.UPLOADS_LAST_RESULT +
+            "<>" + UploadResult.DELAYED_IN_POWER_SAVE_MODE.getValue() +
+            AND + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?";
+
+    private static final String FINISHED_FOR_ACCOUNT_SELECTION =
+        ProviderTableMeta.UPLOADS_STATUS + "==" + UploadStatus.UPLOAD_SUCCEEDED.value + AND +
+            ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?";
 
     private ContentResolver mContentResolver;
     private CurrentAccountProvider currentAccountProvider;
@@ -77,6 +119,53 @@ public class UploadsStorageManager extends Observable {
     public long storeUpload(OCUpload ocUpload) {
         Log_OC.v(TAG, "Inserting " + ocUpload.getLocalPath() + " with status=" + ocUpload.getUploadStatus());
 
+        Uri result = getDB().insert(ProviderTableMeta.CONTENT_URI_UPLOADS, createContentValues(ocUpload));
+
+        Log_OC.d(TAG, "storeUpload returns with: " + result + " for file: " + ocUpload.getLocalPath());
+        if (result == null) {
+            Log_OC.e(TAG, "Failed to insert item " + ocUpload.getLocalPath() + " into upload db.");
+            return -1;
+        } else {
+            long new_id = Long.parseLong(result.getPathSegments().get(1));
+            ocUpload.setUploadId(new_id);
+            notifyObserversNow(new_id);
+            return new_id;
+        }
+    }
+
+    /**
+     * Stores new uploads in a single transaction and notifies observers once.
+     *
+     * @param ocUploads uploads to store, their ids are set once stored
+     * @return true if all uploads were stored, false if none was
+     */
+    public boolean storeUploads(List<OCUpload> ocUploads) {
+        Log_OC.v(TAG, "Inserting " + ocUploads.size() + " uploads");
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(ocUploads.size());
+        for (OCUpload ocUpload : ocUploads) {
+            operations.add(ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI_UPLOADS)
+                               .withValues(createContentValues(ocUpload))
+                               .build());
+        }
+
+        long[] uploadIds = new long[ocUploads.size()];
+        try {
+            ContentProviderResult[] results = getDB().applyBatch(MainApp.getAuthority(), operations);
+            for (int i = 0; i < results.length; i++) {
+                uploadIds[i] = ContentUris.parseId(results[i].uri);
+                ocUploads.get(i).setUploadId(uploadIds[i]);
+            }
+        } catch (OperationApplicationException | RemoteException e) {
+            Log_OC.e(TAG, "Failed to insert " + ocUploads.size() + " uploads into upload db.", e);
+            return false;
+        }
+
+        notifyObserversNow(uploadIds);
+        return true;
+    }
+
+    private ContentValues createContentValues(OCUpload ocUpload) {
         ContentValues cv = new ContentValues();
         cv.put(ProviderTableMeta.UPLOADS_LOCAL_PATH, ocUpload.getLocalPath());
         cv.put(ProviderTableMeta.UPLOADS_REMOTE_PATH, ocUpload.getRemotePath());
@@ -91,18 +180,7 @@ public class UploadsStorageManager extends Observable {
         cv.put(ProviderTableMeta.UPLOADS_IS_WHILE_CHARGING_ONLY, ocUpload.isWhileChargingOnly() ? 1 : 0);
         cv.put(ProviderTableMeta.UPLOADS_IS_WIFI_ONLY, ocUpload.isUseWifiOnly() ? 1 : 0);
         cv.put(ProviderTableMeta.UPLOADS_FOLDER_UNLOCK_TOKEN, ocUpload.getFolderUnlockToken());
-        Uri result = getDB().insert(ProviderTableMeta.CONTENT_URI_UPLOADS, cv);
-
-        Log_OC.d(TAG, "storeUpload returns with: " + result + " for file: " + ocUpload.getLocalPath());
-        if (result == null) {
-            Log_OC.e(TAG, "Failed to insert item " + ocUpload.getLocalPath() + " into upload db.");
-            return -1;
-        } else {
-            long new_id = Long.parseLong(result.getPathSegments().get(1));
-            ocUpload.setUploadId(new_id);
-            notifyObserversNow();
-            return new_id;
-        }
+        return cv;
     }
 
     /**
@@ -134,12 +212,64 @@ public class UploadsStorageManager extends Observable {
         if (result != SINGLE_RESULT) {
             Log_OC.e(TAG, "Failed to update item " + ocUpload.getLocalPath() + " into upload db.");
         } else {
-            notifyObserversNow();
+            notifyObserversNow(ocUpload.getUploadId());
         }
 
         return result;
     }
 
+    /**
+     * Returns the chunks of an upload already confirmed by the server, as stored by
+     * {@link #updateUploadedChunks(long, String)}.
+     *
+     * @param id upload id.
+     * @return serialized chunks, null if none were stored.
+     */
+    @Nullable
+    public String getUploadedChunks(long id) {
+        String uploadedChunks = null;
+        Cursor c = getDB().query(
+                ProviderTableMeta.CONTENT_URI_UPLOADS,
+                new String[]{ProviderTableMeta.UPLOADS_UPLOADED_CHUNKS},
+                ProviderTableMeta._ID + "=?",
+                new String[]{String.valueOf(id)},
+                null
+        );
+
+        if (c != null) {
+            if (c.moveToFirst()) {
+                uploadedChunks = c.getString(c.getColumnIndex(ProviderTableMeta.UPLOADS_UPLOADED_CHUNKS));
+            }
+            c.close();
+        } else {
+            Log_OC.e(TAG, "Cursor is null");
+        }
+
+        return uploadedChunks;
+    }
+
+    /**
+     * Stores the chunks of an upload confirmed by the server, so an interrupted upload does not send them again.
+     * Only this column is written, observers are not notified as the uploads list does not show chunks.
+     *
+     * @param id             upload id.
+     * @param uploadedChunks serialized chunks, null to clear them.
+     */
+    public void updateUploadedChunks(long id, @Nullable String uploadedChunks) {
+        ContentValues cv = new ContentValues();
+        cv.put(ProviderTableMeta.UPLOADS_UPLOADED_CHUNKS, uploadedChunks);
+
+        int result = getDB().update(ProviderTableMeta.CONTENT_URI_UPLOADS,
+                cv,
+                ProviderTableMeta._ID + "=?",
+                new String[]{String.valueOf(id)}
+        );
+
+        if (result != SINGLE_RESULT) {
+            Log_OC.e(TAG, "Failed to update uploaded chunks of upload " + id);
+        }
+    }
+
     private int updateUploadInternal(Cursor c, UploadStatus status, UploadResult result, String remotePath,
                                      String localPath) {
 
@@ -221,6 +351,17 @@ public class UploadsStorageManager extends Observable {
         notifyObservers();
     }
 
+    /**
+     * Informs all observers that the given uploads were stored, updated or removed.
+     *
+     * @param uploadIds ids of the changed uploads, passed to the observers
+     */
+    private void notifyObserversNow(long... uploadIds) {
+        Log_OC.d(TAG, "notifyObserversNow for " + uploadIds.length + " uploads");
+        setChanged();
+        notifyObservers(uploadIds);
+    }
+
     /**
      * Remove an upload from the uploads list, known its target account and remote path.
      *
@@ -235,7 +376,7 @@ public class UploadsStorageManager extends Observable {
         );
         Log_OC.d(TAG, "delete returns " + result + " for upload " + upload);
         if (result > 0) {
-            notifyObserversNow();
+            notifyObserversNow(upload.getUploadId());
         }
         return result;
     }
@@ -284,14 +425,44 @@ public class UploadsStorageManager extends Observable {
     }
 
     private OCUpload[] getUploads(@Nullable String selection, @Nullable String... selectionArgs) {
+        return getUploads(ProviderTableMeta.CONTENT_URI_UPLOADS, selection, selectionArgs, null);
+    }
+
+    /**
+     * Get the uploads matching selection among the given uploads. Ids are queried in chunks, so their number does
+     * not exceed the maximum number of SQL variables.
+     */
+    private OCUpload[] getUploads(String selection, String[] selectionArgs, long... uploadIds) {
+        List<OCUpload> uploads = new ArrayList<>();
+
+        for (int start = 0; start < uploadIds.length; start += MAX_IDS_PER_QUERY) {
+            int end = Math.min(start + MAX_IDS_PER_QUERY, uploadIds.length);
+            String[] args = Arrays.copyOf(selectionArgs, selectionArgs.length + end - start);
+            StringBuilder placeholders = new StringBuilder();
+            for (int i = start; i < end; i++) {
+                args[selectionArgs.length + i - start] = String.valueOf(uploadIds[i]);
+                placeholders.append(i == start ? "?" : ",?");
+            }
+
+            Collections.addAll(uploads, getUploads("(" + selection + ")" + AND + ProviderTableMeta._ID +
+                                                       " IN (" + placeholders + ")", args));
+        }
+
+        return uploads.toArray(new OCUpload[0]);
+    }
+
+    private OCUpload[] getUploads(Uri uri,
+                                  @Nullable String selection,
+                                  @Nullable String[] selectionArgs,
+                                  @Nullable String sortOrder) {
         OCUpload[] list;
 
         Cursor c = getDB().query(
-                ProviderTableMeta.CONTENT_URI_UPLOADS,
+                uri,
                 null,
                 selection,
                 selectionArgs,
-                null
+                sortOrder
         );
 
         if (c != null) {
@@ -348,17 +519,16 @@ public class UploadsStorageManager extends Observable {
     public OCUpload[] getCurrentAndPendingUploadsForCurrentAccount() {
         User user = currentAccountProvider.getUser();
 
-        return getUploads(ProviderTableMeta.UPLOADS_STATUS + "==" + UploadStatus.UPLOAD_IN_PROGRESS.value +
-                        " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "==" + UploadResult.DELAYED_FOR_WIFI.getValue() +
-                        " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "==" + UploadResult.LOCK_FAILED.getValue() +
-                        " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "==" + UploadResult.DELAYED_FOR_CHARGING.getValue() +
-                        " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "==" + UploadResult.DELAYED_IN_POWER_SAVE_MODE.getValue() +
-                        " AND " + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?",
-                        user.getAccountName());
+        return getUploads(CURRENT_AND_PENDING_FOR_ACCOUNT_SELECTION, user.getAccountName());
+    }
+
+    /**
+     * Get the current and pending uploads of the current account among the given uploads.
+     */
+    public OCUpload[] getCurrentAndPendingUploadsForCurrentAccount(long[] uploadIds) {
+        User user = currentAccountProvider.getUser();
+
+        return getUploads(CURRENT_AND_PENDING_FOR_ACCOUNT_SELECTION, new String[]{user.getAccountName()}, uploadIds);
     }
 
     /**
@@ -382,8 +552,76 @@ public class UploadsStorageManager extends Observable {
     public OCUpload[] getFinishedUploadsForCurrentAccount() {
         User user = currentAccountProvider.getUser();
 
-        return getUploads(ProviderTableMeta.UPLOADS_STATUS + "==" + UploadStatus.UPLOAD_SUCCEEDED.value + AND +
-                              ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?", user.getAccountName());
+        return getUploads(FINISHED_FOR_ACCOUNT_SELECTION, user.getAccountName());
+    }
+
+    /**
+     * Get a page of the uploads of the current account which were successfully completed, the latest finished
+     * first, as sorted by {@link com.owncloud.android.db.OCUploadComparator}.
+     *
+     * @param after last upload of the previous page, null to get the first page
+     * @param limit maximum number of uploads to get
+     */
+    public OCUpload[] getFinishedUploadsForCurrentAccount(@Nullable OCUpload after, int limit) {
+        User user = currentAccountProvider.getUser();
+
+        String selection = FINISHED_FOR_ACCOUNT_SELECTION;
+        String[] selectionArgs;
+        if (after == null) {
+            selectionArgs = new String[]{user.getAccountName()};
+        } else {
+            selection += AND + "(" + ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP + "<?" +
+                " OR (" + ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP + "=?" + AND +
+                ProviderTableMeta._ID + ">?))";
+            String endTimestamp = String.valueOf(after.getUploadEndTimestamp());
+            selectionArgs = new String[]{user.getAccountName(), endTimestamp, endTimestamp,
+                String.valueOf(after.getUploadId())};
+        }
+
+        Uri uri = ProviderTableMeta.CONTENT_URI_UPLOADS.buildUpon()
+            .appendQueryParameter(ProviderTableMeta.QUERY_LIMIT, String.valueOf(limit))
+            .build();
+
+        return getUploads(uri,
+                          selection,
+                          selectionArgs,
+                          ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP + " DESC, " + ProviderTableMeta._ID + " ASC");
+    }
+
+    /**
+     * Get the uploads of the current account which were successfully completed among the given uploads.
+     */
+    public OCUpload[] getFinishedUploadsForCurrentAccount(long[] uploadIds) {
+        User user = currentAccountProvider.getUser();
+
+        return getUploads(FINISHED_FOR_ACCOUNT_SELECTION, new String[]{user.getAccountName()}, uploadIds);
+    }
+
+    /**
+     * Get the number of uploads of the current account which were successfully completed, without reading them.
+     */
+    public int getFinishedUploadsCountForCurrentAccount() {
+        User user = currentAccountProvider.getUser();
+
+        int count = 0;
+        Cursor c = getDB().query(
+                ProviderTableMeta.CONTENT_URI_UPLOADS,
+                new String[]{"count(*)"},
+                FINISHED_FOR_ACCOUNT_SELECTION,
+                new String[]{user.getAccountName()},
+                null
+        );
+
+        if (c != null) {
+            if (c.moveToFirst()) {
+                count = c.getInt(0);
+            }
+            c.close();
+        } else {
+            Log_OC.e(TAG, "Cursor is null");
+        }
+
+        return count;
     }
 
     /**
@@ -397,17 +635,18 @@ public class UploadsStorageManager extends Observable {
     public OCUpload[] getFailedButNotDelayedUploadsForCurrentAccount() {
         User user = currentAccountProvider.getUser();
 
-        return getUploads(ProviderTableMeta.UPLOADS_STATUS + "==" + UploadStatus.UPLOAD_FAILED.value +
-                        AND + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "<>" + UploadResult.DELAYED_FOR_WIFI.getValue() +
-                        AND + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "<>" + UploadResult.LOCK_FAILED.getValue() +
-                        AND + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "<>" + UploadResult.DELAYED_FOR_CHARGING.getValue() +
-                        AND + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "<>" + UploadResult.DELAYED_IN_POWER_SAVE_MODE.getValue() +
-                        AND + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?",
-                        user.getAccountName());
+        return getUploads(FAILED_BUT_NOT_DELAYED_FOR_ACCOUNT_SELECTION, user.getAccountName());
+    }
+
+    /**
+     * Get the failed but not delayed uploads of the current account among the given uploads.
+     */
+    public OCUpload[] getFailedButNotDelayedUploadsForCurrentAccount(long[] uploadIds) {
+        User user = currentAccountProvider.getUser();
+
+        return getUploads(FAILED_BUT_NOT_DELAYED_FOR_ACCOUNT_SELECTION,
+                          new String[]{user.getAccountName()},
+                          uploadIds);
     }
 
     /**
@@ -31,7 +31,7 @@ import com.owncloud.android.MainApp;
  */
 public class ProviderMeta {
     public static final String DB_NAME = "filelist";
-    public static final int DB_VERSION = 55;
+    public static final int DB_VERSION = 59;
 
     private ProviderMeta() {
         // No instance
@@ -39,6 +39,7 @@ public class ProviderMeta {
 
     static public class ProviderTableMeta implements BaseColumns {
         public static final String FILE_TABLE_NAME = "filelist";
+        public static final String FILE_NAME_INDEX_TABLE_NAME = "filelist_name_index";
         public static final String OCSHARES_TABLE_NAME = "ocshares";
         public static final String CAPABILITIES_TABLE_NAME = "capabilities";
         public static final String UPLOADS_TABLE_NAME = "list_of_uploads";
@@ -73,6 +74,13 @@ public class ProviderMeta {
         public static final Uri CONTENT_URI_VIRTUAL = Uri.parse(CONTENT_PREFIX + MainApp.getAuthority() + "/virtual");
         public static final Uri CONTENT_URI_FILESYSTEM = Uri.parse(CONTENT_PREFIX
                 + MainApp.getAuthority() + "/filesystem");
+        public static final Uri CONTENT_URI_FILE_SEARCH = Uri.parse(CONTENT_PREFIX
+                + MainApp.getAuthority() + "/file_search");
+
+        // query parameter of CONTENT_URI_FILE_SEARCH
+        public static final String FILE_SEARCH_MATCH = "match";
+        // query parameter limiting the number of rows returned by a query of any content URI
+        public static final String QUERY_LIMIT = "limit";
 
 
         public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.owncloud.file";
@@ -115,13 +123,13 @@ public class ProviderMeta {
         public static final String FILE_RICH_WORKSPACE = "rich_workspace";
 
         public static final String[] FILE_ALL_COLUMNS = {
-            _ID, FILE_PARENT, FILE_NAME, FILE_CREATION, FILE_MODIFIED,
+            _ID, FILE_PARENT, FILE_NAME, FILE_ENCRYPTED_NAME, FILE_CREATION, FILE_MODIFIED,
             FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA, FILE_CONTENT_LENGTH, FILE_CONTENT_TYPE, FILE_STORAGE_PATH,
             FILE_PATH, FILE_ACCOUNT_OWNER, FILE_LAST_SYNC_DATE, FILE_LAST_SYNC_DATE_FOR_DATA, FILE_ETAG,
             FILE_ETAG_ON_SERVER, FILE_SHARED_VIA_LINK, FILE_SHARED_WITH_SHAREE, FILE_PUBLIC_LINK, FILE_PERMISSIONS,
             FILE_REMOTE_ID, FILE_UPDATE_THUMBNAIL, FILE_IS_DOWNLOADING, FILE_ETAG_IN_CONFLICT, FILE_FAVORITE,
-            FILE_IS_ENCRYPTED, FILE_MOUNT_TYPE, FILE_HAS_PREVIEW, FILE_UNREAD_COMMENTS_COUNT, FILE_SHAREES,
-            FILE_RICH_WORKSPACE
+            FILE_IS_ENCRYPTED, FILE_MOUNT_TYPE, FILE_HAS_PREVIEW, FILE_UNREAD_COMMENTS_COUNT, FILE_OWNER_ID,
+            FILE_OWNER_DISPLAY_NAME, FILE_NOTE, FILE_SHAREES, FILE_RICH_WORKSPACE
         };
 
         public static final String FILE_DEFAULT_SORT_ORDER = FILE_NAME + " collate nocase asc";
@@ -217,6 +225,7 @@ public class ProviderMeta {
         public static final String UPLOADS_IS_WHILE_CHARGING_ONLY = "is_while_charging_only";
         public static final String UPLOADS_IS_WIFI_ONLY = "is_wifi_only";
         public static final String UPLOADS_FOLDER_UNLOCK_TOKEN = "folder_unlock_token";
+        public static final String UPLOADS_UPLOADED_CHUNKS = "uploaded_chunks";
 
         // Columns of synced folder table
         public static final String SYNCED_FOLDER_LOCAL_PATH = "local_path";
@@ -259,6 +268,16 @@ public class ProviderMeta {
         public static final String FILESYSTEM_FILE_SENT_FOR_UPLOAD = "upload_triggered";
         public static final String FILESYSTEM_SYNCED_FOLDER_ID = "syncedfolder_id";
         public static final String FILESYSTEM_CRC32 = "crc32";
+        public static final String FILESYSTEM_FILE_SIZE = "file_size";
+        public static final String FILESYSTEM_FILE_INODE = "inode";
+
+        // Indexes
+        public static final String FILE_ACCOUNT_OWNER_PATH_INDEX = "filelist_file_owner_path_index";
+        public static final String FILE_PARENT_INDEX = "filelist_parent_index";
+        public static final String FILE_ACCOUNT_OWNER_REMOTE_ID_INDEX = "filelist_file_owner_remote_id_index";
+        public static final String FILESYSTEM_SYNCED_FOLDER_LOCAL_PATH_INDEX =
+            "filesystem_syncedfolder_id_local_path_index";
+        public static final String UPLOADS_STATUS_ACCOUNT_NAME_INDEX = "list_of_uploads_status_account_name_index";
 
         private ProviderTableMeta() {
             // No instance
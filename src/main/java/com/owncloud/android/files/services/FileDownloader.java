@@ -31,11 +31,9 @@ import android.content.Intent;
 import android.graphics.BitmapFactory;
 import android.os.Binder;
 import android.os.Handler;
-import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
-import android.os.Message;
-import android.os.Process;
+import android.os.SystemClock;
 import android.util.Pair;
 
 import com.nextcloud.client.account.User;
@@ -55,6 +53,7 @@ import com.owncloud.android.lib.common.operations.RemoteOperationResult.ResultCo
 import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.lib.resources.files.FileUtils;
 import com.owncloud.android.operations.DownloadFileOperation;
+import com.owncloud.android.operations.ResumableDownloadFileRemoteOperation;
 import com.owncloud.android.ui.activity.FileActivity;
 import com.owncloud.android.ui.activity.FileDisplayActivity;
 import com.owncloud.android.ui.dialog.SendShareDialog;
@@ -67,11 +66,12 @@ import com.owncloud.android.utils.MimeTypeUtil;
 import com.owncloud.android.utils.ThemeUtils;
 
 import java.io.File;
-import java.util.AbstractList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.Map;
-import java.util.Vector;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 
 import javax.inject.Inject;
 
@@ -79,7 +79,7 @@ import androidx.core.app.NotificationCompat;
 import dagger.android.AndroidInjection;
 
 public class FileDownloader extends Service
-        implements OnDatatransferProgressListener, OnAccountsUpdateListener {
+        implements OnAccountsUpdateListener {
 
     public static final String EXTRA_USER = "USER";
     public static final String EXTRA_FILE = "FILE";
@@ -94,28 +94,34 @@ public class FileDownloader extends Service
     public static final String ACCOUNT_NAME = "ACCOUNT_NAME";
 
     private static final int FOREGROUND_SERVICE_ID = 412;
+    private static final String PROGRESS_NOTIFICATION_TAG = "download_slot_";
+    private static final int MAX_DOWNLOAD_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 2000;
 
     private static final String TAG = FileDownloader.class.getSimpleName();
 
-    private Looper mServiceLooper;
-    private ServiceHandler mServiceHandler;
+    private Handler mMainHandler;
+    private ExecutorService mExecutor;
+    private TransferScheduler mScheduler;
+    private int mLastStartId;
     private IBinder mBinder;
-    private OwnCloudClient mDownloadClient;
-    private Account mCurrentAccount;
-    private FileDataStorageManager mStorageManager;
 
     private IndexedForest<DownloadFileOperation> mPendingDownloads = new IndexedForest<>();
 
-    private DownloadFileOperation mCurrentDownload;
+    /**
+     * Downloads being performed, by their key in mPendingDownloads
+     */
+    private final ConcurrentMap<String, DownloadFileOperation> mCurrentDownloads = new ConcurrentHashMap<>();
+
+    /**
+     * Accounts whose temporary folder was cleared of outdated partial downloads since the service was created
+     */
+    private final Set<String> mCheckedTmpFolders = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
     private NotificationManager mNotificationManager;
-    private NotificationCompat.Builder mNotificationBuilder;
-    private int mLastPercent;
 
     private Notification mNotification;
 
-    private OCUpload conflictUpload;
-
     @Inject UserAccountManager accountManager;
     @Inject UploadsStorageManager uploadsStorageManager;
 
@@ -136,10 +142,14 @@ public class FileDownloader extends Service
         AndroidInjection.inject(this);
         Log_OC.d(TAG, "Creating service");
         mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-        HandlerThread thread = new HandlerThread("FileDownloaderThread", Process.THREAD_PRIORITY_BACKGROUND);
-        thread.start();
-        mServiceLooper = thread.getLooper();
-        mServiceHandler = new ServiceHandler(mServiceLooper, this);
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mExecutor = TransferScheduler.newExecutor("FileDownloaderThread");
+        mScheduler = new TransferScheduler(getResources().getInteger(R.integer.transfer_slots_per_account),
+                                           getResources().getBoolean(R.bool.transfer_smallest_first) ?
+                                               TransferScheduler.Order.SMALLEST_FIRST :
+                                               TransferScheduler.Order.REQUESTED,
+                                           mExecutor,
+                                           () -> mMainHandler.post(this::stopIfIdle));
         mBinder = new FileDownloaderBinder();
 
         NotificationCompat.Builder builder = new NotificationCompat.Builder(this).setContentTitle(
@@ -168,9 +178,7 @@ public class FileDownloader extends Service
     public void onDestroy() {
         Log_OC.v(TAG, "Destroying service");
         mBinder = null;
-        mServiceHandler = null;
-        mServiceLooper.quit();
-        mServiceLooper = null;
+        mExecutor.shutdown();
         mNotificationManager = null;
 
         // remove AccountsUpdatedListener
@@ -192,6 +200,7 @@ public class FileDownloader extends Service
         Log_OC.d(TAG, "Starting command with id " + startId);
 
         startForeground(FOREGROUND_SERVICE_ID, mNotification);
+        mLastStartId = startId;
 
         if (intent == null || !intent.hasExtra(EXTRA_USER) || !intent.hasExtra(EXTRA_FILE)) {
             Log_OC.e(TAG, "Not enough information provided in intent");
@@ -202,8 +211,7 @@ public class FileDownloader extends Service
             final String behaviour = intent.getStringExtra(OCFileListFragment.DOWNLOAD_BEHAVIOUR);
             String activityName = intent.getStringExtra(SendShareDialog.ACTIVITY_NAME);
             String packageName = intent.getStringExtra(SendShareDialog.PACKAGE_NAME);
-            this.conflictUpload = intent.getParcelableExtra(FileDownloader.EXTRA_CONFLICT_UPLOAD);
-            AbstractList<String> requestedDownloads = new Vector<String>();
+            final OCUpload conflictUpload = intent.getParcelableExtra(FileDownloader.EXTRA_CONFLICT_UPLOAD);
             try {
                 DownloadFileOperation newDownload = new DownloadFileOperation(user.toPlatformAccount(),
                                                                               file,
@@ -211,33 +219,42 @@ public class FileDownloader extends Service
                                                                               activityName,
                                                                               packageName,
                                                                               getBaseContext());
-                newDownload.addDatatransferProgressListener(this);
-                newDownload.addDatatransferProgressListener((FileDownloaderBinder) mBinder);
+                final FileDownloaderBinder binder = (FileDownloaderBinder) mBinder;
+                newDownload.addDatatransferProgressListener(
+                    (progressRate, totalTransferredSoFar, totalToTransfer, fileName) ->
+                        binder.onTransferProgress(file.getFileId(), progressRate, totalTransferredSoFar,
+                                                  totalToTransfer, fileName));
                 Pair<String, String> putResult = mPendingDownloads.putIfAbsent(user.getAccountName(),
                                                                                file.getRemotePath(),
                                                                                newDownload);
                 if (putResult != null) {
                     String downloadKey = putResult.first;
-                    requestedDownloads.add(downloadKey);
                     sendBroadcastNewDownload(newDownload, putResult.second);
+                    mScheduler.schedule(user.getAccountName(),
+                                        file.getFileLength(),
+                                        slot -> downloadFile(downloadKey, conflictUpload, slot));
                 }   // else, file already in the queue of downloads; don't repeat the request
 
             } catch (IllegalArgumentException e) {
                 Log_OC.e(TAG, "Not enough information provided in intent: " + e.getMessage());
                 return START_NOT_STICKY;
             }
-
-            if (requestedDownloads.size() > 0) {
-                Message msg = mServiceHandler.obtainMessage();
-                msg.arg1 = startId;
-                msg.obj = requestedDownloads;
-                mServiceHandler.sendMessage(msg);
-            }
         }
 
         return START_NOT_STICKY;
     }
 
+    /**
+     * Stops the service once all requested downloads are done, unless it was started again meanwhile.
+     */
+    private void stopIfIdle() {
+        if (mScheduler != null && mScheduler.isIdle()) {
+            Log_OC.d(TAG, "Stopping after command with id " + mLastStartId);
+            stopForeground(true);
+            stopSelf(mLastStartId);
+        }
+    }
+
     /**
      * Provides a binder object that clients can use to perform operations on the queue of downloads,
      * excepting the addition of new files.
@@ -261,9 +278,11 @@ public class FileDownloader extends Service
 
     @Override
     public void onAccountsUpdated(Account[] accounts) {
-         //review the current download and cancel it if its account doesn't exist
-        if (mCurrentDownload != null && !accountManager.exists(mCurrentDownload.getAccount())) {
-            mCurrentDownload.cancel();
+         //review the current downloads and cancel those whose account doesn't exist
+        for (DownloadFileOperation download : mCurrentDownloads.values()) {
+            if (!accountManager.exists(download.getAccount())) {
+                download.cancel();
+            }
         }
         // The rest of downloads are cancelled when they try to start
     }
@@ -274,15 +293,14 @@ public class FileDownloader extends Service
      * <p/>
      * It provides by itself the available operations.
      */
-    public class FileDownloaderBinder extends Binder implements OnDatatransferProgressListener {
+    public class FileDownloaderBinder extends Binder {
 
         /**
          * Map of listeners that will be reported about progress of downloads from a
          * {@link FileDownloaderBinder}
          * instance.
          */
-        private Map<Long, OnDatatransferProgressListener> mBoundListeners =
-                new HashMap<Long, OnDatatransferProgressListener>();
+        private Map<Long, OnDatatransferProgressListener> mBoundListeners = new ConcurrentHashMap<>();
 
 
         /**
@@ -298,10 +316,11 @@ public class FileDownloader extends Service
             if (download != null) {
                 download.cancel();
             } else {
-                if (mCurrentDownload != null && mCurrentAccount != null &&
-                        mCurrentDownload.getRemotePath().startsWith(file.getRemotePath()) &&
-                        account.name.equals(mCurrentAccount.name)) {
-                    mCurrentDownload.cancel();
+                for (DownloadFileOperation currentDownload : mCurrentDownloads.values()) {
+                    if (currentDownload.getRemotePath().startsWith(file.getRemotePath()) &&
+                            account.name.equals(currentDownload.getAccount().name)) {
+                        currentDownload.cancel();
+                    }
                 }
             }
         }
@@ -314,10 +333,10 @@ public class FileDownloader extends Service
         public void cancel(Account account) {
             Log_OC.d(TAG, "Account= " + account.name);
 
-            if (mCurrentDownload != null) {
-                Log_OC.d(TAG, "Current Download Account= " + mCurrentDownload.getAccount().name);
-                if (mCurrentDownload.getAccount().name.equals(account.name)) {
-                    mCurrentDownload.cancel();
+            for (DownloadFileOperation currentDownload : mCurrentDownloads.values()) {
+                Log_OC.d(TAG, "Current Download Account= " + currentDownload.getAccount().name);
+                if (currentDownload.getAccount().name.equals(account.name)) {
+                    currentDownload.cancel();
                 }
             }
             // Cancel pending downloads
@@ -380,11 +399,9 @@ public class FileDownloader extends Service
             }
         }
 
-        @Override
-        public void onTransferProgress(long progressRate, long totalTransferredSoFar,
-                                       long totalToTransfer, String fileName) {
-            OnDatatransferProgressListener boundListener =
-                    mBoundListeners.get(mCurrentDownload.getFile().getFileId());
+        private void onTransferProgress(long fileId, long progressRate, long totalTransferredSoFar,
+                                        long totalToTransfer, String fileName) {
+            OnDatatransferProgressListener boundListener = mBoundListeners.get(fileId);
             if (boundListener != null) {
                 boundListener.onTransferProgress(progressRate, totalTransferredSoFar,
                         totalToTransfer, fileName);
@@ -394,83 +411,59 @@ public class FileDownloader extends Service
     }
 
     /**
-     * Download worker. Performs the pending downloads in the order they were requested.
-
-     * Created with the Looper of a new thread, started in {@link FileUploader#onCreate()}.
-     */
-    private static class ServiceHandler extends Handler {
-        // don't make it a final class, and don't remove the static ; lint will warn about a
-        // possible memory leak
-        FileDownloader mService;
-
-        public ServiceHandler(Looper looper, FileDownloader service) {
-            super(looper);
-            if (service == null) {
-                throw new IllegalArgumentException("Received invalid NULL in parameter 'service'");
-            }
-            mService = service;
-        }
-
-        @Override
-        public void handleMessage(Message msg) {
-            @SuppressWarnings("unchecked")
-            AbstractList<String> requestedDownloads = (AbstractList<String>) msg.obj;
-            if (msg.obj != null) {
-                Iterator<String> it = requestedDownloads.iterator();
-                while (it.hasNext()) {
-                    String next = it.next();
-                    mService.downloadFile(next);
-                }
-            }
-            Log_OC.d(TAG, "Stopping after command with id " + msg.arg1);
-            mService.stopForeground(true);
-            mService.stopSelf(msg.arg1);
-        }
-    }
-
-
-    /**
-     * Core download method: requests a file to download and stores it.
+     * Core download method: requests a file to download and stores it. Called by {@link TransferScheduler} on a
+     * worker thread, several downloads can run at the same time.
      *
-     * @param downloadKey Key to access the download to perform, contained in mPendingDownloads
+     * @param downloadKey    Key to access the download to perform, contained in mPendingDownloads
+     * @param conflictUpload Upload to remove once the download succeeded, may be null
+     * @param slot           Slot of the download, identifies its progress notification
      */
-    private void downloadFile(String downloadKey) {
+    private void downloadFile(String downloadKey, OCUpload conflictUpload, int slot) {
 
-        mCurrentDownload = mPendingDownloads.get(downloadKey);
+        DownloadFileOperation download = mPendingDownloads.get(downloadKey);
 
-        if (mCurrentDownload != null) {
+        if (download != null) {
             // Detect if the account exists
-            if (accountManager.exists(mCurrentDownload.getAccount())) {
-                Log_OC.d(TAG, "Account " + mCurrentDownload.getAccount().name + " exists");
+            Account account = download.getAccount();
+            if (accountManager.exists(account)) {
+                Log_OC.d(TAG, "Account " + account.name + " exists");
+
+                // a download cancelled and requested again is scheduled twice, only one run performs it
+                if (mCurrentDownloads.putIfAbsent(downloadKey, download) != null) {
+                    Log_OC.d(TAG, "Download of " + download.getRemotePath() + " is already running");
+                    return;
+                }
+
+                if (mCheckedTmpFolders.add(account.name)) {
+                    ResumableDownloadFileRemoteOperation.deleteStalePartialDownloads(
+                        new File(download.getTmpFolder()));
+                }
 
-                notifyDownloadStart(mCurrentDownload);
+                ProgressNotification notification = new ProgressNotification(slot);
+                download.addDatatransferProgressListener(notification);
+                notifyDownloadStart(download, notification);
 
                 RemoteOperationResult downloadResult = null;
                 try {
-                    /// prepare client object to send the request to the ownCloud server
-                    if (mCurrentAccount == null ||
-                            !mCurrentAccount.equals(mCurrentDownload.getAccount())) {
-                        mCurrentAccount = mCurrentDownload.getAccount();
-                        mStorageManager = new FileDataStorageManager(
-                                mCurrentAccount,
-                                getContentResolver()
-                        );
-                    }   // else, reuse storage manager from previous operation
+                    FileDataStorageManager storageManager = new FileDataStorageManager(account, getContentResolver());
 
                     // always get client from client manager, to get fresh credentials in case
                     // of update
-                    OwnCloudAccount ocAccount = new OwnCloudAccount(
-                            mCurrentAccount,
-                            this
-                    );
-                    mDownloadClient = OwnCloudClientManagerFactory.getDefaultSingleton().
+                    OwnCloudAccount ocAccount = new OwnCloudAccount(account, this);
+                    OwnCloudClient client = OwnCloudClientManagerFactory.getDefaultSingleton().
                             getClientFor(ocAccount, this);
 
 
-                    /// perform the download
-                    downloadResult = mCurrentDownload.execute(mDownloadClient);
+                    /// perform the download, resuming it after connection failures
+                    downloadResult = download.execute(client);
+                    for (int attempt = 1; attempt < MAX_DOWNLOAD_ATTEMPTS && isRetryable(downloadResult); attempt++) {
+                        Log_OC.d(TAG, "Resuming download of " + download.getRemotePath() + " after " +
+                            downloadResult.getCode() + ", attempt " + (attempt + 1));
+                        SystemClock.sleep(RETRY_DELAY_MS * attempt);
+                        downloadResult = download.execute(client);
+                    }
                     if (downloadResult.isSuccess()) {
-                        saveDownloadedFile();
+                        saveDownloadedFile(download, storageManager);
                     }
 
                 } catch (Exception e) {
@@ -478,61 +471,77 @@ public class FileDownloader extends Service
                     downloadResult = new RemoteOperationResult(e);
 
                 } finally {
+                    download.removeDatatransferProgressListener(notification);
+                    mCurrentDownloads.remove(downloadKey);
                     Pair<DownloadFileOperation, String> removeResult = mPendingDownloads.removePayload(
-                        mCurrentAccount.name, mCurrentDownload.getRemotePath());
+                        account.name, download.getRemotePath());
 
                     /// notify result
-                    notifyDownloadResult(mCurrentDownload, downloadResult);
+                    notifyDownloadResult(download, downloadResult, notification, conflictUpload);
 
-                    sendBroadcastDownloadFinished(mCurrentDownload, downloadResult, removeResult.second);
+                    sendBroadcastDownloadFinished(download, downloadResult, removeResult.second);
                 }
 
             } else {
                 // Cancel the transfer
-                Log_OC.d(TAG, "Account " + mCurrentDownload.getAccount().toString() +
-                        " doesn't exist");
-                cancelDownloadsForAccount(mCurrentDownload.getAccount());
+                Log_OC.d(TAG, "Account " + account.toString() + " doesn't exist");
+                cancelDownloadsForAccount(account);
 
             }
         }
     }
 
+    /**
+     * @return true if the download failed because of the connection, so another attempt can resume it
+     */
+    private static boolean isRetryable(RemoteOperationResult result) {
+        switch (result.getCode()) {
+            case WRONG_CONNECTION:
+            case TIMEOUT:
+            case HOST_NOT_AVAILABLE:
+                return true;
+            default:
+                return false;
+        }
+    }
 
     /**
      * Updates the OC File after a successful download.
      *
      * TODO move to DownloadFileOperation
      */
-    private void saveDownloadedFile() {
-        OCFile file = mStorageManager.getFileById(mCurrentDownload.getFile().getFileId());
+    private void saveDownloadedFile(DownloadFileOperation download, FileDataStorageManager storageManager) {
+        OCFile file = storageManager.getFileById(download.getFile().getFileId());
         long syncDate = System.currentTimeMillis();
         file.setLastSyncDateForProperties(syncDate);
         file.setLastSyncDateForData(syncDate);
         file.setUpdateThumbnailNeeded(true);
-        file.setModificationTimestamp(mCurrentDownload.getModificationTimestamp());
-        file.setModificationTimestampAtLastSyncForData(mCurrentDownload.getModificationTimestamp());
-        file.setEtag(mCurrentDownload.getEtag());
-        file.setMimeType(mCurrentDownload.getMimeType());
-        file.setStoragePath(mCurrentDownload.getSavePath());
-        file.setFileLength(new File(mCurrentDownload.getSavePath()).length());
-        file.setRemoteId(mCurrentDownload.getFile().getRemoteId());
-        mStorageManager.saveFile(file);
-        if (MimeTypeUtil.isMedia(mCurrentDownload.getMimeType())) {
+        file.setModificationTimestamp(download.getModificationTimestamp());
+        file.setModificationTimestampAtLastSyncForData(download.getModificationTimestamp());
+        file.setEtag(download.getEtag());
+        file.setMimeType(download.getMimeType());
+        file.setStoragePath(download.getSavePath());
+        file.setFileLength(new File(download.getSavePath()).length());
+        file.setRemoteId(download.getFile().getRemoteId());
+        storageManager.saveFile(file);
+        if (MimeTypeUtil.isMedia(download.getMimeType())) {
             FileDataStorageManager.triggerMediaScan(file.getStoragePath());
         }
-        mStorageManager.saveConflict(file, null);
+        storageManager.saveConflict(file, null);
     }
 
     /**
      * Creates a status notification to show the download progress
      *
-     * @param download Download operation starting.
+     * @param download     Download operation starting.
+     * @param notification Progress notification of the slot the download runs in.
      */
-    private void notifyDownloadStart(DownloadFileOperation download) {
+    private void notifyDownloadStart(DownloadFileOperation download, ProgressNotification notification) {
         /// create status notification with a progress bar
-        mLastPercent = 0;
-        mNotificationBuilder = NotificationUtils.newNotificationBuilder(this);
-        mNotificationBuilder
+        notification.lastPercent = 0;
+        NotificationCompat.Builder builder = NotificationUtils.newNotificationBuilder(this);
+        notification.builder = builder;
+        builder
                 .setSmallIcon(R.drawable.notification_icon)
                 .setTicker(getString(R.string.downloader_download_in_progress_ticker))
                 .setContentTitle(getString(R.string.downloader_download_in_progress_ticker))
@@ -544,7 +553,7 @@ public class FileDownloader extends Service
                 );
 
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
-            mNotificationBuilder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_DOWNLOAD);
+            builder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_DOWNLOAD);
         }
 
         /// includes a pending intent in the notification showing the details view of the file
@@ -558,42 +567,60 @@ public class FileDownloader extends Service
         showDetailsIntent.putExtra(FileActivity.EXTRA_ACCOUNT, download.getAccount());
         showDetailsIntent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
 
-        mNotificationBuilder.setContentIntent(PendingIntent.getActivity(this, (int) System.currentTimeMillis(),
+        builder.setContentIntent(PendingIntent.getActivity(this, (int) System.currentTimeMillis(),
                 showDetailsIntent, 0));
 
-
-        if (mNotificationManager == null) {
-            mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-        }
-        if (mNotificationManager != null) {
-            mNotificationManager.notify(R.string.downloader_download_in_progress_ticker, mNotificationBuilder.build());
-        }
+        notification.show();
     }
 
 
     /**
-     * Callback method to update the progress bar in the status notification.
+     * Progress notification of one download slot; downloads running at the same time show separate notifications.
      */
-    @Override
-    public void onTransferProgress(long progressRate, long totalTransferredSoFar,
-                                   long totalToTransfer, String filePath) {
-        int percent = (int) (100.0 * ((double) totalTransferredSoFar) / ((double) totalToTransfer));
-        if (percent != mLastPercent) {
-            mNotificationBuilder.setProgress(100, percent, totalToTransfer < 0);
-            String fileName = filePath.substring(filePath.lastIndexOf(FileUtils.PATH_SEPARATOR) + 1);
-            String text = String.format(getString(R.string.downloader_download_in_progress_content), percent, fileName);
-            mNotificationBuilder.setContentText(text);
+    private class ProgressNotification implements OnDatatransferProgressListener {
+        private final String tag;
+        private NotificationCompat.Builder builder;
+        private int lastPercent;
+
+        ProgressNotification(int slot) {
+            tag = PROGRESS_NOTIFICATION_TAG + slot;
+        }
 
+        /**
+         * Callback method to update the progress bar in the status notification.
+         */
+        @Override
+        public void onTransferProgress(long progressRate, long totalTransferredSoFar,
+                                       long totalToTransfer, String filePath) {
+            int percent = (int) (100.0 * ((double) totalTransferredSoFar) / ((double) totalToTransfer));
+            if (percent != lastPercent) {
+                builder.setProgress(100, percent, totalToTransfer < 0);
+                String fileName = filePath.substring(filePath.lastIndexOf(FileUtils.PATH_SEPARATOR) + 1);
+                String text = String.format(getString(R.string.downloader_download_in_progress_content), percent,
+                                            fileName);
+                builder.setContentText(text);
+                show();
+            }
+            lastPercent = percent;
+        }
+
+        void show() {
             if (mNotificationManager == null) {
                 mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
             }
+            if (mNotificationManager != null) {
+                mNotificationManager.notify(tag, R.string.downloader_download_in_progress_ticker, builder.build());
+            }
+        }
 
+        void cancel() {
+            if (mNotificationManager == null) {
+                mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+            }
             if (mNotificationManager != null) {
-                mNotificationManager.notify(R.string.downloader_download_in_progress_ticker,
-                        mNotificationBuilder.build());
+                mNotificationManager.cancel(tag, R.string.downloader_download_in_progress_ticker);
             }
         }
-        mLastPercent = percent;
     }
 
 
@@ -602,16 +629,14 @@ public class FileDownloader extends Service
      *
      * @param downloadResult Result of the download operation.
      * @param download       Finished download operation
+     * @param notification   Progress notification of the download
+     * @param conflictUpload Upload to remove if the download succeeded, may be null
      */
     private void notifyDownloadResult(DownloadFileOperation download,
-                                      RemoteOperationResult downloadResult) {
-        if (mNotificationManager == null) {
-            mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-        }
-
-        if (mNotificationManager != null) {
-            mNotificationManager.cancel(R.string.downloader_download_in_progress_ticker);
-        }
+                                      RemoteOperationResult downloadResult,
+                                      ProgressNotification notification,
+                                      OCUpload conflictUpload) {
+        notification.cancel();
 
         if (!downloadResult.isCancelled()) {
             int tickerId = downloadResult.isSuccess() ?
@@ -621,7 +646,8 @@ public class FileDownloader extends Service
             tickerId = needsToUpdateCredentials ?
                     R.string.downloader_download_failed_credentials_error : tickerId;
 
-            mNotificationBuilder
+            NotificationCompat.Builder builder = notification.builder;
+            builder
                     .setTicker(getString(tickerId))
                     .setContentTitle(getString(tickerId))
                     .setAutoCancel(true)
@@ -629,25 +655,25 @@ public class FileDownloader extends Service
                     .setProgress(0, 0, false);
 
             if (needsToUpdateCredentials) {
-                configureUpdateCredentialsNotification(download.getAccount());
+                configureUpdateCredentialsNotification(builder, download.getAccount());
 
             } else {
                 // TODO put something smart in showDetailsIntent
                 Intent showDetailsIntent = new Intent();
-                mNotificationBuilder.setContentIntent(PendingIntent.getActivity(this, (int) System.currentTimeMillis(),
+                builder.setContentIntent(PendingIntent.getActivity(this, (int) System.currentTimeMillis(),
                         showDetailsIntent, 0));
             }
 
-            mNotificationBuilder.setContentText(ErrorMessageAdapter.getErrorCauseMessage(downloadResult,
+            builder.setContentText(ErrorMessageAdapter.getErrorCauseMessage(downloadResult,
                     download, getResources()));
 
             if (mNotificationManager != null) {
-                mNotificationManager.notify(tickerId, mNotificationBuilder.build());
+                mNotificationManager.notify(tickerId, builder.build());
 
                 // Remove success notification
                 if (downloadResult.isSuccess()) {
-                    if (this.conflictUpload != null) {
-                        uploadsStorageManager.removeUpload(this.conflictUpload);
+                    if (conflictUpload != null) {
+                        uploadsStorageManager.removeUpload(conflictUpload);
                     }
 
                     // Sleep 2 seconds, so show the notification before remove it
@@ -658,7 +684,7 @@ public class FileDownloader extends Service
         }
     }
 
-    private void configureUpdateCredentialsNotification(Account account) {
+    private void configureUpdateCredentialsNotification(NotificationCompat.Builder builder, Account account) {
         // let the user update credentials with one click
         Intent updateAccountCredentials = new Intent(this, AuthenticatorActivity.class);
         updateAccountCredentials.putExtra(AuthenticatorActivity.EXTRA_ACCOUNT, account);
@@ -669,7 +695,7 @@ public class FileDownloader extends Service
         updateAccountCredentials.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
         updateAccountCredentials.addFlags(Intent.FLAG_ACTIVITY_EXCLUDE_FROM_RECENTS);
         updateAccountCredentials.addFlags(Intent.FLAG_FROM_BACKGROUND);
-        mNotificationBuilder.setContentIntent(PendingIntent.getActivity(this, (int) System.currentTimeMillis(),
+        builder.setContentIntent(PendingIntent.getActivity(this, (int) System.currentTimeMillis(),
                 updateAccountCredentials, PendingIntent.FLAG_ONE_SHOT));
     }
 
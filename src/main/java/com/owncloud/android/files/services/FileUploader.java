@@ -39,12 +39,9 @@ import android.graphics.BitmapFactory;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
-import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
-import android.os.Message;
 import android.os.Parcelable;
-import android.os.Process;
 import android.util.Pair;
 
 import com.evernote.android.job.JobRequest;
@@ -79,9 +76,11 @@ import com.owncloud.android.utils.ThemeUtils;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -102,9 +101,10 @@ import dagger.android.AndroidInjection;
  * are obeyed.
  */
 public class FileUploader extends Service
-    implements OnDatatransferProgressListener, OnAccountsUpdateListener, UploadFileOperation.OnRenameListener {
+    implements OnAccountsUpdateListener {
 
     private static final String TAG = FileUploader.class.getSimpleName();
+    private static final String PROGRESS_NOTIFICATION_TAG = "upload_slot_";
 
     private static final String UPLOADS_ADDED_MESSAGE = "UPLOADS_ADDED";
     private static final String UPLOAD_START_MESSAGE = "UPLOAD_START";
@@ -171,12 +171,17 @@ public class FileUploader extends Service
 
 
     private Notification mNotification;
-    private Looper mServiceLooper;
-    private ServiceHandler mServiceHandler;
+    private Handler mMainHandler;
+    private ExecutorService mExecutor;
+    private TransferScheduler mScheduler;
+    private int mSlotsPerAccount;
+    private int mLastStartId;
     private IBinder mBinder;
-    private OwnCloudClient mUploadClient;
-    private Account mCurrentAccount;
-    private FileDataStorageManager mStorageManager;
+
+    /**
+     * Uploads into encrypted folders lock the metadata of the folder, they are performed one at a time.
+     */
+    private final Object mEncryptedUploadLock = new Object();
 
     @Inject UserAccountManager accountManager;
     @Inject UploadsStorageManager mUploadsStorageManager;
@@ -186,20 +191,16 @@ public class FileUploader extends Service
     private IndexedForest<UploadFileOperation> mPendingUploads = new IndexedForest<>();
 
     /**
-     * {@link UploadFileOperation} object of ongoing upload. Can be null. Note: There can only be one concurrent
-     * upload!
+     * {@link UploadFileOperation} objects of ongoing uploads, by their key in mPendingUploads.
      */
-    private UploadFileOperation mCurrentUpload;
+    private final ConcurrentMap<String, UploadFileOperation> mCurrentUploads = new ConcurrentHashMap<>();
 
     private NotificationManager mNotificationManager;
-    private NotificationCompat.Builder mNotificationBuilder;
-    private int mLastPercent;
 
 
-    @Override
-    public void onRenameUpload() {
-        mUploadsStorageManager.updateDatabaseUploadStart(mCurrentUpload);
-        sendBroadcastUploadStarted(mCurrentUpload);
+    private void onRenameUpload(UploadFileOperation upload) {
+        mUploadsStorageManager.updateDatabaseUploadStart(upload);
+        sendBroadcastUploadStarted(upload);
     }
 
     /**
@@ -211,10 +212,15 @@ public class FileUploader extends Service
         AndroidInjection.inject(this);
         Log_OC.d(TAG, "Creating service");
         mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-        HandlerThread thread = new HandlerThread("FileUploaderThread", Process.THREAD_PRIORITY_BACKGROUND);
-        thread.start();
-        mServiceLooper = thread.getLooper();
-        mServiceHandler = new ServiceHandler(mServiceLooper, this);
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mExecutor = TransferScheduler.newExecutor("FileUploaderThread");
+        mSlotsPerAccount = getResources().getInteger(R.integer.transfer_slots_per_account);
+        mScheduler = new TransferScheduler(mSlotsPerAccount,
+                                           getResources().getBoolean(R.bool.transfer_smallest_first) ?
+                                               TransferScheduler.Order.SMALLEST_FIRST :
+                                               TransferScheduler.Order.REQUESTED,
+                                           mExecutor,
+                                           () -> mMainHandler.post(this::stopIfIdle));
         mBinder = new FileUploaderBinder();
 
         NotificationCompat.Builder builder = new NotificationCompat.Builder(this).setContentTitle(
@@ -245,8 +251,11 @@ public class FileUploader extends Service
      * Service clean-up when restarted after being killed
      */
     private void resurrection() {
-        // remove stucked notification
-        mNotificationManager.cancel(R.string.uploader_upload_in_progress_ticker);
+        // remove stucked notifications, one for every slot that could have been used
+        int slots = mSlotsPerAccount * Math.max(1, accountManager.getAccounts().length);
+        for (int slot = 0; slot < slots; slot++) {
+            mNotificationManager.cancel(PROGRESS_NOTIFICATION_TAG + slot, R.string.uploader_upload_in_progress_ticker);
+        }
     }
 
     /**
@@ -257,9 +266,7 @@ public class FileUploader extends Service
     public void onDestroy() {
         Log_OC.v(TAG, "Destroying service");
         mBinder = null;
-        mServiceHandler = null;
-        mServiceLooper.quit();
-        mServiceLooper = null;
+        mExecutor.shutdown();
         mNotificationManager = null;
 
         // remove AccountsUpdatedListener
@@ -280,6 +287,7 @@ public class FileUploader extends Service
         Log_OC.d(TAG, "Starting command with id " + startId);
 
         startForeground(FOREGROUND_SERVICE_ID, mNotification);
+        mLastStartId = startId;
 
         if (intent == null) {
             Log_OC.e(TAG, "Intent is null");
@@ -321,15 +329,30 @@ public class FileUploader extends Service
         }
 
         if (requestedUploads.size() > 0) {
-            Message msg = mServiceHandler.obtainMessage();
-            msg.arg1 = startId;
-            msg.obj = requestedUploads;
-            mServiceHandler.sendMessage(msg);
+            for (String uploadKey : requestedUploads) {
+                UploadFileOperation upload = mPendingUploads.get(uploadKey);
+                if (upload != null) {
+                    mScheduler.schedule(account.name,
+                                        upload.getFile().getFileLength(),
+                                        slot -> uploadFile(uploadKey, slot));
+                }
+            }
             sendBroadcastUploadsAdded();
         }
         return Service.START_NOT_STICKY;
     }
 
+    /**
+     * Stops the service once all requested uploads are done, unless it was started again meanwhile.
+     */
+    private void stopIfIdle() {
+        if (mScheduler != null && mScheduler.isIdle()) {
+            Log_OC.d(TAG, "Stopping command after id " + mLastStartId);
+            stopForeground(true);
+            stopSelf(mLastStartId);
+        }
+    }
+
     /**
      * Gather and start new uploads.
      *
@@ -398,11 +421,16 @@ public class FileUploader extends Service
         int localAction = intent.getIntExtra(KEY_LOCAL_BEHAVIOUR, LOCAL_BEHAVIOUR_FORGET);
         boolean isCreateRemoteFolder = intent.getBooleanExtra(KEY_CREATE_REMOTE_FOLDER, false);
         int createdBy = intent.getIntExtra(KEY_CREATED_BY, UploadFileOperation.CREATED_BY_USER);
-        try {
-            for (OCFile file : files) {
+        List<OCUpload> newOCUploads = new ArrayList<>(files.length);
+        List<UploadFileOperation> newUploads = new ArrayList<>(files.length);
+        // a file that cannot be uploaded must not drop the other files of the request
+        for (OCFile file : files) {
+            try {
                 startNewUpload(
                     account,
                     requestedUploads,
+                    newOCUploads,
+                    newUploads,
                     onWifiOnly,
                     whileChargingOnly,
                     nameCollisionPolicy,
@@ -411,26 +439,44 @@ public class FileUploader extends Service
                     createdBy,
                     file
                 );
+            } catch (IllegalArgumentException e) {
+                Log_OC.e(TAG, "Not enough information provided in intent for " + file.getRemotePath() + ": " +
+                    e.getMessage());
+            } catch (IllegalStateException e) {
+                Log_OC.e(TAG, "Bad information provided in intent for " + file.getRemotePath() + ": " +
+                    e.getMessage());
+            } catch (Exception e) {
+                Log_OC.e(TAG, "Unexpected exception while processing upload of " + file.getRemotePath(), e);
             }
-        } catch (IllegalArgumentException e) {
-            Log_OC.e(TAG, "Not enough information provided in intent: " + e.getMessage());
-            return START_NOT_STICKY;
-        } catch (IllegalStateException e) {
-            Log_OC.e(TAG, "Bad information provided in intent: " + e.getMessage());
-            return START_NOT_STICKY;
-        } catch (Exception e) {
-            Log_OC.e(TAG, "Unexpected exception while processing upload intent", e);
-            return START_NOT_STICKY;
         }
+        storeNewUploads(newOCUploads, newUploads);
         return null;
     }
 
     /**
-     * Start a new {@link UploadFileOperation}.
+     * Saves new uploads in database in a single transaction, so many uploads do not update observers of the uploads
+     * list one by one.
+     */
+    private void storeNewUploads(List<OCUpload> ocUploads, List<UploadFileOperation> uploads) {
+        if (ocUploads.isEmpty()) {
+            return;
+        }
+
+        mUploadsStorageManager.storeUploads(ocUploads);
+        for (int i = 0; i < uploads.size(); i++) {
+            uploads.get(i).setOCUploadId(ocUploads.get(i).getUploadId());
+        }
+    }
+
+    /**
+     * Start a new {@link UploadFileOperation}. The upload is added to newOCUploads and newUploads to be saved in
+     * database, unless it is pending already.
      */
     private void startNewUpload(
         Account account,
         List<String> requestedUploads,
+        List<OCUpload> newOCUploads,
+        List<UploadFileOperation> newUploads,
         boolean onWifiOnly,
         boolean whileChargingOnly,
         NameCollisionPolicy nameCollisionPolicy,
@@ -466,10 +512,7 @@ public class FileUploader extends Service
         if (isCreateRemoteFolder) {
             newUpload.setRemoteFolderToBeCreated();
         }
-        newUpload.addDataTransferProgressListener(this);
-        newUpload.addDataTransferProgressListener((FileUploaderBinder) mBinder);
-
-        newUpload.addRenameUploadListener(this);
+        addListeners(newUpload);
 
         Pair<String, String> putResult = mPendingUploads.putIfAbsent(
             account.name,
@@ -479,13 +522,20 @@ public class FileUploader extends Service
 
         if (putResult != null) {
             requestedUploads.add(putResult.first);
-
-            // Save upload in database
-            long id = mUploadsStorageManager.storeUpload(ocUpload);
-            newUpload.setOCUploadId(id);
+            newOCUploads.add(ocUpload);
+            newUploads.add(newUpload);
         }
     }
 
+    private void addListeners(UploadFileOperation upload) {
+        final FileUploaderBinder binder = (FileUploaderBinder) mBinder;
+        upload.addDataTransferProgressListener(
+            (progressRate, totalTransferredSoFar, totalToTransfer, fileName) ->
+                binder.onTransferProgress(upload, progressRate, totalTransferredSoFar, totalToTransfer, fileName));
+
+        upload.addRenameUploadListener(() -> onRenameUpload(upload));
+    }
+
     /**
      * Retries a list of uploads.
      */
@@ -511,10 +561,7 @@ public class FileUploader extends Service
             whileChargingOnly
         );
 
-        newUpload.addDataTransferProgressListener(this);
-        newUpload.addDataTransferProgressListener((FileUploaderBinder) mBinder);
-
-        newUpload.addRenameUploadListener(this);
+        addListeners(newUpload);
 
         Pair<String, String> putResult = mPendingUploads.putIfAbsent(
             account.name,
@@ -553,96 +600,103 @@ public class FileUploader extends Service
 
     @Override
     public void onAccountsUpdated(Account[] accounts) {
-        // Review current upload, and cancel it if its account doesn't exist
-        if (mCurrentUpload != null && !accountManager.exists(mCurrentUpload.getAccount())) {
-            mCurrentUpload.cancel();
+        // Review current uploads, and cancel those whose account doesn't exist
+        for (UploadFileOperation upload : mCurrentUploads.values()) {
+            if (!accountManager.exists(upload.getAccount())) {
+                upload.cancel();
+            }
         }
         // The rest of uploads are cancelled when they try to start
     }
 
     /**
-     * Core upload method: sends the file(s) to upload
+     * Core upload method: sends the file(s) to upload. Called by {@link TransferScheduler} on a worker thread,
+     * several uploads can run at the same time.
      *
      * @param uploadKey Key to access the upload to perform, contained in mPendingUploads
+     * @param slot      Slot of the upload, identifies its progress notification
      */
-    public void uploadFile(String uploadKey) {
-        mCurrentUpload = mPendingUploads.get(uploadKey);
+    private void uploadFile(String uploadKey, int slot) {
+        UploadFileOperation upload = mPendingUploads.get(uploadKey);
+
+        if (upload != null) {
+            Account account = upload.getAccount();
 
-        if (mCurrentUpload != null) {
             /// Check account existence
-            if (!accountManager.exists(mCurrentUpload.getAccount())) {
-                Log_OC.w(TAG, "Account " + mCurrentUpload.getAccount().name +
-                    " does not exist anymore -> cancelling all its uploads");
-                cancelUploadsForAccount(mCurrentUpload.getAccount());
+            if (!accountManager.exists(account)) {
+                Log_OC.w(TAG, "Account " + account.name + " does not exist anymore -> cancelling all its uploads");
+                cancelUploadsForAccount(account);
                 return;
             }
 
-            /// OK, let's upload
-            mUploadsStorageManager.updateDatabaseUploadStart(mCurrentUpload);
+            /// OK, let's upload; an upload cancelled and requested again is scheduled twice, only one run performs it
+            if (mCurrentUploads.putIfAbsent(uploadKey, upload) != null) {
+                Log_OC.d(TAG, "Upload of " + upload.getRemotePath() + " is already running");
+                return;
+            }
+            mUploadsStorageManager.updateDatabaseUploadStart(upload);
 
-            notifyUploadStart(mCurrentUpload);
+            ProgressNotification notification = new ProgressNotification(slot);
+            upload.addDataTransferProgressListener(notification);
+            notifyUploadStart(upload, notification);
 
-            sendBroadcastUploadStarted(mCurrentUpload);
+            sendBroadcastUploadStarted(upload);
 
             RemoteOperationResult uploadResult = null;
+            FileDataStorageManager storageManager = new FileDataStorageManager(account, getContentResolver());
 
             try {
-                /// prepare client object to send the request to the ownCloud server
-                if (mCurrentAccount == null || !mCurrentAccount.equals(mCurrentUpload.getAccount())) {
-                    mCurrentAccount = mCurrentUpload.getAccount();
-                    mStorageManager = new FileDataStorageManager(mCurrentAccount, getContentResolver());
-                }   // else, reuse storage manager from previous operation
-
                 // always get client from client manager, to get fresh credentials in case of update
-                OwnCloudAccount ocAccount = new OwnCloudAccount(mCurrentAccount, this);
-                mUploadClient = OwnCloudClientManagerFactory.getDefaultSingleton().getClientFor(ocAccount, this);
+                OwnCloudAccount ocAccount = new OwnCloudAccount(account, this);
+                OwnCloudClient client = OwnCloudClientManagerFactory.getDefaultSingleton().getClientFor(ocAccount,
+                                                                                                        this);
 
-
-//                // If parent folder is encrypted, upload file encrypted
-//                OCFile parent = mStorageManager.getFileByPath(mCurrentUpload.getFile().getParentRemotePath());
-
-//                if (parent.isEncrypted()) {
-//                    UploadEncryptedFileOperation uploadEncryptedFileOperation =
-//                            new UploadEncryptedFileOperation(parent, mCurrentUpload);
-//
-//                    uploadResult = uploadEncryptedFileOperation.execute(mUploadClient, mStorageManager);
-//                } else {
                 /// perform the regular upload
-                uploadResult = mCurrentUpload.execute(mUploadClient, mStorageManager);
-//                }
+                OCFile parent = storageManager.getFileByPath(upload.getFile().getParentRemotePath());
+                if (parent != null && parent.isEncrypted()) {
+                    synchronized (mEncryptedUploadLock) {
+                        uploadResult = upload.execute(client, storageManager);
+                    }
+                } else {
+                    uploadResult = upload.execute(client, storageManager);
+                }
             } catch (Exception e) {
                 Log_OC.e(TAG, "Error uploading", e);
                 uploadResult = new RemoteOperationResult(e);
             } finally {
+                upload.removeDataTransferProgressListener(notification);
+                mCurrentUploads.remove(uploadKey);
+
                 Pair<UploadFileOperation, String> removeResult;
-                if (mCurrentUpload.wasRenamed()) {
+                if (upload.wasRenamed()) {
                     removeResult = mPendingUploads.removePayload(
-                        mCurrentAccount.name,
-                        mCurrentUpload.getOldFile().getRemotePath()
+                        account.name,
+                        upload.getOldFile().getRemotePath()
                     );
-                    // TODO: grant that name is also updated for mCurrentUpload.getOCUploadId
+                    // TODO: grant that name is also updated for upload.getOCUploadId
 
                 } else {
-                    removeResult = mPendingUploads.removePayload(mCurrentAccount.name,
-                                                                 mCurrentUpload.getDecryptedRemotePath());
+                    removeResult = mPendingUploads.removePayload(account.name, upload.getDecryptedRemotePath());
                 }
 
-                mUploadsStorageManager.updateDatabaseUploadResult(uploadResult, mCurrentUpload);
+                mUploadsStorageManager.updateDatabaseUploadResult(uploadResult, upload);
 
                 /// notify result
-                notifyUploadResult(mCurrentUpload, uploadResult);
+                notification.cancel();
+                notifyUploadResult(upload, uploadResult);
 
-                sendBroadcastUploadFinished(mCurrentUpload, uploadResult, removeResult.second);
+                sendBroadcastUploadFinished(upload, uploadResult, removeResult.second);
             }
 
             // generate new Thumbnail
             final ThumbnailsCacheManager.ThumbnailGenerationTask task =
-                new ThumbnailsCacheManager.ThumbnailGenerationTask(mStorageManager, mCurrentAccount);
+                new ThumbnailsCacheManager.ThumbnailGenerationTask(storageManager, account);
 
-            File file = new File(mCurrentUpload.getOriginalStoragePath());
-            String remoteId = mCurrentUpload.getFile().getRemoteId();
+            File file = new File(upload.getOriginalStoragePath());
+            String remoteId = upload.getFile().getRemoteId();
 
-            task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, remoteId));
+            task.executeOnExecutor(ThumbnailsCacheManager.THUMBNAIL_EXECUTOR,
+                                   new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, remoteId));
         }
     }
 
@@ -650,13 +704,15 @@ public class FileUploader extends Service
     /**
      * Creates a status notification to show the upload progress
      *
-     * @param upload Upload operation starting.
+     * @param upload       Upload operation starting.
+     * @param notification Progress notification of the slot the upload runs in.
      */
-    private void notifyUploadStart(UploadFileOperation upload) {
+    private void notifyUploadStart(UploadFileOperation upload, ProgressNotification notification) {
         // / create status notification with a progress bar
-        mLastPercent = 0;
-        mNotificationBuilder = NotificationUtils.newNotificationBuilder(this);
-        mNotificationBuilder
+        notification.lastPercent = 0;
+        NotificationCompat.Builder builder = NotificationUtils.newNotificationBuilder(this);
+        notification.builder = builder;
+        builder
             .setOngoing(true)
             .setSmallIcon(R.drawable.notification_icon)
             .setTicker(getString(R.string.uploader_upload_in_progress_ticker))
@@ -667,7 +723,7 @@ public class FileUploader extends Service
             );
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            mNotificationBuilder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_UPLOAD);
+            builder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_UPLOAD);
         }
 
         /// includes a pending intent in the notification showing the details
@@ -675,39 +731,63 @@ public class FileUploader extends Service
         showUploadListIntent.putExtra(FileActivity.EXTRA_FILE, upload.getFile());
         showUploadListIntent.putExtra(FileActivity.EXTRA_ACCOUNT, upload.getAccount());
         showUploadListIntent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
-        mNotificationBuilder.setContentIntent(PendingIntent.getActivity(this, (int) System.currentTimeMillis(),
-                                                                        showUploadListIntent, 0));
+        builder.setContentIntent(PendingIntent.getActivity(this, (int) System.currentTimeMillis(),
+                                                           showUploadListIntent, 0));
 
         if (!upload.isInstantPicture() && !upload.isInstantVideo()) {
-            if (mNotificationManager == null) {
-                mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-            }
-
-            mNotificationManager.notify(R.string.uploader_upload_in_progress_ticker, mNotificationBuilder.build());
+            notification.show();
         }   // else wait until the upload really start (onTransferProgress is called), so that if it's discarded
         // due to lack of Wifi, no notification is shown
         // TODO generalize for automated uploads
     }
 
     /**
-     * Callback method to update the progress bar in the status notification
+     * Progress notification of one upload slot; uploads running at the same time show separate notifications.
      */
-    @Override
-    public void onTransferProgress(
-        long progressRate,
-        long totalTransferredSoFar,
-        long totalToTransfer,
-        String filePath
-    ) {
-        int percent = (int) (100.0 * ((double) totalTransferredSoFar) / ((double) totalToTransfer));
-        if (percent != mLastPercent) {
-            mNotificationBuilder.setProgress(100, percent, false);
-            String fileName = filePath.substring(filePath.lastIndexOf(FileUtils.PATH_SEPARATOR) + 1);
-            String text = String.format(getString(R.string.uploader_upload_in_progress_content), percent, fileName);
-            mNotificationBuilder.setContentText(text);
-            mNotificationManager.notify(R.string.uploader_upload_in_progress_ticker, mNotificationBuilder.build());
+    private class ProgressNotification implements OnDatatransferProgressListener {
+        private final String tag;
+        private NotificationCompat.Builder builder;
+        private int lastPercent;
+
+        ProgressNotification(int slot) {
+            tag = PROGRESS_NOTIFICATION_TAG + slot;
+        }
+
+        /**
+         * Callback method to update the progress bar in the status notification
+         */
+        @Override
+        public void onTransferProgress(
+            long progressRate,
+            long totalTransferredSoFar,
+            long totalToTransfer,
+            String filePath
+        ) {
+            int percent = (int) (100.0 * ((double) totalTransferredSoFar) / ((double) totalToTransfer));
+            if (percent != lastPercent) {
+                builder.setProgress(100, percent, false);
+                String fileName = filePath.substring(filePath.lastIndexOf(FileUtils.PATH_SEPARATOR) + 1);
+                String text = String.format(getString(R.string.uploader_upload_in_progress_content), percent,
+                                            fileName);
+                builder.setContentText(text);
+                show();
+            }
+            lastPercent = percent;
+        }
+
+        void show() {
+            if (mNotificationManager == null) {
+                mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+            }
+            mNotificationManager.notify(tag, R.string.uploader_upload_in_progress_ticker, builder.build());
+        }
+
+        void cancel() {
+            if (mNotificationManager == null) {
+                mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+            }
+            mNotificationManager.cancel(tag, R.string.uploader_upload_in_progress_ticker);
         }
-        mLastPercent = percent;
     }
 
     /**
@@ -723,8 +803,6 @@ public class FileUploader extends Service
             mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
         }
 
-        mNotificationManager.cancel(R.string.uploader_upload_in_progress_ticker);
-
         // Only notify if the upload fails
         if (!uploadResult.isCancelled() &&
             !uploadResult.isSuccess() &&
@@ -746,13 +824,19 @@ public class FileUploader extends Service
                 tickerId = R.string.uploader_upload_failed_sync_conflict_error;
             }
 
-            mNotificationBuilder
+            NotificationCompat.Builder builder = NotificationUtils.newNotificationBuilder(this);
+            builder
+                .setSmallIcon(R.drawable.notification_icon)
                 .setTicker(getString(tickerId))
                 .setContentTitle(getString(tickerId))
                 .setAutoCancel(true)
                 .setOngoing(false)
                 .setProgress(0, 0, false);
 
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                builder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_UPLOAD);
+            }
+
             content = ErrorMessageAdapter.getErrorCauseMessage(uploadResult, upload, getResources());
 
             if (needsToUpdateCredentials) {
@@ -769,7 +853,7 @@ public class FileUploader extends Service
                 updateAccountCredentials.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
                 updateAccountCredentials.addFlags(Intent.FLAG_ACTIVITY_EXCLUDE_FROM_RECENTS);
                 updateAccountCredentials.addFlags(Intent.FLAG_FROM_BACKGROUND);
-                mNotificationBuilder.setContentIntent(PendingIntent.getActivity(
+                builder.setContentIntent(PendingIntent.getActivity(
                     this,
                     (int) System.currentTimeMillis(),
                     updateAccountCredentials,
@@ -781,13 +865,13 @@ public class FileUploader extends Service
                 showUploadListIntent.putExtra(FileActivity.EXTRA_FILE, upload.getFile());
                 showUploadListIntent.putExtra(FileActivity.EXTRA_ACCOUNT, upload.getAccount());
                 showUploadListIntent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
-                mNotificationBuilder.setContentIntent(PendingIntent.getActivity(
+                builder.setContentIntent(PendingIntent.getActivity(
                     this, (int) System.currentTimeMillis(), showUploadListIntent, 0
                 ));
             }
 
-            mNotificationBuilder.setContentText(content);
-            mNotificationManager.notify(tickerId, mNotificationBuilder.build());
+            builder.setContentText(content);
+            mNotificationManager.notify(tickerId, builder.build());
         }
     }
 
@@ -1083,12 +1167,12 @@ public class FileUploader extends Service
      *
      * It provides by itself the available operations.
      */
-    public class FileUploaderBinder extends Binder implements OnDatatransferProgressListener {
+    public class FileUploaderBinder extends Binder {
 
         /**
          * Map of listeners that will be reported about progress of uploads from a {@link FileUploaderBinder} instance
          */
-        private Map<String, OnDatatransferProgressListener> mBoundListeners = new HashMap<>();
+        private Map<String, OnDatatransferProgressListener> mBoundListeners = new ConcurrentHashMap<>();
 
         /**
          * Cancels a pending or current upload of a remote file.
@@ -1119,10 +1203,14 @@ public class FileUploader extends Service
         private void cancel(String accountName, String remotePath, @Nullable ResultCode resultCode) {
             Pair<UploadFileOperation, String> removeResult = mPendingUploads.remove(accountName, remotePath);
             UploadFileOperation upload = removeResult.first;
-            if (upload == null && mCurrentUpload != null && mCurrentAccount != null &&
-                mCurrentUpload.getRemotePath().startsWith(remotePath) && accountName.equals(mCurrentAccount.name)) {
-
-                upload = mCurrentUpload;
+            if (upload == null) {
+                for (UploadFileOperation currentUpload : mCurrentUploads.values()) {
+                    if (currentUpload.getRemotePath().startsWith(remotePath) &&
+                        accountName.equals(currentUpload.getAccount().name)) {
+                        upload = currentUpload;
+                        break;
+                    }
+                }
             }
 
             if (upload != null) {
@@ -1146,10 +1234,10 @@ public class FileUploader extends Service
         public void cancel(Account account) {
             Log_OC.d(TAG, "Account= " + account.name);
 
-            if (mCurrentUpload != null) {
-                Log_OC.d(TAG, "Current Upload Account= " + mCurrentUpload.getAccount().name);
-                if (mCurrentUpload.getAccount().name.equals(account.name)) {
-                    mCurrentUpload.cancel();
+            for (UploadFileOperation currentUpload : mCurrentUploads.values()) {
+                Log_OC.d(TAG, "Current Upload Account= " + currentUpload.getAccount().name);
+                if (currentUpload.getAccount().name.equals(account.name)) {
+                    currentUpload.cancel();
                 }
             }
 
@@ -1182,11 +1270,17 @@ public class FileUploader extends Service
         }
 
         public boolean isUploadingNow(OCUpload upload) {
-            return upload != null &&
-                mCurrentAccount != null &&
-                mCurrentUpload != null &&
-                upload.getAccountName().equals(mCurrentAccount.name) &&
-                upload.getRemotePath().equals(mCurrentUpload.getRemotePath());
+            if (upload == null) {
+                return false;
+            }
+
+            for (UploadFileOperation currentUpload : mCurrentUploads.values()) {
+                if (upload.getAccountName().equals(currentUpload.getAccount().name) &&
+                    upload.getRemotePath().equals(currentUpload.getRemotePath())) {
+                    return true;
+                }
+            }
+            return false;
         }
 
         /**
@@ -1269,14 +1363,14 @@ public class FileUploader extends Service
             }
         }
 
-        @Override
-        public void onTransferProgress(
+        private void onTransferProgress(
+            UploadFileOperation upload,
             long progressRate,
             long totalTransferredSoFar,
             long totalToTransfer,
             String fileName
         ) {
-            String key = buildRemoteName(mCurrentUpload.getAccount().name, mCurrentUpload.getFile().getRemotePath());
+            String key = buildRemoteName(upload.getAccount().name, upload.getFile().getRemotePath());
             OnDatatransferProgressListener boundListener = mBoundListeners.get(key);
 
             if (boundListener != null) {
@@ -1286,18 +1380,18 @@ public class FileUploader extends Service
             Context context = MainApp.getAppContext();
             if (context != null) {
                 ResultCode cancelReason = null;
-                if (mCurrentUpload.isWifiRequired() && !Device.getNetworkType(context).equals(JobRequest.NetworkType.UNMETERED)) {
+                if (upload.isWifiRequired() && !Device.getNetworkType(context).equals(JobRequest.NetworkType.UNMETERED)) {
                     cancelReason = ResultCode.DELAYED_FOR_WIFI;
-                } else if (mCurrentUpload.isChargingRequired() && !Device.getBatteryStatus(context).isCharging()) {
+                } else if (upload.isChargingRequired() && !Device.getBatteryStatus(context).isCharging()) {
                     cancelReason = ResultCode.DELAYED_FOR_CHARGING;
-                } else if (!mCurrentUpload.isIgnoringPowerSaveMode() && powerManagementService.isPowerSavingEnabled()) {
+                } else if (!upload.isIgnoringPowerSaveMode() && powerManagementService.isPowerSavingEnabled()) {
                     cancelReason = ResultCode.DELAYED_IN_POWER_SAVE_MODE;
                 }
 
                 if (cancelReason != null) {
                     cancel(
-                        mCurrentUpload.getAccount().name,
-                        mCurrentUpload.getFile().getRemotePath(),
+                        upload.getAccount().name,
+                        upload.getFile().getRemotePath(),
                         cancelReason
                     );
                 }
@@ -1318,38 +1412,4 @@ public class FileUploader extends Service
             return accountName + remotePath;
         }
     }
-
-
-    /**
-     * Upload worker. Performs the pending uploads in the order they were requested.
-     *
-     * Created with the Looper of a new thread, started in {@link FileUploader#onCreate()}.
-     */
-    private static class ServiceHandler extends Handler {
-        // don't make it a final class, and don't remove the static ; lint will
-        // warn about a possible memory leak
-        private FileUploader mService;
-
-        public ServiceHandler(Looper looper, FileUploader service) {
-            super(looper);
-            if (service == null) {
-                throw new IllegalArgumentException("Received invalid NULL in parameter 'service'");
-            }
-            mService = service;
-        }
-
-        @Override
-        public void handleMessage(Message msg) {
-            @SuppressWarnings("unchecked")
-            List<String> requestedUploads = (List<String>) msg.obj;
-            if (msg.obj != null) {
-                for (String requestedUpload : requestedUploads) {
-                    mService.uploadFile(requestedUpload);
-                }
-            }
-            Log_OC.d(TAG, "Stopping command after id " + msg.arg1);
-            mService.stopForeground(true);
-            mService.stopSelf(msg.arg1);
-        }
-    }
 }
@@ -0,0 +1,219 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.files.services;
+
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the transfers of {@link FileDownloader} and {@link FileUploader} with a limited number of concurrent slots per
+ * account.
+ *
+ * With {@link Order#SMALLEST_FIRST}, a waiting transfer is overtaken by smaller ones only a limited number of times,
+ * so large files are not starved by a steady stream of small ones.
+ *
+ * Every running transfer gets a slot number, the lowest one not used by another running transfer of any account. It
+ * identifies the progress notification of the transfer.
+ */
+class TransferScheduler {
+    static final int MAX_OVERTAKEN = 16;
+
+    enum Order {
+        /** in the order transfers were scheduled */
+        REQUESTED,
+        /** smaller files first */
+        SMALLEST_FIRST
+    }
+
+    interface Transfer {
+        /**
+         * Performs the transfer, called on a worker thread.
+         *
+         * @param slot slot number of the transfer, unique among running transfers
+         */
+        void run(int slot);
+    }
+
+    interface IdleListener {
+        /**
+         * Called on a worker thread when the last transfer finished and no other one is waiting.
+         */
+        void onIdle();
+    }
+
+    private final int slotsPerAccount;
+    private final Order order;
+    private final Executor executor;
+    private final IdleListener idleListener;
+
+    private final List<Entry> waiting = new ArrayList<>();
+    private final Map<String, Integer> running = new HashMap<>();
+    private final BitSet usedSlots = new BitSet();
+    private long sequence;
+
+    /**
+     * @param slotsPerAccount maximum number of concurrent transfers of one account
+     * @param executor        runs the transfers; has to provide a thread for every slot
+     */
+    TransferScheduler(int slotsPerAccount, Order order, Executor executor, IdleListener idleListener) {
+        if (slotsPerAccount < 1) {
+            throw new IllegalArgumentException("At least one slot per account is needed, got " + slotsPerAccount);
+        }
+        this.slotsPerAccount = slotsPerAccount;
+        this.order = order;
+        this.executor = executor;
+        this.idleListener = idleListener;
+    }
+
+    /**
+     * @return executor for transfers, starting background priority threads as needed
+     */
+    static ExecutorService newExecutor(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, name + "-" + count.incrementAndGet()));
+    }
+
+    /**
+     * @param size size of the transferred file in bytes, used by {@link Order#SMALLEST_FIRST}
+     */
+    synchronized void schedule(String accountName, long size, Transfer transfer) {
+        waiting.add(new Entry(accountName, size, sequence++, transfer));
+        dispatch();
+    }
+
+    synchronized boolean isIdle() {
+        return waiting.isEmpty() && usedSlots.isEmpty();
+    }
+
+    synchronized int getRunningCount() {
+        return usedSlots.cardinality();
+    }
+
+    synchronized int getWaitingCount() {
+        return waiting.size();
+    }
+
+    private void dispatch() {
+        Entry next;
+        while ((next = pickNext()) != null) {
+            waiting.remove(next);
+            countOvertaking(next);
+
+            Integer accountRunning = running.get(next.accountName);
+            running.put(next.accountName, accountRunning == null ? 1 : accountRunning + 1);
+            int slot = usedSlots.nextClearBit(0);
+            usedSlots.set(slot);
+
+            Entry started = next;
+            executor.execute(() -> run(started, slot));
+        }
+    }
+
+    /**
+     * @return waiting transfer to start now, null if none can start
+     */
+    private Entry pickNext() {
+        Entry best = null;
+        for (Entry entry : waiting) {
+            if (!hasFreeSlot(entry.accountName)) {
+                continue;
+            }
+            if (best == null || runsBefore(entry, best)) {
+                best = entry;
+            }
+        }
+        return best;
+    }
+
+    private boolean runsBefore(Entry entry, Entry other) {
+        if (order == Order.SMALLEST_FIRST) {
+            boolean starving = entry.overtaken >= MAX_OVERTAKEN;
+            boolean otherStarving = other.overtaken >= MAX_OVERTAKEN;
+            if (starving != otherStarving) {
+                return starving;
+            }
+            if (!starving && entry.size != other.size) {
+                return entry.size < other.size;
+            }
+        }
+        return entry.sequence < other.sequence;
+    }
+
+    private void countOvertaking(Entry started) {
+        for (Entry entry : waiting) {
+            if (entry.sequence < started.sequence && entry.accountName.equals(started.accountName)) {
+                entry.overtaken++;
+            }
+        }
+    }
+
+    private boolean hasFreeSlot(String accountName) {
+        Integer accountRunning = running.get(accountName);
+        return accountRunning == null || accountRunning < slotsPerAccount;
+    }
+
+    private void run(Entry entry, int slot) {
+        try {
+            entry.transfer.run(slot);
+        } finally {
+            boolean idle;
+            synchronized (this) {
+                int accountRunning = running.get(entry.accountName) - 1;
+                if (accountRunning == 0) {
+                    running.remove(entry.accountName);
+                } else {
+                    running.put(entry.accountName, accountRunning);
+                }
+                usedSlots.clear(slot);
+                dispatch();
+                idle = isIdle();
+            }
+            if (idle) {
+                idleListener.onIdle();
+            }
+        }
+    }
+
+    private static final class Entry {
+        final String accountName;
+        final long size;
+        final long sequence;
+        final Transfer transfer;
+        int overtaken;
+
+        Entry(String accountName, long size, long sequence, Transfer transfer) {
+            this.accountName = accountName;
+            this.size = size;
+            this.sequence = sequence;
+            this.transfer = transfer;
+        }
+    }
+}
@@ -35,12 +35,10 @@ import com.owncloud.android.lib.common.operations.OperationCancelledException;
 import com.owncloud.android.lib.common.operations.RemoteOperation;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.utils.Log_OC;
-import com.owncloud.android.lib.resources.files.DownloadFileRemoteOperation;
 import com.owncloud.android.utils.EncryptionUtils;
 import com.owncloud.android.utils.FileStorageUtils;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -51,6 +49,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class DownloadFileOperation extends RemoteOperation {
     private static final String TAG = DownloadFileOperation.class.getSimpleName();
+    private static final String DECRYPTED_FILE_SUFFIX = ".decrypted";
 
     private Account account;
     private OCFile file;
@@ -62,7 +61,7 @@ public class DownloadFileOperation extends RemoteOperation {
     private Context context;
     private Set<OnDatatransferProgressListener> dataTransferListeners = new HashSet<>();
     private long modificationTimestamp;
-    private DownloadFileRemoteOperation downloadOperation;
+    private ResumableDownloadFileRemoteOperation downloadOperation;
 
     private final AtomicBoolean cancellationRequested = new AtomicBoolean(false);
 
@@ -139,6 +138,8 @@ public class DownloadFileOperation extends RemoteOperation {
         /// perform the download
         synchronized(cancellationRequested) {
             if (cancellationRequested.get()) {
+                // a cancelled download is not resumed, drop what an earlier attempt left
+                ResumableDownloadFileRemoteOperation.deletePartialDownload(new File(getTmpPath()));
                 return new RemoteOperationResult(new OperationCancelledException());
             }
         }
@@ -147,12 +148,11 @@ public class DownloadFileOperation extends RemoteOperation {
         File newFile;
         boolean moved;
 
-        /// download will be performed to a temporal file, then moved to the final location
+        /// download will be performed to a temporal file, then moved to the final location; a partial download
+        /// left there by a failed attempt is resumed
         File tmpFile = new File(getTmpPath());
 
-        String tmpFolder =  getTmpFolder();
-
-        downloadOperation = new DownloadFileRemoteOperation(file.getRemotePath(), tmpFolder);
+        downloadOperation = new ResumableDownloadFileRemoteOperation(file.getRemotePath(), tmpFile);
         Iterator<OnDatatransferProgressListener> listener = dataTransferListeners.iterator();
         while (listener.hasNext()) {
             downloadOperation.addDatatransferProgressListener(listener.next());
@@ -185,15 +185,21 @@ public class DownloadFileOperation extends RemoteOperation {
                 byte[] authenticationTag = EncryptionUtils.decodeStringToBase64Bytes(metadata.getFiles()
                         .get(file.getEncryptedFileName()).getAuthenticationTag());
 
+                // decrypt chunk-wise next to the downloaded file, without holding the content in memory
+                File decryptedFile = new File(tmpFile.getAbsolutePath() + DECRYPTED_FILE_SUFFIX);
                 try {
-                    byte[] decryptedBytes = EncryptionUtils.decryptFile(tmpFile, key, iv, authenticationTag);
-
-                    try (FileOutputStream fileOutputStream = new FileOutputStream(tmpFile)) {
-                        fileOutputStream.write(decryptedBytes);
-                    }
+                    EncryptionUtils.decryptFile(tmpFile, decryptedFile, key, iv, authenticationTag);
                 } catch (Exception e) {
+                    if (decryptedFile.exists() && !decryptedFile.delete()) {
+                        Log_OC.e(TAG, "Unable to delete partially decrypted file " + decryptedFile.getAbsolutePath());
+                    }
                     return new RemoteOperationResult(e);
                 }
+
+                if (!tmpFile.delete()) {
+                    Log_OC.e(TAG, "Unable to delete encrypted file " + tmpFile.getAbsolutePath());
+                }
+                tmpFile = decryptedFile;
             }
             moved = tmpFile.renameTo(newFile);
             newFile.setLastModified(file.getModificationTimestamp());
@@ -0,0 +1,461 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.operations;
+
+import android.net.Uri;
+import android.text.TextUtils;
+
+import com.owncloud.android.datamodel.UploadsStorageManager;
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.OnDatatransferProgressListener;
+import com.owncloud.android.lib.common.network.WebdavUtils;
+import com.owncloud.android.lib.common.operations.OperationCancelledException;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.lib.resources.files.ChunkedFileUploadRemoteOperation;
+import com.owncloud.android.lib.resources.files.UploadFileRemoteOperation;
+
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.DeleteMethod;
+import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.jackrabbit.webdav.client.methods.MkColMethod;
+import org.apache.jackrabbit.webdav.client.methods.MoveMethod;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Uploads a file in chunks, sending several of them at a time.
+ *
+ * Uses the chunked upload of the Nextcloud WebDAV API: the chunks are stored in an upload folder on the server and
+ * only moved to the final file once all of them are confirmed. Every confirmed chunk is recorded in the uploads
+ * table, so a later attempt of the same upload only sends the missing ones.
+ */
+public class ParallelChunkedUploadRemoteOperation extends UploadFileRemoteOperation {
+    private static final String TAG = ParallelChunkedUploadRemoteOperation.class.getSimpleName();
+
+    /** number of chunks sent at the same time */
+    static final int PARALLEL_CHUNKS = 3;
+
+    private static final String UPLOADS_PATH = "/remote.php/dav/uploads/";
+    private static final String FILES_PATH = "/remote.php/dav/files/";
+    private static final String ASSEMBLED_FILE = "/.file";
+    private static final String HEADER_TOTAL_LENGTH = "OC-Total-Length";
+    private static final String HEADER_MTIME = "X-OC-Mtime";
+    private static final String HEADER_IF_MATCH = "If-Match";
+    private static final int BUFFER_SIZE = 8192;
+    private static final int ASSEMBLE_TIMEOUT_MS = 10 * 60 * 1000;
+
+    private final String localPath;
+    private final String remotePath;
+    private final String requiredEtag;
+    private final String lastModificationTimestamp;
+    private final boolean onWifiConnection;
+    private final String transferId;
+    private final UploadsStorageManager uploadsStorageManager;
+    private final long uploadId;
+
+    private final Set<OnDatatransferProgressListener> dataTransferListeners = new HashSet<>();
+    private final Set<HttpMethod> runningMethods = new HashSet<>();
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicLong transferred = new AtomicLong();
+
+    /**
+     * @param transferId            identifies the upload folder on the server; the same id has to be used for every
+     *                              attempt of an upload to resume it
+     * @param uploadsStorageManager stores the confirmed chunks, null to not resume the upload later
+     * @param uploadId              upload the confirmed chunks are stored for
+     */
+    public ParallelChunkedUploadRemoteOperation(String localPath,
+                                                String remotePath,
+                                                String mimeType,
+                                                String requiredEtag,
+                                                String lastModificationTimestamp,
+                                                boolean onWifiConnection,
+                                                String transferId,
+                                                @Nullable UploadsStorageManager uploadsStorageManager,
+                                                long uploadId) {
+        super(localPath, remotePath, mimeType, requiredEtag, lastModificationTimestamp);
+        this.localPath = localPath;
+        this.remotePath = remotePath;
+        this.requiredEtag = requiredEtag;
+        this.lastModificationTimestamp = lastModificationTimestamp;
+        this.onWifiConnection = onWifiConnection;
+        this.transferId = transferId;
+        this.uploadsStorageManager = uploadsStorageManager;
+        this.uploadId = uploadId;
+    }
+
+    @Override
+    protected RemoteOperationResult run(OwnCloudClient client) {
+        File file = new File(localPath);
+        String userId = Uri.encode(client.getUserId());
+        String uploadFolderUri = client.getBaseUri() + UPLOADS_PATH + userId + "/" + Uri.encode(transferId);
+        String destinationUri = client.getBaseUri() + FILES_PATH + userId + WebdavUtils.encodePath(remotePath);
+
+        RemoteOperationResult result;
+        try {
+            UploadedChunks uploadedChunks = prepareUploadFolder(client, uploadFolderUri);
+            if (uploadedChunks == null) {
+                result = new RemoteOperationResult(RemoteOperationResult.ResultCode.UNKNOWN_ERROR);
+            } else {
+                result = uploadChunks(client, file, uploadFolderUri, uploadedChunks);
+                if (result.isSuccess()) {
+                    result = assemble(client, file.length(), uploadFolderUri, destinationUri);
+                }
+            }
+        } catch (Exception e) {
+            result = new RemoteOperationResult(e);
+        }
+
+        if (cancelled.get()) {
+            result = new RemoteOperationResult(new OperationCancelledException());
+        }
+
+        Log_OC.i(TAG, "Chunked upload of " + localPath + " to " + remotePath + ": " + result.getLogMessage());
+        return result;
+    }
+
+    /**
+     * Creates the upload folder, or finds the one of an earlier attempt and the chunks confirmed there.
+     *
+     * @return chunks already uploaded, null if the folder could not be created
+     */
+    private UploadedChunks prepareUploadFolder(OwnCloudClient client, String uploadFolderUri) throws IOException {
+        long chunkSize = onWifiConnection ? ChunkedFileUploadRemoteOperation.CHUNK_SIZE_WIFI :
+            ChunkedFileUploadRemoteOperation.CHUNK_SIZE_MOBILE;
+        UploadedChunks stored = loadUploadedChunks();
+
+        int status = createFolder(client, uploadFolderUri);
+        if (status == HttpStatus.SC_METHOD_NOT_ALLOWED) {
+            if (stored != null) {
+                // the folder of an earlier attempt still holds its chunks, keep their size
+                Log_OC.d(TAG, "Resuming upload of " + localPath + ", " + stored.size() + " chunks already uploaded");
+                return stored;
+            }
+
+            // unknown chunks might end up in the assembled file, start over
+            delete(client, uploadFolderUri);
+            status = createFolder(client, uploadFolderUri);
+        }
+
+        if (status != HttpStatus.SC_CREATED) {
+            Log_OC.e(TAG, "Unable to create upload folder " + uploadFolderUri + ", status " + status);
+            return null;
+        }
+
+        // a new folder holds no chunks, whatever was stored
+        UploadedChunks uploadedChunks = new UploadedChunks(transferId, chunkSize);
+        storeUploadedChunks(uploadedChunks);
+        return uploadedChunks;
+    }
+
+    private RemoteOperationResult uploadChunks(OwnCloudClient client,
+                                               File file,
+                                               String uploadFolderUri,
+                                               UploadedChunks uploadedChunks) throws Exception {
+        long fileSize = file.length();
+        long chunkSize = uploadedChunks.getChunkSize();
+        int chunkCount = (int) Math.max(1, (fileSize + chunkSize - 1) / chunkSize);
+
+        transferred.set(0);
+        ExecutorService executor = Executors.newFixedThreadPool(PARALLEL_CHUNKS);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            AtomicBoolean failed = new AtomicBoolean(false);
+            List<Future<RemoteOperationResult>> futures = new ArrayList<>();
+
+            for (int index = 0; index < chunkCount; index++) {
+                long offset = index * chunkSize;
+                long length = Math.min(chunkSize, fileSize - offset);
+                if (uploadedChunks.contains(index)) {
+                    transferred.addAndGet(length);
+                    continue;
+                }
+
+                int chunkIndex = index;
+                futures.add(executor.submit(() -> {
+                    if (failed.get() || cancelled.get()) {
+                        return null;
+                    }
+                    RemoteOperationResult chunkResult = uploadChunk(client, channel, file, fileSize,
+                                                                    uploadFolderUri, chunkIndex, offset, length);
+                    if (chunkResult.isSuccess()) {
+                        synchronized (uploadedChunks) {
+                            uploadedChunks.add(chunkIndex);
+                            storeUploadedChunks(uploadedChunks);
+                        }
+                    } else {
+                        failed.set(true);
+                    }
+                    return chunkResult;
+                }));
+            }
+
+            RemoteOperationResult failure = null;
+            for (Future<RemoteOperationResult> future : futures) {
+                try {
+                    RemoteOperationResult chunkResult = future.get();
+                    if (failure == null && chunkResult != null && !chunkResult.isSuccess()) {
+                        failure = chunkResult;
+                        abortRunningMethods();
+                    }
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        Throwable cause = e.getCause();
+                        failure = new RemoteOperationResult(cause instanceof Exception ? (Exception) cause : e);
+                        failed.set(true);
+                        abortRunningMethods();
+                    }
+                }
+            }
+
+            if (cancelled.get()) {
+                throw new OperationCancelledException();
+            }
+            return failure == null ? new RemoteOperationResult(RemoteOperationResult.ResultCode.OK) : failure;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private RemoteOperationResult uploadChunk(OwnCloudClient client,
+                                              FileChannel channel,
+                                              File file,
+                                              long fileSize,
+                                              String uploadFolderUri,
+                                              int index,
+                                              long offset,
+                                              long length) throws IOException {
+        // chunks are assembled in the order of their names
+        PutMethod putMethod = new PutMethod(uploadFolderUri + "/" + String.format(Locale.US, "%05d", index + 1));
+        putMethod.setRequestEntity(new ChunkRequestEntity(channel, offset, length, file.getAbsolutePath(),
+                                                          fileSize));
+        try {
+            int status = execute(client, putMethod, -1);
+            client.exhaustResponse(putMethod.getResponseBodyAsStream());
+            return new RemoteOperationResult(isSuccess(status), putMethod);
+        } finally {
+            finish(putMethod);
+        }
+    }
+
+    /**
+     * Moves the chunks to the destination, the server joins them into the uploaded file.
+     */
+    private RemoteOperationResult assemble(OwnCloudClient client,
+                                           long fileSize,
+                                           String uploadFolderUri,
+                                           String destinationUri) throws IOException {
+        MoveMethod moveMethod = new MoveMethod(uploadFolderUri + ASSEMBLED_FILE, destinationUri, true);
+        moveMethod.addRequestHeader(HEADER_TOTAL_LENGTH, String.valueOf(fileSize));
+        moveMethod.addRequestHeader(HEADER_MTIME, lastModificationTimestamp);
+        if (!TextUtils.isEmpty(requiredEtag)) {
+            moveMethod.addRequestHeader(HEADER_IF_MATCH, "\"" + requiredEtag + "\"");
+        }
+
+        try {
+            int status = execute(client, moveMethod, ASSEMBLE_TIMEOUT_MS);
+            client.exhaustResponse(moveMethod.getResponseBodyAsStream());
+            RemoteOperationResult result = new RemoteOperationResult(isSuccess(status), moveMethod);
+
+            if (result.isSuccess()) {
+                storeUploadedChunks(null);
+            } else if (status != HttpStatus.SC_PRECONDITION_FAILED) {
+                // the chunks on the server could not be assembled, upload them again next time
+                storeUploadedChunks(null);
+                delete(client, uploadFolderUri);
+            }
+            return result;
+        } finally {
+            finish(moveMethod);
+        }
+    }
+
+    private int createFolder(OwnCloudClient client, String uri) throws IOException {
+        MkColMethod mkColMethod = new MkColMethod(uri);
+        try {
+            int status = execute(client, mkColMethod, -1);
+            client.exhaustResponse(mkColMethod.getResponseBodyAsStream());
+            return status;
+        } finally {
+            finish(mkColMethod);
+        }
+    }
+
+    private void delete(OwnCloudClient client, String uri) throws IOException {
+        DeleteMethod deleteMethod = new DeleteMethod(uri);
+        try {
+            execute(client, deleteMethod, -1);
+            client.exhaustResponse(deleteMethod.getResponseBodyAsStream());
+        } finally {
+            finish(deleteMethod);
+        }
+    }
+
+    private int execute(OwnCloudClient client, HttpMethod method, int readTimeout) throws IOException {
+        synchronized (runningMethods) {
+            if (cancelled.get()) {
+                throw new IOException("Upload cancelled");
+            }
+            runningMethods.add(method);
+        }
+        return readTimeout < 0 ? client.executeMethod(method) : client.executeMethod(method, readTimeout, -1);
+    }
+
+    private void finish(HttpMethod method) {
+        synchronized (runningMethods) {
+            runningMethods.remove(method);
+        }
+        method.releaseConnection();
+    }
+
+    private void abortRunningMethods() {
+        synchronized (runningMethods) {
+            for (HttpMethod method : runningMethods) {
+                method.abort();
+            }
+        }
+    }
+
+    private static boolean isSuccess(int status) {
+        return status == HttpStatus.SC_OK || status == HttpStatus.SC_CREATED || status == HttpStatus.SC_NO_CONTENT;
+    }
+
+    @Nullable
+    private UploadedChunks loadUploadedChunks() {
+        if (uploadsStorageManager == null) {
+            return null;
+        }
+        UploadedChunks stored = UploadedChunks.parse(uploadsStorageManager.getUploadedChunks(uploadId));
+        return stored != null && stored.getTransferId().equals(transferId) ? stored : null;
+    }
+
+    private void storeUploadedChunks(@Nullable UploadedChunks uploadedChunks) {
+        if (uploadsStorageManager != null) {
+            uploadsStorageManager.updateUploadedChunks(uploadId,
+                                                       uploadedChunks == null ? null : uploadedChunks.serialize());
+        }
+    }
+
+    private void notifyProgress(long read, String fileName, long fileSize) {
+        long transferredSoFar = transferred.addAndGet(read);
+        synchronized (dataTransferListeners) {
+            for (OnDatatransferProgressListener listener : dataTransferListeners) {
+                listener.onTransferProgress(read, transferredSoFar, fileSize, fileName);
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        cancelled.set(true);
+        abortRunningMethods();
+    }
+
+    @Override
+    public void addDataTransferProgressListener(OnDatatransferProgressListener listener) {
+        synchronized (dataTransferListeners) {
+            dataTransferListeners.add(listener);
+        }
+    }
+
+    @Override
+    public void removeDataTransferProgressListener(OnDatatransferProgressListener listener) {
+        synchronized (dataTransferListeners) {
+            dataTransferListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Sends a part of a file, read with positional reads so several chunks can share the channel.
+     */
+    private final class ChunkRequestEntity implements RequestEntity {
+        private final FileChannel channel;
+        private final long offset;
+        private final long length;
+        private final String fileName;
+        private final long fileSize;
+
+        ChunkRequestEntity(FileChannel channel, long offset, long length, String fileName, long fileSize) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+            this.fileName = fileName;
+            this.fileSize = fileSize;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public void writeRequest(OutputStream out) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = offset;
+            long end = offset + length;
+
+            while (position < end) {
+                if (cancelled.get()) {
+                    throw new IOException("Upload cancelled");
+                }
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, end - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("File " + fileName + " is shorter than expected");
+                }
+                out.write(buffer.array(), 0, read);
+                position += read;
+                notifyProgress(read, fileName, fileSize);
+            }
+        }
+
+        @Override
+        public long getContentLength() {
+            return length;
+        }
+
+        @Override
+        public String getContentType() {
+            return "application/octet-stream";
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.operations;
+
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.OnDatatransferProgressListener;
+import com.owncloud.android.lib.common.network.WebdavUtils;
+import com.owncloud.android.lib.common.operations.OperationCancelledException;
+import com.owncloud.android.lib.common.operations.RemoteOperation;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.util.DateParseException;
+import org.apache.commons.httpclient.util.DateUtil;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Downloads a remote file into a temporary file, resuming an earlier partial download of it.
+ *
+ * The temporary file is kept when a download fails, together with the ETag it was downloaded with. The next attempt
+ * only requests the missing bytes with Range and If-Range, so the server sends the rest of the file if it did not
+ * change, and the whole file otherwise. Cancelled downloads are not resumed, their temporary file is deleted.
+ * Partial downloads older than {@link #PARTIAL_DOWNLOAD_MAX_AGE_MS} are not resumed either, see
+ * {@link #deleteStalePartialDownloads(File)} for the ones that are never downloaded again.
+ */
+public class ResumableDownloadFileRemoteOperation extends RemoteOperation {
+    private static final String TAG = ResumableDownloadFileRemoteOperation.class.getSimpleName();
+
+    static final String ETAG_FILE_SUFFIX = ".etag";
+    static final long PARTIAL_DOWNLOAD_MAX_AGE_MS = 7L * 24 * 60 * 60 * 1000;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final String HEADER_RANGE = "Range";
+    private static final String HEADER_IF_RANGE = "If-Range";
+    private static final String HEADER_CONTENT_RANGE = "Content-Range";
+    private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_OC_ETAG = "OC-ETag";
+    private static final String WEAK_ETAG_PREFIX = "W/";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String remotePath;
+    private final File targetFile;
+    private final File etagFile;
+    private final Set<OnDatatransferProgressListener> dataTransferListeners = new HashSet<>();
+    private final AtomicBoolean cancellationRequested = new AtomicBoolean(false);
+
+    private long modificationTimestamp;
+    private String etag = "";
+    private long resumedFrom;
+    private GetMethod getMethod;
+
+    /**
+     * @param remotePath remote path of the file to download
+     * @param targetFile temporary file to download into; a partial download found there is resumed
+     */
+    public ResumableDownloadFileRemoteOperation(String remotePath, File targetFile) {
+        this.remotePath = remotePath;
+        this.targetFile = targetFile;
+        etagFile = new File(targetFile.getAbsolutePath() + ETAG_FILE_SUFFIX);
+    }
+
+    @Override
+    protected RemoteOperationResult run(OwnCloudClient client) {
+        File parent = targetFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            Log_OC.e(TAG, "Unable to create folder " + parent.getAbsolutePath());
+        }
+
+        if (cancellationRequested.get()) {
+            deletePartialDownload();
+            return new RemoteOperationResult(new OperationCancelledException());
+        }
+
+        RemoteOperationResult result;
+        try {
+            result = download(client, readPartialEtag());
+            if (result.getHttpCode() == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                // the partial file does not fit the remote file anymore, start over
+                deletePartialDownload();
+                result = download(client, null);
+            }
+        } catch (OperationCancelledException e) {
+            deletePartialDownload();
+            result = new RemoteOperationResult(e);
+        } catch (Exception e) {
+            result = new RemoteOperationResult(e);
+        }
+
+        if (result.isSuccess()) {
+            deleteEtagFile();
+        } else if (cancellationRequested.get()) {
+            // cancelled while waiting for the server, the next download does not resume
+            deletePartialDownload();
+        }
+
+        Log_OC.i(TAG, "Download of " + remotePath + " to " + targetFile.getAbsolutePath() +
+            (resumedFrom > 0 ? ", resumed from byte " + resumedFrom : "") + ": " + result.getLogMessage());
+        return result;
+    }
+
+    /**
+     * @param partialEtag ETag the existing partial file was downloaded with, null to download the whole file
+     */
+    private RemoteOperationResult download(OwnCloudClient client, String partialEtag)
+        throws IOException, OperationCancelledException {
+        long offset = partialEtag == null ? 0 : targetFile.length();
+        resumedFrom = 0;
+
+        GetMethod method = createGetMethod(client.getWebdavUri() + WebdavUtils.encodePath(remotePath));
+        getMethod = method;
+        try {
+            if (offset > 0) {
+                method.setRequestHeader(HEADER_RANGE, "bytes=" + offset + "-");
+                method.setRequestHeader(HEADER_IF_RANGE, partialEtag);
+            }
+
+            int status = client.executeMethod(method);
+
+            if (status == HttpStatus.SC_PARTIAL_CONTENT) {
+                Header contentRange = method.getResponseHeader(HEADER_CONTENT_RANGE);
+                if (contentRange == null || parseContentRangeStart(contentRange.getValue()) != offset) {
+                    // not the requested part, try again without resuming
+                    client.exhaustResponse(method.getResponseBodyAsStream());
+                    method.releaseConnection();
+                    deletePartialDownload();
+                    return download(client, null);
+                }
+                resumedFrom = offset;
+            } else if (status == HttpStatus.SC_OK) {
+                if (offset > 0) {
+                    Log_OC.d(TAG, remotePath + " changed since the partial download, downloading it again");
+                }
+                offset = 0;
+            } else {
+                RemoteOperationResult result = new RemoteOperationResult(false, method);
+                if (status != HttpStatus.SC_FORBIDDEN && status != HttpStatus.SC_SERVICE_UNAVAILABLE) {
+                    client.exhaustResponse(method.getResponseBodyAsStream());
+                }   // else, body read by RemoteOperationResult constructor
+                return result;
+            }
+
+            readHeaders(method);
+            writePartialEtag(method);
+
+            Header contentLength = method.getResponseHeader(HEADER_CONTENT_LENGTH);
+            long remaining = contentLength == null ? -1 : Long.parseLong(contentLength.getValue());
+            long totalToTransfer = remaining < 0 ? -1 : offset + remaining;
+            long transferred = writeBody(method.getResponseBodyAsStream(), offset, totalToTransfer);
+
+            if (totalToTransfer >= 0 && transferred != totalToTransfer) {
+                // keep what was received, a retry resumes from here
+                throw new SocketException("Connection closed after " + transferred + " of " + totalToTransfer +
+                                              " bytes");
+            }
+
+            return new RemoteOperationResult(true, method);
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    GetMethod createGetMethod(String uri) {
+        return new GetMethod(uri);
+    }
+
+    private long writeBody(InputStream body, long offset, long totalToTransfer)
+        throws IOException, OperationCancelledException {
+        long transferred = offset;
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        // append to the partial file when resuming, replace it otherwise
+        try (InputStream in = body; OutputStream out = new FileOutputStream(targetFile, offset > 0)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (cancellationRequested.get()) {
+                    getMethod.abort();
+                    throw new OperationCancelledException();
+                }
+                out.write(buffer, 0, read);
+                transferred += read;
+
+                synchronized (dataTransferListeners) {
+                    for (OnDatatransferProgressListener listener : dataTransferListeners) {
+                        listener.onTransferProgress(read, transferred, totalToTransfer, targetFile.getName());
+                    }
+                }
+            }
+        }
+        return transferred;
+    }
+
+    private void readHeaders(GetMethod method) {
+        Header lastModified = method.getResponseHeader(HEADER_LAST_MODIFIED);
+        if (lastModified != null) {
+            try {
+                modificationTimestamp = DateUtil.parseDate(lastModified.getValue()).getTime();
+            } catch (DateParseException e) {
+                Log_OC.w(TAG, "Unable to parse Last-Modified of " + remotePath + ": " + lastModified.getValue());
+            }
+        }
+
+        Header ocEtag = method.getResponseHeader(HEADER_OC_ETAG);
+        Header httpEtag = method.getResponseHeader(HEADER_ETAG);
+        if (ocEtag != null) {
+            etag = ocEtag.getValue().replace("\"", "");
+        } else if (httpEtag != null) {
+            etag = httpEtag.getValue().replace("\"", "");
+        }
+    }
+
+    /**
+     * Stores the ETag of the response being written, so an interrupted download can be resumed. Weak ETags cannot
+     * be used in If-Range, without a strong one the download is not resumable.
+     */
+    private void writePartialEtag(GetMethod method) throws IOException {
+        Header httpEtag = method.getResponseHeader(HEADER_ETAG);
+        if (httpEtag == null || httpEtag.getValue().startsWith(WEAK_ETAG_PREFIX)) {
+            deleteEtagFile();
+            return;
+        }
+
+        savePartialEtag(targetFile, httpEtag.getValue());
+    }
+
+    /**
+     * Marks bytes written to targetFile by other means as a partial download of the remote file with the given
+     * strong ETag, so this operation resumes after them.
+     *
+     * @param etag ETag header value, including the quotes
+     */
+    public static void savePartialEtag(File targetFile, String etag) throws IOException {
+        File etagFile = new File(targetFile.getAbsolutePath() + ETAG_FILE_SUFFIX);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(etagFile), UTF_8)) {
+            writer.write(etag);
+        }
+    }
+
+    /**
+     * @return ETag of an existing partial download, null if there is none to resume
+     */
+    private String readPartialEtag() {
+        if (!targetFile.isFile() || targetFile.length() == 0 || !etagFile.isFile()) {
+            return null;
+        }
+
+        if (isStale(targetFile, System.currentTimeMillis())) {
+            Log_OC.d(TAG, "Not resuming outdated partial download " + targetFile.getAbsolutePath());
+            deletePartialDownload();
+            return null;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(etagFile),
+                                                                              UTF_8))) {
+            String partialEtag = reader.readLine();
+            return partialEtag == null || partialEtag.isEmpty() ? null : partialEtag;
+        } catch (IOException e) {
+            Log_OC.w(TAG, "Unable to read ETag of partial download " + targetFile.getAbsolutePath());
+            return null;
+        }
+    }
+
+    private void deletePartialDownload() {
+        deletePartialDownload(targetFile);
+    }
+
+    private void deleteEtagFile() {
+        delete(etagFile);
+    }
+
+    /**
+     * Deletes a partial download of targetFile together with its ETag, e.g. when its download is cancelled before
+     * it started.
+     */
+    public static void deletePartialDownload(File targetFile) {
+        if (targetFile.exists() && !targetFile.delete()) {
+            Log_OC.e(TAG, "Unable to delete partial download " + targetFile.getAbsolutePath());
+        }
+        delete(new File(targetFile.getAbsolutePath() + ETAG_FILE_SUFFIX));
+    }
+
+    /**
+     * Deletes the partial downloads in folder and its subfolders which were not written for longer than
+     * {@link #PARTIAL_DOWNLOAD_MAX_AGE_MS}, as they would not be resumed anymore. Only files with an ETag are known
+     * to be partial downloads, other files in folder are kept.
+     */
+    public static void deleteStalePartialDownloads(File folder) {
+        deleteStalePartialDownloads(folder, System.currentTimeMillis());
+    }
+
+    static void deleteStalePartialDownloads(File folder, long now) {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                deleteStalePartialDownloads(file, now);
+            } else if (file.getName().endsWith(ETAG_FILE_SUFFIX)) {
+                String path = file.getAbsolutePath();
+                File partialDownload = new File(path.substring(0, path.length() - ETAG_FILE_SUFFIX.length()));
+                if (isStale(partialDownload.exists() ? partialDownload : file, now)) {
+                    Log_OC.d(TAG, "Deleting outdated partial download " + partialDownload.getAbsolutePath());
+                    deletePartialDownload(partialDownload);
+                }
+            }
+        }
+    }
+
+    private static boolean isStale(File file, long now) {
+        return now - file.lastModified() > PARTIAL_DOWNLOAD_MAX_AGE_MS;
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            Log_OC.e(TAG, "Unable to delete " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * @param contentRange value of a Content-Range header, e.g. "bytes 100-199/200"
+     * @return first byte of the range, -1 if the header cannot be parsed
+     */
+    public static long parseContentRangeStart(String contentRange) {
+        String value = contentRange.trim();
+        if (!value.startsWith("bytes ")) {
+            return -1;
+        }
+
+        int dash = value.indexOf('-');
+        if (dash < 0) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(value.substring("bytes ".length(), dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public void cancel() {
+        cancellationRequested.set(true);
+    }
+
+    public void addDatatransferProgressListener(OnDatatransferProgressListener listener) {
+        synchronized (dataTransferListeners) {
+            dataTransferListeners.add(listener);
+        }
+    }
+
+    public long getModificationTimestamp() {
+        return modificationTimestamp;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * @return number of bytes taken from an earlier partial download, 0 if the file was downloaded as a whole
+     */
+    public long getResumedFrom() {
+        return resumedFrom;
+    }
+}
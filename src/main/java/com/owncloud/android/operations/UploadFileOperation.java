@@ -47,7 +47,6 @@ import com.owncloud.android.lib.common.OwnCloudClient;
 import com.owncloud.android.lib.common.network.OnDatatransferProgressListener;
 import com.owncloud.android.lib.common.network.ProgressiveDataTransfer;
 import com.owncloud.android.lib.common.operations.OperationCancelledException;
-import com.owncloud.android.lib.common.operations.RemoteOperation;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult.ResultCode;
 import com.owncloud.android.lib.common.utils.Log_OC;
@@ -63,6 +62,7 @@ import com.owncloud.android.lib.resources.files.UploadFileRemoteOperation;
 import com.owncloud.android.lib.resources.files.model.RemoteFile;
 import com.owncloud.android.operations.common.SyncOperation;
 import com.owncloud.android.utils.EncryptionUtils;
+import com.owncloud.android.utils.FileCopyUtils;
 import com.owncloud.android.utils.FileStorageUtils;
 import com.owncloud.android.utils.MimeType;
 import com.owncloud.android.utils.MimeTypeUtil;
@@ -106,6 +106,18 @@ public class UploadFileOperation extends SyncOperation {
     public static final int CREATED_AS_INSTANT_PICTURE = 1;
     public static final int CREATED_AS_INSTANT_VIDEO = 2;
 
+    /**
+     * Serializes the creation of remote folders by parallel uploads, striped by account and folder, so two uploads
+     * into a new folder do not both send MKCOL.
+     */
+    private static final Object[] FOLDER_CREATION_LOCKS = new Object[16];
+
+    static {
+        for (int i = 0; i < FOLDER_CREATION_LOCKS.length; i++) {
+            FOLDER_CREATION_LOCKS[i] = new Object();
+        }
+    }
+
     /**
      * OCFile which is to be uploaded.
      */
@@ -535,8 +547,6 @@ public class UploadFileOperation extends SyncOperation {
             // IV, always generate new one
             byte[] iv = EncryptionUtils.randomBytes(EncryptionUtils.ivLength);
 
-            EncryptionUtils.EncryptedFile encryptedFile = EncryptionUtils.encryptFile(mFile, key, iv);
-
             // new random file name, check if it exists in metadata
             String encryptedFileName = UUID.randomUUID().toString().replaceAll("-", "");
 
@@ -546,10 +556,12 @@ public class UploadFileOperation extends SyncOperation {
 
             mFile.setEncryptedFileName(encryptedFileName);
 
+            // encrypt directly into the file to upload, without holding the content in memory
             File encryptedTempFile = File.createTempFile("encFile", encryptedFileName);
-            FileOutputStream fileOutputStream = new FileOutputStream(encryptedTempFile);
-            fileOutputStream.write(encryptedFile.encryptedBytes);
-            fileOutputStream.close();
+            EncryptionUtils.EncryptedFile encryptedFile = EncryptionUtils.encryptFile(mFile,
+                                                                                      encryptedTempFile,
+                                                                                      key,
+                                                                                      iv);
 
             /***** E2E *****/
 
@@ -596,10 +608,17 @@ public class UploadFileOperation extends SyncOperation {
             if (size > ChunkedFileUploadRemoteOperation.CHUNK_SIZE_MOBILE) {
                 boolean onWifiConnection = connectivityService.isOnlineWithWifi();
 
-                mUploadOperation = new ChunkedFileUploadRemoteOperation(encryptedTempFile.getAbsolutePath(),
-                                                                        mFile.getParentRemotePath() + encryptedFileName,
-                                                                        mFile.getMimeType(), mFile.getEtagInConflict(),
-                                                                        timeStamp, onWifiConnection);
+                // the encrypted file differs on every attempt, its chunks cannot be reused
+                mUploadOperation = new ParallelChunkedUploadRemoteOperation(encryptedTempFile.getAbsolutePath(),
+                                                                            mFile.getParentRemotePath() +
+                                                                                encryptedFileName,
+                                                                            mFile.getMimeType(),
+                                                                            mFile.getEtagInConflict(),
+                                                                            timeStamp,
+                                                                            onWifiConnection,
+                                                                            UUID.randomUUID().toString(),
+                                                                            null,
+                                                                            getOCUploadId());
             } else {
                 mUploadOperation = new UploadFileRemoteOperation(encryptedTempFile.getAbsolutePath(),
                         mFile.getParentRemotePath() + encryptedFileName, mFile.getMimeType(),
@@ -829,10 +848,18 @@ public class UploadFileOperation extends SyncOperation {
             if (size > ChunkedFileUploadRemoteOperation.CHUNK_SIZE_MOBILE) {
                 boolean onWifiConnection = connectivityService.isOnlineWithWifi();
 
-                mUploadOperation = new ChunkedFileUploadRemoteOperation(mFile.getStoragePath(),
-                                                                        mFile.getRemotePath(), mFile.getMimeType(),
-                                                                        mFile.getEtagInConflict(),
-                                                                        timeStamp, onWifiConnection);
+                // a changed local file gets a new upload folder, chunks of the old content are not reused
+                String transferId = "android-" + getOCUploadId() + "-" + originalFile.length() + "-" +
+                    originalFile.lastModified();
+                mUploadOperation = new ParallelChunkedUploadRemoteOperation(mFile.getStoragePath(),
+                                                                            mFile.getRemotePath(),
+                                                                            mFile.getMimeType(),
+                                                                            mFile.getEtagInConflict(),
+                                                                            timeStamp,
+                                                                            onWifiConnection,
+                                                                            transferId,
+                                                                            uploadsStorageManager,
+                                                                            getOCUploadId());
             } else {
                 mUploadOperation = new UploadFileRemoteOperation(mFile.getStoragePath(),
                         mFile.getRemotePath(), mFile.getMimeType(), mFile.getEtagInConflict(), timeStamp);
@@ -1032,11 +1059,15 @@ public class UploadFileOperation extends SyncOperation {
      * will be uploaded.
      */
     private RemoteOperationResult grantFolderExistence(String pathToGrant, OwnCloudClient client) {
-        RemoteOperation operation = new ExistenceCheckRemoteOperation(pathToGrant, false);
-        RemoteOperationResult result = operation.execute(client);
+        RemoteOperationResult result = checkFolderExistence(pathToGrant, client);
         if (!result.isSuccess() && result.getCode() == ResultCode.FILE_NOT_FOUND && mRemoteFolderToBeCreated) {
-            SyncOperation syncOp = new CreateFolderOperation(pathToGrant, true);
-            result = syncOp.execute(client, getStorageManager());
+            synchronized (getFolderCreationLock(pathToGrant)) {
+                // another upload may have created the folder meanwhile
+                result = checkFolderExistence(pathToGrant, client);
+                if (!result.isSuccess() && result.getCode() == ResultCode.FILE_NOT_FOUND) {
+                    result = createFolder(pathToGrant, client);
+                }
+            }
         }
         if (result.isSuccess()) {
             OCFile parentDir = getStorageManager().getFileByPath(pathToGrant);
@@ -1052,6 +1083,32 @@ public class UploadFileOperation extends SyncOperation {
         return result;
     }
 
+    private RemoteOperationResult checkFolderExistence(String path, OwnCloudClient client) {
+        return new ExistenceCheckRemoteOperation(path, false).execute(client);
+    }
+
+    /**
+     * Creates a remote folder and its missing parents. A folder or parent created by another client or an upload
+     * into another folder at the same time fails the creation, it is then checked again and created once more.
+     */
+    private RemoteOperationResult createFolder(String path, OwnCloudClient client) {
+        RemoteOperationResult result = new CreateFolderOperation(path, true).execute(client, getStorageManager());
+        if (!result.isSuccess()) {
+            RemoteOperationResult existence = checkFolderExistence(path, client);
+            if (existence.isSuccess()) {
+                result = existence;
+            } else if (existence.getCode() == ResultCode.FILE_NOT_FOUND) {
+                result = new CreateFolderOperation(path, true).execute(client, getStorageManager());
+            }
+        }
+        return result;
+    }
+
+    private Object getFolderCreationLock(String path) {
+        int hash = (mAccount.name + path).hashCode();
+        return FOLDER_CREATION_LOCKS[(hash & Integer.MAX_VALUE) % FOLDER_CREATION_LOCKS.length];
+    }
+
     private OCFile createLocalFolder(String remotePath) {
         String parentPath = new File(remotePath).getParent();
         parentPath = parentPath.endsWith(OCFile.PATH_SEPARATOR) ?
@@ -1216,13 +1273,7 @@ public class UploadFileOperation extends SyncOperation {
                         in = new FileInputStream(sourceFile);
                     }
                     out = new FileOutputStream(targetFile);
-                    int nRead;
-                    byte[] buf = new byte[4096];
-                    while (!mCancellationRequested.get() &&
-                            (nRead = in.read(buf)) > -1) {
-                        out.write(buf, 0, nRead);
-                    }
-                    out.flush();
+                    FileCopyUtils.copy(in, out, mCancellationRequested);
 
                 } // else: weird but possible situation, nothing to copy
 
@@ -1355,7 +1406,8 @@ public class UploadFileOperation extends SyncOperation {
         // generate new Thumbnail
         final ThumbnailsCacheManager.ThumbnailGenerationTask task =
                 new ThumbnailsCacheManager.ThumbnailGenerationTask(getStorageManager(), mAccount);
-        task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, file.getRemoteId()));
+        task.executeOnExecutor(ThumbnailsCacheManager.THUMBNAIL_EXECUTOR,
+                               new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, file.getRemoteId()));
     }
 
     private void updateOCFile(OCFile file, RemoteFile remoteFile) {
@@ -0,0 +1,114 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.operations;
+
+import java.util.BitSet;
+
+/**
+ * Chunks of a chunked upload already confirmed by the server, stored in the uploads table as
+ * "transferId;chunkSize;index,index,...".
+ *
+ * The chunk size is part of the state, chunks uploaded before cannot be reused with a different one.
+ */
+final class UploadedChunks {
+    private static final String SEPARATOR = ";";
+    private static final String INDEX_SEPARATOR = ",";
+
+    private final String transferId;
+    private final long chunkSize;
+    private final BitSet chunks = new BitSet();
+
+    UploadedChunks(String transferId, long chunkSize) {
+        if (transferId.contains(SEPARATOR)) {
+            throw new IllegalArgumentException("Invalid transfer id " + transferId);
+        }
+        this.transferId = transferId;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return stored chunks, null if value is null or malformed
+     */
+    static UploadedChunks parse(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        String[] parts = value.split(SEPARATOR, -1);
+        if (parts.length != 3 || parts[0].isEmpty()) {
+            return null;
+        }
+
+        try {
+            long chunkSize = Long.parseLong(parts[1]);
+            if (chunkSize <= 0) {
+                return null;
+            }
+
+            UploadedChunks uploadedChunks = new UploadedChunks(parts[0], chunkSize);
+            if (!parts[2].isEmpty()) {
+                for (String index : parts[2].split(INDEX_SEPARATOR)) {
+                    uploadedChunks.add(Integer.parseInt(index));
+                }
+            }
+            return uploadedChunks;
+        } catch (IllegalArgumentException e) {
+            // also covers NumberFormatException and negative indices
+            return null;
+        }
+    }
+
+    String serialize() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(transferId).append(SEPARATOR).append(chunkSize).append(SEPARATOR);
+        for (int index = chunks.nextSetBit(0); index >= 0; index = chunks.nextSetBit(index + 1)) {
+            if (builder.charAt(builder.length() - 1) != SEPARATOR.charAt(0)) {
+                builder.append(INDEX_SEPARATOR);
+            }
+            builder.append(index);
+        }
+        return builder.toString();
+    }
+
+    void add(int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Invalid chunk index " + index);
+        }
+        chunks.set(index);
+    }
+
+    boolean contains(int index) {
+        return chunks.get(index);
+    }
+
+    /**
+     * @return number of uploaded chunks
+     */
+    int size() {
+        return chunks.cardinality();
+    }
+
+    String getTransferId() {
+        return transferId;
+    }
+
+    long getChunkSize() {
+        return chunkSize;
+    }
+}
@@ -27,9 +27,11 @@ import android.accounts.AuthenticatorException;
 import android.accounts.OperationCanceledException;
 import android.annotation.SuppressLint;
 import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
 import android.graphics.Point;
@@ -83,9 +85,8 @@ import org.nextcloud.providers.cursors.RootCursor;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -100,10 +101,16 @@ public class DocumentsStorageProvider extends DocumentsProvider {
 
     private static final long CACHE_EXPIRATION = TimeUnit.MILLISECONDS.convert(1, TimeUnit.MINUTES);
 
+    /**
+     * Interval to check a download in progress, in case its broadcast is missed
+     */
+    private static final long DOWNLOAD_CHECK_INTERVAL_MS = 1000;
+
     UserAccountManager accountManager;
 
     private static final String DOCUMENTID_SEPARATOR = "/";
     private static final int DOCUMENTID_PARTS = 2;
+    private static final int SEARCH_RESULT_LIMIT = 100;
     private final SparseArray<FileDataStorageManager> rootIdToStorageManager = new SparseArray<>();
 
     private final Executor executor = Executors.newCachedThreadPool();
@@ -201,26 +208,17 @@ public class DocumentsStorageProvider extends DocumentsProvider {
         Account account = document.getAccount();
         final User user = accountManager.getUser(account.name).orElseThrow(RuntimeException::new); // should exist
 
-        if (!ocFile.isDown()) {
-            Intent i = new Intent(getContext(), FileDownloader.class);
-            i.putExtra(FileDownloader.EXTRA_USER, user);
-            i.putExtra(FileDownloader.EXTRA_FILE, ocFile);
-            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
-                context.startForegroundService(i);
-            } else {
-                context.startService(i);
-            }
+        boolean isWrite = mode.indexOf('w') != -1;
 
-            do {
-                if (!waitOrGetCancelled(cancellationSignal)) {
-                    throw new FileNotFoundException("File with id " + documentId + " not found!");
+        if (!ocFile.isDown()) {
+            if (canStream(ocFile, isWrite, Build.VERSION.SDK_INT)) {
+                ParcelFileDescriptor streamingDescriptor = openStreaming(document, user, context);
+                if (streamingDescriptor != null) {
+                    return streamingDescriptor;
                 }
-                ocFile = document.getFile();
+            }
 
-                if (ocFile == null) {
-                    throw new FileNotFoundException("File with id " + documentId + " not found!");
-                }
-            } while (!ocFile.isDown());
+            ocFile = downloadAndWait(document, user, context, cancellationSignal);
         } else {
             OCFile finalFile = ocFile;
             Thread syncThread = new Thread(() -> {
@@ -259,7 +257,6 @@ public class DocumentsStorageProvider extends DocumentsProvider {
 
         File file = new File(ocFile.getStoragePath());
         int accessMode = ParcelFileDescriptor.parseMode(mode);
-        boolean isWrite = mode.indexOf('w') != -1;
 
         final OCFile oldFile = ocFile;
         final OCFile newFile = ocFile;
@@ -286,6 +283,114 @@ public class DocumentsStorageProvider extends DocumentsProvider {
         }
     }
 
+    /**
+     * @return true if a file which is not downloaded yet can be read while it is downloaded, false if it has to be
+     * downloaded before it is opened: proxy file descriptors need Android 8, encrypted files are decrypted as a whole
+     */
+    static boolean canStream(OCFile file, boolean isWrite, int sdkVersion) {
+        return !isWrite && !file.isEncrypted() && sdkVersion >= Build.VERSION_CODES.O;
+    }
+
+    /**
+     * Opens a descriptor reading the file from the server while it is read, the file is downloaded once the
+     * descriptor is closed.
+     *
+     * @return descriptor, null if streaming is not possible
+     */
+    @TargetApi(Build.VERSION_CODES.O)
+    private ParcelFileDescriptor openStreaming(Document document, User user, Context context) {
+        OwnCloudClient client = document.getClient();
+        if (client == null) {
+            return null;
+        }
+
+        OCFile file = document.getFile();
+        File partialDownload = new File(FileStorageUtils.getTemporalPath(user.getAccountName()) +
+                                            file.getRemotePath());
+        try {
+            return StreamingDocumentCallback.open(context,
+                                                  client,
+                                                  file.getRemotePath(),
+                                                  file.getFileLength(),
+                                                  partialDownload,
+                                                  () -> startDownload(context, user, file));
+        } catch (IOException e) {
+            Log_OC.e(TAG, "Unable to stream " + file.getRemotePath() + ", downloading it", e);
+            return null;
+        }
+    }
+
+    /**
+     * Downloads the file, waiting for the broadcast of the finished download or for the file to be down.
+     *
+     * @return downloaded file
+     */
+    private OCFile downloadAndWait(Document document,
+                                   User user,
+                                   Context context,
+                                   CancellationSignal cancellationSignal) throws FileNotFoundException {
+        OCFile file = document.getFile();
+        CountDownLatch finished = new CountDownLatch(1);
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context receiverContext, Intent intent) {
+                // the last download finished before is delivered right away, it might be an earlier one of the file
+                if (!isInitialStickyBroadcast() &&
+                    user.nameEquals(intent.getStringExtra(FileDownloader.ACCOUNT_NAME)) &&
+                    file.getRemotePath().equals(intent.getStringExtra(FileDownloader.EXTRA_REMOTE_PATH))) {
+                    finished.countDown();
+                }
+            }
+        };
+
+        context.registerReceiver(receiver, new IntentFilter(FileDownloader.getDownloadFinishMessage()));
+        if (cancellationSignal != null) {
+            cancellationSignal.setOnCancelListener(finished::countDown);
+        }
+
+        try {
+            startDownload(context, user, file);
+            while (!finished.await(DOWNLOAD_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                if (cancellationSignal != null && cancellationSignal.isCanceled()) {
+                    break;
+                }
+                OCFile current = document.getFile();
+                if (current == null || current.isDown()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileNotFoundException("Interrupted while downloading " + document.getDocumentId());
+        } finally {
+            context.unregisterReceiver(receiver);
+            if (cancellationSignal != null) {
+                cancellationSignal.setOnCancelListener(null);
+            }
+        }
+
+        if (cancellationSignal != null && cancellationSignal.isCanceled()) {
+            throw new FileNotFoundException("Download of " + document.getDocumentId() + " cancelled");
+        }
+
+        OCFile downloaded = document.getFile();
+        if (downloaded == null || !downloaded.isDown()) {
+            throw new FileNotFoundException("File with id " + document.getDocumentId() + " not found!");
+        }
+        return downloaded;
+    }
+
+    private void startDownload(Context context, User user, OCFile file) {
+        Intent i = new Intent(context, FileDownloader.class);
+        i.putExtra(FileDownloader.EXTRA_USER, user);
+        i.putExtra(FileDownloader.EXTRA_FILE, file);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(i);
+        } else {
+            context.startService(i);
+        }
+    }
+
     private void showToast() {
         Handler handler = new Handler(Looper.getMainLooper());
         handler.post(() -> Toast.makeText(MainApp.getAppContext(),
@@ -322,7 +427,10 @@ public class DocumentsStorageProvider extends DocumentsProvider {
                                                                    + document.getFile().getRemoteId());
 
         if (!exists) {
-            ThumbnailsCacheManager.generateThumbnailFromOCFile(document.getFile());
+            OwnCloudClient client = document.getClient();
+            if (client != null) {
+                ThumbnailsCacheManager.generateThumbnailFromOCFile(document.getFile(), client);
+            }
         }
 
         Uri uri = Uri.parse(UriUtils.URI_CONTENT_SCHEME + context.getResources().getString(
@@ -441,8 +549,8 @@ public class DocumentsStorageProvider extends DocumentsProvider {
             return result;
         }
 
-        for (Document d : findFiles(new Document(storageManager, ROOT_PATH), query)) {
-            result.addFile(d);
+        for (OCFile file : storageManager.searchFilesByName(query, true, SEARCH_RESULT_LIMIT)) {
+            result.addFile(new Document(storageManager, file));
         }
 
         return result;
@@ -649,29 +757,6 @@ public class DocumentsStorageProvider extends DocumentsProvider {
         }
     }
 
-    private boolean waitOrGetCancelled(CancellationSignal cancellationSignal) {
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException e) {
-            return false;
-        }
-
-        return !(cancellationSignal != null && cancellationSignal.isCanceled());
-    }
-
-    private List<Document> findFiles(Document root, String query) {
-        FileDataStorageManager storageManager = root.getStorageManager();
-        List<Document> result = new ArrayList<>();
-        for (OCFile f : storageManager.getFolderContent(root.getFile(), false)) {
-            if (f.isFolder()) {
-                result.addAll(findFiles(new Document(storageManager, f), query));
-            } else if (f.getFileName().contains(query)) {
-                result.add(new Document(storageManager, f));
-            }
-        }
-        return result;
-    }
-
     private Uri toNotifyUri(Document document) {
         return DocumentsContract.buildDocumentUri(
             getContext().getString(R.string.document_provider_authority),
@@ -83,6 +83,7 @@ public class FileContentProvider extends ContentProvider {
     private static final int ARBITRARY_DATA = 9;
     private static final int VIRTUAL = 10;
     private static final int FILESYSTEM = 11;
+    private static final int FILE_SEARCH = 12;
     private static final String TAG = FileContentProvider.class.getSimpleName();
     // todo avoid string concatenation and use string formatting instead later.
     private static final String ERROR = "ERROR ";
@@ -91,6 +92,7 @@ public class FileContentProvider extends ContentProvider {
     private static final String TEXT = " TEXT, ";
     private static final String ALTER_TABLE = "ALTER TABLE ";
     private static final String ADD_COLUMN = " ADD COLUMN ";
+    private static final String CREATE_INDEX = "CREATE INDEX IF NOT EXISTS ";
     private static final String UPGRADE_VERSION_MSG = "OUT of the ADD in onUpgrade; oldVersion == %d, newVersion == %d";
     private static final int SINGLE_PATH_SEGMENT = 1;
     public static final int ARBITRARY_DATA_TABLE_INTRODUCTION_VERSION = 20;
@@ -447,6 +449,7 @@ public class FileContentProvider extends ContentProvider {
         mUriMatcher.addURI(authority, "arbitrary_data", ARBITRARY_DATA);
         mUriMatcher.addURI(authority, "virtual", VIRTUAL);
         mUriMatcher.addURI(authority, "filesystem", FILESYSTEM);
+        mUriMatcher.addURI(authority, "file_search", FILE_SEARCH);
 
         return true;
     }
@@ -460,6 +463,7 @@ public class FileContentProvider extends ContentProvider {
             case ROOT_DIRECTORY:
             case SINGLE_FILE:
             case DIRECTORY:
+            case FILE_SEARCH:
                 break;
 
             default:
@@ -548,6 +552,17 @@ public class FileContentProvider extends ContentProvider {
                     sqlQuery.appendWhere(ProviderTableMeta._ID + "=" + uri.getPathSegments().get(1));
                 }
                 break;
+            case FILE_SEARCH:
+                String match = uri.getQueryParameter(ProviderTableMeta.FILE_SEARCH_MATCH);
+                if (TextUtils.isEmpty(match)) {
+                    throw new IllegalArgumentException("Missing match expression: " + uri);
+                }
+                sqlQuery.appendWhere(ProviderTableMeta._ID + " IN (SELECT docid FROM "
+                                         + ProviderTableMeta.FILE_NAME_INDEX_TABLE_NAME + " WHERE "
+                                         + ProviderTableMeta.FILE_NAME_INDEX_TABLE_NAME + " MATCH ");
+                sqlQuery.appendWhereEscapeString(match);
+                sqlQuery.appendWhere(")");
+                break;
             default:
                 throw new IllegalArgumentException("Unknown uri id: " + uri);
         }
@@ -592,7 +607,8 @@ public class FileContentProvider extends ContentProvider {
 
         // only file list is accessible via content provider, so only this has to be protected with projectionMap
         if ((mUriMatcher.match(uri) == ROOT_DIRECTORY || mUriMatcher.match(uri) == SINGLE_FILE ||
-            mUriMatcher.match(uri) == DIRECTORY) && projectionArray != null) {
+            mUriMatcher.match(uri) == DIRECTORY || mUriMatcher.match(uri) == FILE_SEARCH) &&
+            projectionArray != null) {
             HashMap<String, String> projectionMap = new HashMap<>();
 
             for (String projection : ProviderTableMeta.FILE_ALL_COLUMNS) {
@@ -608,8 +624,13 @@ public class FileContentProvider extends ContentProvider {
             selection = "(?)";
         }
 
+        String limit = uri.getQueryParameter(ProviderTableMeta.QUERY_LIMIT);
+        if (limit != null && !TextUtils.isDigitsOnly(limit)) {
+            throw new IllegalArgumentException("Invalid limit: " + uri);
+        }
+
         sqlQuery.setStrict(true);
-        Cursor c = sqlQuery.query(db, projectionArray, selection, selectionArgs, null, null, order);
+        Cursor c = sqlQuery.query(db, projectionArray, selection, selectionArgs, null, null, order, limit);
         c.setNotificationUri(mContext.getContentResolver(), uri);
         return c;
     }
@@ -812,7 +833,8 @@ public class FileContentProvider extends ContentProvider {
                        + ProviderTableMeta.UPLOADS_IS_WHILE_CHARGING_ONLY + INTEGER  // boolean
                        + ProviderTableMeta.UPLOADS_IS_WIFI_ONLY + INTEGER // boolean
                        + ProviderTableMeta.UPLOADS_CREATED_BY + INTEGER    // Upload createdBy
-                       + ProviderTableMeta.UPLOADS_FOLDER_UNLOCK_TOKEN + " TEXT );");
+                       + ProviderTableMeta.UPLOADS_FOLDER_UNLOCK_TOKEN + TEXT
+                       + ProviderTableMeta.UPLOADS_UPLOADED_CHUNKS + " TEXT );");
 
         /* before:
         // PRIMARY KEY should always imply NOT NULL. Unfortunately, due to a
@@ -881,10 +903,72 @@ public class FileContentProvider extends ContentProvider {
                        + ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD + " INTEGER, "
                        + ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID + " STRING, "
                        + ProviderTableMeta.FILESYSTEM_CRC32 + " STRING, "
+                       + ProviderTableMeta.FILESYSTEM_FILE_SIZE + " LONG, "
+                       + ProviderTableMeta.FILESYSTEM_FILE_INODE + " LONG, "
                        + ProviderTableMeta.FILESYSTEM_FILE_MODIFIED + " LONG );"
         );
     }
 
+    /**
+     * Creates the indexes backing the lookups done on every folder listing, synchronization and auto upload scan:
+     * files by account and path, by parent and by account and remote id, filesystem entries by synced folder and
+     * local path, and uploads by status and account.
+     *
+     * @param db Database where the tables are included.
+     */
+    private void createIndexes(SQLiteDatabase db) {
+        db.execSQL(CREATE_INDEX + ProviderTableMeta.FILE_ACCOUNT_OWNER_PATH_INDEX
+                       + " ON " + ProviderTableMeta.FILE_TABLE_NAME + "("
+                       + ProviderTableMeta.FILE_ACCOUNT_OWNER + ", "
+                       + ProviderTableMeta.FILE_PATH + ");");
+
+        db.execSQL(CREATE_INDEX + ProviderTableMeta.FILE_PARENT_INDEX
+                       + " ON " + ProviderTableMeta.FILE_TABLE_NAME + "("
+                       + ProviderTableMeta.FILE_PARENT + ");");
+
+        db.execSQL(CREATE_INDEX + ProviderTableMeta.FILE_ACCOUNT_OWNER_REMOTE_ID_INDEX
+                       + " ON " + ProviderTableMeta.FILE_TABLE_NAME + "("
+                       + ProviderTableMeta.FILE_ACCOUNT_OWNER + ", "
+                       + ProviderTableMeta.FILE_REMOTE_ID + ");");
+
+        db.execSQL(CREATE_INDEX + ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_LOCAL_PATH_INDEX
+                       + " ON " + ProviderTableMeta.FILESYSTEM_TABLE_NAME + "("
+                       + ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID + ", "
+                       + ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH + ");");
+
+        db.execSQL(CREATE_INDEX + ProviderTableMeta.UPLOADS_STATUS_ACCOUNT_NAME_INDEX
+                       + " ON " + ProviderTableMeta.UPLOADS_TABLE_NAME + "("
+                       + ProviderTableMeta.UPLOADS_STATUS + ", "
+                       + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + ");");
+    }
+
+    /**
+     * Full text index of the file names, kept up to date with triggers on the file list. The simple tokenizer splits
+     * names at ASCII characters other than letters and digits and matches ASCII letters case insensitive.
+     */
+    private void createFileNameIndex(SQLiteDatabase db) {
+        String index = ProviderTableMeta.FILE_NAME_INDEX_TABLE_NAME;
+        String files = ProviderTableMeta.FILE_TABLE_NAME;
+        String name = ProviderTableMeta.FILE_NAME;
+        String id = ProviderTableMeta._ID;
+
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + index + " USING fts4(content=\"" + files + "\", "
+                       + name + ");");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + index + "_before_update BEFORE UPDATE OF " + name + " ON "
+                       + files + " BEGIN DELETE FROM " + index + " WHERE docid=old." + id + "; END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + index + "_before_delete BEFORE DELETE ON " + files
+                       + " BEGIN DELETE FROM " + index + " WHERE docid=old." + id + "; END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + index + "_after_update AFTER UPDATE OF " + name + " ON "
+                       + files + " BEGIN INSERT INTO " + index + "(docid, " + name + ") VALUES(new." + id
+                       + ", new." + name + "); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + index + "_after_insert AFTER INSERT ON " + files
+                       + " BEGIN INSERT INTO " + index + "(docid, " + name + ") VALUES(new." + id
+                       + ", new." + name + "); END;");
+
+        db.execSQL("INSERT INTO " + index + "(" + index + ") VALUES('rebuild');");
+    }
+
     /**
      * Version 10 of database does not modify its scheme. It coincides with the upgrade of the
      * ownCloud account names structure to include in it the path to the server instance. Updating
@@ -1060,6 +1144,12 @@ public class FileContentProvider extends ContentProvider {
 
             // Create filesystem table
             createFileSystemTable(db);
+
+            // Create indexes
+            createIndexes(db);
+
+            // Create file name index
+            createFileNameIndex(db);
         }
 
         @Override
@@ -2193,6 +2283,83 @@ public class FileContentProvider extends ContentProvider {
             if (!upgraded) {
                 Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
             }
+
+            if (oldVersion < 56 && newVersion >= 56) {
+                Log_OC.i(SQL, "Entering in the #56 add indexes to filelist, filesystem and uploads tables");
+                db.beginTransaction();
+                try {
+                    createIndexes(db);
+                    upgraded = true;
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            if (!upgraded) {
+                Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
+            }
+
+            if (oldVersion < 57 && newVersion >= 57) {
+                Log_OC.i(SQL, "Entering in the #57 add file size and inode to filesystem table");
+                db.beginTransaction();
+                try {
+                    if (!checkIfColumnExists(db, ProviderTableMeta.FILESYSTEM_TABLE_NAME,
+                                             ProviderTableMeta.FILESYSTEM_FILE_SIZE)) {
+                        db.execSQL(ALTER_TABLE + ProviderTableMeta.FILESYSTEM_TABLE_NAME +
+                                       ADD_COLUMN + ProviderTableMeta.FILESYSTEM_FILE_SIZE + " LONG ");
+                    }
+                    if (!checkIfColumnExists(db, ProviderTableMeta.FILESYSTEM_TABLE_NAME,
+                                             ProviderTableMeta.FILESYSTEM_FILE_INODE)) {
+                        db.execSQL(ALTER_TABLE + ProviderTableMeta.FILESYSTEM_TABLE_NAME +
+                                       ADD_COLUMN + ProviderTableMeta.FILESYSTEM_FILE_INODE + " LONG ");
+                    }
+                    upgraded = true;
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            if (!upgraded) {
+                Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
+            }
+
+            if (oldVersion < 58 && newVersion >= 58) {
+                Log_OC.i(SQL, "Entering in the #58 add uploaded chunks to uploads table");
+                db.beginTransaction();
+                try {
+                    if (!checkIfColumnExists(db, ProviderTableMeta.UPLOADS_TABLE_NAME,
+                                             ProviderTableMeta.UPLOADS_UPLOADED_CHUNKS)) {
+                        db.execSQL(ALTER_TABLE + ProviderTableMeta.UPLOADS_TABLE_NAME +
+                                       ADD_COLUMN + ProviderTableMeta.UPLOADS_UPLOADED_CHUNKS + " TEXT ");
+                    }
+                    upgraded = true;
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            if (!upgraded) {
+                Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
+            }
+
+            if (oldVersion < 59 && newVersion >= 59) {
+                Log_OC.i(SQL, "Entering in the #59 add file name index");
+                db.beginTransaction();
+                try {
+                    createFileNameIndex(db);
+                    upgraded = true;
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            if (!upgraded) {
+                Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
+            }
         }
     }
 }
@@ -0,0 +1,334 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.providers;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.ParcelFileDescriptor;
+import android.os.ProxyFileDescriptorCallback;
+import android.os.storage.StorageManager;
+import android.system.ErrnoException;
+import android.system.OsConstants;
+
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.WebdavUtils;
+import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.operations.ResumableDownloadFileRemoteOperation;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Serves reads of a proxy file descriptor from the server, so a document can be read while it is downloaded.
+ *
+ * Sequential reads share one GET request; a read elsewhere in the file, e.g. a seek in a video, starts a range
+ * request at its offset. Bytes received contiguously from the start of the file are kept in a cache file, reads of
+ * them do not need the network again. When the descriptor is closed, the cached bytes become a partial download the
+ * {@link com.owncloud.android.files.services.FileDownloader} resumes from.
+ */
+@RequiresApi(api = Build.VERSION_CODES.O)
+final class StreamingDocumentCallback extends ProxyFileDescriptorCallback {
+    private static final String TAG = StreamingDocumentCallback.class.getSimpleName();
+
+    /** forward distance read and dropped instead of starting a new request */
+    static final long MAX_SKIP = 512 * 1024;
+
+    private static final String STREAM_FILE_SUFFIX = ".stream";
+    private static final String HEADER_RANGE = "Range";
+    private static final String HEADER_IF_RANGE = "If-Range";
+    private static final String HEADER_CONTENT_RANGE = "Content-Range";
+    private static final String HEADER_ETAG = "ETag";
+    private static final String WEAK_ETAG_PREFIX = "W/";
+    private static final int SKIP_BUFFER_SIZE = 64 * 1024;
+
+    private final OwnCloudClient client;
+    private final String remotePath;
+    private final long size;
+    private final File partialDownload;
+    private final File cacheFile;
+    private final HandlerThread thread;
+    private final Runnable onClosed;
+
+    private RandomAccessFile cache;
+    private long cachedLength;
+    private GetMethod method;
+    private InputStream stream;
+    private long streamPosition;
+    private String etag;
+
+    @VisibleForTesting
+    StreamingDocumentCallback(OwnCloudClient client,
+                              String remotePath,
+                              long size,
+                              File partialDownload,
+                              HandlerThread thread,
+                              Runnable onClosed) {
+        this.client = client;
+        this.remotePath = remotePath;
+        this.size = size;
+        this.partialDownload = partialDownload;
+        this.thread = thread;
+        this.onClosed = onClosed;
+        cacheFile = new File(partialDownload.getAbsolutePath() + STREAM_FILE_SUFFIX);
+        openCache();
+    }
+
+    /**
+     * Opens a read only descriptor streaming a remote file. It returns right away, data is requested as it is read.
+     *
+     * @param partialDownload temporary file of the download of the remote file
+     * @param onClosed        called on a background thread once the descriptor was closed
+     */
+    static ParcelFileDescriptor open(Context context,
+                                     OwnCloudClient client,
+                                     String remotePath,
+                                     long size,
+                                     File partialDownload,
+                                     Runnable onClosed) throws IOException {
+        HandlerThread thread = new HandlerThread(TAG);
+        thread.start();
+
+        StreamingDocumentCallback callback = new StreamingDocumentCallback(client, remotePath, size,
+                                                                           partialDownload, thread, onClosed);
+
+        try {
+            StorageManager storageManager = context.getSystemService(StorageManager.class);
+            return storageManager.openProxyFileDescriptor(ParcelFileDescriptor.MODE_READ_ONLY,
+                                                          callback,
+                                                          new Handler(thread.getLooper()));
+        } catch (IOException | RuntimeException e) {
+            callback.closeCache();
+            callback.deleteCacheFile();
+            thread.quitSafely();
+            throw e;
+        }
+    }
+
+    @Override
+    public long onGetSize() {
+        return size;
+    }
+
+    @Override
+    public int onRead(long offset, int readSize, byte[] data) throws ErrnoException {
+        if (offset >= size) {
+            return 0;
+        }
+        int length = (int) Math.min(readSize, size - offset);
+
+        try {
+            if (cache != null && offset + length <= cachedLength) {
+                cache.seek(offset);
+                cache.readFully(data, 0, length);
+                return length;
+            }
+
+            moveStreamTo(offset);
+            return readStream(data, length);
+        } catch (IOException e) {
+            Log_OC.e(TAG, "Reading " + remotePath + " at " + offset + " failed", e);
+            closeStream();
+            throw new ErrnoException("onRead", OsConstants.EIO);
+        }
+    }
+
+    @Override
+    public void onRelease() {
+        closeStream();
+        handOverCache();
+        thread.quitSafely();
+        onClosed.run();
+    }
+
+    private void moveStreamTo(long offset) throws IOException {
+        if (stream != null && offset >= streamPosition && offset - streamPosition <= MAX_SKIP) {
+            skip(offset - streamPosition);
+            return;
+        }
+
+        // continue the cache rather than leaving a gap in it, if that is not far from the requested bytes
+        long start = offset >= cachedLength && offset - cachedLength <= MAX_SKIP ? cachedLength : offset;
+        openStream(start);
+        skip(offset - start);
+    }
+
+    private void openStream(long start) throws IOException {
+        closeStream();
+
+        GetMethod getMethod = new GetMethod(client.getWebdavUri() + WebdavUtils.encodePath(remotePath));
+        if (start > 0) {
+            getMethod.setRequestHeader(HEADER_RANGE, "bytes=" + start + "-");
+            if (etag != null) {
+                // a changed file is sent as a whole, not mixed with the bytes read so far
+                getMethod.setRequestHeader(HEADER_IF_RANGE, etag);
+            }
+        }
+
+        int status = client.executeMethod(getMethod);
+        boolean expected;
+        if (start > 0) {
+            Header contentRange = getMethod.getResponseHeader(HEADER_CONTENT_RANGE);
+            expected = status == HttpStatus.SC_PARTIAL_CONTENT && contentRange != null &&
+                ResumableDownloadFileRemoteOperation.parseContentRangeStart(contentRange.getValue()) == start;
+        } else {
+            expected = status == HttpStatus.SC_OK;
+        }
+
+        if (!expected) {
+            getMethod.abort();
+            getMethod.releaseConnection();
+            throw new IOException("Unexpected response " + status + " for " + remotePath + " from byte " + start);
+        }
+
+        if (etag == null) {
+            Header etagHeader = getMethod.getResponseHeader(HEADER_ETAG);
+            if (etagHeader != null && !etagHeader.getValue().startsWith(WEAK_ETAG_PREFIX)) {
+                etag = etagHeader.getValue();
+            }
+        }
+
+        method = getMethod;
+        stream = getMethod.getResponseBodyAsStream();
+        streamPosition = start;
+    }
+
+    private int readStream(byte[] data, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = stream.read(data, total, length - total);
+            if (read < 0) {
+                break;
+            }
+            appendToCache(data, total, read);
+            streamPosition += read;
+            total += read;
+        }
+        return total;
+    }
+
+    private void skip(long count) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(SKIP_BUFFER_SIZE, Math.max(count, 1))];
+        long remaining = count;
+        while (remaining > 0) {
+            int read = readStream(buffer, (int) Math.min(buffer.length, remaining));
+            if (read == 0) {
+                throw new IOException("Stream of " + remotePath + " ended at byte " + streamPosition);
+            }
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Appends the part of data following the cached bytes, if the stream reached them.
+     */
+    private void appendToCache(byte[] data, int offset, int length) {
+        long end = streamPosition + length;
+        if (cache == null || streamPosition > cachedLength || end <= cachedLength) {
+            return;
+        }
+
+        int alreadyCached = (int) (cachedLength - streamPosition);
+        try {
+            cache.seek(cachedLength);
+            cache.write(data, offset + alreadyCached, length - alreadyCached);
+            cachedLength = end;
+        } catch (IOException e) {
+            Log_OC.e(TAG, "Unable to cache " + remotePath + ", streaming without cache", e);
+            closeCache();
+            cachedLength = 0;
+        }
+    }
+
+    private void openCache() {
+        File parent = cacheFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            Log_OC.e(TAG, "Unable to create folder " + parent.getAbsolutePath());
+        }
+
+        try {
+            cache = new RandomAccessFile(cacheFile, "rw");
+            cache.setLength(0);
+        } catch (IOException e) {
+            Log_OC.e(TAG, "Unable to create " + cacheFile.getAbsolutePath() + ", streaming without cache", e);
+            cache = null;
+        }
+    }
+
+    /**
+     * Turns the cached bytes into a partial download, unless another download of the file left one already.
+     */
+    private void handOverCache() {
+        if (cache != null && cachedLength > 0 && etag != null && !partialDownload.exists()) {
+            try {
+                // keep the last byte for the download, so it gets the metadata of the file from the server
+                cache.setLength(Math.min(cachedLength, size - 1));
+                closeCache();
+
+                if (cacheFile.renameTo(partialDownload)) {
+                    ResumableDownloadFileRemoteOperation.savePartialEtag(partialDownload, etag);
+                }
+            } catch (IOException e) {
+                Log_OC.e(TAG, "Unable to keep streamed bytes of " + remotePath, e);
+                if (partialDownload.exists() && !partialDownload.delete()) {
+                    Log_OC.e(TAG, "Unable to delete " + partialDownload.getAbsolutePath());
+                }
+            }
+        }
+
+        closeCache();
+        deleteCacheFile();
+    }
+
+    private void closeStream() {
+        if (method != null) {
+            method.abort();
+            method.releaseConnection();
+            method = null;
+        }
+        stream = null;
+    }
+
+    private void closeCache() {
+        if (cache != null) {
+            try {
+                cache.close();
+            } catch (IOException e) {
+                Log_OC.e(TAG, "Unable to close " + cacheFile.getAbsolutePath(), e);
+            }
+            cache = null;
+        }
+    }
+
+    private void deleteCacheFile() {
+        if (cacheFile.exists() && !cacheFile.delete()) {
+            Log_OC.e(TAG, "Unable to delete " + cacheFile.getAbsolutePath());
+        }
+    }
+}
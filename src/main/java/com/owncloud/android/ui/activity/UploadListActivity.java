@@ -24,11 +24,8 @@
 package com.owncloud.android.ui.activity;
 
 import android.accounts.Account;
-import android.content.BroadcastReceiver;
 import android.content.ComponentName;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.ServiceConnection;
 import android.os.Bundle;
 import android.os.IBinder;
@@ -58,6 +55,8 @@ import com.owncloud.android.ui.decoration.MediaGridItemDecoration;
 import com.owncloud.android.utils.FilesSyncHelper;
 import com.owncloud.android.utils.ThemeUtils;
 
+import java.util.Observer;
+
 import javax.inject.Inject;
 
 import androidx.recyclerview.widget.GridLayoutManager;
@@ -72,8 +71,6 @@ public class UploadListActivity extends FileActivity {
 
     private static final String TAG = UploadListActivity.class.getSimpleName();
 
-    private UploadMessagesReceiver uploadMessagesReceiver;
-
     private UploadListAdapter uploadListAdapter;
 
     public SwipeRefreshLayout swipeListRefreshLayout;
@@ -98,6 +95,12 @@ public class UploadListActivity extends FileActivity {
 
     private UploadListLayoutBinding binding;
 
+    /**
+     * Updates the list with the uploads changed in {@link UploadsStorageManager}, notified on the thread changing them
+     */
+    private final Observer uploadsObserver = (observable, uploadIds) -> runOnUiThread(
+        () -> uploadListAdapter.onUploadsChanged(uploadIds instanceof long[] ? (long[]) uploadIds : null));
+
     @Override
     public void showFiles(boolean onDeviceOnly) {
         super.showFiles(onDeviceOnly);
@@ -214,13 +217,9 @@ public class UploadListActivity extends FileActivity {
 
         setDrawerMenuItemChecked(R.id.nav_uploads);
 
-        // Listen for upload messages
-        uploadMessagesReceiver = new UploadMessagesReceiver();
-        IntentFilter uploadIntentFilter = new IntentFilter();
-        uploadIntentFilter.addAction(FileUploader.getUploadsAddedMessage());
-        uploadIntentFilter.addAction(FileUploader.getUploadStartMessage());
-        uploadIntentFilter.addAction(FileUploader.getUploadFinishMessage());
-        registerReceiver(uploadMessagesReceiver, uploadIntentFilter);
+        // Listen for changed uploads, catching up with those changed while paused
+        uploadsStorageManager.addObserver(uploadsObserver);
+        uploadListAdapter.loadUploadItemsFromDb();
 
         Log_OC.v(TAG, "onResume() end");
 
@@ -229,10 +228,7 @@ public class UploadListActivity extends FileActivity {
     @Override
     protected void onPause() {
         Log_OC.v(TAG, "onPause() start");
-        if (uploadMessagesReceiver != null) {
-            unregisterReceiver(uploadMessagesReceiver);
-            uploadMessagesReceiver = null;
-        }
+        uploadsStorageManager.deleteObserver(uploadsObserver);
         super.onPause();
         Log_OC.v(TAG, "onPause() end");
     }
@@ -342,24 +338,4 @@ public class UploadListActivity extends FileActivity {
             }
         }
     }
-
-    /**
-     * Once the file upload has changed its status -> update uploads list view
-     */
-    private class UploadMessagesReceiver extends BroadcastReceiver {
-        /**
-         * {@link BroadcastReceiver} to enable syncing feedback in UI
-         */
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            try {
-                uploadListAdapter.loadUploadItemsFromDb();
-            } finally {
-                if (intent != null) {
-                    removeStickyBroadcast(intent);
-                }
-            }
-
-        }
-    }
 }
@@ -30,22 +30,39 @@ import com.owncloud.android.BuildConfig;
 import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.utils.BitmapUtils;
 
+import org.apache.commons.codec.binary.Hex;
+
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bitmap cache on disk. Safe for concurrent use: DiskLruCache synchronizes internally, and only writes to the same
+ * key are serialized, by one of a fixed set of locks, so that a concurrent write is not dropped.
+ */
 public class DiskLruImageCache {
 
     private DiskLruCache mDiskCache;
     private CompressFormat mCompressFormat;
     private int mCompressQuality;
-    private static final int CACHE_VERSION = 1;
+    // version 2: keys are SHA-256 digests; DiskLruCache drops a cache written by another version
+    private static final int CACHE_VERSION = 2;
     private static final int VALUE_COUNT = 1;
     private static final int IO_BUFFER_SIZE = 8 * 1024;
     private static final String CACHE_TEST_DISK = "cache_test_DISK_";
+    private static final int LOCK_STRIPES = 32;
+    private static final int FLUSH_BATCH_SIZE = 32;
+    private static final String KEY_DIGEST_ALGORITHM = "SHA-256";
+
+    private final Object[] mWriteLocks = new Object[LOCK_STRIPES];
+    private final AtomicInteger mPendingWrites = new AtomicInteger();
 
     private static final String TAG = DiskLruImageCache.class.getSimpleName();
 
@@ -54,6 +71,10 @@ public class DiskLruImageCache {
         mDiskCache = DiskLruCache.open(diskCacheDir, CACHE_VERSION, VALUE_COUNT, diskCacheSize);
         mCompressFormat = compressFormat;
         mCompressQuality = quality;
+
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            mWriteLocks[i] = new Object();
+        }
     }
 
     private boolean writeBitmapToFile(Bitmap bitmap, DiskLruCache.Editor editor) throws IOException {
@@ -69,9 +90,20 @@ public class DiskLruImageCache {
     }
 
     public void put(String key, Bitmap data) {
+        String validKey = convertToValidKey(key);
 
+        synchronized (getWriteLock(validKey)) {
+            write(validKey, data);
+        }
+
+        // every commit already appends to the journal; flushing trims the cache, which can wait for a batch
+        if (mPendingWrites.incrementAndGet() >= FLUSH_BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    private void write(String validKey, Bitmap data) {
         DiskLruCache.Editor editor = null;
-        String validKey = convertToValidKey(key);
         try {
             editor = mDiskCache.edit(validKey);
             if (editor == null) {
@@ -79,7 +111,6 @@ public class DiskLruImageCache {
             }
 
             if (writeBitmapToFile(data, editor)) {
-                mDiskCache.flush();
                 editor.commit();
                 if (BuildConfig.DEBUG) {
                     Log_OC.d(CACHE_TEST_DISK, "image put on disk cache " + validKey);
@@ -245,12 +276,37 @@ public class DiskLruImageCache {
         }
     }
 
+    /**
+     * Trims the cache to its maximum size and flushes the journal.
+     */
+    public void flush() {
+        mPendingWrites.set(0);
+        try {
+            mDiskCache.flush();
+        } catch (IOException | IllegalStateException e) {
+            Log_OC.d(TAG, "Error flushing disk cache", e);
+        }
+    }
+
     public File getCacheFolder() {
         return mDiskCache.getDirectory();
     }
 
-    private String convertToValidKey(String key) {
-        return Integer.toString(key.hashCode());
+    /**
+     * @return hex SHA-256 digest of the key, 64 characters, as allowed for DiskLruCache keys
+     */
+    static String convertToValidKey(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(KEY_DIGEST_ALGORITHM);
+            return new String(Hex.encodeHex(digest.digest(key.getBytes(Charset.forName("UTF-8")))));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is supported on every Android version
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Object getWriteLock(String validKey) {
+        return mWriteLocks[(validKey.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
     }
 
     /**
@@ -0,0 +1,114 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.ui.adapter;
+
+import com.owncloud.android.datamodel.OCFile;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Name index of the files of a single directory, used to filter the file list while typing.
+ *
+ * File names are normalized once when the index is built. If a query contains the previous query, only the
+ * previous matches are searched again, as they are the only possible candidates.
+ */
+final class FileNameIndex {
+    private final String directoryPath;
+    private final Locale locale;
+    private final OCFile[] files;
+    private final String[] names;
+
+    private String lastQuery;
+    private int[] lastMatches;
+    private int lastMatchCount;
+
+    /**
+     * @param allFiles      files to index; files outside of the directory and duplicates are skipped
+     * @param directoryPath remote path of the directory
+     * @param showHidden    if false, hidden files are skipped
+     */
+    FileNameIndex(List<OCFile> allFiles, String directoryPath, boolean showHidden, Locale locale) {
+        this.directoryPath = directoryPath;
+        this.locale = locale;
+
+        List<OCFile> indexedFiles = new ArrayList<>(allFiles.size());
+        Set<OCFile> seen = new HashSet<>(allFiles.size() * 2);
+
+        for (OCFile file : allFiles) {
+            if ((showHidden || !file.isHidden()) && file.getParentRemotePath().equals(directoryPath) &&
+                seen.add(file)) {
+                indexedFiles.add(file);
+            }
+        }
+
+        files = indexedFiles.toArray(new OCFile[0]);
+        names = new String[files.length];
+        for (int i = 0; i < files.length; i++) {
+            names[i] = files[i].getFileName().toLowerCase(locale);
+        }
+    }
+
+    String getDirectoryPath() {
+        return directoryPath;
+    }
+
+    int size() {
+        return files.length;
+    }
+
+    /**
+     * @param query text to search for in file names, case insensitive
+     * @return matching files, in the order they were indexed
+     */
+    synchronized List<OCFile> filter(String query) {
+        String normalizedQuery = query.toLowerCase(locale);
+
+        int[] matches = new int[files.length];
+        int matchCount = 0;
+
+        if (lastQuery != null && normalizedQuery.contains(lastQuery)) {
+            for (int i = 0; i < lastMatchCount; i++) {
+                int index = lastMatches[i];
+                if (names[index].contains(normalizedQuery)) {
+                    matches[matchCount++] = index;
+                }
+            }
+        } else {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].contains(normalizedQuery)) {
+                    matches[matchCount++] = i;
+                }
+            }
+        }
+
+        lastQuery = normalizedQuery;
+        lastMatches = matches;
+        lastMatchCount = matchCount;
+
+        List<OCFile> result = new ArrayList<>(matchCount);
+        for (int i = 0; i < matchCount; i++) {
+            result.add(files[matches[i]]);
+        }
+        return result;
+    }
+}
@@ -54,6 +54,7 @@ import com.nextcloud.client.account.UserAccountManager;
 import com.nextcloud.client.preferences.AppPreferences;
 import com.owncloud.android.R;
 import com.owncloud.android.datamodel.FileDataStorageManager;
+import com.owncloud.android.datamodel.FolderSizeIndex;
 import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.datamodel.ThumbnailsCacheManager;
 import com.owncloud.android.datamodel.VirtualFolderType;
@@ -90,7 +91,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
-import java.util.Vector;
 
 import androidx.annotation.NonNull;
 import androidx.core.graphics.drawable.RoundedBitmapDrawable;
@@ -124,6 +124,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
     private OCFileListFragmentInterface ocFileListFragmentInterface;
 
     private FilesFilter mFilesFilter;
+    private volatile FileNameIndex fileNameIndex;
     private OCFile currentDirectory;
     private static final String TAG = OCFileListAdapter.class.getSimpleName();
 
@@ -486,8 +487,13 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
                 if (onlyOnDevice && storagePath != null) {
                     File localFile = new File(storagePath);
                     long localSize;
-                    if (localFile.isDirectory()) {
-                        localSize = FileStorageUtils.getFolderSize(localFile);
+                    if (file.isFolder()) {
+                        localSize = FolderSizeIndex.getInstance().getCachedSize(localFile);
+                        if (localSize == FolderSizeIndex.UNKNOWN) {
+                            // show the size on server until the local size is computed in background
+                            localSize = file.getFileLength();
+                            FolderSizeIndex.getInstance().requestSize(localFile, this::onFolderSizeComputed);
+                        }
                     } else {
                         localSize = localFile.length();
                     }
@@ -617,8 +623,8 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
                                                                   file.getMountType(), context));
         } else {
             if (file.getRemoteId() != null && file.isPreviewAvailable()) {
-                // Thumbnail in cache?
-                Bitmap thumbnail = ThumbnailsCacheManager.getBitmapFromDiskCache(
+                // Thumbnail in memory cache? Disk cache is checked by the generation task
+                Bitmap thumbnail = ThumbnailsCacheManager.getBitmapFromMemoryCache(
                     ThumbnailsCacheManager.PREFIX_THUMBNAIL + file.getRemoteId()
                 );
 
@@ -656,8 +662,10 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
                                                                                   thumbnail, task);
                             thumbnailView.setImageDrawable(asyncDrawable);
                             asyncTasks.add(task);
-                            task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file,
-                                                                                                  file.getRemoteId()));
+                            task.executeOnExecutor(ThumbnailsCacheManager.THUMBNAIL_EXECUTOR,
+                                                   new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(
+                                                       file,
+                                                       file.getRemoteId()));
                         } catch (IllegalArgumentException e) {
                             Log_OC.d(TAG, "ThumbnailGenerationTask : " + e.getMessage());
                         }
@@ -737,6 +745,27 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         return VIEWTYPE_HEADER == getItemViewType(getItemPosition(file));
     }
 
+    private void onFolderSizeComputed(File folder, long size) {
+        String path = folder.getAbsolutePath();
+        for (int i = 0; i < mFiles.size(); i++) {
+            String storagePath = mFiles.get(i).getStoragePath();
+            if (storagePath != null && new File(storagePath).getAbsolutePath().equals(path)) {
+                notifyItemChanged(shouldShowHeader() ? i + 1 : i);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+        super.onViewRecycled(holder);
+
+        // row is off screen, do not load its thumbnail anymore
+        if (holder instanceof OCFileListGridImageViewHolder) {
+            ThumbnailsCacheManager.cancelThumbnailWork(((OCFileListGridImageViewHolder) holder).thumbnail);
+        }
+    }
+
     @Override
     public int getItemViewType(int position) {
         if (shouldShowHeader()) {
@@ -830,6 +859,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
             mFiles.clear();
             mFilesAll.clear();
         }
+        fileNameIndex = null;
 
         notifyDataSetChanged();
     }
@@ -889,6 +919,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
 
         mFilesAll.clear();
         mFilesAll.addAll(mFiles);
+        fileNameIndex = null;
 
         new Handler(Looper.getMainLooper()).post(this::notifyDataSetChanged);
     }
@@ -1018,14 +1049,35 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
 
         mFilesAll.clear();
         mFilesAll.addAll(mFiles);
+        fileNameIndex = null;
 
         new Handler(Looper.getMainLooper()).post(this::notifyDataSetChanged);
     }
 
+    /**
+     * Shows files found in the local file list, used when the server cannot be searched.
+     */
+    public void showLocalSearchResults(List<OCFile> files, OCFile folder) {
+        mFiles = files;
+
+        if (!preferences.isShowHiddenFilesEnabled()) {
+            mFiles = filterHiddenFiles(mFiles);
+        }
+        mFiles = preferences.getSortOrderByFolder(folder).sortCloudFiles(mFiles);
+
+        mFilesAll.clear();
+        mFilesAll.addAll(mFiles);
+        fileNameIndex = null;
+
+        new Handler(Looper.getMainLooper()).post(this::notifyDataSetChanged);
+    }
 
     public void setSortOrder(OCFile folder, FileSortOrder sortOrder) {
         preferences.setSortOrder(folder, sortOrder);
         mFiles = sortOrder.sortCloudFiles(mFiles);
+        // filter results keep the order of all files
+        mFilesAll = sortOrder.sortCloudFiles(mFilesAll);
+        fileNameIndex = null;
         notifyDataSetChanged();
     }
 
@@ -1079,17 +1131,10 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         @Override
         protected FilterResults performFiltering(CharSequence constraint) {
             FilterResults results = new FilterResults();
-            Vector<OCFile> filteredFiles = new Vector<>();
-
-            if (!TextUtils.isEmpty(constraint)) {
-                for (OCFile file : mFilesAll) {
-                    if (file.getParentRemotePath().equals(currentDirectory.getRemotePath()) &&
-                        file.getFileName().toLowerCase(Locale.getDefault()).contains(
-                            constraint.toString().toLowerCase(Locale.getDefault())) &&
-                        !filteredFiles.contains(file)) {
-                        filteredFiles.add(file);
-                    }
-                }
+            List<OCFile> filteredFiles = new ArrayList<>();
+
+            if (!TextUtils.isEmpty(constraint) && currentDirectory != null) {
+                filteredFiles = getFileNameIndex(currentDirectory).filter(constraint.toString());
             }
 
             results.values = filteredFiles;
@@ -1102,21 +1147,34 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         @Override
         protected void publishResults(CharSequence constraint, Filter.FilterResults results) {
 
-            Vector<OCFile> ocFiles = (Vector<OCFile>) results.values;
+            List<OCFile> ocFiles = (List<OCFile>) results.values;
             mFiles.clear();
             if (ocFiles != null && ocFiles.size() > 0) {
+                // index keeps sort order of all files and skips hidden files if needed
                 mFiles.addAll(ocFiles);
-                if (!preferences.isShowHiddenFilesEnabled()) {
-                    mFiles = filterHiddenFiles(mFiles);
-                }
-                FileSortOrder sortOrder = preferences.getSortOrderByFolder(currentDirectory);
-                mFiles = sortOrder.sortCloudFiles(mFiles);
             }
 
             notifyDataSetChanged();
         }
     }
 
+    /**
+     * Returns the name index of the given directory, (re)building it if the listed files changed since.
+     */
+    private FileNameIndex getFileNameIndex(OCFile directory) {
+        FileNameIndex index = fileNameIndex;
+
+        if (index == null || !index.getDirectoryPath().equals(directory.getRemotePath())) {
+            index = new FileNameIndex(new ArrayList<>(mFilesAll),
+                                      directory.getRemotePath(),
+                                      preferences.isShowHiddenFilesEnabled(),
+                                      Locale.getDefault());
+            fileNameIndex = index;
+        }
+
+        return index;
+    }
+
     /**
      * Filter for hidden files
      *
@@ -1125,9 +1183,10 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
      */
     private List<OCFile> filterHiddenFiles(List<OCFile> files) {
         List<OCFile> ret = new ArrayList<>();
+        Set<OCFile> added = new HashSet<>();
 
         for (OCFile file : files) {
-            if (!file.isHidden() && !ret.contains(file)) {
+            if (!file.isHidden() && added.add(file)) {
                 ret.add(file);
             }
         }
@@ -340,7 +340,7 @@ public class SyncedFolderAdapter extends SectionedRecyclerViewAdapter<SectionedV
                     );
             holder.image.setImageDrawable(asyncDrawable);
 
-            task.execute(file);
+            task.executeOnExecutor(ThumbnailsCacheManager.THUMBNAIL_EXECUTOR, file);
 
             // set proper tag
             holder.image.setTag(file.hashCode());
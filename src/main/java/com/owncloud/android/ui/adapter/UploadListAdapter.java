@@ -31,6 +31,8 @@ import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.format.DateUtils;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -66,23 +68,35 @@ import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.operations.RefreshFolderOperation;
 import com.owncloud.android.ui.activity.ConflictsResolveActivity;
 import com.owncloud.android.ui.activity.FileActivity;
+import com.owncloud.android.ui.adapter.UploadListDiffCallback.Row;
 import com.owncloud.android.utils.DisplayUtils;
 import com.owncloud.android.utils.MimeTypeUtil;
 import com.owncloud.android.utils.ThemeUtils;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
 import butterknife.BindView;
 import butterknife.ButterKnife;
 
 /**
  * This Adapter populates a ListView with following types of uploads: pending,active, completed. Filtering possible.
+ *
+ * Completed uploads are loaded page by page while scrolling. Changes are applied to the shown rows with
+ * {@link DiffUtil}, changes of single uploads reported by {@link #onUploadsChanged(long[])} only query those uploads.
  */
 public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedViewHolder> {
     private static final String TAG = UploadListAdapter.class.getSimpleName();
 
+    private static final int FINISHED_PAGE_SIZE = 100;
+    private static final int LOAD_MORE_DISTANCE = 20;
+
     private ProgressListener progressListener;
     private FileActivity parentActivity;
     private UploadsStorageManager uploadsStorageManager;
@@ -93,6 +107,9 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
     private Clock clock;
     private UploadGroup[] uploadGroups;
     private boolean showUser;
+    private List<Row> rows = new ArrayList<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private boolean loadMorePending;
 
     @Override
     public int getSectionCount() {
@@ -101,7 +118,11 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
 
     @Override
     public int getItemCount(int section) {
-        return uploadGroups[section].getItems().length;
+        return uploadGroups[section].getItems().size();
+    }
+
+    List<OCUpload> getItems(int section) {
+        return uploadGroups[section].getItems();
     }
 
     @Override
@@ -114,7 +135,10 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
                                                      group.getGroupName(), group.getGroupItemCount()));
         headerViewHolder.title.setTextColor(ThemeUtils.primaryAccentColor(parentActivity));
 
-        headerViewHolder.title.setOnClickListener(v -> toggleSectionExpanded(section));
+        headerViewHolder.title.setOnClickListener(v -> {
+            toggleSectionExpanded(section);
+            rows = buildRows();
+        });
 
         switch (group.type) {
             case CURRENT:
@@ -190,27 +214,32 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
         uploadGroups[0] = new UploadGroup(Type.CURRENT,
                                           parentActivity.getString(R.string.uploads_view_group_current_uploads)) {
             @Override
-            public void refresh() {
-                fixAndSortItems(uploadsStorageManager.getCurrentAndPendingUploadsForCurrentAccount());
+            OCUpload[] loadItems() {
+                return uploadsStorageManager.getCurrentAndPendingUploadsForCurrentAccount();
+            }
+
+            @Override
+            OCUpload[] loadItems(long... uploadIds) {
+                return uploadsStorageManager.getCurrentAndPendingUploadsForCurrentAccount(uploadIds);
             }
         };
 
         uploadGroups[1] = new UploadGroup(Type.FAILED,
                                           parentActivity.getString(R.string.uploads_view_group_failed_uploads)) {
             @Override
-            public void refresh() {
-                fixAndSortItems(uploadsStorageManager.getFailedButNotDelayedUploadsForCurrentAccount());
+            OCUpload[] loadItems() {
+                return uploadsStorageManager.getFailedButNotDelayedUploadsForCurrentAccount();
             }
-        };
 
-        uploadGroups[2] = new UploadGroup(Type.FINISHED,
-                                          parentActivity.getString(R.string.uploads_view_group_finished_uploads)) {
             @Override
-            public void refresh() {
-                fixAndSortItems(uploadsStorageManager.getFinishedUploadsForCurrentAccount());
+            OCUpload[] loadItems(long... uploadIds) {
+                return uploadsStorageManager.getFailedButNotDelayedUploadsForCurrentAccount(uploadIds);
             }
         };
 
+        uploadGroups[2] = new FinishedUploadGroup(
+            parentActivity.getString(R.string.uploads_view_group_finished_uploads));
+
         showUser = accountManager.getAccounts().length > 1;
 
         loadUploadItemsFromDb();
@@ -220,7 +249,12 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
     public void onBindViewHolder(SectionedViewHolder holder, int section, int relativePosition, int absolutePosition) {
         ItemViewHolder itemViewHolder = (ItemViewHolder) holder;
 
-        OCUpload item = uploadGroups[section].getItem(relativePosition);
+        UploadGroup group = uploadGroups[section];
+        OCUpload item = group.getItem(relativePosition);
+
+        if (group.hasMoreItems() && relativePosition >= group.getItems().size() - LOAD_MORE_DISTANCE) {
+            loadMoreItemsLater(group);
+        }
 
         itemViewHolder.name.setText(item.getLocalPath());
 
@@ -408,7 +442,7 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
                 && fakeFileToCheatThumbnailsCacheManagerInterface.getRemoteId() != null &&
                 item.getUploadStatus() == UploadStatus.UPLOAD_SUCCEEDED) {
             // Thumbnail in Cache?
-            Bitmap thumbnail = ThumbnailsCacheManager.getBitmapFromDiskCache(
+            Bitmap thumbnail = ThumbnailsCacheManager.getBitmapFromMemoryCache(
                     String.valueOf(fakeFileToCheatThumbnailsCacheManagerInterface.getRemoteId())
             );
             if (thumbnail != null && !fakeFileToCheatThumbnailsCacheManagerInterface.isUpdateThumbnailNeeded()) {
@@ -434,8 +468,9 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
                                 task
                             );
                     itemViewHolder.thumbnail.setImageDrawable(asyncDrawable);
-                    task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(
-                            fakeFileToCheatThumbnailsCacheManagerInterface, null));
+                    task.executeOnExecutor(ThumbnailsCacheManager.THUMBNAIL_EXECUTOR,
+                            new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(
+                                fakeFileToCheatThumbnailsCacheManagerInterface, null));
                 }
             }
 
@@ -448,7 +483,7 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
         } else if (MimeTypeUtil.isImage(fakeFileToCheatThumbnailsCacheManagerInterface)) {
             File file = new File(item.getLocalPath());
             // Thumbnail in Cache?
-            Bitmap thumbnail = ThumbnailsCacheManager.getBitmapFromDiskCache(
+            Bitmap thumbnail = ThumbnailsCacheManager.getBitmapFromMemoryCache(
                     String.valueOf(file.hashCode()));
             if (thumbnail != null) {
                 itemViewHolder.thumbnail.setImageBitmap(thumbnail);
@@ -469,7 +504,8 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
                                                                           task);
 
                     itemViewHolder.thumbnail.setImageDrawable(asyncDrawable);
-                    task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, null));
+                    task.executeOnExecutor(ThumbnailsCacheManager.THUMBNAIL_EXECUTOR,
+                                           new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, null));
                     Log_OC.v(TAG, "Executing task to generate a new thumbnail");
                 }
             }
@@ -718,7 +754,70 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
             group.refresh();
         }
 
-        notifyDataSetChanged();
+        dispatchChanges();
+    }
+
+    /**
+     * Updates the given uploads as notified by {@link UploadsStorageManager}, without loading the others again.
+     *
+     * @param uploadIds ids of the stored, updated or removed uploads, null to load all upload items again
+     */
+    public void onUploadsChanged(@Nullable long[] uploadIds) {
+        if (uploadIds == null) {
+            loadUploadItemsFromDb();
+            return;
+        }
+
+        for (UploadGroup group : uploadGroups) {
+            group.refresh(uploadIds);
+        }
+
+        dispatchChanges();
+    }
+
+    /**
+     * Loads the next page of a group once the current bind is done, as the adapter must not change while binding.
+     */
+    private void loadMoreItemsLater(UploadGroup group) {
+        if (loadMorePending) {
+            return;
+        }
+
+        loadMorePending = true;
+        handler.post(() -> {
+            loadMorePending = false;
+            group.loadMoreItems();
+            dispatchChanges();
+        });
+    }
+
+    private void dispatchChanges() {
+        List<Row> newRows = buildRows();
+        DiffUtil.calculateDiff(new UploadListDiffCallback(rows, newRows)).dispatchUpdatesTo(this);
+        rows = newRows;
+    }
+
+    /**
+     * Rows as laid out by {@link SectionedRecyclerViewAdapter}, without headers of empty sections.
+     */
+    private List<Row> buildRows() {
+        List<Row> newRows = new ArrayList<>();
+
+        for (int section = 0; section < uploadGroups.length; section++) {
+            UploadGroup group = uploadGroups[section];
+            if (group.getItems().isEmpty()) {
+                continue;
+            }
+
+            newRows.add(Row.header(section, group.getGroupItemCount()));
+            if (isSectionExpanded(section)) {
+                for (OCUpload upload : group.getItems()) {
+                    newRows.add(Row.upload(section, upload));
+                }
+            }
+        }
+
+        return newRows;
     }
 
     private void onUploadItemClick(OCUpload file) {
@@ -800,54 +899,169 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
         }
     }
 
-    interface Refresh {
-        void refresh();
-    }
-
     enum Type {
         CURRENT, FINISHED, FAILED
     }
 
-    abstract class UploadGroup implements Refresh {
+    abstract class UploadGroup {
         private Type type;
-        private OCUpload[] items;
+        private List<OCUpload> items;
         private String name;
 
         UploadGroup(Type type, String groupName) {
             this.type = type;
             this.name = groupName;
-            items = new OCUpload[0];
+            items = new ArrayList<>();
+        }
+
+        /**
+         * @return all uploads of the group
+         */
+        abstract OCUpload[] loadItems();
+
+        /**
+         * @return uploads of the group among the given uploads
+         */
+        abstract OCUpload[] loadItems(long... uploadIds);
+
+        void refresh() {
+            fixAndSortItems(loadItems());
+        }
+
+        /**
+         * Replaces the given uploads by their current state, adding those which now belong to the group and
+         * removing those which do not anymore.
+         *
+         * @return true if uploads were removed from or added to the group
+         */
+        boolean refresh(long... uploadIds) {
+            long[] sortedIds = uploadIds.clone();
+            Arrays.sort(sortedIds);
+
+            // uploads sorted behind the loaded ones are part of the pages still to load
+            OCUpload last = hasMoreItems() && !items.isEmpty() ? items.get(items.size() - 1) : null;
+            OCUploadComparator comparator = new OCUploadComparator();
+
+            List<OCUpload> newItems = new ArrayList<>(items.size());
+            for (OCUpload upload : items) {
+                if (Arrays.binarySearch(sortedIds, upload.getUploadId()) < 0) {
+                    newItems.add(upload);
+                }
+            }
+            boolean removed = newItems.size() < items.size();
+
+            OCUpload[] changed = loadItems(uploadIds);
+            fixItems(changed);
+            for (OCUpload upload : changed) {
+                if (last == null || comparator.compare(upload, last) <= 0) {
+                    newItems.add(upload);
+                }
+            }
+
+            Collections.sort(newItems, comparator);
+            items = newItems;
+
+            return removed || changed.length > 0;
+        }
+
+        boolean hasMoreItems() {
+            return false;
+        }
+
+        void loadMoreItems() {
+            // all uploads are loaded at once
         }
 
         private String getGroupName() {
             return name;
         }
 
-        public OCUpload[] getItems() {
+        public List<OCUpload> getItems() {
             return items;
         }
 
         public OCUpload getItem(int position) {
-            return items[position];
+            return items.get(position);
         }
 
-        public void setItems(OCUpload... items) {
-            this.items = items;
+        void fixAndSortItems(OCUpload... array) {
+            fixItems(array);
+            Arrays.sort(array, new OCUploadComparator());
+
+            items = new ArrayList<>(Arrays.asList(array));
         }
 
-        void fixAndSortItems(OCUpload... array) {
+        void appendItems(OCUpload... array) {
+            fixItems(array);
+            Collections.addAll(items, array);
+        }
+
+        private void fixItems(OCUpload... array) {
             FileUploader.FileUploaderBinder binder = parentActivity.getFileUploaderBinder();
 
             for (OCUpload upload : array) {
                 upload.setDataFixed(binder);
             }
-            Arrays.sort(array, new OCUploadComparator());
+        }
+
+        int getGroupItemCount() {
+            return items.size();
+        }
+    }
+
+    /**
+     * Finished uploads are kept as history, there might be thousands of them. They are loaded page by page and only
+     * counted in the database.
+     */
+    private class FinishedUploadGroup extends UploadGroup {
+        private boolean hasMoreItems;
+        private int itemCount;
+
+        FinishedUploadGroup(String groupName) {
+            super(Type.FINISHED, groupName);
+        }
+
+        @Override
+        OCUpload[] loadItems() {
+            // keep the pages loaded so far
+            int limit = Math.max(FINISHED_PAGE_SIZE, getItems().size());
+            OCUpload[] uploads = uploadsStorageManager.getFinishedUploadsForCurrentAccount(null, limit);
+            hasMoreItems = uploads.length == limit;
+            itemCount = uploadsStorageManager.getFinishedUploadsCountForCurrentAccount();
+            return uploads;
+        }
+
+        @Override
+        OCUpload[] loadItems(long... uploadIds) {
+            return uploadsStorageManager.getFinishedUploadsForCurrentAccount(uploadIds);
+        }
+
+        @Override
+        boolean refresh(long... uploadIds) {
+            boolean changed = super.refresh(uploadIds);
+            if (changed) {
+                itemCount = uploadsStorageManager.getFinishedUploadsCountForCurrentAccount();
+            }
+            return changed;
+        }
+
+        @Override
+        boolean hasMoreItems() {
+            return hasMoreItems;
+        }
 
-            setItems(array);
+        @Override
+        void loadMoreItems() {
+            List<OCUpload> items = getItems();
+            OCUpload last = items.isEmpty() ? null : items.get(items.size() - 1);
+            OCUpload[] uploads = uploadsStorageManager.getFinishedUploadsForCurrentAccount(last, FINISHED_PAGE_SIZE);
+            hasMoreItems = uploads.length == FINISHED_PAGE_SIZE;
+            appendItems(uploads);
         }
 
-        private int getGroupItemCount() {
-            return items == null ? 0 : items.length;
+        @Override
+        int getGroupItemCount() {
+            return itemCount;
         }
     }
 }
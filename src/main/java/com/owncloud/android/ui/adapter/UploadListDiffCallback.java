@@ -0,0 +1,99 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.ui.adapter;
+
+import com.owncloud.android.db.OCUpload;
+
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * Compares two snapshots of the rows shown by {@link UploadListAdapter}: the header of every non empty section,
+ * followed by the uploads of the section if it is expanded.
+ *
+ * Rows of uploads are identified by section and upload id, so a change of a single upload only rebinds its row and
+ * the rest of the list keeps its views.
+ */
+final class UploadListDiffCallback extends DiffUtil.Callback {
+    private final List<Row> oldRows;
+    private final List<Row> newRows;
+
+    UploadListDiffCallback(List<Row> oldRows, List<Row> newRows) {
+        this.oldRows = oldRows;
+        this.newRows = newRows;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return oldRows.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return newRows.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        Row oldRow = oldRows.get(oldItemPosition);
+        Row newRow = newRows.get(newItemPosition);
+        return oldRow.section == newRow.section && oldRow.uploadId == newRow.uploadId;
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        return oldRows.get(oldItemPosition).contents.equals(newRows.get(newItemPosition).contents);
+    }
+
+    /**
+     * Values of a row shown in the list.
+     */
+    static final class Row {
+        private static final long HEADER_ID = -1;
+
+        private final int section;
+        private final long uploadId;
+        private final Object contents;
+
+        private Row(int section, long uploadId, Object contents) {
+            this.section = section;
+            this.uploadId = uploadId;
+            this.contents = contents;
+        }
+
+        static Row header(int section, int itemCount) {
+            return new Row(section, HEADER_ID, itemCount);
+        }
+
+        static Row upload(int section, OCUpload upload) {
+            return new Row(section,
+                           upload.getUploadId(),
+                           Arrays.asList(upload.getUploadStatus(),
+                                         upload.getLastResult(),
+                                         upload.getUploadEndTimestamp(),
+                                         upload.getFileSize(),
+                                         upload.getLocalPath(),
+                                         upload.getRemotePath(),
+                                         upload.getAccountName(),
+                                         upload.isFixedUploadingNow()));
+        }
+    }
+}
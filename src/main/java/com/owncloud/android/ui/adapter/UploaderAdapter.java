@@ -99,7 +99,7 @@ public class UploaderAdapter extends SimpleAdapter {
             // get Thumbnail if file is image
             if (MimeTypeUtil.isImage(file) && file.getRemoteId() != null) {
                 // Thumbnail in Cache?
-                Bitmap thumbnail = ThumbnailsCacheManager.getBitmapFromDiskCache(
+                Bitmap thumbnail = ThumbnailsCacheManager.getBitmapFromMemoryCache(
                         String.valueOf(file.getRemoteId())
                 );
                 if (thumbnail != null && !file.isUpdateThumbnailNeeded()) {
@@ -123,7 +123,10 @@ public class UploaderAdapter extends SimpleAdapter {
                                 task
                         );
                         fileIcon.setImageDrawable(asyncDrawable);
-                        task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, file.getRemoteId()));
+                        task.executeOnExecutor(ThumbnailsCacheManager.THUMBNAIL_EXECUTOR,
+                                               new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(
+                                                   file,
+                                                   file.getRemoteId()));
                     }
                 }
             } else {
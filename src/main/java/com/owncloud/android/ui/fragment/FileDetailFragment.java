@@ -678,7 +678,7 @@ public class FileDetailFragment extends FileFragment implements OnClickListener,
                     activity.setPreviewImageDrawable(asyncDrawable);
                     activatePreviewImage();
                     previewLoaded = true;
-                    task.execute(getFile());
+                    task.executeOnExecutor(ThumbnailsCacheManager.THUMBNAIL_EXECUTOR, getFile());
                 }
             }
         }
@@ -168,6 +168,7 @@ public class OCFileListFragment extends ExtendedListFragment implements
 
     private static final int SINGLE_SELECTION = 1;
     private static final int NOT_ENOUGH_SPACE_FRAG_REQUEST_CODE = 2;
+    private static final int LOCAL_SEARCH_RESULT_LIMIT = 500;
 
     @Inject AppPreferences preferences;
     @Inject UserAccountManager accountManager;
@@ -1517,13 +1518,11 @@ public class OCFileListFragment extends ExtendedListFragment implements
 
         final User currentAccount = accountManager.getUser();
 
+        final boolean searchOnlyFolders = getArguments() != null &&
+            getArguments().getBoolean(ARG_SEARCH_ONLY_FOLDER, false);
+
         final RemoteOperation remoteOperation;
         if (currentSearchType != SearchType.SHARED_FILTER) {
-            boolean searchOnlyFolders = false;
-            if (getArguments() != null && getArguments().getBoolean(ARG_SEARCH_ONLY_FOLDER, false)) {
-                searchOnlyFolders = true;
-            }
-
             remoteOperation = new SearchRemoteOperation(event.getSearchQuery(), event.getSearchType(),
                                                         searchOnlyFolders);
         } else {
@@ -1556,17 +1555,12 @@ public class OCFileListFragment extends ExtendedListFragment implements
                             searchEvent = event;
                         }
 
-                        final ToolbarActivity fileDisplayActivity = (ToolbarActivity) getActivity();
-                        if (fileDisplayActivity != null) {
-                            fileDisplayActivity.runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    if (fileDisplayActivity != null) {
-                                        fileDisplayActivity.showProgressBar(false);
-                                    }
-                                }
-                            });
-                        }
+                        hideProgressBar();
+                    } else if (!remoteOperationResult.isSuccess() && currentSearchType == SearchType.FILE_SEARCH
+                        && storageManager != null && !isCancelled() && searchFragment) {
+                        // e.g. offline, show what the local file list knows
+                        showLocalSearchResults(event, storageManager, searchOnlyFolders);
+                        hideProgressBar();
                     }
 
                     return remoteOperationResult.isSuccess();
@@ -1586,6 +1580,35 @@ public class OCFileListFragment extends ExtendedListFragment implements
         remoteOperationAsyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
     }
 
+    private void showLocalSearchResults(SearchEvent event, FileDataStorageManager storageManager,
+                                        boolean searchOnlyFolders) {
+        List<OCFile> files = storageManager.searchFilesByName(event.getSearchQuery(), false,
+                                                              LOCAL_SEARCH_RESULT_LIMIT);
+        if (searchOnlyFolders) {
+            List<OCFile> folders = new ArrayList<>();
+            for (OCFile file : files) {
+                if (file.isFolder()) {
+                    folders.add(file);
+                }
+            }
+            files = folders;
+        }
+
+        if (files.isEmpty()) {
+            setEmptyView(event);
+        } else {
+            mAdapter.showLocalSearchResults(files, mFile);
+            searchEvent = event;
+        }
+    }
+
+    private void hideProgressBar() {
+        final ToolbarActivity fileDisplayActivity = (ToolbarActivity) getActivity();
+        if (fileDisplayActivity != null) {
+            fileDisplayActivity.runOnUiThread(() -> fileDisplayActivity.showProgressBar(false));
+        }
+    }
+
     @Subscribe(threadMode = ThreadMode.BACKGROUND)
     public void onMessageEvent(EncryptionEvent event) {
         try {
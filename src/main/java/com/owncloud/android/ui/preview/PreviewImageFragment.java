@@ -294,7 +294,7 @@ public class PreviewImageFragment extends FileFragment implements Injectable {
                                 task
                             );
                         mImageView.setImageDrawable(asyncDrawable);
-                        task.execute(getFile());
+                        task.executeOnExecutor(ThumbnailsCacheManager.THUMBNAIL_EXECUTOR, getFile());
                     }
                 }
                 mMultiView.setVisibility(View.GONE);
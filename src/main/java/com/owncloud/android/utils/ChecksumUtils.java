@@ -0,0 +1,82 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU AFFERO GENERAL PUBLIC LICENSE
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU AFFERO GENERAL PUBLIC LICENSE for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.utils;
+
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Checksums and file identity used to detect changed files for auto upload.
+ */
+public final class ChecksumUtils {
+    public static final long UNKNOWN = -1;
+
+    static final int BLOCK_SIZE = 128 * 1024;
+
+    private ChecksumUtils() {
+        // utility class -> private constructor
+    }
+
+    /**
+     * Computes the CRC32 of a file, reading it in blocks of {@link #BLOCK_SIZE} bytes.
+     *
+     * @param file file to check
+     * @return CRC32 of the file content
+     * @throws IOException if the file cannot be read
+     */
+    public static long getCRC32(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BLOCK_SIZE];
+
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+
+        return crc.getValue();
+    }
+
+    /**
+     * Returns the inode of a file, allowing to recognize a file replaced by another one with same size and
+     * modification time.
+     *
+     * @param path local path of the file
+     * @return inode of the file, {@link #UNKNOWN} if it cannot be determined
+     */
+    public static long getInode(String path) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return UNKNOWN;
+        }
+
+        try {
+            return Os.stat(path).st_ino;
+        } catch (ErrnoException e) {
+            return UNKNOWN;
+        }
+    }
+}
@@ -498,7 +498,7 @@ public final class DisplayUtils {
             final ThumbnailsCacheManager.AsyncAvatarDrawable asyncDrawable =
                 new ThumbnailsCacheManager.AsyncAvatarDrawable(resources, avatar, task);
             listener.avatarGenerated(asyncDrawable, callContext);
-            task.execute(userId);
+            task.executeOnExecutor(ThumbnailsCacheManager.THUMBNAIL_EXECUTOR, userId);
         }
     }
 
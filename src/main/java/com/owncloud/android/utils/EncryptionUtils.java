@@ -38,14 +38,22 @@ import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.lib.resources.e2ee.GetMetadataRemoteOperation;
 
 import org.apache.commons.codec.binary.Hex;
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.AEADBlockCipher;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidAlgorithmParameterException;
@@ -106,6 +114,8 @@ public final class EncryptionUtils {
     private static final String AES = "AES";
     private static final String RSA_CIPHER = "RSA/ECB/OAEPWithSHA-256AndMGF1Padding";
     private static final String RSA = "RSA";
+    private static final int AUTHENTICATION_TAG_LENGTH = 16;
+    private static final int CRYPT_BUFFER_SIZE = 64 * 1024;
 
     private EncryptionUtils() {
         // utility class -> private constructor
@@ -276,90 +286,118 @@ public final class EncryptionUtils {
 
     /**
      * @param ocFile             file do crypt
+     * @param encryptedFile      target of the encrypted content, e.g. the temporary file used for upload
      * @param encryptionKeyBytes key, either from metadata or {@link EncryptionUtils#generateKey()}
      * @param iv                 initialization vector, either from metadata or {@link EncryptionUtils#randomBytes(int)}
-     * @return encryptedFile with encryptedBytes and authenticationTag
+     * @return encryptedFile with encrypted file and authenticationTag
      */
-    @RequiresApi(api = Build.VERSION_CODES.KITKAT)
-    public static EncryptedFile encryptFile(OCFile ocFile, byte[] encryptionKeyBytes, byte[] iv)
-            throws NoSuchAlgorithmException,
-            InvalidAlgorithmParameterException, NoSuchPaddingException, InvalidKeyException,
-            BadPaddingException, IllegalBlockSizeException, IOException {
+    public static EncryptedFile encryptFile(OCFile ocFile, File encryptedFile, byte[] encryptionKeyBytes, byte[] iv)
+        throws IOException, InvalidCipherTextException {
         File file = new File(ocFile.getStoragePath());
 
-        return encryptFile(file, encryptionKeyBytes, iv);
+        return encryptFile(file, encryptedFile, encryptionKeyBytes, iv);
     }
 
     /**
+     * Encrypts a file with AES/GCM in chunks of {@link #CRYPT_BUFFER_SIZE} bytes, so memory usage does not depend on
+     * the file size. The authentication tag is appended to the encrypted content, as expected by the server.
+     *
      * @param file               file do crypt
+     * @param encryptedFile      target of the encrypted content, e.g. the temporary file used for upload
      * @param encryptionKeyBytes key, either from metadata or {@link EncryptionUtils#generateKey()}
      * @param iv                 initialization vector, either from metadata or {@link EncryptionUtils#randomBytes(int)}
-     * @return encryptedFile with encryptedBytes and authenticationTag
+     * @return encryptedFile with encrypted file and authenticationTag
      */
-    @RequiresApi(api = Build.VERSION_CODES.KITKAT)
-    public static EncryptedFile encryptFile(File file, byte[] encryptionKeyBytes, byte[] iv)
-            throws NoSuchAlgorithmException,
-            InvalidAlgorithmParameterException, NoSuchPaddingException, InvalidKeyException,
-            BadPaddingException, IllegalBlockSizeException, IOException {
+    public static EncryptedFile encryptFile(File file, File encryptedFile, byte[] encryptionKeyBytes, byte[] iv)
+        throws IOException, InvalidCipherTextException {
 
-        Cipher cipher = Cipher.getInstance(AES_CIPHER);
+        AEADBlockCipher cipher = createFileCipher(true, encryptionKeyBytes, iv);
 
-        Key key = new SecretKeySpec(encryptionKeyBytes, AES);
+        try (InputStream inputStream = new FileInputStream(file);
+             OutputStream outputStream = new FileOutputStream(encryptedFile)) {
+            byte[] tag = crypt(cipher, inputStream, outputStream);
 
-        GCMParameterSpec spec = new GCMParameterSpec(128, iv);
-        cipher.init(Cipher.ENCRYPT_MODE, key, spec);
-
-        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
-        byte[] fileBytes = new byte[(int) randomAccessFile.length()];
-        randomAccessFile.readFully(fileBytes);
-
-        byte[] cryptedBytes = cipher.doFinal(fileBytes);
-        String authenticationTag = encodeBytesToBase64String(Arrays.copyOfRange(cryptedBytes,
-                cryptedBytes.length - (128 / 8), cryptedBytes.length));
-
-        return new EncryptedFile(cryptedBytes, authenticationTag);
+            return new EncryptedFile(encryptedFile, encodeBytesToBase64String(tag));
+        }
     }
 
     /**
+     * Decrypts a file encrypted with AES/GCM in chunks of {@link #CRYPT_BUFFER_SIZE} bytes, so memory usage does not
+     * depend on the file size. As content is written before the whole file is authenticated, the caller must
+     * discard decryptedFile if an exception is thrown.
+     *
      * @param file               encrypted file
+     * @param decryptedFile      target of the decrypted content
      * @param encryptionKeyBytes key from metadata
      * @param iv                 initialization vector from metadata
      * @param authenticationTag  authenticationTag from metadata
-     * @return decrypted byte[]
      */
-    @RequiresApi(api = Build.VERSION_CODES.KITKAT)
-    public static byte[] decryptFile(File file, byte[] encryptionKeyBytes, byte[] iv, byte[] authenticationTag)
-            throws NoSuchAlgorithmException,
-            InvalidAlgorithmParameterException, NoSuchPaddingException, InvalidKeyException,
-            BadPaddingException, IllegalBlockSizeException, IOException {
-
-
-        Cipher cipher = Cipher.getInstance(AES_CIPHER);
-        Key key = new SecretKeySpec(encryptionKeyBytes, AES);
-        GCMParameterSpec spec = new GCMParameterSpec(128, iv);
-        cipher.init(Cipher.DECRYPT_MODE, key, spec);
-
-        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
-        byte[] fileBytes = new byte[(int) randomAccessFile.length()];
-        randomAccessFile.readFully(fileBytes);
+    public static void decryptFile(File file, File decryptedFile, byte[] encryptionKeyBytes, byte[] iv,
+                                   byte[] authenticationTag) throws IOException, InvalidCipherTextException {
 
         // check authentication tag
-        byte[] extractedAuthenticationTag = Arrays.copyOfRange(fileBytes,
-                fileBytes.length - (128 / 8), fileBytes.length);
+        byte[] extractedAuthenticationTag = new byte[AUTHENTICATION_TAG_LENGTH];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            if (randomAccessFile.length() < AUTHENTICATION_TAG_LENGTH) {
+                throw new SecurityException("Tag not correct");
+            }
+            randomAccessFile.seek(randomAccessFile.length() - AUTHENTICATION_TAG_LENGTH);
+            randomAccessFile.readFully(extractedAuthenticationTag);
+        }
 
         if (!Arrays.equals(extractedAuthenticationTag, authenticationTag)) {
             throw new SecurityException("Tag not correct");
         }
 
-        return cipher.doFinal(fileBytes);
+        AEADBlockCipher cipher = createFileCipher(false, encryptionKeyBytes, iv);
+
+        try (InputStream inputStream = new FileInputStream(file);
+             OutputStream outputStream = new FileOutputStream(decryptedFile)) {
+            crypt(cipher, inputStream, outputStream);
+        }
+    }
+
+    private static AEADBlockCipher createFileCipher(boolean forEncryption, byte[] encryptionKeyBytes, byte[] iv) {
+        AEADBlockCipher cipher = new GCMBlockCipher(new AESEngine());
+        cipher.init(forEncryption,
+                    new AEADParameters(new KeyParameter(encryptionKeyBytes), AUTHENTICATION_TAG_LENGTH * 8, iv));
+        return cipher;
+    }
+
+    /**
+     * Streams inputStream through cipher into outputStream.
+     *
+     * @return authentication tag computed by the cipher
+     */
+    private static byte[] crypt(AEADBlockCipher cipher, InputStream inputStream, OutputStream outputStream)
+        throws IOException, InvalidCipherTextException {
+        byte[] buffer = new byte[CRYPT_BUFFER_SIZE];
+        byte[] output = new byte[0];
+        int read;
+
+        while ((read = inputStream.read(buffer)) != -1) {
+            // cipher may hold back a partial block and, when decrypting, the tag
+            int outputSize = cipher.getUpdateOutputSize(read);
+            if (output.length < outputSize) {
+                output = new byte[outputSize];
+            }
+            int length = cipher.processBytes(buffer, 0, read, output, 0);
+            outputStream.write(output, 0, length);
+        }
+
+        byte[] finalOutput = new byte[cipher.getOutputSize(0)];
+        int length = cipher.doFinal(finalOutput, 0);
+        outputStream.write(finalOutput, 0, length);
+
+        return cipher.getMac();
     }
 
     public static class EncryptedFile {
-        public byte[] encryptedBytes;
+        public File encryptedFile;
         public String authenticationTag;
 
-        public EncryptedFile(byte[] encryptedBytes, String authenticationTag) {
-            this.encryptedBytes = encryptedBytes;
+        public EncryptedFile(File encryptedFile, String authenticationTag) {
+            this.encryptedFile = encryptedFile;
             this.authenticationTag = authenticationTag;
         }
     }
@@ -0,0 +1,156 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU AFFERO GENERAL PUBLIC LICENSE
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU AFFERO GENERAL PUBLIC LICENSE for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Copies file contents.
+ *
+ * Files are copied with {@link FileChannel#transferTo}, letting the kernel move the data without passing it through
+ * the Java heap. Other streams, e.g. of content:// URIs not backed by a file, are copied through large buffers taken
+ * from a small pool. Cancellation is checked after every block.
+ */
+public final class FileCopyUtils {
+    static final int BUFFER_SIZE = 256 * 1024;
+    static final long TRANSFER_BLOCK_SIZE = 8 * 1024 * 1024;
+
+    private static final int MAX_POOLED_BUFFERS = 4;
+    private static final Queue<byte[]> BUFFER_POOL = new ConcurrentLinkedQueue<>();
+
+    private FileCopyUtils() {
+        // utility class -> private constructor
+    }
+
+    /**
+     * Copies a file, replacing the content of target.
+     *
+     * @param cancelled stops the copy when set, null if the copy cannot be cancelled
+     * @return true if the file was copied, false if the copy was cancelled; target is then incomplete
+     * @throws IOException if source cannot be read or target cannot be written
+     */
+    public static boolean copy(File source, File target, @Nullable AtomicBoolean cancelled) throws IOException {
+        try (FileInputStream in = new FileInputStream(source); FileOutputStream out = new FileOutputStream(target)) {
+            return copyFile(in.getChannel(), out.getChannel(), cancelled);
+        }
+    }
+
+    /**
+     * Copies all remaining bytes of in to out. Neither stream is closed.
+     *
+     * Only a plain {@link FileInputStream} is copied through its channel. Subclasses, e.g. the streams of
+     * descriptors returned by {@link android.content.ContentResolver#openInputStream}, might read only a part of
+     * the file, which the channel does not know about.
+     *
+     * @param cancelled stops the copy when set, null if the copy cannot be cancelled
+     * @return true if all bytes were copied, false if the copy was cancelled
+     * @throws IOException if in cannot be read or out cannot be written
+     */
+    public static boolean copy(InputStream in, OutputStream out, @Nullable AtomicBoolean cancelled)
+        throws IOException {
+        if (in.getClass() == FileInputStream.class && out instanceof FileOutputStream) {
+            FileChannel source = ((FileInputStream) in).getChannel();
+            if (isRegularFile(source)) {
+                out.flush();
+                return copyFile(source, ((FileOutputStream) out).getChannel(), cancelled);
+            }
+        }
+        return copyBuffered(in, out, cancelled);
+    }
+
+    /**
+     * Streams of content:// URIs are often backed by a file, but might also read from a pipe or socket. Those
+     * cannot seek and their size is unknown, they have to be copied through a buffer.
+     */
+    private static boolean isRegularFile(FileChannel channel) {
+        try {
+            channel.position();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Copies a regular file from its current position to its end, writing target from its current position.
+     */
+    private static boolean copyFile(FileChannel source, FileChannel target, @Nullable AtomicBoolean cancelled)
+        throws IOException {
+        long position = source.position();
+        long size = source.size();
+
+        while (position < size) {
+            if (isCancelled(cancelled)) {
+                return false;
+            }
+            long transferred = source.transferTo(position, Math.min(TRANSFER_BLOCK_SIZE, size - position), target);
+            if (transferred <= 0) {
+                // source shrank while copying
+                break;
+            }
+            position += transferred;
+        }
+        source.position(position);
+        return true;
+    }
+
+    private static boolean copyBuffered(InputStream in, OutputStream out, @Nullable AtomicBoolean cancelled)
+        throws IOException {
+        byte[] buffer = acquireBuffer();
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (isCancelled(cancelled)) {
+                    return false;
+                }
+                out.write(buffer, 0, read);
+            }
+            out.flush();
+            return true;
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    private static boolean isCancelled(@Nullable AtomicBoolean cancelled) {
+        return cancelled != null && cancelled.get();
+    }
+
+    private static byte[] acquireBuffer() {
+        byte[] buffer = BUFFER_POOL.poll();
+        return buffer == null ? new byte[BUFFER_SIZE] : buffer;
+    }
+
+    private static void releaseBuffer(byte[] buffer) {
+        if (BUFFER_POOL.size() < MAX_POOLED_BUFFERS) {
+            BUFFER_POOL.offer(buffer);
+        }
+    }
+}
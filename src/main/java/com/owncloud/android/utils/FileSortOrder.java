@@ -25,6 +25,7 @@ import com.owncloud.android.lib.resources.trashbin.model.TrashbinFile;
 
 import java.io.File;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -96,4 +97,37 @@ public class FileSortOrder {
 
         return files;
     }
+
+    /**
+     * File with its sort criterion, computed once before sorting instead of on every comparison.
+     */
+    static final class SortEntry<T> {
+        final T file;
+        final boolean folder;
+        final NaturalSortKey key;
+        final long value;
+
+        SortEntry(T file, boolean folder, NaturalSortKey key, long value) {
+            this.file = file;
+            this.folder = folder;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Sorts entries and writes the sorted files back to the list.
+     *
+     * @param files   list to sort, in the same order as entries
+     * @param entries entries of all files in list
+     */
+    static <T> List<T> sortEntries(List<T> files, List<SortEntry<T>> entries, Comparator<SortEntry<T>> comparator) {
+        Collections.sort(entries, comparator);
+
+        for (int i = 0; i < entries.size(); i++) {
+            files.set(i, entries.get(i).file);
+        }
+
+        return files;
+    }
 }
@@ -24,6 +24,7 @@ import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.lib.resources.trashbin.model.TrashbinFile;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -59,10 +60,8 @@ public class FileSortOrderByDate extends FileSortOrder {
     public List<TrashbinFile> sortTrashbinFiles(List<TrashbinFile> files) {
         final int multiplier = isAscending ? 1 : -1;
 
-        Collections.sort(files, (o1, o2) -> {
-            Long obj1 = o1.getDeletionTimestamp();
-            return multiplier * obj1.compareTo(o2.getDeletionTimestamp());
-        });
+        Collections.sort(files, (o1, o2) ->
+                multiplier * Long.compare(o1.getDeletionTimestamp(), o2.getDeletionTimestamp()));
 
         return super.sortTrashbinFiles(files);
     }
@@ -76,8 +75,12 @@ public class FileSortOrderByDate extends FileSortOrder {
     public List<File> sortLocalFiles(List<File> files) {
         final int multiplier = isAscending ? 1 : -1;
 
-        Collections.sort(files, (o1, o2) -> multiplier * Long.compare(o1.lastModified(),o2.lastModified()));
+        // lastModified() is a file system call, read it only once per file
+        List<SortEntry<File>> entries = new ArrayList<>(files.size());
+        for (File file : files) {
+            entries.add(new SortEntry<>(file, file.isDirectory(), null, file.lastModified()));
+        }
 
-        return files;
+        return sortEntries(files, entries, (o1, o2) -> multiplier * Long.compare(o1.value, o2.value));
     }
 }
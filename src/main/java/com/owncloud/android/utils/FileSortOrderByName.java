@@ -24,12 +24,12 @@ import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.lib.resources.trashbin.model.TrashbinFile;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import third_parties.daveKoeller.AlphanumComparator;
 
 /**
  * Created by srkunze on 28.08.17.
@@ -51,13 +51,13 @@ public class FileSortOrderByName extends FileSortOrder {
 
         Collections.sort(files, (o1, o2) -> {
             if (o1.isFolder() && o2.isFolder()) {
-                return multiplier * new AlphanumComparator().compare(o1, o2);
+                return multiplier * o1.getSortKey().compareTo(o2.getSortKey());
             } else if (o1.isFolder()) {
                 return -1;
             } else if (o2.isFolder()) {
                 return 1;
             }
-            return multiplier * new AlphanumComparator().compare(o1, o2);
+            return multiplier * o1.getSortKey().compareTo(o2.getSortKey());
         });
 
         return super.sortCloudFiles(files);
@@ -73,15 +73,20 @@ public class FileSortOrderByName extends FileSortOrder {
     public List<TrashbinFile> sortTrashbinFiles(List<TrashbinFile> files) {
         final int multiplier = isAscending ? 1 : -1;
 
-        Collections.sort(files, (o1, o2) -> {
-            if (o1.isFolder() && o2.isFolder()) {
-                return multiplier * new AlphanumComparator().compare(o1, o2);
-            } else if (o1.isFolder()) {
+        List<SortEntry<TrashbinFile>> entries = new ArrayList<>(files.size());
+        for (TrashbinFile file : files) {
+            entries.add(new SortEntry<>(file, file.isFolder(), NaturalSortKey.of(file.getFileName()), 0));
+        }
+
+        sortEntries(files, entries, (o1, o2) -> {
+            if (o1.folder && o2.folder) {
+                return multiplier * o1.key.compareTo(o2.key);
+            } else if (o1.folder) {
                 return -1;
-            } else if (o2.isFolder()) {
+            } else if (o2.folder) {
                 return 1;
             }
-            return multiplier * new AlphanumComparator().compare(o1, o2);
+            return multiplier * o1.key.compareTo(o2.key);
         });
 
         return super.sortTrashbinFiles(files);
@@ -96,20 +101,23 @@ public class FileSortOrderByName extends FileSortOrder {
     public List<File> sortLocalFiles(List<File> files) {
         final int multiplier = isAscending ? 1 : -1;
 
-        Collections.sort(files, (o1, o2) -> {
-            if (o1.isDirectory() && o2.isDirectory()) {
-                return multiplier * o1.getPath().toLowerCase(Locale.getDefault())
-                        .compareTo(o2.getPath().toLowerCase(Locale.getDefault()));
-            } else if (o1.isDirectory()) {
+        List<SortEntry<File>> entries = new ArrayList<>(files.size());
+        for (File file : files) {
+            entries.add(new SortEntry<>(file,
+                                        file.isDirectory(),
+                                        NaturalSortKey.of(file.getPath().toLowerCase(Locale.getDefault())),
+                                        0));
+        }
+
+        return sortEntries(files, entries, (o1, o2) -> {
+            if (o1.folder && o2.folder) {
+                return multiplier * o1.key.getSource().compareTo(o2.key.getSource());
+            } else if (o1.folder) {
                 return -1;
-            } else if (o2.isDirectory()) {
+            } else if (o2.folder) {
                 return 1;
             }
-            return multiplier * new AlphanumComparator().compare(o1.getPath()
-                            .toLowerCase(Locale.getDefault()),
-                    o2.getPath().toLowerCase(Locale.getDefault()));
+            return multiplier * o1.key.compareTo(o2.key);
         });
-
-        return files;
     }
 }
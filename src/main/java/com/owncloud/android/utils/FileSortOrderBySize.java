@@ -24,6 +24,7 @@ import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.lib.resources.trashbin.model.TrashbinFile;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -47,16 +48,13 @@ public class FileSortOrderBySize extends FileSortOrder {
 
         Collections.sort(files, (o1, o2) -> {
             if (o1.isFolder() && o2.isFolder()) {
-                Long obj1 = o1.getFileLength();
-                return multiplier * obj1.compareTo(o2.getFileLength());
+                return multiplier * Long.compare(o1.getFileLength(), o2.getFileLength());
             } else if (o1.isFolder()) {
                 return -1;
-
             } else if (o2.isFolder()) {
                 return 1;
             } else {
-                Long obj1 = o1.getFileLength();
-                return multiplier * obj1.compareTo(o2.getFileLength());
+                return multiplier * Long.compare(o1.getFileLength(), o2.getFileLength());
             }
         });
 
@@ -74,16 +72,13 @@ public class FileSortOrderBySize extends FileSortOrder {
 
         Collections.sort(files, (o1, o2) -> {
             if (o1.isFolder() && o2.isFolder()) {
-                Long obj1 = o1.getFileLength();
-                return multiplier * obj1.compareTo(o2.getFileLength());
+                return multiplier * Long.compare(o1.getFileLength(), o2.getFileLength());
             } else if (o1.isFolder()) {
                 return -1;
-
             } else if (o2.isFolder()) {
                 return 1;
             } else {
-                Long obj1 = o1.getFileLength();
-                return multiplier * obj1.compareTo(o2.getFileLength());
+                return multiplier * Long.compare(o1.getFileLength(), o2.getFileLength());
             }
         });
 
@@ -99,21 +94,25 @@ public class FileSortOrderBySize extends FileSortOrder {
     public List<File> sortLocalFiles(List<File> files) {
         final int multiplier = isAscending ? 1 : -1;
 
-        Collections.sort(files, (o1, o2) -> {
-            if (o1.isDirectory() && o2.isDirectory()) {
-                Long obj1 = FileStorageUtils.getFolderSize(o1);
-                return multiplier * obj1.compareTo(FileStorageUtils.getFolderSize(o2));
-            } else if (o1.isDirectory()) {
+        // folder size is computed recursively, so compute it only once per folder
+        List<SortEntry<File>> entries = new ArrayList<>(files.size());
+        for (File file : files) {
+            boolean folder = file.isDirectory();
+            long size = folder ? FileStorageUtils.getFolderSize(file) : file.length();
+            entries.add(new SortEntry<>(file, folder, null, size));
+        }
+
+        return sortEntries(files, entries, (o1, o2) -> {
+            if (o1.folder && o2.folder) {
+                return multiplier * Long.compare(o1.value, o2.value);
+            } else if (o1.folder) {
                 return -1;
-            } else if (o2.isDirectory()) {
+            } else if (o2.folder) {
                 return 1;
             } else {
-                Long obj1 = o1.length();
-                return multiplier * obj1.compareTo(o2.length());
+                return multiplier * Long.compare(o1.value, o2.value);
             }
         });
-
-        return files;
     }
 
 }
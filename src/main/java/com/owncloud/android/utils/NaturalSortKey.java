@@ -0,0 +1,179 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU AFFERO GENERAL PUBLIC LICENSE
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU AFFERO GENERAL PUBLIC LICENSE for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.utils;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Precomputed sort key of a file name, ordering the same way as {@link third_parties.daveKoeller.AlphanumComparator}.
+ *
+ * The name is split into digit, text and special character chunks once, with the numeric value of digit chunks and
+ * the collation key of the other chunks, so comparing two keys does not allocate.
+ */
+public final class NaturalSortKey implements Comparable<NaturalSortKey> {
+    private static final Collator COLLATOR = Collator.getInstance();
+
+    private static final int DIGITS = 0;
+    private static final int SPECIAL = 1;
+    private static final int TEXT = 2;
+
+    private final String source;
+    private final int[] types;
+    /**
+     * digits without leading zeros, for digit chunks
+     */
+    private final String[] values;
+    /**
+     * number of leading zeros for digit chunks, the character for special chunks
+     */
+    private final int[] extras;
+    private final CollationKey[] collationKeys;
+
+    private NaturalSortKey(String source, List<String> chunks) {
+        this.source = source;
+
+        int count = chunks.size();
+        types = new int[count];
+        values = new String[count];
+        extras = new int[count];
+        collationKeys = new CollationKey[count];
+
+        for (int i = 0; i < count; i++) {
+            String chunk = chunks.get(i);
+            char first = chunk.charAt(0);
+
+            if (isDigit(first)) {
+                int zeros = 0;
+                while (zeros < chunk.length() && chunk.charAt(zeros) == '0') {
+                    zeros++;
+                }
+                types[i] = DIGITS;
+                values[i] = chunk.substring(zeros);
+                extras[i] = zeros;
+            } else if (isSpecialChar(first)) {
+                types[i] = SPECIAL;
+                extras[i] = first;
+            } else {
+                types[i] = TEXT;
+            }
+
+            if (types[i] != SPECIAL) {
+                // digits are compared as text against text chunks
+                synchronized (COLLATOR) {
+                    collationKeys[i] = COLLATOR.getCollationKey(chunk);
+                }
+            }
+        }
+    }
+
+    public static NaturalSortKey of(@NonNull String string) {
+        List<String> chunks = new ArrayList<>();
+        int length = string.length();
+        int marker = 0;
+
+        while (marker < length) {
+            int end = getChunkEnd(string, length, marker);
+            chunks.add(string.substring(marker, end));
+            marker = end;
+        }
+
+        return new NaturalSortKey(string, chunks);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public int compareTo(@NonNull NaturalSortKey other) {
+        int count = Math.min(types.length, other.types.length);
+
+        for (int i = 0; i < count; i++) {
+            int result;
+            int thisType = types[i];
+            int thatType = other.types[i];
+
+            if (thisType == DIGITS && thatType == DIGITS) {
+                result = compareNumbers(values[i], other.values[i]);
+                if (result == 0) {
+                    // value is equal, compare leading zeros
+                    result = Integer.compare(extras[i], other.extras[i]);
+                }
+            } else if (thisType == SPECIAL && thatType == SPECIAL) {
+                int thisChar = extras[i];
+                int thatChar = other.extras[i];
+                if (thisChar == '.' && thatChar != '.') {
+                    result = -1;
+                } else if (thatChar == '.' && thisChar != '.') {
+                    result = 1;
+                } else {
+                    result = thisChar - thatChar;
+                }
+            } else if (thisType == SPECIAL) {
+                result = -1;
+            } else if (thatType == SPECIAL) {
+                result = 1;
+            } else {
+                result = collationKeys[i].compareTo(other.collationKeys[i]);
+            }
+
+            if (result != 0) {
+                return result;
+            }
+        }
+
+        return source.length() - other.source.length();
+    }
+
+    private static int compareNumbers(String thisDigits, String thatDigits) {
+        if (thisDigits.length() != thatDigits.length()) {
+            return thisDigits.length() < thatDigits.length() ? -1 : 1;
+        }
+        int result = thisDigits.compareTo(thatDigits);
+        return Integer.signum(result);
+    }
+
+    private static int getChunkEnd(String string, int length, int marker) {
+        char c = string.charAt(marker);
+        marker++;
+        if (isDigit(c)) {
+            while (marker < length && isDigit(string.charAt(marker))) {
+                marker++;
+            }
+        } else if (!isSpecialChar(c)) {
+            while (marker < length && !isDigit(string.charAt(marker)) && !isSpecialChar(string.charAt(marker))) {
+                marker++;
+            }
+        }
+        return marker;
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= 48 && ch <= 57;
+    }
+
+    private static boolean isSpecialChar(char ch) {
+        return ch <= 47 || ch >= 58 && ch <= 64 || ch >= 91 && ch <= 96 || ch >= 123 && ch <= 126;
+    }
+}
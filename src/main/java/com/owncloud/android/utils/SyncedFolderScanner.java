@@ -0,0 +1,503 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU AFFERO GENERAL PUBLIC LICENSE
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU AFFERO GENERAL PUBLIC LICENSE for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.utils;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.MediaStore;
+import android.text.TextUtils;
+
+import com.owncloud.android.datamodel.FilesystemDataProvider;
+import com.owncloud.android.datamodel.MediaFolderType;
+import com.owncloud.android.datamodel.SyncedFolder;
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import org.lukhnos.nnio.file.FileVisitResult;
+import org.lukhnos.nnio.file.Files;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.Paths;
+import org.lukhnos.nnio.file.SimpleFileVisitor;
+import org.lukhnos.nnio.file.attribute.BasicFileAttributes;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.Nullable;
+
+import static com.owncloud.android.datamodel.OCFile.PATH_SEPARATOR;
+
+/**
+ * Indexes the files of synced folders for auto upload.
+ *
+ * Synced folders are scanned in parallel on a bounded pool. Custom folders are additionally split into one task per
+ * top level sub folder, so a single large folder does not keep the other threads idle. The scan stops as soon as
+ * the given {@link StopSignal} is raised, also in the middle of a folder.
+ *
+ * Changes reported by a content trigger can be indexed without a scan, see {@link #scanChanges(List, List)}.
+ */
+public class SyncedFolderScanner {
+    private static final String TAG = SyncedFolderScanner.class.getSimpleName();
+
+    static final int MAX_THREADS = 4;
+
+    /** maximum number of ids in one MediaStore query, below the SQLite limit of 999 arguments */
+    private static final int MAX_IDS_PER_QUERY = 500;
+    private static final String MEDIA_PATH_SEGMENT = "media";
+    private static final String IMAGES_PATH_SEGMENT = "images";
+    private static final String VIDEO_PATH_SEGMENT = "video";
+
+    /**
+     * Tells the scanner to stop, e.g. because the running job was stopped.
+     */
+    public interface StopSignal {
+        boolean isStopped();
+    }
+
+    /**
+     * Result of scanning a single synced folder.
+     */
+    public static final class FolderMetrics {
+        private final String localPath;
+        private final AtomicInteger files = new AtomicInteger();
+        private final AtomicLong finishedAt = new AtomicLong();
+        private final long startedAt;
+        private volatile boolean cancelled;
+
+        FolderMetrics(String localPath, long startedAt) {
+            this.localPath = localPath;
+            this.startedAt = startedAt;
+        }
+
+        public String getLocalPath() {
+            return localPath;
+        }
+
+        public int getFiles() {
+            return files.get();
+        }
+
+        public long getDurationMs() {
+            return Math.max(0, finishedAt.get() - startedAt);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void onTaskFinished() {
+            long now = System.currentTimeMillis();
+            long current;
+            do {
+                current = finishedAt.get();
+            } while (current < now && !finishedAt.compareAndSet(current, now));
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: %d files in %d ms%s", localPath, getFiles(), getDurationMs(),
+                                 cancelled ? " (cancelled)" : "");
+        }
+    }
+
+    private final ContentResolver contentResolver;
+    private final FilesystemDataProvider filesystemDataProvider;
+    private final StopSignal stopSignal;
+
+    public SyncedFolderScanner(ContentResolver contentResolver, StopSignal stopSignal) {
+        this(contentResolver, new FilesystemDataProvider(contentResolver), stopSignal);
+    }
+
+    SyncedFolderScanner(ContentResolver contentResolver,
+                        FilesystemDataProvider filesystemDataProvider,
+                        StopSignal stopSignal) {
+        this.contentResolver = contentResolver;
+        this.filesystemDataProvider = filesystemDataProvider;
+        this.stopSignal = stopSignal;
+    }
+
+    /**
+     * Scans the given synced folders and stores their files in the filesystem table, blocking until all folders
+     * are done or the scan was stopped.
+     *
+     * @return metrics of every scanned synced folder
+     */
+    public List<FolderMetrics> scan(List<SyncedFolder> syncedFolders) {
+        List<FolderMetrics> metrics = new ArrayList<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (SyncedFolder syncedFolder : syncedFolders) {
+            final long enabledTimestampMs = syncedFolder.getEnabledTimestampMs();
+
+            if (syncedFolder.isEnabled() && (syncedFolder.isExisting() || enabledTimestampMs >= 0)) {
+                FolderMetrics folderMetrics = new FolderMetrics(syncedFolder.getLocalPath(),
+                                                                System.currentTimeMillis());
+                metrics.add(folderMetrics);
+                addTasks(syncedFolder, folderMetrics, tasks);
+            }
+        }
+
+        if (tasks.isEmpty()) {
+            return metrics;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_THREADS, tasks.size()));
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Log_OC.e(TAG, "Interrupted while indexing files for auto upload", e);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log_OC.e(TAG, "Something went wrong while indexing files for auto upload", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Indexes only the given changed MediaStore items instead of scanning the synced folders. Each item is stored for
+     * every synced folder containing it: image and video folders of its media type, and custom folders.
+     *
+     * @param changedUris item URIs of images or videos, e.g. content://media/external/images/media/42
+     * @return metrics of the synced folders containing changed items, null if a URI is not a single image or video;
+     * the changes then need a full {@link #scan(List)}
+     */
+    @Nullable
+    public List<FolderMetrics> scanChanges(List<SyncedFolder> syncedFolders, List<String> changedUris) {
+        Map<String, List<String>> idsByTable = new HashMap<>();
+
+        for (String changedUri : changedUris) {
+            URI uri;
+            try {
+                uri = new URI(changedUri);
+            } catch (URISyntaxException e) {
+                return null;
+            }
+            // the path starts with a separator, its first segment is empty
+            String[] segments = uri.getPath() == null ? new String[0] : uri.getPath().split(PATH_SEPARATOR);
+            int size = segments.length;
+
+            if (!MediaStore.AUTHORITY.equals(uri.getAuthority()) || size < 4 || !isDigitsOnly(segments[size - 1]) ||
+                !MEDIA_PATH_SEGMENT.equals(segments[size - 2]) || getMediaType(segments[size - 3]) == null) {
+                return null;
+            }
+
+            StringBuilder table = new StringBuilder(uri.getScheme()).append("://").append(uri.getAuthority());
+            for (int i = 1; i < size - 1; i++) {
+                table.append(PATH_SEPARATOR).append(segments[i]);
+            }
+
+            List<String> ids = idsByTable.get(table.toString());
+            if (ids == null) {
+                ids = new ArrayList<>();
+                idsByTable.put(table.toString(), ids);
+            }
+            ids.add(segments[size - 1]);
+        }
+
+        Map<SyncedFolder, FolderMetrics> metrics = new LinkedHashMap<>();
+        Map<SyncedFolder, FilesystemDataProvider.Batch> batches = new HashMap<>();
+        try {
+            for (Map.Entry<String, List<String>> entry : idsByTable.entrySet()) {
+                String[] segments = entry.getKey().split(PATH_SEPARATOR);
+                MediaFolderType mediaType = getMediaType(segments[segments.length - 2]);
+
+                List<SyncedFolder> candidates = new ArrayList<>();
+                for (SyncedFolder syncedFolder : syncedFolders) {
+                    if (syncedFolder.isEnabled() &&
+                        (syncedFolder.isExisting() || syncedFolder.getEnabledTimestampMs() >= 0) &&
+                        (syncedFolder.getType() == mediaType || syncedFolder.getType() == MediaFolderType.CUSTOM)) {
+                        candidates.add(syncedFolder);
+                    }
+                }
+
+                List<String> ids = entry.getValue();
+                for (int start = 0; !candidates.isEmpty() && start < ids.size(); start += MAX_IDS_PER_QUERY) {
+                    List<String> queryIds = ids.subList(start, Math.min(ids.size(), start + MAX_IDS_PER_QUERY));
+                    insertChangesIntoDB(Uri.parse(entry.getKey()), queryIds, candidates, metrics, batches);
+                }
+            }
+        } finally {
+            for (FilesystemDataProvider.Batch batch : batches.values()) {
+                batch.flush();
+            }
+            for (FolderMetrics folderMetrics : metrics.values()) {
+                folderMetrics.onTaskFinished();
+            }
+        }
+
+        return new ArrayList<>(metrics.values());
+    }
+
+    private static boolean isDigitsOnly(String text) {
+        if (text.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private static MediaFolderType getMediaType(String pathSegment) {
+        if (IMAGES_PATH_SEGMENT.equals(pathSegment)) {
+            return MediaFolderType.IMAGE;
+        } else if (VIDEO_PATH_SEGMENT.equals(pathSegment)) {
+            return MediaFolderType.VIDEO;
+        }
+        return null;
+    }
+
+    private void insertChangesIntoDB(Uri table,
+                                     List<String> ids,
+                                     List<SyncedFolder> candidates,
+                                     Map<SyncedFolder, FolderMetrics> metrics,
+                                     Map<SyncedFolder, FilesystemDataProvider.Batch> batches) {
+        String[] projection = {MediaStore.MediaColumns.DATA, MediaStore.MediaColumns.DATE_MODIFIED};
+        String selection = MediaStore.MediaColumns._ID + " IN ("
+            + TextUtils.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+
+        Cursor cursor = contentResolver.query(table, projection, selection, ids.toArray(new String[0]), null);
+        if (cursor == null) {
+            return;
+        }
+
+        int columnIndexData = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATA);
+        int columnIndexDateModified = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATE_MODIFIED);
+        while (cursor.moveToNext() && !stopSignal.isStopped()) {
+            String contentPath = cursor.getString(columnIndexData);
+            if (contentPath == null) {
+                continue;
+            }
+
+            for (SyncedFolder syncedFolder : candidates) {
+                String folderPath = syncedFolder.getLocalPath();
+                if (!folderPath.endsWith(PATH_SEPARATOR)) {
+                    folderPath = folderPath + PATH_SEPARATOR;
+                }
+                if (!contentPath.startsWith(folderPath)) {
+                    continue;
+                }
+
+                FolderMetrics folderMetrics = metrics.get(syncedFolder);
+                if (folderMetrics == null) {
+                    folderMetrics = new FolderMetrics(syncedFolder.getLocalPath(), System.currentTimeMillis());
+                    metrics.put(syncedFolder, folderMetrics);
+                    batches.put(syncedFolder, filesystemDataProvider.startBatch(syncedFolder));
+                }
+                FilesystemDataProvider.Batch batch = batches.get(syncedFolder);
+
+                // store the same values as a full scan, otherwise it would see a change and upload again
+                File file = new File(contentPath);
+                if (syncedFolder.getType() == MediaFolderType.CUSTOM) {
+                    storeFile(contentPath, file.lastModified(), file.isDirectory(), syncedFolder, batch,
+                              folderMetrics);
+                } else {
+                    storeMediaFile(contentPath, cursor.getLong(columnIndexDateModified), file.isDirectory(),
+                                   syncedFolder, batch, folderMetrics);
+                }
+            }
+        }
+        cursor.close();
+
+        if (stopSignal.isStopped()) {
+            for (FolderMetrics folderMetrics : metrics.values()) {
+                folderMetrics.cancelled = true;
+            }
+        }
+    }
+
+    private void addTasks(SyncedFolder syncedFolder, FolderMetrics metrics, List<Callable<Void>> tasks) {
+        FilesystemDataProvider.Batch batch = filesystemDataProvider.startBatch(syncedFolder);
+        MediaFolderType mediaType = syncedFolder.getType();
+
+        if (mediaType == MediaFolderType.IMAGE) {
+            tasks.add(createTask(metrics, batch, () -> {
+                insertContentIntoDB(MediaStore.Images.Media.INTERNAL_CONTENT_URI, syncedFolder, batch, metrics);
+                insertContentIntoDB(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, syncedFolder, batch, metrics);
+            }));
+        } else if (mediaType == MediaFolderType.VIDEO) {
+            tasks.add(createTask(metrics, batch, () -> {
+                insertContentIntoDB(MediaStore.Video.Media.INTERNAL_CONTENT_URI, syncedFolder, batch, metrics);
+                insertContentIntoDB(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, syncedFolder, batch, metrics);
+            }));
+        } else {
+            File root = new File(syncedFolder.getLocalPath());
+            File[] children = root.listFiles();
+            List<File> files = new ArrayList<>();
+
+            if (children != null) {
+                for (File child : children) {
+                    if (child.isDirectory()) {
+                        FilesystemDataProvider.Batch subtreeBatch = batch.fork();
+                        tasks.add(createTask(metrics, subtreeBatch,
+                                             () -> walk(child, syncedFolder, subtreeBatch, metrics)));
+                    } else {
+                        files.add(child);
+                    }
+                }
+            }
+
+            tasks.add(createTask(metrics, batch, () -> {
+                for (File file : files) {
+                    if (isStopped(metrics)) {
+                        return;
+                    }
+                    storeFile(file.getAbsolutePath(), file.lastModified(), false, syncedFolder, batch, metrics);
+                }
+            }));
+        }
+    }
+
+    private Callable<Void> createTask(FolderMetrics metrics, FilesystemDataProvider.Batch batch, Runnable scan) {
+        return () -> {
+            try {
+                if (!isStopped(metrics)) {
+                    scan.run();
+                }
+            } finally {
+                batch.flush();
+                metrics.onTaskFinished();
+            }
+            return null;
+        };
+    }
+
+    private boolean isStopped(FolderMetrics metrics) {
+        if (stopSignal.isStopped()) {
+            metrics.cancelled = true;
+            return true;
+        }
+        return false;
+    }
+
+    private void storeFile(String localPath,
+                           long modifiedAt,
+                           boolean isFolder,
+                           SyncedFolder syncedFolder,
+                           FilesystemDataProvider.Batch batch,
+                           FolderMetrics metrics) {
+        if (syncedFolder.isExisting() || modifiedAt >= syncedFolder.getEnabledTimestampMs()) {
+            batch.storeOrUpdateFileValue(localPath, modifiedAt, isFolder);
+            metrics.files.incrementAndGet();
+        }
+    }
+
+    private void walk(File folder,
+                      SyncedFolder syncedFolder,
+                      FilesystemDataProvider.Batch batch,
+                      FolderMetrics metrics) {
+        try {
+            Path path = Paths.get(folder.getAbsolutePath());
+
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return isStopped(metrics) ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                    if (isStopped(metrics)) {
+                        return FileVisitResult.TERMINATE;
+                    }
+
+                    File file = path.toFile();
+                    storeFile(path.toAbsolutePath().toString(), attrs.lastModifiedTime().toMillis(),
+                              file.isDirectory(), syncedFolder, batch, metrics);
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            Log_OC.e(TAG, "Something went wrong while indexing files for auto upload", e);
+        }
+    }
+
+    private void insertContentIntoDB(Uri uri,
+                                     SyncedFolder syncedFolder,
+                                     FilesystemDataProvider.Batch batch,
+                                     FolderMetrics metrics) {
+        String[] projection = {MediaStore.MediaColumns.DATA, MediaStore.MediaColumns.DATE_MODIFIED};
+
+        String path = syncedFolder.getLocalPath();
+        if (!path.endsWith(PATH_SEPARATOR)) {
+            path = path + PATH_SEPARATOR;
+        }
+        path = path + "%";
+
+        Cursor cursor = contentResolver.query(uri, projection, MediaStore.MediaColumns.DATA + " LIKE ?",
+                                              new String[]{path}, null);
+
+        if (cursor != null) {
+            int columnIndexData = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATA);
+            int columnIndexDateModified = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATE_MODIFIED);
+            while (cursor.moveToNext() && !isStopped(metrics)) {
+                String contentPath = cursor.getString(columnIndexData);
+                boolean isFolder = new File(contentPath).isDirectory();
+                storeMediaFile(contentPath, cursor.getLong(columnIndexDateModified), isFolder, syncedFolder, batch,
+                               metrics);
+            }
+            cursor.close();
+        }
+    }
+
+    /**
+     * Stores a file found in the MediaStore, its modification time is in seconds.
+     */
+    private void storeMediaFile(String localPath,
+                                long modifiedAtSeconds,
+                                boolean isFolder,
+                                SyncedFolder syncedFolder,
+                                FilesystemDataProvider.Batch batch,
+                                FolderMetrics metrics) {
+        if (syncedFolder.isExisting() || modifiedAtSeconds >= syncedFolder.getEnabledTimestampMs() / 1000.0) {
+            batch.storeOrUpdateFileValue(localPath, modifiedAtSeconds, isFolder);
+            metrics.files.incrementAndGet();
+        }
+    }
+}
@@ -24,11 +24,12 @@ import android.content.Context
 import android.net.Uri
 import androidx.work.WorkerParameters
 import com.nextcloud.client.device.PowerManagementService
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.never
 import com.nhaarman.mockitokotlin2.verify
 import com.nhaarman.mockitokotlin2.whenever
 import com.owncloud.android.datamodel.SyncedFolderProvider
 import org.junit.Before
-import org.junit.Ignore
 import org.junit.Test
 import org.mockito.Mock
 import org.mockito.Mockito
@@ -37,6 +38,7 @@ import org.mockito.MockitoAnnotations
 class ContentObserverWorkTest {
 
     private lateinit var worker: ContentObserverWork
+    private lateinit var uri: Uri
 
     @Mock
     lateinit var params: WorkerParameters
@@ -63,7 +65,7 @@ class ContentObserverWorkTest {
             powerManagementService = powerManagementService,
             backgroundJobManager = backgroundJobManager
         )
-        val uri: Uri = Mockito.mock(Uri::class.java)
+        uri = Mockito.mock(Uri::class.java)
         whenever(params.triggeredContentUris).thenReturn(listOf(uri))
     }
 
@@ -83,8 +85,7 @@ class ContentObserverWorkTest {
     }
 
     @Test
-    @Ignore("TODO: needs further refactoring")
-    fun sync_is_triggered() {
+    fun sync_of_changes_is_triggered() {
         // GIVEN
         //      power saving is disabled
         //      some folders are configured for syncing
@@ -96,12 +97,33 @@ class ContentObserverWorkTest {
         worker.doWork()
 
         // THEN
-        //      sync job is scheduled
-        // TO DO: verify(backgroundJobManager).sheduleFilesSync() or something like this
+        //      only changed files are synced
+        verify(backgroundJobManager).startFilesSyncForChangesJob(listOf(uri.toString()))
+        verify(backgroundJobManager, never()).startImmediateFilesSyncJob(any(), any())
+    }
+
+    @Test
+    fun full_sync_is_triggered_if_changes_are_not_listed() {
+        // GIVEN
+        //      power saving is disabled
+        //      some folders are configured for syncing
+        //      too many changes to list them
+        whenever(powerManagementService.isPowerSavingEnabled).thenReturn(false)
+        whenever(folderProvider.countEnabledSyncedFolders()).thenReturn(1)
+        whenever(params.triggeredContentUris).thenReturn(emptyList())
+        whenever(params.triggeredContentAuthorities).thenReturn(listOf("media"))
+
+        // WHEN
+        //      worker is called
+        worker.doWork()
+
+        // THEN
+        //      synced media folders are scanned
+        verify(backgroundJobManager).startImmediateFilesSyncJob(true, false)
+        verify(backgroundJobManager, never()).startFilesSyncForChangesJob(any())
     }
 
     @Test
-    @Ignore("TODO: needs further refactoring")
     fun sync_is_not_triggered_under_power_saving_mode() {
         // GIVEN
         //      power saving is enabled
@@ -114,12 +136,12 @@ class ContentObserverWorkTest {
         worker.doWork()
 
         // THEN
-        //      sync job is scheduled
-        // TO DO: verify(backgroundJobManager, never()).sheduleFilesSync() or something like this)
+        //      sync job is not scheduled
+        verify(backgroundJobManager, never()).startFilesSyncForChangesJob(any())
+        verify(backgroundJobManager, never()).startImmediateFilesSyncJob(any(), any())
     }
 
     @Test
-    @Ignore("TODO: needs further refactoring")
     fun sync_is_not_triggered_if_no_folder_are_synced() {
         // GIVEN
         //      power saving is disabled
@@ -132,7 +154,8 @@ class ContentObserverWorkTest {
         worker.doWork()
 
         // THEN
-        //      sync job is scheduled
-        // TO DO: verify(backgroundJobManager, never()).sheduleFilesSync() or something like this)
+        //      sync job is not scheduled
+        verify(backgroundJobManager, never()).startFilesSyncForChangesJob(any())
+        verify(backgroundJobManager, never()).startImmediateFilesSyncJob(any(), any())
     }
 }
@@ -212,6 +212,67 @@ class FileLogHandlerTest {
         assertTrue(lines.logSize > 0)
     }
 
+    @Test
+    fun `load page of most recent log lines`() {
+        // GIVEN
+        //      multiple log files exist
+        //      log files have lines
+        var totalLogsSize = 0L
+        totalLogsSize += writeLogFile("log.txt.1", "line1\nline2\nline3")
+        totalLogsSize += writeLogFile("log.txt.0", "line4\nline5\nline6")
+        totalLogsSize += writeLogFile("log.txt", "line7\nline8\nline9")
+
+        // WHEN
+        //      a page is loaded, skipping most recent lines
+        val writer = FileLogHandler(logDir, "log.txt", FILE_SIZE)
+        val page = writer.loadLogPage(offset = 2, count = 4)
+
+        // THEN
+        //      page spans multiple files
+        //      lines are in chronological order
+        //      log files size is correctly reported
+        assertEquals(listOf("line4", "line5", "line6", "line7"), page.lines)
+        assertEquals(totalLogsSize, page.logSize)
+    }
+
+    @Test
+    fun `load page beyond available log lines`() {
+        // GIVEN
+        //      log file has lines
+        writeLogFile("log.txt", "line1\nline2\nline3")
+
+        // WHEN
+        //      page is partially beyond available lines
+        //      page is beyond available lines
+        val writer = FileLogHandler(logDir, "log.txt", FILE_SIZE)
+        val partialPage = writer.loadLogPage(offset = 2, count = 4)
+        val emptyPage = writer.loadLogPage(offset = 3, count = 4)
+
+        // THEN
+        //      available lines are loaded
+        assertEquals(listOf("line1"), partialPage.lines)
+        assertEquals(0, emptyPage.lines.size)
+    }
+
+    @Test
+    fun `buffered entries are written on flush`() {
+        // GIVEN
+        //      log writer is opened
+        //      log entry is written
+        val writer = FileLogHandler(logDir, "log.txt", FILE_SIZE)
+        writer.open()
+        writer.write("Hello!")
+
+        // WHEN
+        //      log is flushed
+        writer.flush()
+
+        // THEN
+        //      entry is in log file
+        assertEquals("Hello!", readLogFile("log.txt"))
+        writer.close()
+    }
+
     @Test(expected = IllegalArgumentException::class)
     fun `load log lines - negative count is illegal`() {
         // WHEN
@@ -0,0 +1,79 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.nextcloud.client.logger
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.Date
+
+class LogRingBufferTest {
+
+    private companion object {
+        const val CAPACITY = 3
+    }
+
+    private fun entry(message: String) = LogEntry(Date(0), Level.DEBUG, "tag", message)
+
+    @Test
+    fun `recent entries are returned in chronological order`() {
+        // GIVEN
+        //      buffer is not full
+        val buffer = LogRingBuffer(CAPACITY)
+        buffer.add(entry("1"))
+        buffer.add(entry("2"))
+
+        // WHEN
+        //      more entries are requested than available
+        val last = buffer.last(CAPACITY)
+
+        // THEN
+        //      all entries are returned
+        assertEquals(listOf("1", "2"), last.map { it.message })
+    }
+
+    @Test
+    fun `oldest entries are overwritten`() {
+        // GIVEN
+        //      buffer has overflown
+        val buffer = LogRingBuffer(CAPACITY)
+        listOf("1", "2", "3", "4", "5").forEach { buffer.add(entry(it)) }
+
+        // WHEN
+        //      recent entries are requested
+        val all = buffer.last(CAPACITY)
+        val lastTwo = buffer.last(2)
+
+        // THEN
+        //      most recent entries are kept
+        assertEquals(CAPACITY, buffer.size)
+        assertEquals(listOf("3", "4", "5"), all.map { it.message })
+        assertEquals(listOf("4", "5"), lastTwo.map { it.message })
+    }
+
+    @Test
+    fun `buffer is cleared`() {
+        val buffer = LogRingBuffer(CAPACITY)
+        buffer.add(entry("1"))
+
+        buffer.clear()
+
+        assertEquals(0, buffer.size)
+        assertEquals(0, buffer.last(CAPACITY).size)
+    }
+}
@@ -56,6 +56,9 @@ class LoggerTest {
         const val EMPTY_LONG = 0L
         const val TIMEOUT = 3000L
         const val MESSAGE_COUNT = 3
+        const val PAGE_SIZE = 2
+        const val RECENT_MESSAGE_COUNT = 5
+        const val RING_BUFFER_CAPACITY = 10
     }
 
     private lateinit var clock: Clock
@@ -324,4 +327,57 @@ class LoggerTest {
             join(TIMEOUT)
         }
     }
+
+    @Test
+    fun `older page does not shift when new entries are logged`() {
+        assertPagesAreStable(logger)
+    }
+
+    @Test
+    fun `older page from ring buffer does not shift when new entries are logged`() {
+        assertPagesAreStable(LoggerImpl(clock, logHandler, osHandler, QUEUE_CAPACITY, RING_BUFFER_CAPACITY))
+    }
+
+    private fun assertPagesAreStable(logger: LoggerImpl) {
+        whenever(osHandler.post(any())).thenAnswer {
+            (it.arguments[0] as Runnable).run()
+            true
+        }
+
+        // GIVEN
+        //      logger event loop is running
+        //      recent page of logs is loaded
+        logger.start()
+        for (i in 1..RECENT_MESSAGE_COUNT) {
+            logger.d("tag", "message $i")
+        }
+        val (recent, olderPage) = loadPage(logger, LogsRepository.LATEST_PAGE, PAGE_SIZE)
+
+        // WHEN
+        //      new entries are logged
+        //      older page is loaded
+        logger.d("tag", "message 6")
+        logger.d("tag", "message 7")
+        val (older, _) = loadPage(logger, olderPage, PAGE_SIZE)
+
+        // THEN
+        //      older page continues right before the recent page
+        assertEquals(PAGE_SIZE, recent.size)
+        assertTrue("message 4" in recent[0].message)
+        assertTrue("message 5" in recent[1].message)
+        assertEquals(PAGE_SIZE, older.size)
+        assertTrue("message 2" in older[0].message)
+        assertTrue("message 3" in older[1].message)
+    }
+
+    private fun loadPage(logger: LoggerImpl, page: Long, count: Int): Pair<List<LogEntry>, Long> {
+        val loaded = CountDownLatch(1)
+        var result: Pair<List<LogEntry>, Long>? = null
+        logger.load(page, count) { entries, _, olderPage ->
+            result = Pair(entries, olderPage)
+            loaded.countDown()
+        }
+        assertTrue("Logs not loaded", loaded.await(LATCH_WAIT, TimeUnit.SECONDS))
+        return result!!
+    }
 }
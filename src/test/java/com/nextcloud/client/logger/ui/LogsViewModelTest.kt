@@ -27,6 +27,7 @@ import com.nextcloud.client.logger.Level
 import com.nextcloud.client.logger.LogEntry
 import com.nextcloud.client.logger.LogsRepository
 import com.nextcloud.client.logger.OnLogsLoaded
+import com.nextcloud.client.logger.OnLogsPageLoaded
 import com.nhaarman.mockitokotlin2.any
 import com.nhaarman.mockitokotlin2.mock
 import com.nhaarman.mockitokotlin2.whenever
@@ -61,14 +62,24 @@ class LogsViewModelTest {
         val TEST_LOG_SIZE_BYTES = TEST_LOG_SIZE_KILOBYTES * 1024L
         const val TOTAL_ENTRY_COUNT = 3
         const val QUERY_TIME = 4
+        const val PAGE_SIZE = 1000
+        const val OLDER_PAGE = 42L
     }
 
     class TestLogRepository : LogsRepository {
         var loadRequestCount = 0
         var onLoadedCallback: OnLogsLoaded? = null
+        var onPageLoadedCallback: OnLogsPageLoaded? = null
+        var requestedPage: Long? = null
 
         override val lostEntries: Boolean = false
         override fun load(onLoaded: OnLogsLoaded) { this.onLoadedCallback = onLoaded; loadRequestCount++ }
+        override fun load(page: Long, count: Int, onLoaded: OnLogsPageLoaded) {
+            this.onLoadedCallback = { entries, size -> onLoaded(entries, size, OLDER_PAGE) }
+            this.onPageLoadedCallback = onLoaded
+            this.requestedPage = page
+            loadRequestCount++
+        }
         override fun deleteAll() { /* no implementation neeeded */
         }
     }
@@ -165,6 +176,30 @@ class LogsViewModelTest {
             assertNull(repository.onLoadedCallback)
             assertEquals(1, repository.loadRequestCount)
         }
+
+        @Test
+        fun `older page is loaded from cursor of previous page`() {
+            // GIVEN
+            //      a full page of most recent logs is loaded
+            val page = List(PAGE_SIZE) { LogEntry(Date(), Level.DEBUG, "test", "entry $it") }
+            vm.load()
+            assertEquals(LogsRepository.LATEST_PAGE, repository.requestedPage)
+            repository.onPageLoadedCallback?.invoke(page, TEST_LOG_SIZE_BYTES, OLDER_PAGE)
+
+            // WHEN
+            //      more logs are requested
+            //      older logs are loaded
+            vm.loadMore()
+            val olderEntries = TEST_LOG_ENTRIES
+            repository.onPageLoadedCallback?.invoke(olderEntries, TEST_LOG_SIZE_BYTES, OLDER_PAGE - olderEntries.size)
+
+            // THEN
+            //      older page is requested by the cursor returned with the recent page,
+            //      not by the number of loaded entries
+            //      older entries are displayed before loaded ones
+            assertEquals(OLDER_PAGE, repository.requestedPage)
+            assertEquals(olderEntries + page, vm.entries.value)
+        }
     }
 
     class Filtering : Fixture() {
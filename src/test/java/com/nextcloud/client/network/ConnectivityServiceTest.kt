@@ -24,16 +24,19 @@ import android.net.NetworkInfo
 import com.nextcloud.client.account.Server
 import com.nextcloud.client.account.User
 import com.nextcloud.client.account.UserAccountManager
+import com.nextcloud.client.core.Clock
 import com.nextcloud.client.logger.Logger
 import com.nhaarman.mockitokotlin2.any
 import com.nhaarman.mockitokotlin2.mock
 import com.nhaarman.mockitokotlin2.never
+import com.nhaarman.mockitokotlin2.times
 import com.nhaarman.mockitokotlin2.verify
 import com.nhaarman.mockitokotlin2.whenever
 import com.owncloud.android.lib.resources.status.OwnCloudVersion
 import org.apache.commons.httpclient.HttpClient
 import org.apache.commons.httpclient.HttpStatus
 import org.apache.commons.httpclient.methods.GetMethod
+import org.junit.Assert.assertEquals
 import org.junit.Assert.assertFalse
 import org.junit.Assert.assertTrue
 import org.junit.Before
@@ -44,12 +47,15 @@ import org.mockito.ArgumentCaptor
 import org.mockito.Mock
 import org.mockito.MockitoAnnotations
 import java.net.URI
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
 
 @RunWith(Suite::class)
 @Suite.SuiteClasses(
     ConnectivityServiceTest.IsConnected::class,
     ConnectivityServiceTest.WifiConnectionWalledStatusOnLegacyServer::class,
-    ConnectivityServiceTest.WifiConnectionWalledStatus::class
+    ConnectivityServiceTest.WifiConnectionWalledStatus::class,
+    ConnectivityServiceTest.WalledStatusCache::class
 )
 class ConnectivityServiceTest {
 
@@ -90,6 +96,9 @@ class ConnectivityServiceTest {
         @Mock
         lateinit var logger: Logger
 
+        @Mock
+        lateinit var clock: Clock
+
         val baseServerUri = URI.create(SERVER_BASE_URL)
         val newServer = Server(baseServerUri, OwnCloudVersion.nextcloud_14)
         val legacyServer = Server(baseServerUri, OwnCloudVersion.nextcloud_13)
@@ -107,7 +116,8 @@ class ConnectivityServiceTest {
                 accountManager,
                 clientFactory,
                 requestBuilder,
-                logger
+                logger,
+                clock
             )
 
             whenever(platformConnectivityManager.activeNetworkInfo).thenReturn(networkInfo)
@@ -259,4 +269,109 @@ class ConnectivityServiceTest {
             assertTrue("Invalid URL used to check status", urlCaptor.value.endsWith("/index.php/204"))
         }
     }
+
+    internal class WalledStatusCache : Base() {
+
+        @Before
+        fun setUp() {
+            whenever(networkInfo.isConnectedOrConnecting).thenReturn(true)
+            whenever(networkInfo.type).thenReturn(ConnectivityManager.TYPE_WIFI)
+            whenever(client.executeMethod(any())).thenReturn(HttpStatus.SC_NO_CONTENT)
+            whenever(getRequest.responseContentLength).thenReturn(0)
+            whenever(clock.currentTime).thenReturn(START_TIME)
+        }
+
+        @Test
+        fun `repeated checks use a single probe`() {
+            // WHEN
+            //      connectivity is checked several times
+            repeat(CHECKS) { assertFalse(connectivityService.isInternetWalled) }
+
+            // THEN
+            //      server is probed once
+            verify(client).executeMethod(any())
+            assertEquals(1, connectivityService.walledProbes)
+            assertEquals(CHECKS - 1, connectivityService.walledProbesSaved)
+        }
+
+        @Test
+        fun `expired check probes again`() {
+            // GIVEN
+            //      connectivity was checked
+            assertFalse(connectivityService.isInternetWalled)
+
+            // WHEN
+            //      server became walled
+            //      connectivity is checked after the cache expired
+            whenever(client.executeMethod(any())).thenReturn(HttpStatus.SC_OK)
+            whenever(clock.currentTime).thenReturn(START_TIME + ConnectivityServiceImpl.WALLED_CHECK_TTL_MS)
+
+            // THEN
+            //      server is probed again
+            assertTrue(connectivityService.isInternetWalled)
+            verify(client, times(2)).executeMethod(any())
+        }
+
+        @Test
+        fun `check is not shared between networks`() {
+            // GIVEN
+            //      connectivity was checked
+            assertFalse(connectivityService.isInternetWalled)
+
+            // WHEN
+            //      another wifi network is active
+            whenever(networkInfo.extraInfo).thenReturn("other")
+            connectivityService.isInternetWalled
+
+            // THEN
+            //      server is probed again
+            verify(client, times(2)).executeMethod(any())
+        }
+
+        @Test
+        fun `invalidated check probes again`() {
+            // GIVEN
+            //      connectivity was checked
+            assertFalse(connectivityService.isInternetWalled)
+
+            // WHEN
+            //      a network changed
+            connectivityService.invalidateWalledCheck()
+            connectivityService.isInternetWalled
+
+            // THEN
+            //      server is probed again
+            verify(client, times(2)).executeMethod(any())
+        }
+
+        @Test
+        fun `invalidation does not wait for running probe`() {
+            // GIVEN
+            //      a network changes while the server is probed
+            var invalidatedDuringProbe = false
+            whenever(client.executeMethod(any())).thenAnswer {
+                val invalidation = thread { connectivityService.invalidateWalledCheck() }
+                invalidation.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS))
+                invalidatedDuringProbe = !invalidation.isAlive
+                HttpStatus.SC_NO_CONTENT
+            }
+
+            // WHEN
+            //      connectivity is checked twice
+            connectivityService.isInternetWalled
+            connectivityService.isInternetWalled
+
+            // THEN
+            //      invalidation completed while the probe was running
+            //      result of that probe is not used
+            assertTrue(invalidatedDuringProbe)
+            verify(client, times(2)).executeMethod(any())
+        }
+
+        private companion object {
+            const val START_TIME = 1_000_000L
+            const val CHECKS = 10
+            const val TIMEOUT_SECONDS = 5L
+        }
+    }
 }
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.content.SharedPreferences;
 
 import com.nextcloud.client.account.CurrentAccountProvider;
+import com.owncloud.android.datamodel.OCFile;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -13,6 +14,16 @@ import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.inOrder;
@@ -23,7 +34,9 @@ import static org.mockito.Mockito.when;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
     TestAppPreferences.Preferences.class,
-    TestAppPreferences.ListenerRegistery.class
+    TestAppPreferences.ListenerRegistery.class,
+    TestAppPreferences.FolderPreferenceCache.class,
+    TestAppPreferences.PendingContentChanges.class
 })
 public class TestAppPreferences {
 
@@ -158,4 +171,189 @@ public class TestAppPreferences {
             inOrder.verify(editor).apply();
         }
     }
+
+    public static class FolderPreferenceCache {
+        private static final String ACCOUNT = "user@nextcloud.localhost";
+        private static final String OTHER_ACCOUNT = "other@nextcloud.localhost";
+        private static final String PREFERENCE = "folder_sort_order";
+        private static final String OTHER_PREFERENCE = "folder_layout";
+
+        private AppPreferencesImpl.FolderPreferenceCache cache;
+
+        @Before
+        public void setUp() {
+            cache = new AppPreferencesImpl.FolderPreferenceCache();
+        }
+
+        @Test
+        public void resolvedValuesAreReturned() {
+            OCFile folder = folder(10, "/a/b/");
+
+            assertNull(cache.get(ACCOUNT, PREFERENCE, folder));
+
+            cache.put(ACCOUNT, PREFERENCE, folder, "");
+            cache.put(ACCOUNT, PREFERENCE, null, "root");
+
+            assertEquals("", cache.get(ACCOUNT, PREFERENCE, folder(10, "/a/b/")));
+            assertEquals("root", cache.get(ACCOUNT, PREFERENCE, null));
+            assertNull(cache.get(OTHER_ACCOUNT, PREFERENCE, folder));
+            assertNull(cache.get(ACCOUNT, OTHER_PREFERENCE, folder));
+        }
+
+        @Test
+        public void movedFolderIsResolvedAgain() {
+            cache.put(ACCOUNT, PREFERENCE, folder(10, "/a/b/"), "value");
+
+            assertNull(cache.get(ACCOUNT, PREFERENCE, folder(10, "/c/b/")));
+        }
+
+        @Test
+        public void invalidateDropsPreferenceOfAccount() {
+            cache.put(ACCOUNT, PREFERENCE, folder(10, "/a/"), "value");
+            cache.put(ACCOUNT, PREFERENCE, null, "value");
+            cache.put(ACCOUNT, OTHER_PREFERENCE, folder(10, "/a/"), "other");
+            cache.put(OTHER_ACCOUNT, PREFERENCE, folder(10, "/a/"), "other");
+
+            cache.invalidate(ACCOUNT, PREFERENCE);
+
+            assertNull(cache.get(ACCOUNT, PREFERENCE, folder(10, "/a/")));
+            assertNull(cache.get(ACCOUNT, PREFERENCE, null));
+            assertEquals("other", cache.get(ACCOUNT, OTHER_PREFERENCE, folder(10, "/a/")));
+            assertEquals("other", cache.get(OTHER_ACCOUNT, PREFERENCE, folder(10, "/a/")));
+        }
+
+        @Test
+        public void invalidateDropsAllPreferencesOfAccount() {
+            cache.put(ACCOUNT, PREFERENCE, folder(10, "/a/"), "value");
+            cache.put(ACCOUNT, PREFERENCE, null, "value");
+            cache.put(ACCOUNT, OTHER_PREFERENCE, folder(10, "/a/"), "value");
+            cache.put(OTHER_ACCOUNT, PREFERENCE, folder(10, "/a/"), "other");
+
+            cache.invalidate(ACCOUNT);
+
+            assertNull(cache.get(ACCOUNT, PREFERENCE, folder(10, "/a/")));
+            assertNull(cache.get(ACCOUNT, PREFERENCE, null));
+            assertNull(cache.get(ACCOUNT, OTHER_PREFERENCE, folder(10, "/a/")));
+            assertEquals("other", cache.get(OTHER_ACCOUNT, PREFERENCE, folder(10, "/a/")));
+            assertEquals(1, cache.size());
+        }
+
+        @Test
+        public void leastRecentlyUsedEntriesAreEvicted() {
+            for (int i = 0; i <= AppPreferencesImpl.FolderPreferenceCache.MAX_ENTRIES; i++) {
+                cache.put(ACCOUNT, PREFERENCE, folder(i, "/" + i + "/"), "value");
+                if (i == 1) {
+                    // keep the 1st folder in use
+                    cache.get(ACCOUNT, PREFERENCE, folder(0, "/0/"));
+                }
+            }
+
+            assertEquals(AppPreferencesImpl.FolderPreferenceCache.MAX_ENTRIES, cache.size());
+            assertEquals("value", cache.get(ACCOUNT, PREFERENCE, folder(0, "/0/")));
+            assertNull(cache.get(ACCOUNT, PREFERENCE, folder(1, "/1/")));
+        }
+
+        private static OCFile folder(long id, String path) {
+            OCFile folder = new OCFile(path);
+            folder.setFileId(id);
+            return folder;
+        }
+    }
+
+    public static class PendingContentChanges {
+        private static final String FIRST_URI = "content://media/external/images/media/1";
+        private static final String SECOND_URI = "content://media/external/images/media/2";
+        private static final String THIRD_URI = "content://media/external/video/media/3";
+
+        @Mock
+        private Context testContext;
+
+        @Mock
+        private SharedPreferences sharedPreferences;
+
+        @Mock
+        private SharedPreferences.Editor editor;
+
+        @Mock
+        private CurrentAccountProvider accountProvider;
+
+        private final Map<String, Set<String>> stored = new HashMap<>();
+
+        @Before
+        public void setUp() {
+            MockitoAnnotations.initMocks(this);
+            when(sharedPreferences.edit()).thenReturn(editor);
+            when(sharedPreferences.getStringSet(anyString(), any())).thenAnswer(
+                i -> stored.containsKey(i.getArgument(0)) ? stored.get(i.getArgument(0)) : i.getArgument(1));
+            when(editor.putStringSet(anyString(), any())).thenAnswer(i -> {
+                stored.put(i.getArgument(0), new HashSet<>(i.<Set<String>>getArgument(1)));
+                return editor;
+            });
+        }
+
+        @Test
+        public void addedChangesArePending() {
+            AppPreferencesImpl preferences = newPreferences();
+
+            preferences.addPendingContentChanges(Arrays.asList(FIRST_URI, SECOND_URI));
+            preferences.addPendingContentChanges(Collections.singletonList(SECOND_URI));
+
+            assertEquals(set(FIRST_URI, SECOND_URI), preferences.getPendingContentChanges());
+        }
+
+        @Test
+        public void changesOfStoppedWorkerStayPending() {
+            // GIVEN
+            //      a worker took the pending changes and was stopped, so it did not remove them
+            newPreferences().addPendingContentChanges(Arrays.asList(FIRST_URI, SECOND_URI));
+            Set<String> taken = newPreferences().getPendingContentChanges();
+
+            // WHEN
+            //      the app process is restarted
+            AppPreferencesImpl preferences = newPreferences();
+
+            // THEN
+            //      the next worker gets the same changes
+            assertEquals(taken, preferences.getPendingContentChanges());
+            assertEquals(set(FIRST_URI, SECOND_URI), preferences.getPendingContentChanges());
+        }
+
+        @Test
+        public void changesReportedMeanwhileStayPending() {
+            // GIVEN
+            //      a worker took the pending changes
+            //      another change is reported while it is running
+            AppPreferencesImpl preferences = newPreferences();
+            preferences.addPendingContentChanges(Arrays.asList(FIRST_URI, SECOND_URI));
+            Set<String> taken = preferences.getPendingContentChanges();
+            preferences.addPendingContentChanges(Collections.singletonList(THIRD_URI));
+
+            // WHEN
+            //      the worker finishes
+            preferences.removePendingContentChanges(taken);
+
+            // THEN
+            //      only the change reported meanwhile is pending
+            assertEquals(set(THIRD_URI), newPreferences().getPendingContentChanges());
+        }
+
+        @Test
+        public void takenChangesAreNotModified() {
+            AppPreferencesImpl preferences = newPreferences();
+            preferences.addPendingContentChanges(Collections.singletonList(FIRST_URI));
+            Set<String> taken = preferences.getPendingContentChanges();
+
+            preferences.addPendingContentChanges(Collections.singletonList(SECOND_URI));
+
+            assertEquals(set(FIRST_URI), taken);
+        }
+
+        private AppPreferencesImpl newPreferences() {
+            return new AppPreferencesImpl(testContext, sharedPreferences, accountProvider);
+        }
+
+        private static Set<String> set(String... uris) {
+            return new HashSet<>(Arrays.asList(uris));
+        }
+    }
 }
@@ -0,0 +1,46 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.datamodel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FileNameMatchTest {
+
+    @Test
+    public void wordsBecomePrefixes() {
+        assertEquals("\"report*\"", FileDataStorageManager.buildFileNameMatch("report"));
+        assertEquals("\"sum*\" \"rep*\"", FileDataStorageManager.buildFileNameMatch("sum rep"));
+        assertEquals("\"holiday*\" \"2020*\" \"jpg*\"", FileDataStorageManager.buildFileNameMatch("holiday_2020.jpg"));
+    }
+
+    @Test
+    public void nonAsciiLettersStayInWords() {
+        assertEquals("\"Übersicht*\"", FileDataStorageManager.buildFileNameMatch("Übersicht"));
+    }
+
+    @Test
+    public void operatorsAndQuotesAreNotPassedOn() {
+        assertEquals("\"a*\" \"OR*\" \"b*\"", FileDataStorageManager.buildFileNameMatch("a OR \"b\""));
+        assertEquals("\"NEAR*\" \"x*\"", FileDataStorageManager.buildFileNameMatch("NEAR(x)*"));
+        assertEquals("", FileDataStorageManager.buildFileNameMatch(" \"*-_. "));
+        assertEquals("", FileDataStorageManager.buildFileNameMatch(""));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.datamodel;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class FilesystemDataProviderTest {
+    private static final String SYNCED_FOLDER_ID = "7";
+
+    private ContentResolver contentResolver;
+    private FilesystemDataProvider provider;
+
+    @Before
+    public void setUp() {
+        contentResolver = mock(ContentResolver.class);
+        provider = new FilesystemDataProvider(contentResolver);
+    }
+
+    @Test
+    public void filesAreMarkedSentInBatches() {
+        List<String> paths = paths(2 * FilesystemDataProvider.Batch.BATCH_SIZE + 1);
+
+        provider.updateFilesystemFilesAsSentForUpload(paths, SYNCED_FOLDER_ID);
+
+        ArgumentCaptor<String[]> selectionArgs = ArgumentCaptor.forClass(String[].class);
+        verify(contentResolver, times(3)).update(any(), any(ContentValues.class), anyString(),
+                                                 selectionArgs.capture());
+
+        List<String> updatedPaths = new ArrayList<>();
+        int[] expectedSizes = {FilesystemDataProvider.Batch.BATCH_SIZE, FilesystemDataProvider.Batch.BATCH_SIZE, 1};
+        for (int i = 0; i < expectedSizes.length; i++) {
+            String[] args = selectionArgs.getAllValues().get(i);
+            assertEquals(expectedSizes[i] + 1, args.length);
+            // the synced folder is the last argument of every batch
+            assertEquals(SYNCED_FOLDER_ID, args[args.length - 1]);
+            updatedPaths.addAll(Arrays.asList(args).subList(0, args.length - 1));
+        }
+        assertEquals(paths, updatedPaths);
+    }
+
+    @Test
+    public void fullBatchNeedsSingleUpdate() {
+        List<String> paths = paths(FilesystemDataProvider.Batch.BATCH_SIZE);
+
+        provider.updateFilesystemFilesAsSentForUpload(paths, SYNCED_FOLDER_ID);
+
+        verify(contentResolver, times(1)).update(any(), any(ContentValues.class), anyString(), any(String[].class));
+    }
+
+    @Test
+    public void noFilesNeedNoUpdate() {
+        provider.updateFilesystemFilesAsSentForUpload(Collections.emptyList(), SYNCED_FOLDER_ID);
+
+        verify(contentResolver, never()).update(any(), any(), any(), any());
+    }
+
+    private static List<String> paths(int count) {
+        List<String> paths = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            paths.add("/storage/emulated/0/DCIM/Camera/IMG_" + i + ".jpg");
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.datamodel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FolderSizeIndexTest {
+    private File root;
+    private File sub;
+    private File other;
+    private FolderSizeIndex index;
+
+    @Before
+    public void setUp() throws IOException {
+        root = File.createTempFile("folderSizeIndex", "");
+        assertTrue(root.delete());
+        sub = new File(root, "sub");
+        other = new File(root, "other");
+        assertTrue(sub.mkdirs());
+        assertTrue(other.mkdirs());
+
+        write(new File(root, "a"), 10);
+        write(new File(sub, "b"), 20);
+        write(new File(other, "c"), 30);
+
+        // run everything on the calling thread
+        index = new FolderSizeIndex(Runnable::run, Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursive(root);
+    }
+
+    @Test
+    public void sizesOfSubfoldersAreCached() {
+        assertEquals(FolderSizeIndex.UNKNOWN, index.getCachedSize(root));
+
+        assertEquals(60, index.getSize(root));
+
+        assertEquals(60, index.getCachedSize(root));
+        assertEquals(20, index.getCachedSize(sub));
+        assertEquals(30, index.getCachedSize(other));
+    }
+
+    @Test
+    public void changedFileInvalidatesContainingFolders() throws IOException {
+        index.getSize(root);
+
+        File changed = new File(sub, "b");
+        write(changed, 25);
+        index.invalidateFile(changed.getAbsolutePath());
+
+        assertEquals(FolderSizeIndex.UNKNOWN, index.getCachedSize(sub));
+        assertEquals(FolderSizeIndex.UNKNOWN, index.getCachedSize(root));
+        assertEquals(30, index.getCachedSize(other));
+        assertEquals(65, index.getSize(root));
+    }
+
+    @Test
+    public void removedFolderInvalidatesSubfolders() {
+        index.getSize(root);
+
+        index.invalidateFolder(root.getAbsolutePath());
+
+        assertEquals(FolderSizeIndex.UNKNOWN, index.getCachedSize(root));
+        assertEquals(FolderSizeIndex.UNKNOWN, index.getCachedSize(sub));
+        assertEquals(FolderSizeIndex.UNKNOWN, index.getCachedSize(other));
+    }
+
+    @Test
+    public void requestedSizeIsDelivered() {
+        List<Long> results = new ArrayList<>();
+
+        index.requestSize(root, (folder, size) -> results.add(size));
+        index.requestSize(root, (folder, size) -> results.add(size));
+
+        assertEquals(2, results.size());
+        assertEquals(60, (long) results.get(0));
+        assertEquals(60, (long) results.get(1));
+    }
+
+    private void write(File file, int length) throws IOException {
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(new byte[length]);
+        }
+    }
+
+    private void deleteRecursive(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursive(child);
+            }
+        }
+        file.delete();
+    }
+}
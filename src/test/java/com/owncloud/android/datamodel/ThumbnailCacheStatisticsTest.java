@@ -0,0 +1,50 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.datamodel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ThumbnailCacheStatisticsTest {
+    private static final float DELTA = 0.0001f;
+
+    @Test
+    public void hitRatioWithoutRequests() {
+        assertEquals(0, new ThumbnailCacheStatistics().getHitRatio(), DELTA);
+    }
+
+    @Test
+    public void hitRatio() {
+        ThumbnailCacheStatistics statistics = new ThumbnailCacheStatistics();
+        statistics.onMemoryHit();
+        statistics.onMemoryHit();
+        statistics.onDiskHit();
+        statistics.onMiss();
+        statistics.onNetworkFetch();
+
+        assertEquals(4, statistics.getRequests());
+        assertEquals(1, statistics.getNetworkFetches());
+        assertEquals(0.75f, statistics.getHitRatio(), DELTA);
+
+        statistics.reset();
+
+        assertEquals(0, statistics.getRequests());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.datamodel;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ThumbnailExecutorTest {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    @Test
+    public void newestWorkRunsFirst() throws InterruptedException {
+        ThumbnailExecutor executor = new ThumbnailExecutor(1, "test");
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+
+        // keep the only thread busy until all work is queued
+        executor.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 1; i <= 3; i++) {
+            final int position = i;
+            executor.execute(() -> {
+                order.add(position);
+                done.countDown();
+            });
+        }
+        assertEquals(3, executor.getQueueSize());
+
+        blocked.countDown();
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(3, 2, 1), order);
+    }
+
+    @Test
+    public void cancelledWorkIsSkipped() throws InterruptedException {
+        ThumbnailExecutor executor = new ThumbnailExecutor(1, "test");
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        List<String> executed = new CopyOnWriteArrayList<>();
+
+        executor.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // AsyncTask submits a FutureTask, cancelling it drops queued work
+        FutureTask<Void> cancelled = new FutureTask<>(() -> executed.add("cancelled"), null);
+        executor.execute(cancelled);
+        executor.execute(done::countDown);
+        cancelled.cancel(false);
+
+        blocked.countDown();
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(executed.isEmpty());
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.files.services;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class TransferSchedulerTest {
+    private static final String ACCOUNT = "user@cloud.example.com";
+    private static final String OTHER_ACCOUNT = "other@cloud.example.com";
+
+    private static final int SMALL_FILES = 60;
+    private static final int SMALL_FILE_SIZE = 16 * 1024;
+    private static final int LARGE_FILE_SIZE = 4 * 1024 * 1024;
+    private static final int BYTES_PER_SECOND_PER_CONNECTION = 8 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final List<Runnable> started = new ArrayList<>();
+
+    @Test
+    public void smallestFirst() {
+        List<String> order = new ArrayList<>();
+        TransferScheduler scheduler = new TransferScheduler(1, TransferScheduler.Order.SMALLEST_FIRST,
+                                                            started::add, () -> { });
+
+        scheduler.schedule(ACCOUNT, 100, slot -> order.add("first"));
+        scheduler.schedule(ACCOUNT, 300, slot -> order.add("large"));
+        scheduler.schedule(ACCOUNT, 10, slot -> order.add("small"));
+        scheduler.schedule(ACCOUNT, 200, slot -> order.add("medium"));
+        runAll();
+
+        assertEquals(Arrays.asList("first", "small", "medium", "large"), order);
+    }
+
+    @Test
+    public void requestedOrder() {
+        List<String> order = new ArrayList<>();
+        TransferScheduler scheduler = new TransferScheduler(1, TransferScheduler.Order.REQUESTED,
+                                                            started::add, () -> { });
+
+        scheduler.schedule(ACCOUNT, 100, slot -> order.add("first"));
+        scheduler.schedule(ACCOUNT, 300, slot -> order.add("large"));
+        scheduler.schedule(ACCOUNT, 10, slot -> order.add("small"));
+        runAll();
+
+        assertEquals(Arrays.asList("first", "large", "small"), order);
+    }
+
+    @Test
+    public void slotsPerAccount() {
+        TransferScheduler scheduler = new TransferScheduler(2, TransferScheduler.Order.REQUESTED,
+                                                            started::add, () -> { });
+        Set<Integer> slots = new HashSet<>();
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.schedule(ACCOUNT, 1, slots::add);
+            scheduler.schedule(OTHER_ACCOUNT, 1, slots::add);
+        }
+
+        assertEquals(4, scheduler.getRunningCount());
+        assertEquals(2, scheduler.getWaitingCount());
+
+        for (Runnable runnable : new ArrayList<>(started)) {
+            runnable.run();
+        }
+        assertEquals(new HashSet<>(Arrays.asList(0, 1, 2, 3)), slots);
+        assertEquals(2, scheduler.getRunningCount());
+    }
+
+    @Test
+    public void largeFileIsNotStarved() {
+        List<String> order = new ArrayList<>();
+        TransferScheduler scheduler = new TransferScheduler(1, TransferScheduler.Order.SMALLEST_FIRST,
+                                                            started::add, () -> { });
+
+        scheduler.schedule(ACCOUNT, 1, slot -> order.add("first"));
+        scheduler.schedule(ACCOUNT, 1000, slot -> order.add("large"));
+
+        // small files keep coming while the large one waits
+        for (int i = 0; i < 2 * TransferScheduler.MAX_OVERTAKEN; i++) {
+            scheduler.schedule(ACCOUNT, 1, slot -> order.add("small"));
+            started.remove(0).run();
+        }
+        runAll();
+
+        assertEquals(TransferScheduler.MAX_OVERTAKEN + 1, order.indexOf("large"));
+        assertEquals(2 + 2 * TransferScheduler.MAX_OVERTAKEN, order.size());
+    }
+
+    @Test
+    public void idleAfterLastTransfer() {
+        AtomicInteger idleCalls = new AtomicInteger();
+        TransferScheduler scheduler = new TransferScheduler(2, TransferScheduler.Order.REQUESTED,
+                                                            started::add, idleCalls::incrementAndGet);
+
+        for (int i = 0; i < 5; i++) {
+            scheduler.schedule(ACCOUNT, 1, slot -> { });
+        }
+        assertTrue(!scheduler.isIdle());
+
+        runAll();
+
+        assertTrue(scheduler.isIdle());
+        assertEquals(1, idleCalls.get());
+    }
+
+    /**
+     * Downloads one large file followed by many small ones from a local WebDAV stand-in limiting the bandwidth of
+     * every connection, once one at a time in requested order and once with concurrent slots and smallest first.
+     * It depends on wall-clock timing and only runs with -Dbenchmark.transfers=true.
+     */
+    @Test
+    public void throughputBenchmark() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark.transfers"));
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/remote.php/webdav/", exchange -> {
+            int size = Integer.parseInt(exchange.getRequestURI().getPath().replaceAll(".*/", ""));
+            exchange.sendResponseHeaders(200, size);
+            try (OutputStream out = exchange.getResponseBody()) {
+                writeThrottled(out, size);
+            }
+        });
+        server.start();
+
+        try {
+            String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/remote.php/webdav/";
+            Result sequential = download(baseUrl, 1, TransferScheduler.Order.REQUESTED);
+            Result concurrent = download(baseUrl, 3, TransferScheduler.Order.SMALLEST_FIRST);
+
+            assertTrue(concurrent.smallFilesDone < sequential.smallFilesDone);
+            assertTrue(concurrent.total < sequential.total);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private Result download(String baseUrl, int slots, TransferScheduler.Order order) throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicLong smallFilesDone = new AtomicLong();
+        AtomicInteger smallFilesLeft = new AtomicInteger(SMALL_FILES);
+        TransferScheduler scheduler = new TransferScheduler(slots, order, executor, done::countDown);
+
+        long start = System.currentTimeMillis();
+        scheduler.schedule(ACCOUNT, LARGE_FILE_SIZE, slot -> fetch(baseUrl + LARGE_FILE_SIZE));
+        for (int i = 0; i < SMALL_FILES; i++) {
+            scheduler.schedule(ACCOUNT, SMALL_FILE_SIZE, slot -> {
+                fetch(baseUrl + SMALL_FILE_SIZE);
+                if (smallFilesLeft.decrementAndGet() == 0) {
+                    smallFilesDone.set(System.currentTimeMillis() - start);
+                }
+            });
+        }
+
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        Result result = new Result(System.currentTimeMillis() - start, smallFilesDone.get());
+        executor.shutdown();
+        return result;
+    }
+
+    private static void fetch(String url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            byte[] buffer = new byte[CHUNK_SIZE];
+            try (InputStream in = connection.getInputStream()) {
+                while (in.read(buffer) != -1) {
+                    // discard
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeThrottled(OutputStream out, int size) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        long nanosPerChunk = TimeUnit.SECONDS.toNanos(1) * CHUNK_SIZE / BYTES_PER_SECOND_PER_CONNECTION;
+        for (int written = 0; written < size; written += CHUNK_SIZE) {
+            out.write(chunk, 0, Math.min(CHUNK_SIZE, size - written));
+            LockSupport.parkNanos(nanosPerChunk);
+        }
+    }
+
+    private void runAll() {
+        while (!started.isEmpty()) {
+            started.remove(0).run();
+        }
+    }
+
+    private static final class Result {
+        final long total;
+        final long smallFilesDone;
+
+        Result(long total, long smallFilesDone) {
+            this.total = total;
+            this.smallFilesDone = smallFilesDone;
+        }
+    }
+}
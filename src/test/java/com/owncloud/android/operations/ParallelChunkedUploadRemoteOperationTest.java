@@ -0,0 +1,251 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.operations;
+
+import android.net.Uri;
+
+import com.owncloud.android.datamodel.UploadsStorageManager;
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+import com.owncloud.android.lib.resources.files.ChunkedFileUploadRemoteOperation;
+
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.StatusLine;
+import org.apache.commons.httpclient.methods.PutMethod;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ParallelChunkedUploadRemoteOperationTest {
+    private static final long CHUNK_SIZE = ChunkedFileUploadRemoteOperation.CHUNK_SIZE_MOBILE;
+    private static final String TRANSFER_ID = "android-12-1000-1586000000000";
+    private static final long UPLOAD_ID = 12;
+
+    private File file;
+    private byte[] content;
+    private OwnCloudClient client;
+    private UploadsStorageManager uploadsStorageManager;
+
+    /** requests sent to the server, as method and last path segment */
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, byte[]> chunks = new ConcurrentHashMap<>();
+    private final Map<String, Deque<Integer>> statuses = new HashMap<>();
+    private HttpMethod moveMethod;
+
+    @Before
+    public void setUp() throws IOException {
+        // three chunks, the last one shorter
+        content = new byte[(int) (2 * CHUNK_SIZE + 1000)];
+        new Random(17).nextBytes(content);
+        file = File.createTempFile("parallelChunkedUpload", ".bin");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+
+        Uri baseUri = mock(Uri.class);
+        when(baseUri.toString()).thenReturn("https://nextcloud.localhost");
+        client = mock(OwnCloudClient.class);
+        when(client.getBaseUri()).thenReturn(baseUri);
+        when(client.executeMethod(any(HttpMethod.class))).thenAnswer(
+            invocation -> respond(invocation.getArgument(0)));
+        when(client.executeMethod(any(HttpMethod.class), anyInt(), anyInt())).thenAnswer(
+            invocation -> respond(invocation.getArgument(0)));
+
+        uploadsStorageManager = mock(UploadsStorageManager.class);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void newUploadSendsAllChunksAndAssemblesThem() {
+        RemoteOperationResult result = newOperation().run(client);
+
+        assertTrue(result.isSuccess());
+        assertEquals(Arrays.asList("MKCOL", "MOVE .file", "PUT 00001", "PUT 00002", "PUT 00003"), sortedRequests());
+        assertArrayEquals(Arrays.copyOfRange(content, 0, (int) CHUNK_SIZE), chunks.get("00001"));
+        assertArrayEquals(Arrays.copyOfRange(content, (int) CHUNK_SIZE, (int) (2 * CHUNK_SIZE)), chunks.get("00002"));
+        assertArrayEquals(Arrays.copyOfRange(content, (int) (2 * CHUNK_SIZE), content.length), chunks.get("00003"));
+
+        assertEquals(String.valueOf(content.length), moveMethod.getRequestHeader("OC-Total-Length").getValue());
+        assertEquals("1586000000", moveMethod.getRequestHeader("X-OC-Mtime").getValue());
+        assertEquals("\"5f3e9a\"", moveMethod.getRequestHeader("If-Match").getValue());
+        assertTrue(moveMethod.getRequestHeader("Destination").getValue()
+                       .startsWith("https://nextcloud.localhost/remote.php/dav/files/"));
+
+        // every confirmed chunk is stored, the record is cleared once the file is assembled
+        verify(uploadsStorageManager, atLeastOnce()).updateUploadedChunks(eq(UPLOAD_ID), anyString());
+        verify(uploadsStorageManager).updateUploadedChunks(UPLOAD_ID, null);
+    }
+
+    @Test
+    public void resumedUploadSkipsConfirmedChunks() {
+        UploadedChunks stored = new UploadedChunks(TRANSFER_ID, CHUNK_SIZE);
+        stored.add(0);
+        stored.add(2);
+        when(uploadsStorageManager.getUploadedChunks(UPLOAD_ID)).thenReturn(stored.serialize());
+        respondTo("MKCOL", HttpStatus.SC_METHOD_NOT_ALLOWED);
+
+        RemoteOperationResult result = newOperation().run(client);
+
+        assertTrue(result.isSuccess());
+        assertEquals(Arrays.asList("MKCOL", "MOVE .file", "PUT 00002"), sortedRequests());
+        assertArrayEquals(Arrays.copyOfRange(content, (int) CHUNK_SIZE, (int) (2 * CHUNK_SIZE)), chunks.get("00002"));
+    }
+
+    @Test
+    public void chunksOfOtherTransferAreNotResumed() {
+        UploadedChunks stored = new UploadedChunks("android-12-1000-1585000000000", CHUNK_SIZE);
+        stored.add(0);
+        when(uploadsStorageManager.getUploadedChunks(UPLOAD_ID)).thenReturn(stored.serialize());
+        respondTo("MKCOL", HttpStatus.SC_METHOD_NOT_ALLOWED, HttpStatus.SC_CREATED);
+
+        RemoteOperationResult result = newOperation().run(client);
+
+        assertTrue(result.isSuccess());
+        // the unknown upload folder is replaced by a new one
+        assertEquals(Arrays.asList("DELETE", "MKCOL", "MKCOL", "MOVE .file", "PUT 00001", "PUT 00002", "PUT 00003"),
+                     sortedRequests());
+    }
+
+    @Test
+    public void failedChunkIsNotAssembled() {
+        respondTo("PUT", HttpStatus.SC_CREATED, HttpStatus.SC_INSUFFICIENT_STORAGE, HttpStatus.SC_CREATED);
+
+        RemoteOperationResult result = newOperation().run(client);
+
+        assertFalse(result.isSuccess());
+        assertFalse(requests.contains("MOVE .file"));
+        verify(uploadsStorageManager, never()).updateUploadedChunks(eq(UPLOAD_ID), isNull());
+    }
+
+    @Test
+    public void failedAssembleUploadsChunksAgain() {
+        respondTo("MOVE", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+
+        RemoteOperationResult result = newOperation().run(client);
+
+        assertFalse(result.isSuccess());
+        assertTrue(requests.contains("DELETE"));
+        verify(uploadsStorageManager).updateUploadedChunks(UPLOAD_ID, null);
+    }
+
+    @Test
+    public void changedDestinationKeepsChunks() {
+        respondTo("MOVE", HttpStatus.SC_PRECONDITION_FAILED);
+
+        RemoteOperationResult result = newOperation().run(client);
+
+        assertFalse(result.isSuccess());
+        assertFalse(requests.contains("DELETE"));
+        verify(uploadsStorageManager, never()).updateUploadedChunks(eq(UPLOAD_ID), isNull());
+    }
+
+    private ParallelChunkedUploadRemoteOperation newOperation() {
+        return new ParallelChunkedUploadRemoteOperation(file.getAbsolutePath(),
+                                                        "/folder/file.bin",
+                                                        "application/octet-stream",
+                                                        "5f3e9a",
+                                                        "1586000000",
+                                                        false,
+                                                        TRANSFER_ID,
+                                                        uploadsStorageManager,
+                                                        UPLOAD_ID);
+    }
+
+    /**
+     * Sets the statuses of the next requests with the given method, further ones succeed.
+     */
+    private void respondTo(String methodName, Integer... status) {
+        statuses.put(methodName, new ArrayDeque<>(Arrays.asList(status)));
+    }
+
+    private int respond(HttpMethod method) throws Exception {
+        String path = method.getPath();
+        String name = path.substring(path.lastIndexOf('/') + 1);
+
+        if (method instanceof PutMethod) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ((PutMethod) method).getRequestEntity().writeRequest(out);
+            chunks.put(name, out.toByteArray());
+            requests.add("PUT " + name);
+        } else if ("MOVE".equals(method.getName())) {
+            moveMethod = method;
+            requests.add("MOVE " + name);
+        } else {
+            requests.add(method.getName());
+        }
+
+        int status = HttpStatus.SC_CREATED;
+        synchronized (statuses) {
+            Deque<Integer> next = statuses.get(method.getName());
+            if (next != null && !next.isEmpty()) {
+                status = next.remove();
+            }
+        }
+
+        // the methods are not executed, set the status they would have read from the response
+        Field statusLine = HttpMethodBase.class.getDeclaredField("statusLine");
+        statusLine.setAccessible(true);
+        statusLine.set(method, new StatusLine("HTTP/1.1 " + status + " " + HttpStatus.getStatusText(status)));
+        return status;
+    }
+
+    private List<String> sortedRequests() {
+        List<String> sorted = new ArrayList<>(requests);
+        Collections.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.operations;
+
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResumableDownloadFileRemoteOperationTest {
+    private static final String ETAG = "\"5f3e9a\"";
+
+    private File folder;
+    private File targetFile;
+    private File etagFile;
+    private OwnCloudClient client;
+    private Deque<GetMethod> methods;
+    private ResumableDownloadFileRemoteOperation operation;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("resumableDownload", "");
+        assertTrue(folder.delete());
+        assertTrue(folder.mkdirs());
+        targetFile = new File(folder, "file.txt");
+        etagFile = new File(folder, "file.txt" + ResumableDownloadFileRemoteOperation.ETAG_FILE_SUFFIX);
+
+        client = mock(OwnCloudClient.class);
+        methods = new ArrayDeque<>();
+        operation = new ResumableDownloadFileRemoteOperation("/file.txt", targetFile) {
+            @Override
+            GetMethod createGetMethod(String uri) {
+                return methods.remove();
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursive(folder);
+    }
+
+    @Test
+    public void parseContentRangeStart() {
+        assertEquals(0, ResumableDownloadFileRemoteOperation.parseContentRangeStart("bytes 0-99/100"));
+        assertEquals(4294967296L,
+                     ResumableDownloadFileRemoteOperation.parseContentRangeStart("bytes 4294967296-4294967395/*"));
+        assertEquals(100, ResumableDownloadFileRemoteOperation.parseContentRangeStart(" bytes 100-199/200 "));
+    }
+
+    @Test
+    public void parseInvalidContentRange() {
+        assertEquals(-1, ResumableDownloadFileRemoteOperation.parseContentRangeStart("bytes */200"));
+        assertEquals(-1, ResumableDownloadFileRemoteOperation.parseContentRangeStart("items 0-1/2"));
+        assertEquals(-1, ResumableDownloadFileRemoteOperation.parseContentRangeStart("bytes a-b/c"));
+        assertEquals(-1, ResumableDownloadFileRemoteOperation.parseContentRangeStart(""));
+    }
+
+    @Test
+    public void partialContentIsAppended() throws IOException {
+        writePartialDownload("0123", ETAG);
+        GetMethod method = response(HttpStatus.SC_PARTIAL_CONTENT, "456789",
+                                    "Content-Range", "bytes 4-9/10",
+                                    "ETag", ETAG);
+
+        RemoteOperationResult result = operation.run(client);
+
+        assertTrue(result.isSuccess());
+        verify(method).setRequestHeader("Range", "bytes=4-");
+        verify(method).setRequestHeader("If-Range", ETAG);
+        assertEquals("0123456789", read(targetFile));
+        assertEquals(4, operation.getResumedFrom());
+        assertFalse(etagFile.exists());
+    }
+
+    @Test
+    public void changedFileReplacesPartialDownload() throws IOException {
+        writePartialDownload("0123", ETAG);
+        response(HttpStatus.SC_OK, "abcdefgh", "ETag", "\"7b21c0\"");
+
+        RemoteOperationResult result = operation.run(client);
+
+        assertTrue(result.isSuccess());
+        assertEquals("abcdefgh", read(targetFile));
+        assertEquals(0, operation.getResumedFrom());
+        assertFalse(etagFile.exists());
+    }
+
+    @Test
+    public void unsatisfiableRangeStartsOver() throws IOException {
+        writePartialDownload("0123456789abc", ETAG);
+        response(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE, "");
+        GetMethod restart = response(HttpStatus.SC_OK, "0123456789", "ETag", ETAG);
+
+        RemoteOperationResult result = operation.run(client);
+
+        assertTrue(result.isSuccess());
+        verify(restart, never()).setRequestHeader(eq("Range"), anyString());
+        assertEquals("0123456789", read(targetFile));
+        assertEquals(0, operation.getResumedFrom());
+    }
+
+    @Test
+    public void unexpectedRangeStartsOver() throws IOException {
+        writePartialDownload("0123", ETAG);
+        response(HttpStatus.SC_PARTIAL_CONTENT, "0123456789", "Content-Range", "bytes 0-9/10", "ETag", ETAG);
+        GetMethod restart = response(HttpStatus.SC_OK, "abcdefghij", "ETag", ETAG);
+
+        RemoteOperationResult result = operation.run(client);
+
+        assertTrue(result.isSuccess());
+        verify(restart, never()).setRequestHeader(eq("Range"), anyString());
+        assertEquals("abcdefghij", read(targetFile));
+    }
+
+    @Test
+    public void interruptedDownloadIsKeptForResuming() throws IOException {
+        GetMethod method = response(HttpStatus.SC_OK, "01234", "ETag", ETAG);
+        when(method.getResponseHeader("Content-Length")).thenReturn(new Header("Content-Length", "10"));
+
+        RemoteOperationResult result = operation.run(client);
+
+        assertFalse(result.isSuccess());
+        assertEquals("01234", read(targetFile));
+        assertEquals(ETAG, read(etagFile));
+    }
+
+    @Test
+    public void cancelledDownloadIsDeleted() throws IOException {
+        writePartialDownload("0123", ETAG);
+        GetMethod method = response(HttpStatus.SC_PARTIAL_CONTENT, "456789",
+                                    "Content-Range", "bytes 4-9/10",
+                                    "ETag", ETAG);
+        when(method.getResponseBodyAsStream()).thenReturn(new ByteArrayInputStream(bytes("456789")) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                operation.cancel();
+                return super.read(b, off, len);
+            }
+        });
+
+        RemoteOperationResult result = operation.run(client);
+
+        assertEquals(RemoteOperationResult.ResultCode.CANCELLED, result.getCode());
+        assertFalse(targetFile.exists());
+        assertFalse(etagFile.exists());
+    }
+
+    @Test
+    public void downloadCancelledBeforeStartIsDeleted() throws IOException {
+        writePartialDownload("0123", ETAG);
+        operation.cancel();
+
+        RemoteOperationResult result = operation.run(client);
+
+        assertEquals(RemoteOperationResult.ResultCode.CANCELLED, result.getCode());
+        verify(client, never()).executeMethod(any(HttpMethod.class));
+        assertFalse(targetFile.exists());
+        assertFalse(etagFile.exists());
+    }
+
+    @Test
+    public void outdatedPartialDownloadIsNotResumed() throws IOException {
+        writePartialDownload("0123", ETAG);
+        assertTrue(targetFile.setLastModified(System.currentTimeMillis() -
+                                                  ResumableDownloadFileRemoteOperation.PARTIAL_DOWNLOAD_MAX_AGE_MS -
+                                                  60 * 1000));
+        GetMethod method = response(HttpStatus.SC_OK, "0123456789", "ETag", ETAG);
+
+        RemoteOperationResult result = operation.run(client);
+
+        assertTrue(result.isSuccess());
+        verify(method, never()).setRequestHeader(eq("Range"), anyString());
+        assertEquals("0123456789", read(targetFile));
+    }
+
+    @Test
+    public void outdatedPartialDownloadsAreDeleted() throws IOException {
+        long now = 100 * ResumableDownloadFileRemoteOperation.PARTIAL_DOWNLOAD_MAX_AGE_MS;
+        long outdated = now - ResumableDownloadFileRemoteOperation.PARTIAL_DOWNLOAD_MAX_AGE_MS - 1;
+        long recent = now - 1;
+
+        File sub = new File(folder, "sub");
+        assertTrue(sub.mkdirs());
+        File outdatedDownload = writeFile(new File(sub, "outdated"), outdated);
+        File outdatedEtag = writeFile(new File(sub, "outdated.etag"), recent);
+        File recentDownload = writeFile(new File(folder, "recent"), recent);
+        File recentEtag = writeFile(new File(folder, "recent.etag"), recent);
+        File orphanedEtag = writeFile(new File(folder, "orphaned.etag"), outdated);
+        File otherFile = writeFile(new File(folder, "other"), outdated);
+
+        ResumableDownloadFileRemoteOperation.deleteStalePartialDownloads(folder, now);
+
+        assertFalse(outdatedDownload.exists());
+        assertFalse(outdatedEtag.exists());
+        assertFalse(orphanedEtag.exists());
+        assertTrue(recentDownload.exists());
+        assertTrue(recentEtag.exists());
+        assertTrue(otherFile.exists());
+    }
+
+    /**
+     * Queues the response to the next request of the operation.
+     *
+     * @param headers names and values of response headers
+     */
+    private GetMethod response(int status, String body, String... headers) throws IOException {
+        GetMethod method = mock(GetMethod.class);
+        Header[] responseHeaders = new Header[headers.length / 2 + 1];
+        for (int i = 0; i < headers.length; i += 2) {
+            responseHeaders[i / 2] = new Header(headers[i], headers[i + 1]);
+        }
+        responseHeaders[responseHeaders.length - 1] = new Header("Content-Length",
+                                                                 String.valueOf(bytes(body).length));
+        for (Header header : responseHeaders) {
+            when(method.getResponseHeader(header.getName())).thenReturn(header);
+        }
+
+        when(method.getStatusCode()).thenReturn(status);
+        when(method.getResponseHeaders()).thenReturn(responseHeaders);
+        when(method.getResponseBodyAsStream()).thenReturn(new ByteArrayInputStream(bytes(body)));
+        when(client.executeMethod(method)).thenReturn(status);
+
+        methods.add(method);
+        return method;
+    }
+
+    private void writePartialDownload(String content, String etag) throws IOException {
+        try (OutputStream out = new FileOutputStream(targetFile)) {
+            out.write(bytes(content));
+        }
+        ResumableDownloadFileRemoteOperation.savePartialEtag(targetFile, etag);
+    }
+
+    private static File writeFile(File file, long lastModified) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(1);
+        }
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        byte[] content = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            assertEquals(content.length, in.read(content));
+        }
+        return new String(content, "UTF-8");
+    }
+
+    private static byte[] bytes(String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteRecursive(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursive(child);
+            }
+        }
+        file.delete();
+    }
+}
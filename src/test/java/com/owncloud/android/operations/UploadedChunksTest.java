@@ -0,0 +1,72 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.operations;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UploadedChunksTest {
+
+    @Test
+    public void serializeAndParse() {
+        UploadedChunks uploadedChunks = new UploadedChunks("android-12-1000-1586000000000", 1024000);
+        uploadedChunks.add(3);
+        uploadedChunks.add(0);
+        uploadedChunks.add(1);
+
+        String value = uploadedChunks.serialize();
+        assertEquals("android-12-1000-1586000000000;1024000;0,1,3", value);
+
+        UploadedChunks parsed = UploadedChunks.parse(value);
+        assertEquals("android-12-1000-1586000000000", parsed.getTransferId());
+        assertEquals(1024000, parsed.getChunkSize());
+        assertEquals(3, parsed.size());
+        assertTrue(parsed.contains(0));
+        assertTrue(parsed.contains(1));
+        assertFalse(parsed.contains(2));
+        assertTrue(parsed.contains(3));
+    }
+
+    @Test
+    public void noChunks() {
+        UploadedChunks uploadedChunks = new UploadedChunks("transfer", 10);
+        assertEquals("transfer;10;", uploadedChunks.serialize());
+
+        UploadedChunks parsed = UploadedChunks.parse(uploadedChunks.serialize());
+        assertEquals(0, parsed.size());
+        assertEquals(10, parsed.getChunkSize());
+    }
+
+    @Test
+    public void malformed() {
+        assertNull(UploadedChunks.parse(null));
+        assertNull(UploadedChunks.parse(""));
+        assertNull(UploadedChunks.parse("transfer;10"));
+        assertNull(UploadedChunks.parse(";10;1"));
+        assertNull(UploadedChunks.parse("transfer;ten;1"));
+        assertNull(UploadedChunks.parse("transfer;0;1"));
+        assertNull(UploadedChunks.parse("transfer;10;1,x"));
+        assertNull(UploadedChunks.parse("transfer;10;-1"));
+        assertNull(UploadedChunks.parse("transfer;10;1;2"));
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.providers;
+
+import android.os.Build;
+
+import com.owncloud.android.datamodel.OCFile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentsStorageProviderTest {
+
+    @Test
+    public void readIsStreamedSinceOreo() {
+        OCFile file = new OCFile("/video.mp4");
+
+        assertTrue(DocumentsStorageProvider.canStream(file, false, Build.VERSION_CODES.O));
+        assertTrue(DocumentsStorageProvider.canStream(file, false, Build.VERSION_CODES.P));
+    }
+
+    @Test
+    public void readIsDownloadedFirstBeforeOreo() {
+        OCFile file = new OCFile("/video.mp4");
+
+        assertFalse(DocumentsStorageProvider.canStream(file, false, Build.VERSION_CODES.N_MR1));
+        assertFalse(DocumentsStorageProvider.canStream(file, false, Build.VERSION_CODES.KITKAT));
+    }
+
+    @Test
+    public void writeOrEncryptedFileIsDownloadedFirst() {
+        OCFile file = new OCFile("/video.mp4");
+        assertFalse(DocumentsStorageProvider.canStream(file, true, Build.VERSION_CODES.O));
+
+        file.setEncrypted(true);
+        assertFalse(DocumentsStorageProvider.canStream(file, false, Build.VERSION_CODES.O));
+    }
+}
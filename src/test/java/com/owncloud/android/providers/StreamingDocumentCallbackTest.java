@@ -0,0 +1,250 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.providers;
+
+import android.net.Uri;
+import android.os.HandlerThread;
+import android.system.ErrnoException;
+
+import com.owncloud.android.lib.common.OwnCloudClient;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HeaderGroup;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.StatusLine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StreamingDocumentCallbackTest {
+    private static final String ETAG = "\"5f3e9a\"";
+    private static final int SIZE = 2 * 1024 * 1024;
+
+    private byte[] content;
+    private File folder;
+    private File partialDownload;
+    private OwnCloudClient client;
+    private StreamingDocumentCallback callback;
+    private boolean closed;
+
+    /** first byte of every request sent to the server */
+    private final List<Long> requests = new ArrayList<>();
+    private boolean ignoreRange;
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[SIZE];
+        new Random(26).nextBytes(content);
+
+        folder = File.createTempFile("streamingDocument", "");
+        assertTrue(folder.delete());
+        partialDownload = new File(folder, "video.mp4");
+
+        Uri webdavUri = mock(Uri.class);
+        when(webdavUri.toString()).thenReturn("https://nextcloud.localhost/remote.php/webdav");
+        client = mock(OwnCloudClient.class);
+        when(client.getWebdavUri()).thenReturn(webdavUri);
+        when(client.executeMethod(any(HttpMethod.class))).thenAnswer(
+            invocation -> respond(invocation.getArgument(0)));
+
+        callback = new StreamingDocumentCallback(client, "/video.mp4", SIZE, partialDownload,
+                                                 mock(HandlerThread.class), () -> closed = true);
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursive(folder);
+    }
+
+    @Test
+    public void sizeIsTheRemoteFileLength() {
+        assertEquals(SIZE, callback.onGetSize());
+    }
+
+    @Test
+    public void sequentialReadsShareOneRequest() throws ErrnoException {
+        assertRead(0, 4096);
+        assertRead(4096, 4096);
+        assertRead(8192, 100000);
+
+        assertEquals(Arrays.asList(0L), requests);
+    }
+
+    @Test
+    public void shortForwardSeekSkipsInTheSameRequest() throws ErrnoException {
+        assertRead(0, 4096);
+        assertRead(4096 + StreamingDocumentCallback.MAX_SKIP, 4096);
+
+        assertEquals(Arrays.asList(0L), requests);
+    }
+
+    @Test
+    public void farSeekStartsRangeRequest() throws ErrnoException {
+        assertRead(0, 4096);
+        assertRead(1500000, 4096);
+        assertRead(1504096, 4096);
+
+        assertEquals(Arrays.asList(0L, 1500000L), requests);
+    }
+
+    @Test
+    public void readOfCachedBytesNeedsNoRequest() throws ErrnoException {
+        assertRead(0, 65536);
+        assertRead(1500000, 4096);
+        assertRead(1000, 30000);
+
+        assertEquals(Arrays.asList(0L, 1500000L), requests);
+    }
+
+    @Test
+    public void backwardSeekBeyondCacheStartsRangeRequest() throws ErrnoException {
+        assertRead(1500000, 4096);
+        assertRead(1000000, 4096);
+
+        assertEquals(Arrays.asList(1500000L, 1000000L), requests);
+    }
+
+    @Test
+    public void readAtEndOfFile() throws ErrnoException {
+        byte[] data = new byte[4096];
+        assertEquals(0, callback.onRead(SIZE, data.length, data));
+
+        assertEquals(100, callback.onRead(SIZE - 100, data.length, data));
+        assertArrayEquals(Arrays.copyOfRange(content, SIZE - 100, SIZE), Arrays.copyOf(data, 100));
+    }
+
+    @Test
+    public void ignoredRangeFailsRead() {
+        ignoreRange = true;
+        byte[] data = new byte[4096];
+        try {
+            callback.onRead(1500000, data.length, data);
+            fail("read of bytes the server did not send");
+        } catch (ErrnoException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void cachedBytesAreKeptAsPartialDownload() throws ErrnoException, IOException {
+        assertRead(0, 8192);
+        assertRead(1500000, 4096);
+
+        callback.onRelease();
+
+        assertTrue(closed);
+        assertEquals(8192, partialDownload.length());
+        assertArrayEquals(Arrays.copyOf(content, 8192), readFile(partialDownload));
+        assertEquals(ETAG, readLine(new File(partialDownload.getAbsolutePath() + ".etag")));
+        assertFalse(new File(partialDownload.getAbsolutePath() + ".stream").exists());
+    }
+
+    private void assertRead(long offset, int size) throws ErrnoException {
+        byte[] data = new byte[size];
+        assertEquals(size, callback.onRead(offset, size, data));
+        assertArrayEquals(Arrays.copyOfRange(content, (int) offset, (int) offset + size), data);
+    }
+
+    /**
+     * Answers a request as a server holding content would.
+     */
+    private int respond(HttpMethodBase method) throws Exception {
+        Header range = method.getRequestHeader("Range");
+        long start = range == null || ignoreRange ? 0 :
+            Long.parseLong(range.getValue().substring("bytes=".length(), range.getValue().length() - 1));
+        requests.add(start);
+
+        List<Header> headers = new ArrayList<>();
+        headers.add(new Header("ETag", ETAG));
+        int status = HttpStatus.SC_OK;
+        if (start > 0) {
+            status = HttpStatus.SC_PARTIAL_CONTENT;
+            headers.add(new Header("Content-Range", "bytes " + start + "-" + (SIZE - 1) + "/" + SIZE));
+        }
+
+        // the method is not executed, set what it would have read from the response
+        Field statusLine = HttpMethodBase.class.getDeclaredField("statusLine");
+        statusLine.setAccessible(true);
+        statusLine.set(method, new StatusLine("HTTP/1.1 " + status + " " + HttpStatus.getStatusText(status)));
+
+        Method getResponseHeaderGroup = HttpMethodBase.class.getDeclaredMethod("getResponseHeaderGroup");
+        getResponseHeaderGroup.setAccessible(true);
+        HeaderGroup responseHeaders = (HeaderGroup) getResponseHeaderGroup.invoke(method);
+        for (Header header : headers) {
+            responseHeaders.addHeader(header);
+        }
+
+        Method setResponseStream = HttpMethodBase.class.getDeclaredMethod("setResponseStream", InputStream.class);
+        setResponseStream.setAccessible(true);
+        setResponseStream.invoke(method, new ByteArrayInputStream(content, (int) start, SIZE - (int) start));
+        return status;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int total = 0;
+            while (total < data.length) {
+                total += in.read(data, total, data.length - total);
+            }
+        }
+        return data;
+    }
+
+    private static String readLine(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+            return reader.readLine();
+        }
+    }
+
+    private static void deleteRecursive(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursive(child);
+            }
+        }
+        file.delete();
+    }
+}
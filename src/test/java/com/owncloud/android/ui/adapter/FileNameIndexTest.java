@@ -0,0 +1,79 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.ui.adapter;
+
+import com.owncloud.android.datamodel.OCFile;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+public class FileNameIndexTest {
+    private static final String DIRECTORY = "/folder/";
+
+    @Test
+    public void filterIsCaseInsensitiveAndKeepsOrder() {
+        List<OCFile> files = Arrays.asList(createFile(1, DIRECTORY + "Zebra.jpg"),
+                                           createFile(2, DIRECTORY + "apple.JPG"),
+                                           createFile(3, DIRECTORY + "notes.txt"));
+        FileNameIndex index = new FileNameIndex(files, DIRECTORY, true, Locale.ROOT);
+
+        List<OCFile> result = index.filter("jpg");
+
+        assertEquals(2, result.size());
+        assertEquals("Zebra.jpg", result.get(0).getFileName());
+        assertEquals("apple.JPG", result.get(1).getFileName());
+    }
+
+    @Test
+    public void duplicatesHiddenFilesAndOtherDirectoriesAreSkipped() {
+        OCFile file = createFile(1, DIRECTORY + "file.txt");
+        List<OCFile> files = Arrays.asList(file,
+                                           file,
+                                           createFile(2, DIRECTORY + ".hidden.txt"),
+                                           createFile(3, "/other/file.txt"));
+
+        assertEquals(1, new FileNameIndex(files, DIRECTORY, false, Locale.ROOT).filter("txt").size());
+        assertEquals(2, new FileNameIndex(files, DIRECTORY, true, Locale.ROOT).filter("txt").size());
+    }
+
+    @Test
+    public void narrowedAndWidenedQueries() {
+        List<OCFile> files = Arrays.asList(createFile(1, DIRECTORY + "abc.txt"),
+                                           createFile(2, DIRECTORY + "abd.txt"),
+                                           createFile(3, DIRECTORY + "xyz.txt"));
+        FileNameIndex index = new FileNameIndex(files, DIRECTORY, true, Locale.ROOT);
+
+        assertEquals(2, index.filter("ab").size());
+        assertEquals(1, index.filter("abc").size());
+        assertEquals(2, index.filter("ab").size());
+        assertEquals(0, index.filter("abcx").size());
+        assertEquals(3, index.filter(".txt").size());
+    }
+
+    private OCFile createFile(long id, String path) {
+        OCFile file = new OCFile(path);
+        file.setFileId(id);
+        return file;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.ui.adapter;
+
+import android.accounts.Account;
+
+import com.nextcloud.client.account.UserAccountManager;
+import com.nextcloud.client.core.Clock;
+import com.nextcloud.client.device.PowerManagementService;
+import com.nextcloud.client.network.ConnectivityService;
+import com.owncloud.android.datamodel.FileDataStorageManager;
+import com.owncloud.android.datamodel.UploadsStorageManager;
+import com.owncloud.android.datamodel.UploadsStorageManager.UploadStatus;
+import com.owncloud.android.db.OCUpload;
+import com.owncloud.android.ui.activity.FileActivity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UploadListAdapterTest {
+    private static final int CURRENT = 0;
+    private static final int FAILED = 1;
+    private static final int FINISHED = 2;
+    private static final int FINISHED_PAGE_SIZE = 100;
+
+    private UploadsStorageManager uploadsStorageManager;
+    private UserAccountManager accountManager;
+
+    @Before
+    public void setUp() {
+        uploadsStorageManager = mock(UploadsStorageManager.class);
+        accountManager = mock(UserAccountManager.class);
+        when(accountManager.getAccounts()).thenReturn(new Account[0]);
+
+        stubCurrent();
+        stubFailed();
+        stubFinished();
+        stubChanged(CURRENT);
+        stubChanged(FAILED);
+        stubChanged(FINISHED);
+    }
+
+    @Test
+    public void newUploadIsAdded() {
+        UploadListAdapter adapter = newAdapter();
+        stubChanged(CURRENT, upload(5, UploadStatus.UPLOAD_IN_PROGRESS, 0));
+
+        adapter.onUploadsChanged(new long[]{5});
+
+        assertEquals(Arrays.asList(5L), ids(adapter, CURRENT));
+    }
+
+    @Test
+    public void removedUploadIsRemoved() {
+        stubCurrent(upload(1, UploadStatus.UPLOAD_IN_PROGRESS, 0), upload(2, UploadStatus.UPLOAD_IN_PROGRESS, 0));
+        UploadListAdapter adapter = newAdapter();
+
+        adapter.onUploadsChanged(new long[]{2});
+
+        assertEquals(Arrays.asList(1L), ids(adapter, CURRENT));
+    }
+
+    @Test
+    public void finishedUploadMovesToFinishedSection() {
+        stubCurrent(upload(1, UploadStatus.UPLOAD_IN_PROGRESS, 0), upload(2, UploadStatus.UPLOAD_IN_PROGRESS, 0));
+        stubFinished(upload(3, UploadStatus.UPLOAD_SUCCEEDED, 10));
+        UploadListAdapter adapter = newAdapter();
+        stubChanged(FINISHED, upload(2, UploadStatus.UPLOAD_SUCCEEDED, 20));
+
+        adapter.onUploadsChanged(new long[]{2});
+
+        assertEquals(Arrays.asList(1L), ids(adapter, CURRENT));
+        assertEquals(new ArrayList<Long>(), ids(adapter, FAILED));
+        // latest finished first
+        assertEquals(Arrays.asList(2L, 3L), ids(adapter, FINISHED));
+    }
+
+    @Test
+    public void failedUploadMovesToFailedSection() {
+        stubCurrent(upload(1, UploadStatus.UPLOAD_IN_PROGRESS, 0));
+        UploadListAdapter adapter = newAdapter();
+        stubChanged(FAILED, upload(1, UploadStatus.UPLOAD_FAILED, 20));
+
+        adapter.onUploadsChanged(new long[]{1});
+
+        assertEquals(new ArrayList<Long>(), ids(adapter, CURRENT));
+        assertEquals(Arrays.asList(1L), ids(adapter, FAILED));
+    }
+
+    @Test
+    public void unchangedUploadsAreKept() {
+        stubCurrent(upload(1, UploadStatus.UPLOAD_IN_PROGRESS, 0), upload(2, UploadStatus.UPLOAD_IN_PROGRESS, 0));
+        UploadListAdapter adapter = newAdapter();
+        OCUpload first = adapter.getItems(CURRENT).get(0);
+        stubChanged(CURRENT, upload(2, UploadStatus.UPLOAD_IN_PROGRESS, 0));
+
+        adapter.onUploadsChanged(new long[]{2});
+
+        assertEquals(Arrays.asList(1L, 2L), ids(adapter, CURRENT));
+        assertSame(first, adapter.getItems(CURRENT).get(0));
+    }
+
+    @Test
+    public void uploadOfPageNotLoadedYetIsNotAdded() {
+        // a full page, the older finished uploads are loaded on scrolling
+        OCUpload[] page = new OCUpload[FINISHED_PAGE_SIZE];
+        for (int i = 0; i < page.length; i++) {
+            page[i] = upload(i + 1, UploadStatus.UPLOAD_SUCCEEDED, 1000 - i);
+        }
+        stubFinished(page);
+        UploadListAdapter adapter = newAdapter();
+        stubChanged(FINISHED,
+                    upload(500, UploadStatus.UPLOAD_SUCCEEDED, 5),
+                    upload(501, UploadStatus.UPLOAD_SUCCEEDED, 2000));
+
+        adapter.onUploadsChanged(new long[]{500, 501});
+
+        List<Long> ids = ids(adapter, FINISHED);
+        assertEquals(FINISHED_PAGE_SIZE + 1, ids.size());
+        assertEquals(Long.valueOf(501), ids.get(0));
+        assertEquals(Long.valueOf(FINISHED_PAGE_SIZE), ids.get(ids.size() - 1));
+    }
+
+    private UploadListAdapter newAdapter() {
+        return new UploadListAdapter(mock(FileActivity.class),
+                                     uploadsStorageManager,
+                                     mock(FileDataStorageManager.class),
+                                     accountManager,
+                                     mock(ConnectivityService.class),
+                                     mock(PowerManagementService.class),
+                                     mock(Clock.class));
+    }
+
+    private void stubCurrent(OCUpload... uploads) {
+        when(uploadsStorageManager.getCurrentAndPendingUploadsForCurrentAccount()).thenReturn(uploads);
+    }
+
+    private void stubFailed(OCUpload... uploads) {
+        when(uploadsStorageManager.getFailedButNotDelayedUploadsForCurrentAccount()).thenReturn(uploads);
+    }
+
+    private void stubFinished(OCUpload... uploads) {
+        when(uploadsStorageManager.getFinishedUploadsForCurrentAccount(isNull(), anyInt())).thenReturn(uploads);
+        when(uploadsStorageManager.getFinishedUploadsCountForCurrentAccount()).thenReturn(uploads.length);
+    }
+
+    /**
+     * Sets the uploads of a section among the changed uploads.
+     */
+    private void stubChanged(int section, OCUpload... uploads) {
+        switch (section) {
+            case CURRENT:
+                when(uploadsStorageManager.getCurrentAndPendingUploadsForCurrentAccount(any(long[].class)))
+                    .thenReturn(uploads);
+                break;
+            case FAILED:
+                when(uploadsStorageManager.getFailedButNotDelayedUploadsForCurrentAccount(any(long[].class)))
+                    .thenReturn(uploads);
+                break;
+            default:
+                when(uploadsStorageManager.getFinishedUploadsForCurrentAccount(any(long[].class)))
+                    .thenReturn(uploads);
+                break;
+        }
+    }
+
+    private static List<Long> ids(UploadListAdapter adapter, int section) {
+        List<Long> ids = new ArrayList<>();
+        for (OCUpload upload : adapter.getItems(section)) {
+            ids.add(upload.getUploadId());
+        }
+        return ids;
+    }
+
+    private static OCUpload upload(long id, UploadStatus status, long uploadEndTimestamp) {
+        OCUpload upload = new OCUpload("/storage/file" + id, "/file" + id, "user@nextcloud.localhost");
+        upload.setUploadId(id);
+        upload.setUploadStatus(status);
+        upload.setUploadEndTimestamp(uploadEndTimestamp);
+        return upload;
+    }
+}
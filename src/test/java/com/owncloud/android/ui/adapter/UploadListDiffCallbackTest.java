@@ -0,0 +1,152 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.ui.adapter;
+
+import com.owncloud.android.datamodel.UploadsStorageManager.UploadStatus;
+import com.owncloud.android.db.OCUpload;
+import com.owncloud.android.ui.adapter.UploadListDiffCallback.Row;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import static org.junit.Assert.assertEquals;
+
+public class UploadListDiffCallbackTest {
+    private static final int CURRENT = 0;
+    private static final int FINISHED = 2;
+
+    @Test
+    public void changedUploadOnlyRebindsItsRow() {
+        List<Row> oldRows = Arrays.asList(Row.header(CURRENT, 3),
+                                          Row.upload(CURRENT, upload(1, UploadStatus.UPLOAD_IN_PROGRESS, 0)),
+                                          Row.upload(CURRENT, upload(2, UploadStatus.UPLOAD_IN_PROGRESS, 0)),
+                                          Row.upload(CURRENT, upload(3, UploadStatus.UPLOAD_IN_PROGRESS, 0)));
+        List<Row> newRows = Arrays.asList(Row.header(CURRENT, 3),
+                                          Row.upload(CURRENT, upload(1, UploadStatus.UPLOAD_IN_PROGRESS, 0)),
+                                          Row.upload(CURRENT, upload(2, UploadStatus.UPLOAD_FAILED, 0)),
+                                          Row.upload(CURRENT, upload(3, UploadStatus.UPLOAD_IN_PROGRESS, 0)));
+
+        assertEquals(Arrays.asList("changed 2 1"), diff(oldRows, newRows));
+    }
+
+    @Test
+    public void unchangedRowsAreKept() {
+        List<Row> rows = Arrays.asList(Row.header(FINISHED, 2),
+                                       Row.upload(FINISHED, upload(1, UploadStatus.UPLOAD_SUCCEEDED, 20)),
+                                       Row.upload(FINISHED, upload(2, UploadStatus.UPLOAD_SUCCEEDED, 10)));
+
+        assertEquals(new ArrayList<String>(), diff(rows, new ArrayList<>(rows)));
+    }
+
+    @Test
+    public void finishedUploadMovesToOtherSection() {
+        List<Row> oldRows = Arrays.asList(Row.header(CURRENT, 1),
+                                          Row.upload(CURRENT, upload(1, UploadStatus.UPLOAD_IN_PROGRESS, 0)),
+                                          Row.header(FINISHED, 1),
+                                          Row.upload(FINISHED, upload(2, UploadStatus.UPLOAD_SUCCEEDED, 10)));
+        List<Row> newRows = Arrays.asList(Row.header(FINISHED, 2),
+                                          Row.upload(FINISHED, upload(1, UploadStatus.UPLOAD_SUCCEEDED, 20)),
+                                          Row.upload(FINISHED, upload(2, UploadStatus.UPLOAD_SUCCEEDED, 10)));
+
+        List<String> rows = new ArrayList<>(Arrays.asList("current", "upload 1", "finished", "upload 2"));
+        DiffUtil.calculateDiff(new UploadListDiffCallback(oldRows, newRows)).dispatchUpdatesTo(
+            new ListUpdateCallback() {
+                @Override
+                public void onInserted(int position, int count) {
+                    for (int i = 0; i < count; i++) {
+                        rows.add(position, "inserted");
+                    }
+                }
+
+                @Override
+                public void onRemoved(int position, int count) {
+                    rows.subList(position, position + count).clear();
+                }
+
+                @Override
+                public void onMoved(int fromPosition, int toPosition) {
+                    rows.add(toPosition, rows.remove(fromPosition));
+                }
+
+                @Override
+                public void onChanged(int position, int count, @Nullable Object payload) {
+                    for (int i = position; i < position + count; i++) {
+                        rows.set(i, "changed " + rows.get(i));
+                    }
+                }
+            });
+
+        // the header of the finished uploads shows the new count, the other finished upload keeps its row
+        assertEquals(Arrays.asList("changed finished", "inserted", "upload 2"), rows);
+    }
+
+    @Test
+    public void nextPageIsAppended() {
+        List<Row> oldRows = Arrays.asList(Row.header(FINISHED, 3),
+                                          Row.upload(FINISHED, upload(1, UploadStatus.UPLOAD_SUCCEEDED, 30)));
+        List<Row> newRows = Arrays.asList(Row.header(FINISHED, 3),
+                                          Row.upload(FINISHED, upload(1, UploadStatus.UPLOAD_SUCCEEDED, 30)),
+                                          Row.upload(FINISHED, upload(2, UploadStatus.UPLOAD_SUCCEEDED, 20)),
+                                          Row.upload(FINISHED, upload(3, UploadStatus.UPLOAD_SUCCEEDED, 10)));
+
+        assertEquals(Arrays.asList("inserted 2 2"), diff(oldRows, newRows));
+    }
+
+    private static List<String> diff(List<Row> oldRows, List<Row> newRows) {
+        List<String> updates = new ArrayList<>();
+        DiffUtil.calculateDiff(new UploadListDiffCallback(oldRows, newRows)).dispatchUpdatesTo(
+            new ListUpdateCallback() {
+                @Override
+                public void onInserted(int position, int count) {
+                    updates.add("inserted " + position + " " + count);
+                }
+
+                @Override
+                public void onRemoved(int position, int count) {
+                    updates.add("removed " + position + " " + count);
+                }
+
+                @Override
+                public void onMoved(int fromPosition, int toPosition) {
+                    updates.add("moved " + fromPosition + " " + toPosition);
+                }
+
+                @Override
+                public void onChanged(int position, int count, @Nullable Object payload) {
+                    updates.add("changed " + position + " " + count);
+                }
+            });
+        return updates;
+    }
+
+    private static OCUpload upload(long id, UploadStatus status, long uploadEndTimestamp) {
+        OCUpload upload = new OCUpload("/storage/file" + id, "/file" + id, "user@nextcloud.localhost");
+        upload.setUploadId(id);
+        upload.setUploadStatus(status);
+        upload.setUploadEndTimestamp(uploadEndTimestamp);
+        return upload;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU AFFERO GENERAL PUBLIC LICENSE
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU AFFERO GENERAL PUBLIC LICENSE for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChecksumUtilsTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("checksum", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void emptyFile() throws IOException {
+        assertEquals(0, ChecksumUtils.getCRC32(file));
+    }
+
+    @Test
+    public void sameChecksumAsBytewiseImplementation() throws IOException {
+        // sizes around block boundaries
+        int[] sizes = {1, ChecksumUtils.BLOCK_SIZE - 1, ChecksumUtils.BLOCK_SIZE, ChecksumUtils.BLOCK_SIZE + 1,
+            3 * ChecksumUtils.BLOCK_SIZE + 17};
+
+        for (int size : sizes) {
+            writeRandomContent(size);
+            assertEquals("Wrong checksum for size " + size, bytewiseCRC32(file), ChecksumUtils.getCRC32(file));
+        }
+    }
+
+    private void writeRandomContent(int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content);
+        }
+    }
+
+    /**
+     * Previous implementation of FilesystemDataProvider#getFileChecksum, kept as reference.
+     */
+    private long bytewiseCRC32(File file) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            CRC32 crc = new CRC32();
+            int cnt;
+            while ((cnt = inputStream.read()) != -1) {
+                crc.update(cnt);
+            }
+
+            return crc.getValue();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU AFFERO GENERAL PUBLIC LICENSE
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU AFFERO GENERAL PUBLIC LICENSE for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class FileCopyUtilsTest {
+    /** size of the benchmark file, the benchmark only runs with -Dbenchmark.copy.size=<bytes>, e.g. multi-GB */
+    private static final long BENCHMARK_FILE_SIZE = Long.getLong("benchmark.copy.size", 0);
+    private static final int LEGACY_BUFFER_SIZE = 1024;
+
+    private File source;
+    private File target;
+
+    @Before
+    public void setUp() throws IOException {
+        source = File.createTempFile("copy-source", ".bin");
+        target = File.createTempFile("copy-target", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        source.delete();
+        target.delete();
+    }
+
+    @Test
+    public void copyFiles() throws IOException {
+        // sizes around buffer boundaries
+        int[] sizes = {0, 1, FileCopyUtils.BUFFER_SIZE - 1, FileCopyUtils.BUFFER_SIZE, FileCopyUtils.BUFFER_SIZE + 1,
+            3 * FileCopyUtils.BUFFER_SIZE + 17};
+
+        for (int size : sizes) {
+            byte[] content = write(source, size);
+
+            assertTrue(FileCopyUtils.copy(source, target, null));
+            assertTrue("size " + size, Arrays.equals(content, Files.readAllBytes(target.toPath())));
+        }
+    }
+
+    @Test
+    public void replaceLongerTarget() throws IOException {
+        write(target, 1000);
+        byte[] content = write(source, 10);
+
+        assertTrue(FileCopyUtils.copy(source, target, null));
+        assertTrue(Arrays.equals(content, Files.readAllBytes(target.toPath())));
+    }
+
+    @Test
+    public void copyRemainingBytesOfFileStream() throws IOException {
+        byte[] content = write(source, FileCopyUtils.BUFFER_SIZE + 100);
+
+        try (InputStream in = new FileInputStream(source); OutputStream out = new FileOutputStream(target)) {
+            assertEquals(100, in.skip(100));
+            out.write(content, 0, 10);
+            assertTrue(FileCopyUtils.copy(in, out, null));
+            assertEquals(-1, in.read());
+        }
+
+        byte[] expected = new byte[content.length - 90];
+        System.arraycopy(content, 0, expected, 0, 10);
+        System.arraycopy(content, 100, expected, 10, content.length - 100);
+        assertTrue(Arrays.equals(expected, Files.readAllBytes(target.toPath())));
+    }
+
+    @Test
+    public void copyOtherStreams() throws IOException {
+        byte[] content = new byte[3 * FileCopyUtils.BUFFER_SIZE + 5];
+        new Random(1).nextBytes(content);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertTrue(FileCopyUtils.copy(new ByteArrayInputStream(content), out, null));
+        assertTrue(Arrays.equals(content, out.toByteArray()));
+    }
+
+    @Test
+    public void cancel() throws IOException {
+        write(source, FileCopyUtils.BUFFER_SIZE);
+        AtomicBoolean cancelled = new AtomicBoolean(true);
+
+        assertFalse(FileCopyUtils.copy(source, target, cancelled));
+        assertEquals(0, target.length());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertFalse(FileCopyUtils.copy(new ByteArrayInputStream(new byte[10]), out, cancelled));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void copyOnlyReadableBytesOfFileStreamSubclass() throws IOException {
+        byte[] content = write(source, FileCopyUtils.BUFFER_SIZE + 100);
+        int length = FileCopyUtils.BUFFER_SIZE / 2;
+
+        try (InputStream in = new BoundedFileInputStream(source, length);
+             OutputStream out = new FileOutputStream(target)) {
+            assertTrue(FileCopyUtils.copy(in, out, null));
+        }
+
+        assertTrue(Arrays.equals(Arrays.copyOf(content, length), Files.readAllBytes(target.toPath())));
+    }
+
+    @Test
+    public void copyEmptyStream() throws IOException {
+        write(source, 0);
+
+        try (InputStream in = new FileInputStream(source); OutputStream out = new FileOutputStream(target)) {
+            assertTrue(FileCopyUtils.copy(in, out, null));
+        }
+
+        assertEquals(0, target.length());
+    }
+
+    /**
+     * Compares the copy with the former 1 KB buffer loop of {@link FileStorageUtils#copyFile(File, File)}.
+     */
+    @Test
+    public void benchmark() throws IOException {
+        assumeTrue(BENCHMARK_FILE_SIZE > 0);
+
+        byte[] block = new byte[1024 * 1024];
+        new Random(1).nextBytes(block);
+        try (OutputStream out = new FileOutputStream(source)) {
+            for (long written = 0; written < BENCHMARK_FILE_SIZE; written += block.length) {
+                out.write(block, 0, (int) Math.min(block.length, BENCHMARK_FILE_SIZE - written));
+            }
+        }
+
+        long start = System.nanoTime();
+        legacyCopy(source, target);
+        long legacy = System.nanoTime() - start;
+        assertEquals(BENCHMARK_FILE_SIZE, target.length());
+        assertTrue(target.delete());
+
+        start = System.nanoTime();
+        assertTrue(FileCopyUtils.copy(source, target, null));
+        long transferTo = System.nanoTime() - start;
+        assertEquals(BENCHMARK_FILE_SIZE, target.length());
+
+        assertTrue(transferTo < legacy);
+    }
+
+    private static void legacyCopy(File source, File target) throws IOException {
+        try (InputStream in = new FileInputStream(source); OutputStream out = new FileOutputStream(target)) {
+            byte[] buf = new byte[LEGACY_BUFFER_SIZE];
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                out.write(buf, 0, len);
+            }
+        }
+    }
+
+    private static byte[] write(File file, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return content;
+    }
+
+    /**
+     * Reads a part of a file only, like the stream of a descriptor with a declared length.
+     */
+    private static class BoundedFileInputStream extends FileInputStream {
+        private long remaining;
+
+        BoundedFileInputStream(File file, long length) throws IOException {
+            super(file);
+            remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            remaining--;
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b) throws IOException {
+            return read(b, 0, b.length);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import third_parties.daveKoeller.AlphanumComparator;
+
+import static org.junit.Assert.assertEquals;
+
+public class NaturalSortKeyTest {
+    private static final String[] NAMES = {"", "a", "A", "b", "1", "01", "001", "2", "10", "a1", "a01", "a2", "a10",
+        "a10b", "a10.txt", "a1.txt", "a 1", "a-1", "a_1", ".hidden", "file.txt", "file (1).txt", "file (10).txt",
+        "file (2).txt", "File.txt", "Ärger", "äpfel", "zebra", "IMG_20200101_120000.jpg",
+        "IMG_20200101_115959.jpg", "12345678901234567890", "12345678901234567891", "~tmp", "[a]", "{b}"};
+    private static final char[] ALPHABET = "aAbB09123._- ()äZ".toCharArray();
+    private static final int RANDOM_NAMES = 500;
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void sameOrderAsAlphanumComparator() {
+        List<String> names = new ArrayList<>();
+        Collections.addAll(names, NAMES);
+
+        Random random = new Random(42);
+        for (int i = 0; i < RANDOM_NAMES; i++) {
+            names.add(randomName(random));
+        }
+
+        AlphanumComparator comparator = new AlphanumComparator();
+        List<NaturalSortKey> keys = new ArrayList<>(names.size());
+        for (String name : names) {
+            keys.add(NaturalSortKey.of(name));
+        }
+
+        for (int i = 0; i < names.size(); i++) {
+            for (int j = 0; j < names.size(); j++) {
+                String message = "\"" + names.get(i) + "\" vs \"" + names.get(j) + "\"";
+                assertEquals(message,
+                             Integer.signum(comparator.compare(names.get(i), names.get(j))),
+                             Integer.signum(keys.get(i).compareTo(keys.get(j))));
+            }
+        }
+    }
+
+    private String randomName(Random random) {
+        int length = 1 + random.nextInt(12);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.owncloud.android.utils;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.provider.MediaStore;
+
+import com.owncloud.android.datamodel.FilesystemDataProvider;
+import com.owncloud.android.datamodel.MediaFolderType;
+import com.owncloud.android.datamodel.SyncedFolder;
+import com.owncloud.android.files.services.FileUploader;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class SyncedFolderScannerTest {
+    private static final long ENABLED_AT = 1_600_000_000_000L;
+    private static final String IMAGE_URI = "content://media/external/images/media/42";
+    private static final String CAMERA = "/storage/emulated/0/DCIM/Camera";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ContentResolver contentResolver;
+    private FilesystemDataProvider filesystemDataProvider;
+    private FilesystemDataProvider.Batch batch;
+    private final Set<String> storedPaths = Collections.synchronizedSet(new HashSet<>());
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    @Before
+    public void setUp() {
+        contentResolver = mock(ContentResolver.class);
+        filesystemDataProvider = mock(FilesystemDataProvider.class);
+        batch = mock(FilesystemDataProvider.Batch.class);
+        when(filesystemDataProvider.startBatch(any())).thenReturn(batch);
+        when(batch.fork()).thenReturn(batch);
+        doAnswer(invocation -> {
+            storedPaths.add(invocation.getArgument(0));
+            return null;
+        }).when(batch).storeOrUpdateFileValue(anyString(), anyLong(), anyBoolean());
+    }
+
+    @Test
+    public void customFolderIsScannedRecursively() throws IOException {
+        File root = temporaryFolder.newFolder("camera");
+        File top = createFile(root, "top.jpg");
+        File nested = createFile(new File(root, "2020"), "nested.jpg");
+        File deeper = createFile(new File(root, "2020/05"), "deeper.jpg");
+
+        List<SyncedFolderScanner.FolderMetrics> metrics = newScanner().scan(
+            Collections.singletonList(customFolder(root, true, true)));
+
+        assertEquals(paths(top, nested, deeper), storedPaths);
+        assertEquals(1, metrics.size());
+        assertEquals(3, metrics.get(0).getFiles());
+        assertFalse(metrics.get(0).isCancelled());
+    }
+
+    @Test
+    public void disabledFolderIsNotScanned() throws IOException {
+        File root = temporaryFolder.newFolder("camera");
+        createFile(root, "top.jpg");
+
+        List<SyncedFolderScanner.FolderMetrics> metrics = newScanner().scan(
+            Collections.singletonList(customFolder(root, false, true)));
+
+        assertTrue(metrics.isEmpty());
+        verify(filesystemDataProvider, never()).startBatch(any());
+    }
+
+    @Test
+    public void filesBeforeEnablingAreSkippedWithoutExisting() throws IOException {
+        File root = temporaryFolder.newFolder("camera");
+        File oldTop = createFile(root, "old.jpg", ENABLED_AT - 1000);
+        File newTop = createFile(root, "new.jpg", ENABLED_AT + 1000);
+        File oldNested = createFile(new File(root, "2020"), "old.jpg", ENABLED_AT - 1000);
+        File newNested = createFile(new File(root, "2020"), "new.jpg", ENABLED_AT + 1000);
+
+        newScanner().scan(Collections.singletonList(customFolder(root, true, false)));
+        assertEquals(paths(newTop, newNested), storedPaths);
+
+        storedPaths.clear();
+        newScanner().scan(Collections.singletonList(customFolder(root, true, true)));
+        assertEquals(paths(oldTop, newTop, oldNested, newNested), storedPaths);
+    }
+
+    @Test
+    public void stoppedScanDoesNotStoreFiles() throws IOException {
+        File root = temporaryFolder.newFolder("camera");
+        createFile(root, "top.jpg");
+        createFile(new File(root, "2020"), "nested.jpg");
+        stopped.set(true);
+
+        List<SyncedFolderScanner.FolderMetrics> metrics = newScanner().scan(
+            Collections.singletonList(customFolder(root, true, true)));
+
+        assertTrue(storedPaths.isEmpty());
+        assertTrue(metrics.get(0).isCancelled());
+    }
+
+    @Test
+    public void scanStopsInTheMiddleOfFolder() throws IOException {
+        File root = temporaryFolder.newFolder("camera");
+        File folder = new File(root, "2020");
+        for (int i = 0; i < 10; i++) {
+            createFile(folder, "IMG_" + i + ".jpg");
+        }
+        doAnswer(invocation -> {
+            storedPaths.add(invocation.getArgument(0));
+            stopped.set(true);
+            return null;
+        }).when(batch).storeOrUpdateFileValue(anyString(), anyLong(), anyBoolean());
+
+        List<SyncedFolderScanner.FolderMetrics> metrics = newScanner().scan(
+            Collections.singletonList(customFolder(root, true, true)));
+
+        assertEquals(1, storedPaths.size());
+        assertEquals(1, metrics.get(0).getFiles());
+        assertTrue(metrics.get(0).isCancelled());
+        verify(batch, atLeastOnce()).flush();
+    }
+
+    @Test
+    public void changedImageIsStoredInFoldersContainingIt() {
+        SyncedFolder images = syncedFolder(CAMERA, MediaFolderType.IMAGE, true, true);
+        SyncedFolder videos = syncedFolder(CAMERA, MediaFolderType.VIDEO, true, true);
+        SyncedFolder custom = syncedFolder("/storage/emulated/0/DCIM", MediaFolderType.CUSTOM, true, true);
+        SyncedFolder otherImages = syncedFolder("/storage/emulated/0/Pictures", MediaFolderType.IMAGE, true, true);
+        SyncedFolder prefixImages = syncedFolder(CAMERA + "2", MediaFolderType.IMAGE, true, true);
+        stubChangedItem(CAMERA + "/IMG_42.jpg");
+
+        List<SyncedFolderScanner.FolderMetrics> metrics = newScanner().scanChanges(
+            Arrays.asList(images, videos, custom, otherImages, prefixImages), Collections.singletonList(IMAGE_URI));
+
+        List<String> localPaths = new ArrayList<>();
+        for (SyncedFolderScanner.FolderMetrics folderMetrics : metrics) {
+            localPaths.add(folderMetrics.getLocalPath());
+            assertEquals(1, folderMetrics.getFiles());
+        }
+        assertEquals(Arrays.asList(CAMERA, "/storage/emulated/0/DCIM"), localPaths);
+        assertEquals(paths(new File(CAMERA + "/IMG_42.jpg")), storedPaths);
+        verify(filesystemDataProvider).startBatch(images);
+        verify(filesystemDataProvider).startBatch(custom);
+        verify(filesystemDataProvider, never()).startBatch(videos);
+        verify(filesystemDataProvider, never()).startBatch(otherImages);
+        verify(filesystemDataProvider, never()).startBatch(prefixImages);
+    }
+
+    @Test
+    public void changedImageIsQueriedById() {
+        stubChangedItem(CAMERA + "/IMG_42.jpg");
+
+        newScanner().scanChanges(Collections.singletonList(syncedFolder(CAMERA, MediaFolderType.IMAGE, true, true)),
+                                 Arrays.asList(IMAGE_URI, "content://media/external/images/media/43"));
+
+        verify(contentResolver).query(any(), any(), any(), eq(new String[]{"42", "43"}), any());
+    }
+
+    @Test
+    public void changeOutsideSyncedFoldersIsNotStored() {
+        stubChangedItem("/storage/emulated/0/Download/IMG_42.jpg");
+
+        List<SyncedFolderScanner.FolderMetrics> metrics = newScanner().scanChanges(
+            Collections.singletonList(syncedFolder(CAMERA, MediaFolderType.IMAGE, true, true)),
+            Collections.singletonList(IMAGE_URI));
+
+        assertTrue(metrics.isEmpty());
+        assertTrue(storedPaths.isEmpty());
+    }
+
+    @Test
+    public void otherUrisNeedFullScan() {
+        List<SyncedFolder> folders = Collections.singletonList(syncedFolder(CAMERA, MediaFolderType.IMAGE, true, true));
+        String[] uris = {
+            "content://media/external/images/media",
+            "content://media/external/images/media/abc",
+            "content://media/external/audio/media/42",
+            "content://media/external/file/42",
+            "content://com.android.externalstorage.documents/document/primary%3ADCIM/42",
+            "not a uri",
+        };
+
+        for (String uri : uris) {
+            assertNull(uri, newScanner().scanChanges(folders, Arrays.asList(IMAGE_URI, uri)));
+        }
+        verifyNoInteractions(contentResolver);
+    }
+
+    private SyncedFolderScanner newScanner() {
+        return new SyncedFolderScanner(contentResolver, filesystemDataProvider, stopped::get);
+    }
+
+    /**
+     * Lets the MediaStore return a single changed item.
+     */
+    private void stubChangedItem(String localPath) {
+        Cursor cursor = mock(Cursor.class);
+        when(cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATA)).thenReturn(0);
+        when(cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATE_MODIFIED)).thenReturn(1);
+        when(cursor.moveToNext()).thenReturn(true, false);
+        when(cursor.getString(0)).thenReturn(localPath);
+        when(cursor.getLong(1)).thenReturn(ENABLED_AT / 1000);
+        when(contentResolver.query(any(), any(), any(), any(), any())).thenReturn(cursor);
+    }
+
+    private static SyncedFolder customFolder(File root, boolean enabled, boolean existing) {
+        return syncedFolder(root.getAbsolutePath(), MediaFolderType.CUSTOM, enabled, existing);
+    }
+
+    private static SyncedFolder syncedFolder(String localPath,
+                                             MediaFolderType type,
+                                             boolean enabled,
+                                             boolean existing) {
+        return new SyncedFolder(localPath,
+                                "/Camera",
+                                true,
+                                false,
+                                existing,
+                                false,
+                                "user@nextcloud.localhost",
+                                FileUploader.LOCAL_BEHAVIOUR_FORGET,
+                                FileUploader.NameCollisionPolicy.DEFAULT.serialize(),
+                                enabled,
+                                ENABLED_AT,
+                                type,
+                                false);
+    }
+
+    private static File createFile(File folder, String name) throws IOException {
+        return createFile(folder, name, ENABLED_AT + 1000);
+    }
+
+    private static File createFile(File folder, String name, long lastModified) throws IOException {
+        assertTrue(folder.isDirectory() || folder.mkdirs());
+        File file = new File(folder, name);
+        assertTrue(file.createNewFile());
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+    private static Set<String> paths(File... files) {
+        Set<String> paths = new HashSet<>();
+        for (File file : files) {
+            paths.add(file.getAbsolutePath());
+        }
+        return paths;
+    }
+}